@@ -0,0 +1,52 @@
+package org.toughjobs.exams.trains.benchmarks;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.toughjobs.exams.trains.data.Trip;
+import org.toughjobs.exams.trains.processing.ProcessorImpl;
+
+/**
+ * {@link ProcessorImpl#findTrips(String, String)} returns every trip using a city only once,
+ * their number grows exponentially with the size of the graph: only small random graphs are measured.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FindTripsBenchmark {
+
+    @Param({"8", "10", "12"})
+    public int towns;
+
+    private ProcessorImpl proc;
+    private QueryState trips;
+
+    @Setup
+    public void setUp() {
+        proc = SyntheticGraphs.random(towns, 3, 42);
+        proc.getGraph();
+        trips = new QueryState(proc, 4, 3);
+    }
+
+    @Benchmark
+    public Set<Trip> findTrips() {
+        String[] walk = trips.next();
+        return proc.findTrips(walk[0], walk[walk.length - 1]);
+    }
+}
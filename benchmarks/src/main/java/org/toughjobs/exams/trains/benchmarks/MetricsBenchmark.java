@@ -0,0 +1,51 @@
+package org.toughjobs.exams.trains.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.toughjobs.exams.trains.exceptions.NoSuchRouteException;
+import org.toughjobs.exams.trains.metrics.InMemoryMetrics;
+import org.toughjobs.exams.trains.processing.ProcessorImpl;
+
+/**
+ * Cost of the metrics on the cheapest query, a route lookup, without metrics and with {@link InMemoryMetrics}.
+ * Run with <code>-prof gc</code> to check neither allocates.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+
+    @Param({"false", "true"})
+    public boolean enabled;
+
+    private ProcessorImpl proc;
+    private QueryState queries;
+
+    @Setup
+    public void setUp() {
+        proc = SyntheticGraphs.random(10000, 4, 42);
+        queries = new QueryState(proc, 4, 7);
+        proc.setMetrics(enabled ? new InMemoryMetrics() : null);
+    }
+
+    @Benchmark
+    public int getRoute() throws NoSuchRouteException {
+        return proc.getRoute(queries.next());
+    }
+}
@@ -0,0 +1,121 @@
+package org.toughjobs.exams.trains.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.toughjobs.exams.trains.graph.Graph;
+import org.toughjobs.exams.trains.graph.GraphBuilder;
+import org.toughjobs.exams.trains.processing.AltSearch;
+import org.toughjobs.exams.trains.processing.BidirectionalSearch;
+import org.toughjobs.exams.trains.processing.ContractionHierarchy;
+import org.toughjobs.exams.trains.processing.ContractionSearch;
+import org.toughjobs.exams.trains.processing.Landmarks;
+import org.toughjobs.exams.trains.processing.ProcessorImpl;
+import org.toughjobs.exams.trains.processing.Search;
+import org.toughjobs.exams.trains.processing.ShortestPaths;
+
+/**
+ * Compare point to point shortest path searches between random cities: Dijkstra from the starting city,
+ * bidirectional Dijkstra, A* with landmarks and contraction hierarchies. Besides the latency, the <code>settled</code>
+ * counter reports the number of cities settled per query. Searches are reused, preprocessing is not measured.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PointToPointBenchmark {
+
+    private static final int QUERIES = 256;
+
+    @Param({"RANDOM", "GRID"})
+    public SyntheticGraphs.Shape shape;
+
+    @Param({"10000", "100000"})
+    public int towns;
+
+    @Param({"DIJKSTRA", "BIDIRECTIONAL", "ALT", "CONTRACTION_HIERARCHY"})
+    public Search search;
+
+    private ShortestPaths dijkstra;
+    private BidirectionalSearch bidirectional;
+    private AltSearch alt;
+    private ContractionSearch contraction;
+    private final int[] froms = new int[QUERIES];
+    private final int[] tos = new int[QUERIES];
+    private int next;
+
+    /**
+     * Cities settled by the searches, reported per operation.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+        public long settled;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            settled = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        ProcessorImpl proc = SyntheticGraphs.create(shape, towns, 42);
+        Graph graph = proc.getGraph();
+        Graph reverse = GraphBuilder.transpose(graph);
+        dijkstra = new ShortestPaths(graph);
+        bidirectional = new BidirectionalSearch(graph, reverse);
+        alt = new AltSearch(graph, new Landmarks(graph, reverse, ProcessorImpl.DEFAULT_LANDMARK_COUNT));
+        if (search == Search.CONTRACTION_HIERARCHY) {
+            contraction = new ContractionSearch(ContractionHierarchy.build(graph, ForkJoinPool.commonPool()));
+        }
+        Random random = new Random(7);
+        for (int q = 0; q < QUERIES; q++) {
+            froms[q] = random.nextInt(graph.getTownCount());
+            tos[q] = random.nextInt(graph.getTownCount());
+        }
+    }
+
+    @Benchmark
+    public int shortestTrip(Counters counters) {
+        int from = froms[next];
+        int to = tos[next];
+        next = (next + 1) % QUERIES;
+        switch (search) {
+            case BIDIRECTIONAL:
+                int distance = bidirectional.search(from, to);
+                counters.settled += bidirectional.getSettledCount();
+                return distance;
+            case ALT:
+                distance = alt.search(from, to);
+                counters.settled += alt.getSettledCount();
+                return distance;
+            case CONTRACTION_HIERARCHY:
+                distance = contraction.search(from, to);
+                counters.settled += contraction.getSettledCount();
+                return distance;
+            default:
+                distance = dijkstra.search(from, to);
+                counters.settled += dijkstra.getSettledCount();
+                return distance;
+        }
+    }
+}
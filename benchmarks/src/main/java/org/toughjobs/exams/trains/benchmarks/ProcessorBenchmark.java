@@ -0,0 +1,101 @@
+package org.toughjobs.exams.trains.benchmarks;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.toughjobs.exams.trains.data.Trip;
+import org.toughjobs.exams.trains.exceptions.NoSuchRouteException;
+import org.toughjobs.exams.trains.processing.ProcessorImpl;
+
+/**
+ * Every {@link org.toughjobs.exams.trains.processing.Processor} query over synthetic graphs from 10 to 100k cities.
+ * Enumerations are bounded (3 steps, distance lower than 12) so that they finish on every graph,
+ * {@link FindTripsBenchmark} covers unbounded {@link ProcessorImpl#findTrips(String, String)}.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProcessorBenchmark {
+
+    private static final int STEPS = 3;
+    private static final int DISTANCE = 12;
+
+    @Param({"RANDOM", "GRID", "SCALE_FREE"})
+    public SyntheticGraphs.Shape shape;
+
+    @Param({"10", "1000", "100000"})
+    public int towns;
+
+    private ProcessorImpl proc;
+    private QueryState routes;
+    private QueryState trips;
+
+    @Setup
+    public void setUp() {
+        proc = SyntheticGraphs.create(shape, towns, 42);
+        proc.getGraph(); // not part of the measure.
+        routes = new QueryState(proc, 8, 1);
+        trips = new QueryState(proc, STEPS, 2);
+    }
+
+    @Benchmark
+    public int getRoute() throws NoSuchRouteException {
+        return proc.getRoute(routes.next());
+    }
+
+    @Benchmark
+    public Trip getShortestDistanceTrip() {
+        String[] walk = routes.next();
+        try {
+            return proc.getShortestDistanceTrip(walk[0], walk[walk.length - 1]);
+        } catch (NoSuchRouteException ex) {
+            return null;
+        }
+    }
+
+    @Benchmark
+    public Set<Trip> findTripsEqualsSteps() {
+        String[] walk = trips.next();
+        return proc.findTripsEqualsSteps(walk[0], walk[STEPS], STEPS);
+    }
+
+    @Benchmark
+    public Set<Trip> findTripsMaxSteps() {
+        String[] walk = trips.next();
+        return proc.findTripsMaxSteps(walk[0], walk[STEPS], STEPS);
+    }
+
+    @Benchmark
+    public Set<Trip> findTripsMaxDistance() {
+        String[] walk = trips.next();
+        return proc.findTripsMaxDistance(walk[0], walk[STEPS], DISTANCE);
+    }
+
+    @Benchmark
+    public long countTripsEqualsSteps() {
+        String[] walk = trips.next();
+        return proc.countTripsEqualsSteps(walk[0], walk[STEPS], STEPS);
+    }
+
+    @Benchmark
+    public long countTripsMaxDistance() {
+        String[] walk = trips.next();
+        return proc.countTripsMaxDistance(walk[0], walk[STEPS], DISTANCE);
+    }
+}
@@ -0,0 +1,61 @@
+package org.toughjobs.exams.trains.benchmarks;
+
+import java.util.Random;
+
+import org.toughjobs.exams.trains.graph.Graph;
+import org.toughjobs.exams.trains.processing.ProcessorImpl;
+
+/**
+ * Seeded queries over a graph: pairs of cities linked by a random walk so that trips exist between them.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public final class QueryState {
+
+    private static final int QUERIES = 64;
+
+    /**
+     * Cities of every query, first one is the starting city and last one the ending city.
+     */
+    private final String[][] walks = new String[QUERIES][];
+    private int next;
+
+    /**
+     * Pick queries.
+     * @param proc processor fed with the graph.
+     * @param steps number of steps of every random walk.
+     * @param seed seed of the random generator.
+     */
+    public QueryState(ProcessorImpl proc, int steps, long seed) {
+        Graph graph = proc.getGraph();
+        Random random = new Random(seed);
+        for (int q = 0; q < QUERIES; q++) {
+            String[] walk = new String[steps + 1];
+            int town;
+            do {
+                town = random.nextInt(graph.getTownCount());
+            } while (graph.getOffset(town) == graph.getOffset(town + 1));
+            walk[0] = graph.getTown(town);
+            for (int s = 1; s <= steps; s++) {
+                int degree = graph.getOffset(town + 1) - graph.getOffset(town);
+                if (degree == 0) { // dead end: stay on the walk so far.
+                    walk[s] = walk[s - 1];
+                    continue;
+                }
+                town = graph.getTarget(graph.getOffset(town) + random.nextInt(degree));
+                walk[s] = graph.getTown(town);
+            }
+            walks[q] = walk;
+        }
+    }
+
+    /**
+     * Next query, queries are used in turn.
+     * @return cities of the walk.
+     */
+    public String[] next() {
+        String[] walk = walks[next];
+        next = (next + 1) % QUERIES;
+        return walk;
+    }
+}
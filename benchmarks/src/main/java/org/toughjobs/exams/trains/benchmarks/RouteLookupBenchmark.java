@@ -0,0 +1,141 @@
+package org.toughjobs.exams.trains.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.toughjobs.exams.trains.data.Route;
+import org.toughjobs.exams.trains.exceptions.NoSuchRouteException;
+import org.toughjobs.exams.trains.graph.Graph;
+import org.toughjobs.exams.trains.processing.ProcessorImpl;
+
+/**
+ * Compare route distance lookups: the former <code>HashMap&lt;Route, Integer&gt;</code> whose keys concatenate
+ * both city names, the same map with the current {@link Route#hashCode()}, and the packed id index of {@link Graph}.
+ * Run with <code>-prof gc</code> to see the allocation rate of each.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouteLookupBenchmark {
+
+    /**
+     * Route key as it was before: cities concatenated on every call.
+     */
+    static final class ConcatRoute {
+        private final String from;
+        private final String to;
+
+        ConcatRoute(String from, String to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            ConcatRoute r = (ConcatRoute) o;
+            return (from + to).equals(r.from + r.to);
+        }
+
+        @Override
+        public int hashCode() {
+            return (from + to).hashCode();
+        }
+    }
+
+    @Param({"1000", "100000"})
+    public int towns;
+
+    private static final int TRIP = 8;
+
+    private Map<ConcatRoute, Integer> concatMap;
+    private Map<Route, Integer> routeMap;
+    private ProcessorImpl proc;
+    private Graph graph;
+    /**
+     * Cities of existing trips of {@link #TRIP} steps.
+     */
+    private String[] cities;
+
+    @Setup
+    public void setUp() {
+        proc = SyntheticGraphs.random(towns, 4, 42);
+        graph = proc.getGraph();
+        concatMap = new HashMap<ConcatRoute, Integer>();
+        routeMap = new HashMap<Route, Integer>();
+        for (int t = 0; t < graph.getTownCount(); t++) {
+            for (int r = graph.getOffset(t); r < graph.getOffset(t + 1); r++) {
+                String from = graph.getTown(t);
+                String to = graph.getTown(graph.getTarget(r));
+                concatMap.put(new ConcatRoute(from, to), Integer.valueOf(graph.getWeight(r)));
+                routeMap.put(new Route(from, to), Integer.valueOf(graph.getWeight(r)));
+            }
+        }
+
+        // walk at random to get a trip which exists.
+        Random random = new Random(7);
+        List<String> trip = new ArrayList<String>();
+        int town = random.nextInt(graph.getTownCount());
+        trip.add(graph.getTown(town));
+        while (trip.size() <= TRIP) {
+            int degree = graph.getOffset(town + 1) - graph.getOffset(town);
+            town = graph.getTarget(graph.getOffset(town) + random.nextInt(degree));
+            trip.add(graph.getTown(town));
+        }
+        cities = trip.toArray(new String[trip.size()]);
+    }
+
+    @Benchmark
+    public int concatHashMap() {
+        int distance = 0;
+        for (int i = 1; i < cities.length; i++) {
+            distance += concatMap.get(new ConcatRoute(cities[i - 1], cities[i])).intValue();
+        }
+        return distance;
+    }
+
+    @Benchmark
+    public int routeHashMap() {
+        int distance = 0;
+        for (int i = 1; i < cities.length; i++) {
+            distance += routeMap.get(new Route(cities[i - 1], cities[i])).intValue();
+        }
+        return distance;
+    }
+
+    @Benchmark
+    public int packedIndex() {
+        int distance = 0;
+        int prev = graph.indexOf(cities[0]);
+        for (int i = 1; i < cities.length; i++) {
+            int town = graph.indexOf(cities[i]);
+            distance += graph.getWeight(graph.findRoute(prev, town));
+            prev = town;
+        }
+        return distance;
+    }
+
+    @Benchmark
+    public int processorGetRoute() throws NoSuchRouteException {
+        return proc.getRoute(cities);
+    }
+}
@@ -0,0 +1,143 @@
+package org.toughjobs.exams.trains.benchmarks;
+
+import java.util.Random;
+
+import org.toughjobs.exams.trains.data.Route;
+import org.toughjobs.exams.trains.processing.ProcessorImpl;
+
+/**
+ * Seeded synthetic railroad networks for benchmarks.
+ * Cities are named <code>T0</code>, <code>T1</code>... and distances are between 1 and 9.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public final class SyntheticGraphs {
+
+    /**
+     * Shapes of network.
+     */
+    public enum Shape {
+        /**
+         * See {@link SyntheticGraphs#random(int, int, long)}.
+         */
+        RANDOM,
+        /**
+         * See {@link SyntheticGraphs#grid(int, long)}.
+         */
+        GRID,
+        /**
+         * See {@link SyntheticGraphs#scaleFree(int, int, long)}.
+         */
+        SCALE_FREE
+    }
+
+    private SyntheticGraphs() {
+    }
+
+    /**
+     * Name of a city.
+     * @param town id of the city.
+     * @return Name of the city.
+     */
+    public static String town(int town) {
+        return "T" + town;
+    }
+
+    /**
+     * Build a network of a shape with an average of 4 routes per city.
+     * @param shape shape of the network.
+     * @param towns number of cities, rounded down to a square for grids.
+     * @param seed seed of the random generator.
+     * @return a processor fed with the graph.
+     */
+    public static ProcessorImpl create(Shape shape, int towns, long seed) {
+        switch (shape) {
+            case RANDOM:
+                return random(towns, 4, seed);
+            case GRID:
+                return grid(towns, seed);
+            case SCALE_FREE:
+                return scaleFree(towns, 2, seed);
+            default:
+                throw new IllegalArgumentException(shape.name());
+        }
+    }
+
+    /**
+     * Random graph: every city has the same number of routes to cities picked at random.
+     * @param towns number of cities.
+     * @param degree number of routes leaving every city.
+     * @param seed seed of the random generator.
+     * @return a processor fed with the graph.
+     */
+    public static ProcessorImpl random(int towns, int degree, long seed) {
+        Random random = new Random(seed);
+        ProcessorImpl proc = new ProcessorImpl();
+        for (int from = 0; from < towns; from++) {
+            for (int i = 0; i < degree; i++) {
+                int to = random.nextInt(towns);
+                if (to != from) {
+                    proc.addRoute(new Route(town(from), town(to)), 1 + random.nextInt(9));
+                }
+            }
+        }
+        return proc;
+    }
+
+    /**
+     * Square grid: every city has a route to each of its neighbours, in both directions with different distances.
+     * @param towns number of cities, rounded down to a square.
+     * @param seed seed of the random generator.
+     * @return a processor fed with the graph.
+     */
+    public static ProcessorImpl grid(int towns, long seed) {
+        Random random = new Random(seed);
+        int side = Math.max((int) Math.sqrt(towns), 2);
+        ProcessorImpl proc = new ProcessorImpl();
+        for (int row = 0; row < side; row++) {
+            for (int col = 0; col < side; col++) {
+                int town = row * side + col;
+                if (col + 1 < side) {
+                    proc.addRoute(new Route(town(town), town(town + 1)), 1 + random.nextInt(9));
+                    proc.addRoute(new Route(town(town + 1), town(town)), 1 + random.nextInt(9));
+                }
+                if (row + 1 < side) {
+                    proc.addRoute(new Route(town(town), town(town + side)), 1 + random.nextInt(9));
+                    proc.addRoute(new Route(town(town + side), town(town)), 1 + random.nextInt(9));
+                }
+            }
+        }
+        return proc;
+    }
+
+    /**
+     * Scale free graph (Barabasi-Albert): every new city links to cities picked proportionally to their number of
+     * routes, both ways, so that a few hubs get most of the routes.
+     * @param towns number of cities.
+     * @param links number of cities every new city links to.
+     * @param seed seed of the random generator.
+     * @return a processor fed with the graph.
+     */
+    public static ProcessorImpl scaleFree(int towns, int links, long seed) {
+        Random random = new Random(seed);
+        ProcessorImpl proc = new ProcessorImpl();
+        // every end of every link, picking one at random is picking a city proportionally to its degree.
+        int[] ends = new int[2 * links * towns + 2];
+        int size = 0;
+        proc.addRoute(new Route(town(0), town(1)), 1 + random.nextInt(9));
+        proc.addRoute(new Route(town(1), town(0)), 1 + random.nextInt(9));
+        ends[size++] = 0;
+        ends[size++] = 1;
+        for (int town = 2; town < towns; town++) {
+            int count = size;
+            for (int i = 0; i < links; i++) {
+                int to = ends[random.nextInt(count)];
+                proc.addRoute(new Route(town(town), town(to)), 1 + random.nextInt(9));
+                proc.addRoute(new Route(town(to), town(town)), 1 + random.nextInt(9));
+                ends[size++] = town;
+                ends[size++] = to;
+            }
+        }
+        return proc;
+    }
+}
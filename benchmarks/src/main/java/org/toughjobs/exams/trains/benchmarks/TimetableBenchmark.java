@@ -0,0 +1,113 @@
+package org.toughjobs.exams.trains.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.toughjobs.exams.trains.graph.Timetable;
+import org.toughjobs.exams.trains.graph.TimetableBuilder;
+import org.toughjobs.exams.trains.processing.ConnectionScan;
+
+/**
+ * Earliest arrival and profile queries by {@link ConnectionScan} over a day of connections: lines of 20 random
+ * stations, each one run every 10 minutes from 05:00 to midnight, times in minutes. Profiles cover two hours.
+ * The <code>scanned</code> counter reports the number of connections scanned per query.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimetableBenchmark {
+
+    private static final int QUERIES = 256;
+    private static final int STOPS = 20;
+
+    @Param({"1000"})
+    public int stations;
+
+    @Param({"100", "500"})
+    public int lines;
+
+    private ConnectionScan scan;
+    private final int[] froms = new int[QUERIES];
+    private final int[] tos = new int[QUERIES];
+    private final int[] times = new int[QUERIES];
+    private int next;
+
+    /**
+     * Connections scanned by the queries, reported per operation.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+        public long scanned;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            scanned = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        TimetableBuilder builder = new TimetableBuilder();
+        for (int line = 0; line < lines; line++) {
+            int[] stops = new int[STOPS];
+            int[] durations = new int[STOPS];
+            for (int s = 0; s < STOPS; s++) {
+                stops[s] = random.nextInt(stations);
+                durations[s] = 2 + random.nextInt(8);
+            }
+            for (int start = 5 * 60; start < 24 * 60; start += 10) {
+                String trip = line + "@" + start;
+                int time = start;
+                for (int s = 1; s < STOPS; s++) {
+                    builder.addConnection("S" + stops[s - 1], "S" + stops[s], time, time + durations[s], trip);
+                    time += durations[s] + 1;
+                }
+            }
+        }
+        Timetable timetable = builder.build();
+        scan = new ConnectionScan(timetable);
+        for (int q = 0; q < QUERIES; q++) {
+            froms[q] = random.nextInt(timetable.getTownCount());
+            tos[q] = random.nextInt(timetable.getTownCount());
+            times[q] = 5 * 60 + random.nextInt(16 * 60);
+        }
+    }
+
+    @Benchmark
+    public int earliestArrival(Counters counters) {
+        int q = next;
+        next = (next + 1) % QUERIES;
+        int arrival = scan.search(froms[q], tos[q], times[q]);
+        counters.scanned += scan.getScannedCount();
+        return arrival;
+    }
+
+    @Benchmark
+    public int profile(Counters counters) {
+        int q = next;
+        next = (next + 1) % QUERIES;
+        int size = scan.profile(froms[q], tos[q], times[q], times[q] + 120).size();
+        counters.scanned += scan.getScannedCount();
+        return size;
+    }
+}
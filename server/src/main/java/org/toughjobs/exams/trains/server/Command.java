@@ -0,0 +1,105 @@
+package org.toughjobs.exams.trains.server;
+
+/**
+ * Requests of the {@link QueryServer} protocol, one per {@link org.toughjobs.exams.trains.processing.Processor}
+ * method, with the number of arguments they take.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public enum Command {
+
+    /**
+     * <code>ADD_ROUTE from to distance</code>, answers <code>OK</code>.
+     */
+    ADD_ROUTE(3, 3),
+    /**
+     * <code>REMOVE_ROUTE from to</code>, answers <code>OK</code> or <code>NO_SUCH_ROUTE</code>.
+     */
+    REMOVE_ROUTE(2, 2),
+    /**
+     * <code>GET_DISTANCE from to</code>, answers <code>OK distance</code> or <code>NO_SUCH_ROUTE</code>.
+     */
+    GET_DISTANCE(2, 2),
+    /**
+     * <code>GET_ROUTE city city...</code>, answers <code>OK distance</code> or <code>NO_SUCH_ROUTE</code>.
+     */
+    GET_ROUTE(2, Integer.MAX_VALUE),
+    /**
+     * <code>FIND_TRIPS from to</code>, answers <code>OK count trip...</code>.
+     */
+    FIND_TRIPS(2, 2),
+    /**
+     * <code>FIND_TRIPS_EQUALS_STEPS from to steps</code>, answers <code>OK count trip...</code>.
+     */
+    FIND_TRIPS_EQUALS_STEPS(3, 3),
+    /**
+     * <code>FIND_TRIPS_MAX_STEPS from to steps</code>, answers <code>OK count trip...</code>.
+     */
+    FIND_TRIPS_MAX_STEPS(3, 3),
+    /**
+     * <code>FIND_TRIPS_MAX_DISTANCE from to distance</code>, answers <code>OK count trip...</code>.
+     */
+    FIND_TRIPS_MAX_DISTANCE(3, 3),
+    /**
+     * <code>FIND_TRIPS_BUDGET from to constraint limit maxResults timeoutMillis</code>, answers
+     * <code>OK truncation count trip...</code> where truncation is the limit reached or <code>COMPLETE</code>.
+     * Limits of 0 and limits above the ones of the server are the ones of the server.
+     */
+    FIND_TRIPS_BUDGET(6, 6),
+    /**
+     * <code>ITERATE_TRIPS from to constraint limit sorted maxResults timeoutMillis</code>, answers
+     * <code>OK truncation count trip...</code> like {@link #FIND_TRIPS_BUDGET}, trips coming in the order of the
+     * iteration.
+     */
+    ITERATE_TRIPS(7, 7),
+    /**
+     * <code>COUNT_TRIPS_EQUALS_STEPS from to steps</code>, answers <code>OK count</code>, or <code>ERROR</code> when the
+     * steps is above the maximum of the server.
+     */
+    COUNT_TRIPS_EQUALS_STEPS(3, 3),
+    /**
+     * <code>COUNT_TRIPS_MAX_STEPS from to steps</code>, answers <code>OK count</code>, or <code>ERROR</code> when the
+     * steps is above the maximum of the server.
+     */
+    COUNT_TRIPS_MAX_STEPS(3, 3),
+    /**
+     * <code>COUNT_TRIPS_MAX_DISTANCE from to distance</code>, answers <code>OK count</code>, or <code>ERROR</code> when the
+     * distance is above the maximum of the server.
+     */
+    COUNT_TRIPS_MAX_DISTANCE(3, 3),
+    /**
+     * <code>SHORTEST_DISTANCE_TRIP from to</code>, answers <code>OK trip</code> or <code>NO_SUCH_ROUTE</code>.
+     */
+    SHORTEST_DISTANCE_TRIP(2, 2),
+    /**
+     * <code>K_SHORTEST_TRIPS from to k</code>, answers <code>OK count trip...</code> by increasing distance, k being
+     * capped at the maximum number of results of the server.
+     */
+    K_SHORTEST_TRIPS(3, 3),
+    /**
+     * <code>PING</code>, answers <code>OK</code>.
+     */
+    PING(0, 0);
+
+    private final int minArguments;
+    private final int maxArguments;
+
+    private Command(int minArguments, int maxArguments) {
+        this.minArguments = minArguments;
+        this.maxArguments = maxArguments;
+    }
+
+    /**
+     * @return the number of arguments the command needs at least.
+     */
+    public int getMinArguments() {
+        return minArguments;
+    }
+
+    /**
+     * @return the number of arguments the command takes at most.
+     */
+    public int getMaxArguments() {
+        return maxArguments;
+    }
+}
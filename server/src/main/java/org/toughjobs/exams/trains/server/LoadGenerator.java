@@ -0,0 +1,247 @@
+package org.toughjobs.exams.trains.server;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.toughjobs.exams.trains.graph.Graph;
+import org.toughjobs.exams.trains.metrics.Histogram;
+
+/**
+ * Send requests to a {@link QueryServer} at a constant rate and report their latency.
+ * Requests are pipelined on a few connections and sent on schedule whether responses came or not, so that a slow
+ * server doesn't slow the load down: the latency of a request is measured from the time it was due, not from the
+ * time it was sent. Up to {@link #WINDOW} requests are waiting for their response on a connection, the sender waits
+ * beyond, which then counts in the latency.
+ * Requests are shortest trips for half of them, distances of a route and counts of trips of at most 3 steps between
+ * random cities. The first second isn't recorded, to let the server warm up.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public final class LoadGenerator {
+
+    /**
+     * Maximum number of requests waiting for their response on a connection.
+     */
+    public static final int WINDOW = 4096;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int REQUESTS = 1024;
+
+    private final Histogram latencies = new Histogram();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+
+    private LoadGenerator() {
+    }
+
+    /**
+     * Load of a connection: a thread sends requests on schedule, another one reads the responses.
+     */
+    private final class Client {
+
+        private final Socket socket;
+        private final byte[][] requests;
+        private final AtomicLongArray due = new AtomicLongArray(WINDOW);
+        private final Semaphore window = new Semaphore(WINDOW);
+        private final Thread reader;
+        private long count;
+
+        Client(String host, int port, byte[][] requests) throws IOException {
+            this.socket = new Socket(host, port);
+            this.socket.setTcpNoDelay(true);
+            this.requests = requests;
+            this.reader = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    read();
+                }
+            }, "trains-load-reader");
+            reader.setDaemon(true);
+        }
+
+        /**
+         * Send requests at a constant interval until the end.
+         */
+        void send(long start, long warmUp, long end, long interval) throws IOException, InterruptedException {
+            reader.start();
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream(), 1 << 14);
+            byte[] id = new byte[20];
+            for (long next = start; next < end; next += interval) {
+                long wait = next - System.nanoTime();
+                if (wait > 0) {
+                    out.flush();
+                    LockSupport.parkNanos(wait);
+                }
+                if (!window.tryAcquire()) {
+                    out.flush();
+                    window.acquire();
+                }
+                // negative due times aren't recorded.
+                due.set((int) (count % WINDOW), next < warmUp ? -1 : next);
+                int length = writeId(count, id);
+                out.write(id, id.length - length, length);
+                out.write(requests[(int) (count % requests.length)]);
+                count++;
+            }
+            out.flush();
+            sent.addAndGet(count);
+        }
+
+        private int writeId(long value, byte[] id) {
+            int i = id.length;
+            do {
+                id[--i] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value > 0);
+            return id.length - i;
+        }
+
+        private void read() {
+            try {
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF8),
+                        1 << 14);
+                String line;
+                while ((line = in.readLine()) != null) {
+                    long now = System.nanoTime();
+                    int space = line.indexOf(' ');
+                    if (line.startsWith("*")) {
+                        // server busy or request too long, the connection is closed.
+                        errors.incrementAndGet();
+                        break;
+                    }
+                    long id = Long.parseLong(line.substring(0, space));
+                    long start = due.get((int) (id % WINDOW));
+                    window.release();
+                    if (line.startsWith(RequestHandler.ERROR, space + 1)) {
+                        errors.incrementAndGet();
+                    }
+                    if (start >= 0) {
+                        latencies.record(TimeUnit.NANOSECONDS.toMicros(now - start));
+                    }
+                    received.incrementAndGet();
+                }
+            } catch (IOException ex) {
+                if (!socket.isClosed()) {
+                    errors.incrementAndGet();
+                }
+            }
+        }
+
+        /**
+         * Wait for the responses of every request sent, then close the connection.
+         */
+        void close(long timeoutMillis) throws IOException, InterruptedException {
+            window.tryAcquire(WINDOW, timeoutMillis, TimeUnit.MILLISECONDS);
+            socket.close();
+            reader.join(timeoutMillis);
+        }
+    }
+
+    /**
+     * Random requests between cities.
+     */
+    private static byte[][] requests(List<String> cities, Random random) {
+        byte[][] res = new byte[REQUESTS][];
+        for (int i = 0; i < res.length; i++) {
+            String from = cities.get(random.nextInt(cities.size()));
+            String to = cities.get(random.nextInt(cities.size()));
+            int kind = random.nextInt(10);
+            String request;
+            if (kind < 5) {
+                request = " " + Command.SHORTEST_DISTANCE_TRIP + " " + from + " " + to + "\n";
+            } else if (kind < 8) {
+                request = " " + Command.GET_DISTANCE + " " + from + " " + to + "\n";
+            } else {
+                request = " " + Command.COUNT_TRIPS_MAX_STEPS + " " + from + " " + to + " 3\n";
+            }
+            res[i] = request.getBytes(UTF8);
+        }
+        return res;
+    }
+
+    private void run(String host, int port, final int qps, int seconds, int connections, List<String> cities)
+            throws IOException, InterruptedException {
+        final long interval = TimeUnit.SECONDS.toNanos(1) * connections / qps;
+        final long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        final long warmUp = start + TimeUnit.SECONDS.toNanos(1);
+        final long end = warmUp + TimeUnit.SECONDS.toNanos(seconds);
+        Random random = new Random(42);
+        List<Client> clients = new ArrayList<Client>();
+        List<Thread> senders = new ArrayList<Thread>();
+        for (int c = 0; c < connections; c++) {
+            final Client client = new Client(host, port, requests(cities, random));
+            // connections start one after the other within the interval.
+            final long first = start + interval * c / connections;
+            clients.add(client);
+            senders.add(new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        client.send(first, warmUp, end, interval);
+                    } catch (IOException ex) {
+                        errors.incrementAndGet();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }, "trains-load-sender-" + c));
+        }
+        for (Thread sender : senders) {
+            sender.start();
+        }
+        for (Thread sender : senders) {
+            sender.join();
+        }
+        for (Client client : clients) {
+            client.close(10000);
+        }
+        double elapsed = (double) (end - start) / TimeUnit.SECONDS.toNanos(1);
+        System.out.printf("Requests sent %d, received %d, errors %d, %.0f requests/s for %d/s scheduled%n",
+                sent.get(), received.get(), errors.get(), received.get() / elapsed, qps);
+        System.out.printf("Latency in us: p50 %d, p90 %d, p99 %d, p99.9 %d, max %d, mean %.1f%n",
+                latencies.getValueAtPercentile(50), latencies.getValueAtPercentile(90),
+                latencies.getValueAtPercentile(99), latencies.getValueAtPercentile(99.9), latencies.getMax(),
+                latencies.getMean());
+    }
+
+    /**
+     * Load a server.
+     * @param args host, port, requests per second, duration in seconds and number of connections, then the file of
+     * the routes of the server to pick cities from, the cities of the exam by default.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : QueryServer.DEFAULT_PORT;
+        int qps = args.length > 2 ? Integer.parseInt(args[2]) : 100000;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        int connections = args.length > 4 ? Integer.parseInt(args[4]) : 8;
+        List<String> cities = new ArrayList<String>();
+        if (args.length > 5) {
+            Graph graph = QueryServer.loadGraph(args[5]);
+            for (int town = 0; town < graph.getTownCount(); town++) {
+                cities.add(graph.getTown(town));
+            }
+        } else {
+            for (char town = 'A'; town <= 'E'; town++) {
+                cities.add(String.valueOf(town));
+            }
+        }
+        new LoadGenerator().run(host, port, qps, seconds, connections, cities);
+    }
+}
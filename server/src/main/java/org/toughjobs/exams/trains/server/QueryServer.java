@@ -0,0 +1,431 @@
+package org.toughjobs.exams.trains.server;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.toughjobs.exams.trains.graph.Graph;
+import org.toughjobs.exams.trains.graph.GraphLoader;
+import org.toughjobs.exams.trains.processing.ConcurrentProcessor;
+import org.toughjobs.exams.trains.processing.Processor;
+import org.toughjobs.exams.trains.processing.QueryBudget;
+
+/**
+ * Server sharing a processor with many clients over TCP, see {@link RequestHandler} for the protocol.
+ * Every connection is served by its own thread, a virtual thread on JDK 21 and later, which reads a request, answers
+ * it, then reads the next one. Clients may pipeline requests: responses come in the order of the requests, and are
+ * flushed once every request received has been answered, so a burst of requests costs a single write.
+ * A connection never reads ahead of the responses it writes: when a client doesn't read its responses, the socket
+ * buffers fill up and the client is blocked by TCP, not the server. Queries running at once are bounded as well,
+ * by a number of permits, and connections beyond the maximum are answered <code>* BUSY</code> and closed.
+ * A query holds its permit until it returns: enumerations are bounded by limits, and counts by a maximum number of
+ * steps or distance, so that no client can hold one for long or fill the heap.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class QueryServer implements Closeable {
+
+    public static final int DEFAULT_PORT = 7878;
+    public static final int DEFAULT_MAX_CONNECTIONS = 10000;
+    public static final long DEFAULT_MAX_RESULTS = 100000;
+    public static final long DEFAULT_TIMEOUT_MILLIS = 5000;
+    /**
+     * Default limits of the enumerations of a query: {@link #DEFAULT_MAX_RESULTS} trips found within
+     * {@link #DEFAULT_TIMEOUT_MILLIS}.
+     */
+    public static final QueryBudget DEFAULT_LIMITS = QueryBudget.UNLIMITED.withMaxResults(DEFAULT_MAX_RESULTS)
+            .withTimeout(DEFAULT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    /**
+     * Default maximum number of steps or distance of a count, a count following every route once per step or unit of
+     * distance.
+     */
+    public static final int DEFAULT_MAX_COUNT_LIMIT = 10000;
+    /**
+     * Longest request line, longer ones are answered with an error and the connection closed.
+     */
+    public static final int MAX_LINE = 1 << 16;
+    /**
+     * Response to a connection beyond the maximum.
+     */
+    public static final String BUSY = "* BUSY\n";
+
+    private static final Logger logger = Logger.getLogger(QueryServer.class.getName());
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int BUFFER = 1 << 14;
+    private static final String EXAM_ROUTES = "AB5, BC4, CD8, DC8, DE6, AD5, CE2, EB3, AE7";
+
+    private final RequestHandler handler;
+    private final ServerSocket serverSocket;
+    private final int maxConnections;
+    private final Semaphore queries;
+    private final boolean virtual;
+    private final ExecutorService executor;
+    private final Set<Socket> sockets = ConcurrentHashMap.<Socket> newKeySet();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private Thread acceptor;
+    private volatile boolean closed;
+
+    /**
+     * Server listening on the loopback interface with the default limits.
+     * @param processor thread safe processor, such as a {@link ConcurrentProcessor}.
+     * @param port port to listen to, 0 for any free port.
+     * @throws IOException the port can't be bound.
+     */
+    public QueryServer(Processor processor, int port) throws IOException {
+        this(processor, InetAddress.getLoopbackAddress(), port, DEFAULT_MAX_CONNECTIONS,
+                Runtime.getRuntime().availableProcessors() * 4, DEFAULT_LIMITS, DEFAULT_MAX_COUNT_LIMIT);
+    }
+
+    /**
+     * Server.
+     * Budgets of the requests are capped at the limits, find requests without a budget are only bounded by the
+     * default budget of the processor: give it the limits as well, see
+     * {@link org.toughjobs.exams.trains.processing.ProcessorImpl#setDefaultBudget(QueryBudget)}.
+     * @param processor thread safe processor, such as a {@link ConcurrentProcessor}.
+     * @param address address to listen to.
+     * @param port port to listen to, 0 for any free port.
+     * @param maxConnections maximum number of connections open at once.
+     * @param maxQueries maximum number of queries running at once, others wait for a permit.
+     * @param limits largest budget of a query, such as {@link #DEFAULT_LIMITS}.
+     * @param maxCountLimit largest number of steps or distance of a count, such as {@link #DEFAULT_MAX_COUNT_LIMIT}.
+     * @throws IOException the port can't be bound.
+     */
+    public QueryServer(Processor processor, InetAddress address, int port, int maxConnections, int maxQueries,
+            QueryBudget limits, int maxCountLimit) throws IOException {
+        if (maxConnections < 1 || maxQueries < 1) {
+            throw new IllegalArgumentException("Limits must be positive");
+        }
+        this.handler = new RequestHandler(processor, limits, maxCountLimit);
+        this.maxConnections = maxConnections;
+        this.queries = new Semaphore(maxQueries, true);
+        this.serverSocket = new ServerSocket(port, 1024, address);
+        Method factory = virtualThreadFactory();
+        this.virtual = factory != null;
+        this.executor = virtual ? newVirtualExecutor(factory) : Executors.newCachedThreadPool(new ThreadFactory() {
+
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread res = new Thread(r, "trains-connection-" + count.incrementAndGet());
+                res.setDaemon(true);
+                return res;
+            }
+        });
+    }
+
+    /**
+     * Factory of virtual thread executors, only there from JDK 21 on.
+     * @return the method or null before JDK 21.
+     */
+    private static Method virtualThreadFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException ex) {
+            return null;
+        }
+    }
+
+    private static ExecutorService newVirtualExecutor(Method factory) {
+        try {
+            return (ExecutorService) factory.invoke(null);
+        } catch (Exception ex) {
+            throw new IllegalStateException("Virtual threads can't be started", ex);
+        }
+    }
+
+    /**
+     * Start accepting connections, in a thread of its own.
+     */
+    public synchronized void start() {
+        if (acceptor != null) {
+            throw new IllegalStateException("Already started");
+        }
+        acceptor = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                accept();
+            }
+        }, "trains-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        logger.info("Listening to " + serverSocket.getLocalSocketAddress()
+                + (virtual ? " with virtual threads" : " with platform threads"));
+    }
+
+    /**
+     * @return the port listened to.
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return true if connections are served by virtual threads.
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * @return the number of connections open.
+     */
+    public int getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    /**
+     * Stop accepting connections and close the open ones, queries running are not waited for.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        serverSocket.close();
+        for (Socket socket : sockets) {
+            closeQuietly(socket);
+        }
+        executor.shutdown();
+    }
+
+    private void accept() {
+        while (!closed) {
+            final Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException ex) {
+                if (!closed) {
+                    logger.log(Level.SEVERE, "Connections can't be accepted anymore", ex);
+                }
+                return;
+            }
+            if (connectionCount.incrementAndGet() > maxConnections) {
+                connectionCount.decrementAndGet();
+                reject(socket);
+                continue;
+            }
+            sockets.add(socket);
+            if (closed) {
+                // closed while accepting, the socket may have been missed by close().
+                closeQuietly(socket);
+            }
+            executor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        serve(socket);
+                    } finally {
+                        sockets.remove(socket);
+                        connectionCount.decrementAndGet();
+                        closeQuietly(socket);
+                    }
+                }
+            });
+        }
+    }
+
+    private void reject(Socket socket) {
+        try {
+            socket.getOutputStream().write(BUSY.getBytes(UTF8));
+        } catch (IOException ex) {
+            // client already gone.
+        }
+        closeQuietly(socket);
+    }
+
+    /**
+     * Answer the requests of a connection until the client closes it.
+     */
+    private void serve(Socket socket) {
+        try {
+            socket.setTcpNoDelay(true);
+            LineReader in = new LineReader(socket.getInputStream());
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream(), BUFFER);
+            StringBuilder response = new StringBuilder();
+            String request;
+            while ((request = in.readLine()) != null) {
+                if (request.trim().isEmpty()) {
+                    continue;
+                }
+                response.setLength(0);
+                queries.acquire();
+                try {
+                    handler.handle(request, response);
+                } finally {
+                    queries.release();
+                }
+                out.write(response.toString().getBytes(UTF8));
+                if (!in.isReady()) {
+                    // no pipelined request left to answer.
+                    out.flush();
+                }
+            }
+            if (in.isTooLong()) {
+                out.write(("* " + RequestHandler.ERROR + " Line too long\n").getBytes(UTF8));
+            }
+            out.flush();
+        } catch (SocketException ex) {
+            // connection reset or closed by the server.
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Connection from " + socket.getRemoteSocketAddress() + " failed", ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Read lines of a connection, scanning its own buffer rather than reading byte by byte.
+     */
+    private static final class LineReader {
+
+        private final InputStream in;
+        private final byte[] buffer = new byte[BUFFER];
+        private int position;
+        private int limit;
+        /**
+         * Beginning of a line which didn't fit in the buffer.
+         */
+        private byte[] line = new byte[256];
+        private int lineLength;
+        private boolean tooLong;
+
+        LineReader(InputStream in) {
+            this.in = in;
+        }
+
+        /**
+         * Read a line, without its terminator. A line longer than {@link #MAX_LINE} is skipped up to its terminator,
+         * so that closing the connection afterwards doesn't reset it with unread requests.
+         * @return the line, or null at the end of the stream or if the line is too long.
+         */
+        String readLine() throws IOException {
+            lineLength = 0;
+            while (true) {
+                for (int i = position; i < limit; i++) {
+                    if (buffer[i] == '\n') {
+                        if (lineLength + i - position > MAX_LINE) {
+                            tooLong = true;
+                            position = i + 1;
+                            return null;
+                        }
+                        String res;
+                        if (lineLength == 0) {
+                            res = decode(buffer, position, i);
+                        } else {
+                            append(position, i);
+                            res = decode(line, 0, lineLength);
+                        }
+                        position = i + 1;
+                        return res;
+                    }
+                }
+                if (lineLength <= MAX_LINE) {
+                    append(position, limit);
+                }
+                position = 0;
+                limit = in.read(buffer, 0, buffer.length);
+                if (limit == -1) {
+                    limit = 0;
+                    tooLong = lineLength > MAX_LINE;
+                    return lineLength == 0 || tooLong ? null : decode(line, 0, lineLength);
+                }
+            }
+        }
+
+        private void append(int start, int end) {
+            int length = end - start;
+            if (lineLength + length > line.length) {
+                line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + length));
+            }
+            System.arraycopy(buffer, start, line, lineLength, length);
+            lineLength += length;
+        }
+
+        private static String decode(byte[] bytes, int start, int end) {
+            if (end > start && bytes[end - 1] == '\r') {
+                end--;
+            }
+            return new String(bytes, start, end - start, UTF8);
+        }
+
+        /**
+         * @return true if a request can be read without blocking.
+         */
+        boolean isReady() throws IOException {
+            return position < limit || in.available() > 0;
+        }
+
+        /**
+         * @return true if reading stopped on a line longer than {@link #MAX_LINE}.
+         */
+        boolean isTooLong() {
+            return tooLong;
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ex) {
+            // nothing left to release.
+        }
+    }
+
+    /**
+     * Build the graph of a file, in the exam notation or in CSV when its name ends with .csv or .tsv.
+     * @param path path of the file.
+     * @return the graph.
+     * @throws IOException the file can't be read.
+     */
+    static Graph loadGraph(String path) throws IOException {
+        String name = path.toLowerCase();
+        GraphLoader.Format format = name.endsWith(".csv") || name.endsWith(".tsv") ? GraphLoader.Format.CSV
+                : GraphLoader.Format.ROUTES;
+        return GraphLoader.load(new File(path), format);
+    }
+
+    /**
+     * Serve a graph until the process is killed.
+     * @param args port, {@link #DEFAULT_PORT} by default, then the file of the routes, the graph of the exam by
+     * default or when <code>-</code>, then the maximum number of trips and the timeout in milliseconds of a query,
+     * {@link #DEFAULT_MAX_RESULTS} and {@link #DEFAULT_TIMEOUT_MILLIS} by default, then the maximum number of steps or
+     * distance of a count, {@link #DEFAULT_MAX_COUNT_LIMIT} by default.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        Graph graph = args.length > 1 && !"-".equals(args[1]) ? loadGraph(args[1]) : GraphLoader.parse(EXAM_ROUTES);
+        long maxResults = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_MAX_RESULTS;
+        long timeout = args.length > 3 ? Long.parseLong(args[3]) : DEFAULT_TIMEOUT_MILLIS;
+        int maxCountLimit = args.length > 4 ? Integer.parseInt(args[4]) : DEFAULT_MAX_COUNT_LIMIT;
+        QueryBudget limits = QueryBudget.UNLIMITED.withMaxResults(maxResults)
+                .withTimeout(timeout, TimeUnit.MILLISECONDS);
+        ConcurrentProcessor processor = new ConcurrentProcessor(graph);
+        processor.setDefaultBudget(limits);
+        QueryServer server = new QueryServer(processor, InetAddress.getLoopbackAddress(), port,
+                DEFAULT_MAX_CONNECTIONS, Runtime.getRuntime().availableProcessors() * 4, limits,
+                maxCountLimit);
+        server.start();
+        server.acceptor.join();
+    }
+}
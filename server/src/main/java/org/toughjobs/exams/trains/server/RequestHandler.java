@@ -0,0 +1,231 @@
+package org.toughjobs.exams.trains.server;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.toughjobs.exams.trains.data.Route;
+import org.toughjobs.exams.trains.data.Trip;
+import org.toughjobs.exams.trains.exceptions.NoSuchRouteException;
+import org.toughjobs.exams.trains.processing.Constraint;
+import org.toughjobs.exams.trains.processing.Processor;
+import org.toughjobs.exams.trains.processing.QueryBudget;
+import org.toughjobs.exams.trains.processing.TripIterator;
+import org.toughjobs.exams.trains.processing.TripResult;
+
+/**
+ * Answer the requests of the {@link QueryServer} protocol with a processor.
+ * A request is a line <code>id COMMAND arguments...</code> separated by spaces, see {@link Command}. The id is any
+ * word chosen by the client, it starts the response line: <code>id OK result</code>, <code>id NO_SUCH_ROUTE</code>
+ * or <code>id ERROR message</code>. A trip is written <code>A-B-C:9</code>, its cities then its distance, so city
+ * names can't contain spaces, dashes or colons.
+ * Budgets given by clients are capped at the limits of the handler, and so is the number of shortest trips asked
+ * for. Counts work through every step or unit of distance up to their limit, they are rejected with an error above the
+ * maximum limit of the handler. Find commands without a budget are bounded by the default budget of the processor, see
+ * {@link org.toughjobs.exams.trains.processing.ProcessorImpl#setDefaultBudget(QueryBudget)}.
+ * It is thread safe as long as the processor is.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class RequestHandler {
+
+    public static final String OK = "OK";
+    public static final String NO_SUCH_ROUTE = "NO_SUCH_ROUTE";
+    public static final String ERROR = "ERROR";
+    /**
+     * Truncation of an enumeration which wasn't stopped by a limit.
+     */
+    public static final String COMPLETE = "COMPLETE";
+
+    private static final Pattern SPACES = Pattern.compile(" +");
+
+    private final Processor processor;
+    private final QueryBudget limits;
+    private final int maxCountLimit;
+
+    /**
+     * Handler of the requests on a processor.
+     * @param processor processor answering the requests, it must be thread safe if requests are handled
+     * concurrently.
+     * @param limits largest budget a client can ask for, {@link QueryBudget#UNLIMITED} to trust clients.
+     * @param maxCountLimit largest number of steps or distance of a count, {@link Integer#MAX_VALUE} to trust clients.
+     */
+    public RequestHandler(Processor processor, QueryBudget limits, int maxCountLimit) {
+        this.processor = processor;
+        this.limits = limits;
+        this.maxCountLimit = maxCountLimit;
+    }
+
+    /**
+     * Answer a request.
+     * @param request request line, without the line terminator.
+     * @param response buffer the response line is appended to, with its line terminator.
+     */
+    public void handle(String request, StringBuilder response) {
+        String[] words = SPACES.split(request.trim());
+        response.append(words[0]).append(' ');
+        if (words.length < 2) {
+            response.append(ERROR).append(" Missing command\n");
+            return;
+        }
+        Command command;
+        try {
+            command = Command.valueOf(words[1]);
+        } catch (IllegalArgumentException ex) {
+            response.append(ERROR).append(" Unknown command ").append(words[1]).append('\n');
+            return;
+        }
+        int arguments = words.length - 2;
+        if (arguments < command.getMinArguments() || arguments > command.getMaxArguments()) {
+            response.append(ERROR).append(" Wrong number of arguments for ").append(command).append('\n');
+            return;
+        }
+        int start = response.length();
+        try {
+            response.append(OK);
+            execute(command, words, response);
+        } catch (NoSuchRouteException ex) {
+            response.setLength(start);
+            response.append(NO_SUCH_ROUTE);
+        } catch (RuntimeException ex) {
+            // malformed numbers, unknown constraints or counts overflowing.
+            response.setLength(start);
+            response.append(ERROR).append(' ').append(ex.getClass().getSimpleName());
+            if (ex.getMessage() != null) {
+                response.append(' ').append(ex.getMessage().replace('\n', ' '));
+            }
+        }
+        response.append('\n');
+    }
+
+    private void execute(Command command, String[] words, StringBuilder response) throws NoSuchRouteException {
+        switch (command) {
+            case ADD_ROUTE:
+                processor.addRoute(new Route(words[2], words[3]), Integer.parseInt(words[4]));
+                break;
+            case REMOVE_ROUTE:
+                processor.removeRoute(new Route(words[2], words[3]));
+                break;
+            case GET_DISTANCE:
+                response.append(' ').append(processor.getDistance(new Route(words[2], words[3])));
+                break;
+            case GET_ROUTE:
+                response.append(' ').append(processor.getRoute(Arrays.copyOfRange(words, 2, words.length)));
+                break;
+            case FIND_TRIPS:
+                appendTrips(processor.findTrips(words[2], words[3]), response);
+                break;
+            case FIND_TRIPS_EQUALS_STEPS:
+                appendTrips(processor.findTripsEqualsSteps(words[2], words[3], Integer.parseInt(words[4])), response);
+                break;
+            case FIND_TRIPS_MAX_STEPS:
+                appendTrips(processor.findTripsMaxSteps(words[2], words[3], Integer.parseInt(words[4])), response);
+                break;
+            case FIND_TRIPS_MAX_DISTANCE:
+                appendTrips(processor.findTripsMaxDistance(words[2], words[3], Integer.parseInt(words[4])), response);
+                break;
+            case FIND_TRIPS_BUDGET:
+                TripResult result = processor.findTrips(words[2], words[3], Constraint.valueOf(words[4]),
+                        Integer.parseInt(words[5]), budget(words[6], words[7]));
+                appendTruncation(result.getTruncation(), response);
+                appendTrips(result.getTrips(), response);
+                break;
+            case ITERATE_TRIPS:
+                iterateTrips(words, response);
+                break;
+            case COUNT_TRIPS_EQUALS_STEPS:
+                response.append(' ').append(processor.countTripsEqualsSteps(words[2], words[3],
+                        countLimit(words[4])));
+                break;
+            case COUNT_TRIPS_MAX_STEPS:
+                response.append(' ').append(processor.countTripsMaxSteps(words[2], words[3], countLimit(words[4])));
+                break;
+            case COUNT_TRIPS_MAX_DISTANCE:
+                response.append(' ').append(processor.countTripsMaxDistance(words[2], words[3],
+                        countLimit(words[4])));
+                break;
+            case SHORTEST_DISTANCE_TRIP:
+                appendTrip(processor.getShortestDistanceTrip(words[2], words[3]), response.append(' '));
+                break;
+            case K_SHORTEST_TRIPS:
+                int k = (int) Math.min(Integer.parseInt(words[4]), limits.getMaxResults());
+                appendTrips(processor.getKShortestTrips(words[2], words[3], k), response);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Read the trips of an iteration, up to the maximum number of results of the budget.
+     */
+    private void iterateTrips(String[] words, StringBuilder response) {
+        boolean sorted = parseBoolean(words[6]);
+        TripIterator it = processor.iterateTrips(words[2], words[3], Constraint.valueOf(words[4]),
+                Integer.parseInt(words[5]), sorted, budget(words[7], words[8]));
+        StringBuilder trips = new StringBuilder();
+        int count = 0;
+        while (it.hasNext()) {
+            appendTrip(it.next(), trips.append(' '));
+            count++;
+        }
+        appendTruncation(it.getTruncation(), response);
+        response.append(' ').append(count).append(trips);
+    }
+
+    private static boolean parseBoolean(String value) {
+        if (!"true".equals(value) && !"false".equals(value)) {
+            throw new IllegalArgumentException("Not a boolean: " + value);
+        }
+        return Boolean.parseBoolean(value);
+    }
+
+    /**
+     * Number of steps or distance of a count, rejected above the maximum.
+     */
+    private int countLimit(String value) {
+        int limit = Integer.parseInt(value);
+        if (limit > maxCountLimit) {
+            throw new IllegalArgumentException("Count limit above " + maxCountLimit + ": " + limit);
+        }
+        return limit;
+    }
+
+    /**
+     * Budget of a request within the limits, a value of 0 meaning the limit.
+     */
+    private QueryBudget budget(String maxResults, String timeoutMillis) {
+        QueryBudget res = limits;
+        long results = Long.parseLong(maxResults);
+        if (results > 0 && results < limits.getMaxResults()) {
+            res = res.withMaxResults(results);
+        }
+        long timeout = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(timeoutMillis));
+        if (timeout > 0 && timeout < limits.getTimeoutNanos()) {
+            res = res.withTimeout(timeout, TimeUnit.NANOSECONDS);
+        }
+        return res;
+    }
+
+    private static void appendTruncation(QueryBudget.Limit truncation, StringBuilder response) {
+        response.append(' ').append(truncation == null ? COMPLETE : truncation.name());
+    }
+
+    private static void appendTrips(Collection<Trip> trips, StringBuilder response) {
+        response.append(' ').append(trips.size());
+        Iterator<Trip> it = trips.iterator();
+        while (it.hasNext()) {
+            appendTrip(it.next(), response.append(' '));
+        }
+    }
+
+    private static void appendTrip(Trip trip, StringBuilder response) {
+        response.append(trip.getFrom());
+        for (String step : trip.getSteps()) {
+            response.append('-').append(step);
+        }
+        response.append(':').append(trip.getDistance());
+    }
+}
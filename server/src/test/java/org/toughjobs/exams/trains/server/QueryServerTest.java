@@ -0,0 +1,147 @@
+package org.toughjobs.exams.trains.server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.Charset;
+
+import org.toughjobs.exams.trains.graph.GraphLoader;
+import org.toughjobs.exams.trains.processing.ConcurrentProcessor;
+import org.toughjobs.exams.trains.processing.QueryBudget;
+
+import junit.framework.TestCase;
+
+/**
+ * Provide methods to test {@link QueryServer} and {@link RequestHandler}
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class QueryServerTest extends TestCase {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private ConcurrentProcessor processor;
+
+    @Override
+    protected void setUp() {
+        processor = new ConcurrentProcessor(GraphLoader.parse("AB5, BC4, CD8, DC8, DE6, AD5, CE2, EB3, AE7"));
+    }
+
+    private String handle(String request) {
+        return handle(request, QueryServer.DEFAULT_LIMITS);
+    }
+
+    private String handle(String request, QueryBudget limits) {
+        StringBuilder response = new StringBuilder();
+        new RequestHandler(processor, limits, 100).handle(request, response);
+        return response.toString();
+    }
+
+    /**
+     * Test every command answers the exam results.
+     */
+    public void testCommands() {
+        assertEquals("1 OK 9\n", handle("1 GET_ROUTE A B C"));
+        assertEquals("2 OK 5\n", handle("2 GET_DISTANCE A D"));
+        assertEquals("3 NO_SUCH_ROUTE\n", handle("3 GET_ROUTE A E D"));
+        assertEquals("4 OK 2\n", handle("4 COUNT_TRIPS_MAX_STEPS C C 3"));
+        assertEquals("5 OK 3\n", handle("5 COUNT_TRIPS_EQUALS_STEPS A C 4"));
+        assertEquals("6 OK 7\n", handle("6 COUNT_TRIPS_MAX_DISTANCE C C 30"));
+        assertEquals("7 OK A-B-C:9\n", handle("7 SHORTEST_DISTANCE_TRIP A C"));
+        assertEquals("8 OK B-C-E-B:9\n", handle("8 SHORTEST_DISTANCE_TRIP B B"));
+        assertEquals("9 NO_SUCH_ROUTE\n", handle("9 SHORTEST_DISTANCE_TRIP C A"));
+        assertEquals("a OK 2 C-D-C:16 C-E-B-C:9\n", handle("a FIND_TRIPS_MAX_STEPS C C 3"));
+        assertEquals("b OK 3 A-B-C-D-C:25 A-D-C-D-C:29 A-D-E-B-C:18\n", handle("b FIND_TRIPS_EQUALS_STEPS A C 4"));
+        assertEquals("c OK 7\n", handle("c FIND_TRIPS_MAX_DISTANCE C C 30").replaceAll(" C-[^ \n]*", ""));
+        assertTrue(handle("d FIND_TRIPS A C").startsWith("d OK "));
+        assertEquals("e OK 2 A-B-C:9 A-D-C:13\n", handle("e K_SHORTEST_TRIPS A C 2"));
+        assertEquals("f OK COMPLETE 2 C-D-C:16 C-E-B-C:9\n", handle("f FIND_TRIPS_BUDGET C C MAX_STEPS 3 0 0"));
+        assertEquals("g OK RESULTS 1\n", handle("g FIND_TRIPS_BUDGET C C MAX_DISTANCE 30 1 0").replaceAll(" C-.*:\\d+",
+                ""));
+        assertEquals("h OK COMPLETE 2 C-D-C:16 C-E-B-C:9\n", handle("h ITERATE_TRIPS C C MAX_STEPS 3 true 0 0"));
+        assertEquals("i OK\n", handle("i PING"));
+
+        assertEquals("j OK\n", handle("j ADD_ROUTE C A 1"));
+        assertEquals("k OK C-A:1\n", handle("k SHORTEST_DISTANCE_TRIP C A"));
+        assertEquals("l OK\n", handle("l REMOVE_ROUTE C A"));
+        assertEquals("m NO_SUCH_ROUTE\n", handle("m REMOVE_ROUTE C A"));
+        assertEquals("n NO_SUCH_ROUTE\n", handle("n GET_DISTANCE C A"));
+    }
+
+    /**
+     * Test malformed requests are answered with an error.
+     */
+    public void testErrors() {
+        assertEquals("1 ERROR Missing command\n", handle("1"));
+        assertEquals("2 ERROR Unknown command FLY\n", handle("2 FLY A B"));
+        assertEquals("3 ERROR Wrong number of arguments for GET_DISTANCE\n", handle("3 GET_DISTANCE A"));
+        assertTrue(handle("4 COUNT_TRIPS_MAX_STEPS C C three").startsWith("4 ERROR NumberFormatException"));
+        assertTrue(handle("5 FIND_TRIPS_BUDGET C C FAST 3 0 0").startsWith("5 ERROR IllegalArgumentException"));
+        assertTrue(handle("6 ITERATE_TRIPS C C MAX_STEPS 3 yes 0 0").startsWith("6 ERROR IllegalArgumentException"));
+        assertEquals("7 ERROR IllegalArgumentException Count limit above 100: 2000000000\n",
+                handle("7 COUNT_TRIPS_MAX_DISTANCE A C 2000000000"));
+        assertTrue(handle("8 COUNT_TRIPS_MAX_STEPS A C 101").startsWith("8 ERROR IllegalArgumentException"));
+        assertTrue(handle("9 COUNT_TRIPS_EQUALS_STEPS A C 101").startsWith("9 ERROR IllegalArgumentException"));
+        assertTrue(handle("a COUNT_TRIPS_MAX_DISTANCE A C 100").startsWith("a OK "));
+    }
+
+    /**
+     * Test budgets of clients and unbudgeted enumerations are capped at the limits.
+     */
+    public void testLimits() {
+        QueryBudget limits = QueryBudget.UNLIMITED.withMaxResults(2);
+        assertEquals("1 OK RESULTS 2\n", handle("1 FIND_TRIPS_BUDGET C C MAX_DISTANCE 30 0 0", limits)
+                .replaceAll(" C-[^ \n]*", ""));
+        assertEquals("2 OK RESULTS 2\n", handle("2 FIND_TRIPS_BUDGET C C MAX_DISTANCE 30 1000 0", limits)
+                .replaceAll(" C-[^ \n]*", ""));
+        assertEquals("3 OK RESULTS 1\n", handle("3 FIND_TRIPS_BUDGET C C MAX_DISTANCE 30 1 0", limits)
+                .replaceAll(" C-[^ \n]*", ""));
+        assertEquals("4 OK RESULTS 2\n", handle("4 ITERATE_TRIPS C C MAX_DISTANCE 30 true 1000 0", limits)
+                .replaceAll(" C-[^ \n]*", ""));
+        assertEquals("5 OK 2 A-B-C:9 A-D-C:13\n", handle("5 K_SHORTEST_TRIPS A C 1000", limits));
+
+        processor.setDefaultBudget(limits);
+        assertEquals("6 OK 2\n", handle("6 FIND_TRIPS_MAX_DISTANCE C C 30", limits).replaceAll(" C-[^ \n]*", ""));
+    }
+
+    /**
+     * Test pipelined requests sent at once are answered in order, and connections beyond the maximum are rejected.
+     */
+    public void testPipelining() throws IOException {
+        QueryServer server = new QueryServer(processor, InetAddress.getLoopbackAddress(), 0, 1, 2,
+                QueryServer.DEFAULT_LIMITS, QueryServer.DEFAULT_MAX_COUNT_LIMIT);
+        server.start();
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+        try {
+            StringBuilder requests = new StringBuilder();
+            for (int i = 0; i < 1000; i++) {
+                requests.append(i).append(i % 2 == 0 ? " GET_ROUTE A B C\r\n" : " COUNT_TRIPS_MAX_STEPS C C 3\n");
+            }
+            OutputStream out = socket.getOutputStream();
+            out.write(requests.toString().getBytes(UTF8));
+            out.flush();
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF8));
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(i + (i % 2 == 0 ? " OK 9" : " OK 2"), in.readLine());
+            }
+            assertEquals(1, server.getConnectionCount());
+
+            Socket other = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+            BufferedReader busy = new BufferedReader(new InputStreamReader(other.getInputStream(), UTF8));
+            assertEquals(QueryServer.BUSY.trim(), busy.readLine());
+            assertNull(busy.readLine());
+            other.close();
+
+            out.write(new byte[QueryServer.MAX_LINE + 1]);
+            out.write('\n');
+            out.flush();
+            assertEquals("* ERROR Line too long", in.readLine());
+            assertNull(in.readLine());
+        } finally {
+            socket.close();
+            server.close();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.toughjobs.exams.trains.data;
+
+/**
+ * A train leaving a city at a given time and reaching the next one at a later time, as part of a trip of a
+ * timetable. Times are integers in any unit, for instance minutes after midnight.
+ * Instances are immutable.
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class Connection {
+
+    private final String from;
+    private final String to;
+    private final int departure;
+    private final int arrival;
+    private final String trip;
+
+    /**
+     * New connection.
+     * @param from City to leave from.
+     * @param to City to go to.
+     * @param departure Time the train leaves, not negative.
+     * @param arrival Time the train arrives, not before it leaves.
+     * @param trip Id of the train, shared by its connections so that staying aboard needs no transfer.
+     * @throws IllegalArgumentException if times are negative or the train arrives before it leaves.
+     */
+    public Connection(String from, String to, int departure, int arrival, String trip) {
+        if (departure < 0 || arrival < departure) {
+            throw new IllegalArgumentException("Invalid times " + departure + " to " + arrival + " of " + trip);
+        }
+        this.from = from;
+        this.to = to;
+        this.departure = departure;
+        this.arrival = arrival;
+        this.trip = trip;
+    }
+
+    /**
+     * City to leave from.
+     * @return Name of the city.
+     */
+    public String getFrom() {
+        return from;
+    }
+
+    /**
+     * City to go to.
+     * @return Name of the city.
+     */
+    public String getTo() {
+        return to;
+    }
+
+    /**
+     * Route of the connection.
+     * @return a new route between both cities.
+     */
+    public Route getRoute() {
+        return new Route(from, to);
+    }
+
+    public int getDeparture() {
+        return departure;
+    }
+
+    public int getArrival() {
+        return arrival;
+    }
+
+    /**
+     * Id of the train.
+     * @return the id of the trip.
+     */
+    public String getTrip() {
+        return trip;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Connection)) {
+            return false;
+        }
+        Connection c = (Connection) o;
+        return departure == c.departure && arrival == c.arrival && from.equals(c.from) && to.equals(c.to)
+                && trip.equals(c.trip);
+    }
+
+    @Override
+    public int hashCode() {
+        return ((from.hashCode() * 31 + to.hashCode()) * 31 + trip.hashCode()) * 31 + departure;
+    }
+
+    @Override
+    public String toString() {
+        return "Connection{" + "from=" + from + "to=" + to + "departure=" + departure + "arrival=" + arrival
+                + "trip=" + trip + '}';
+    }
+}
@@ -0,0 +1,94 @@
+package org.toughjobs.exams.trains.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Connections taken from a city to another one along a timetable, each one leaving once the previous one has arrived.
+ * A journey from a city to itself has no connection, it arrives when it leaves.
+ * Instances are immutable.
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class Journey {
+
+    private final String from;
+    private final String to;
+    private final int departure;
+    private final int arrival;
+    private final List<Connection> connections;
+
+    /**
+     * New journey.
+     * @param from City to leave from.
+     * @param to City to go to.
+     * @param departure Time the journey starts, the departure of its first connection if any.
+     * @param connections Connections in the order they are taken.
+     */
+    public Journey(String from, String to, int departure, List<Connection> connections) {
+        this.from = from;
+        this.to = to;
+        this.departure = connections.isEmpty() ? departure : connections.get(0).getDeparture();
+        this.arrival = connections.isEmpty() ? departure : connections.get(connections.size() - 1).getArrival();
+        this.connections = Collections.unmodifiableList(new ArrayList<Connection>(connections));
+    }
+
+    public String getFrom() {
+        return from;
+    }
+
+    public String getTo() {
+        return to;
+    }
+
+    /**
+     * Time the first train leaves.
+     * @return the time.
+     */
+    public int getDeparture() {
+        return departure;
+    }
+
+    /**
+     * Time the last train arrives.
+     * @return the time.
+     */
+    public int getArrival() {
+        return arrival;
+    }
+
+    /**
+     * Connections in the order they are taken.
+     * @return a read only list.
+     */
+    public List<Connection> getConnections() {
+        return connections;
+    }
+
+    /**
+     * Number of times the journey changes trains.
+     * @return the number of transfers.
+     */
+    public int getTransferCount() {
+        int res = 0;
+        for (int i = 1; i < connections.size(); i++) {
+            if (!connections.get(i).getTrip().equals(connections.get(i - 1).getTrip())) {
+                res++;
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Name of the cities of the journey, as for a {@link Trip}.
+     * @return the name of every city, starting with the one to leave from.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(from);
+        for (Connection c : connections) {
+            sb.append(c.getTo());
+        }
+        return sb.toString();
+    }
+}
@@ -52,13 +52,18 @@ public class Route {
 
     @Override
     public boolean equals(Object o) {
+        if (!(o instanceof Route)) {
+            return false;
+        }
         Route r = (Route)o;
-        return (from + to).equals(r.getFrom() + r.getTo());
+        // cities are compared one by one: "AB" to "C" is not "A" to "BC".
+        return (from == null ? r.getFrom() == null : from.equals(r.getFrom()))
+                && (to == null ? r.getTo() == null : to.equals(r.getTo()));
     }
 
     @Override
     public int hashCode() {
-        return (from + to).hashCode();
+        return 31 * (from == null ? 0 : from.hashCode()) + (to == null ? 0 : to.hashCode());
     }
 
     @Override
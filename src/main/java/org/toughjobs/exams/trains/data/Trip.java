@@ -1,12 +1,19 @@
 package org.toughjobs.exams.trains.data;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Objects;
 
 /**
  * Bean containing all information about a trip from a starting city.
  * First step is provided through the constructor and every step is stored in a collection which can be accessed using {@link #getSteps()}
  * {@link #distance} is set as {@link #NO_ROUTE} Trip if it known to be invalid ({@link org.toughjobs.exams.trains.processing.Processor} can't work out a path).
+ * Steps are stored as an immutable chain from the last step back to the first one, shared between a trip and its clones:
+ * {@link #cloneAndAdd(String, int)} doesn't copy anything and the collection of steps or the name of the trip
+ * are only built when asked for.
  *
  * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
  */
@@ -21,22 +28,48 @@ public class Trip implements Comparable<Trip> {
      */
     public final static int NO_ROUTE = -1;
     /**
-     * Contains all the steps but not the starting city
-     * Collection is a LinkedList as it provides a convenient method to get last element.
+     * Last step, linked to the previous ones but not the starting city. null if there's no step.
      */
-    private LinkedList<String> steps;
+    private Step last;
     /**
      * City to start from.
      */
     private String from = null;
     private boolean complete;
+    /**
+     * Built when asked for, reset when the trip changes.
+     */
+    private List<String> steps;
+    private String name;
+
+    /**
+     * Immutable step of a trip, pointing to the previous step.
+     */
+    private static final class Step {
+        private final Step previous;
+        private final String town;
+        /**
+         * Number of steps up to this one.
+         */
+        private final int size;
+        /**
+         * Hash of the list of steps up to this one, as defined by {@link List#hashCode()}.
+         */
+        private final int hash;
+
+        private Step(Step previous, String town) {
+            this.previous = previous;
+            this.town = town;
+            this.size = previous == null ? 1 : previous.size + 1;
+            this.hash = 31 * (previous == null ? 1 : previous.hash) + (town == null ? 0 : town.hashCode());
+        }
+    }
 
     /**
      * Initialize a trip with a starting city.
      * @param from Starting city.
      */
     public Trip(String from) {
-        steps = new LinkedList<String>();
         complete = false;
         this.from = from;
     }
@@ -52,8 +85,15 @@ public class Trip implements Comparable<Trip> {
      * @param distance
      */
     Trip(String from, LinkedList<String> steps, int distance) {
+        this(from, (Step) null, distance);
+        for (String step : steps) {
+            last = new Step(last, step);
+        }
+    }
+
+    private Trip(String from, Step last, int distance) {
         this.distance = distance;
-        this.steps = steps;
+        this.last = last;
         complete = false;
         this.from = from;
     }
@@ -76,19 +116,52 @@ public class Trip implements Comparable<Trip> {
 
     /**
      * every steps to go to a city but the staring city.
-     * @return a collection of the name of steps.
+     * The collection is a read only view, steps being shared with the clones of the trip: changing it throws an
+     * {@link UnsupportedOperationException}, steps are added with {@link #add(String, int)}.
+     * @return a read only collection of the name of steps.
      */
     public Collection<String> getSteps() {
+        if (steps == null) {
+            String[] names = new String[getStepCount()];
+            for (Step step = last; step != null; step = step.previous) {
+                names[step.size - 1] = step.town;
+            }
+            List<String> list = new ArrayList<String>(names.length);
+            Collections.addAll(list, names);
+            steps = Collections.unmodifiableList(list);
+        }
         return steps;
     }
 
+    /**
+     * Number of steps, without building them.
+     * @return number of steps but the starting city.
+     */
+    public int getStepCount() {
+        return last == null ? 0 : last.size;
+    }
+
+    /**
+     * To know whether the trip goes through a city, without building the steps.
+     * @param town Name of the city.
+     * @return true if a step, the starting city excepted, has this name.
+     */
+    public boolean hasStep(String town) {
+        for (Step step = last; step != null; step = step.previous) {
+            if (Objects.equals(step.town, town)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Get the last step of the trip.
      * @return Name of the last step or departure city if there's no step.
      */
     public String peakLast() {
-    	if (steps.peekLast() != null)
-        return steps.peekLast();
+    	if (last != null)
+        return last.town;
     	else
     		return from;
     }
@@ -99,21 +172,21 @@ public class Trip implements Comparable<Trip> {
      * @param distance Distance from the previous step
      */
     public void add(String step, int distance) {
-        steps.add(step);
+        last = new Step(last, step);
         this.distance += distance;
+        steps = null;
+        name = null;
     }
 
     /**
      * Duplicate a trip and add a step.
+     * Steps are shared with this trip, only the new step is allocated.
      * @param step step name to add.
      * @param distance distance between added step and previous one.
      * @return a clone of the new trip with the new step added.
      */
     public Trip cloneAndAdd(String step, int distance) {
-        LinkedList<String> clo = (LinkedList<String>) steps.clone();
-        Trip res = new Trip(this.from, clo, this.distance);
-        res.add(step, distance);
-        return res;
+        return new Trip(this.from, new Step(last, step), this.distance + distance);
     }
 
     /**
@@ -131,13 +204,16 @@ public class Trip implements Comparable<Trip> {
 
     @Override
     public String toString() {
-        StringBuilder sb = new StringBuilder();
-        sb.append(from);
-        for (String s : steps) {
-            sb.append(s);
+        if (name == null) {
+            StringBuilder sb = new StringBuilder();
+            sb.append(from);
+            for (String s : getSteps()) {
+                sb.append(s);
+            }
+            name = sb.toString();
         }
 
-        return sb.toString();
+        return name;
     }
 
     /**
@@ -169,6 +245,7 @@ public class Trip implements Comparable<Trip> {
      */
     public void setFrom(String departure) {
         this.from = departure;
+        name = null;
     }
 
     @Override
@@ -181,11 +258,23 @@ public class Trip implements Comparable<Trip> {
         }
         final Trip other = (Trip) obj;
         // a trip is equal if departure and steps are the same.
-        return this.getFrom().equals(other.getFrom()) && other.getSteps().equals(getSteps());
+        if (!Objects.equals(getFrom(), other.getFrom()) || getStepCount() != other.getStepCount()) {
+            return false;
+        }
+        Step a = last;
+        Step b = other.last;
+        while (a != b) { // clones share their first steps.
+            if (a.hash != b.hash || !Objects.equals(a.town, b.town)) {
+                return false;
+            }
+            a = a.previous;
+            b = b.previous;
+        }
+        return true;
     }
 
     @Override
     public int hashCode() {
-        return getSteps().hashCode();
+        return last == null ? 1 : last.hash;
     }
 }
@@ -0,0 +1,210 @@
+package org.toughjobs.exams.trains.graph;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * {@link Graph} reading the layout of {@link GraphSnapshot} straight from a buffer, nothing is deserialised:
+ * a mapped file is query-ready once its header is read. Routes are found by a binary search of the row of their
+ * departure city, names by the hash index of the snapshot.
+ * Names are decoded once, when first asked for.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class BufferGraph implements Graph {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final ByteBuffer buffer;
+    private final int townCount;
+    private final int routeCount;
+    private final int indexMask;
+    // position of every section.
+    private final int offsets;
+    private final int targets;
+    private final int weights;
+    private final int nameOffsets;
+    private final int index;
+    private final int names;
+    /**
+     * Names already decoded, racy but a String is safely published.
+     */
+    private final String[] towns;
+
+    /**
+     * Graph over a buffer, see {@link GraphSnapshot} for its layout.
+     * @param buffer buffer starting with the header, big endian.
+     * @throws IllegalArgumentException the buffer isn't a snapshot or its version isn't supported.
+     */
+    public BufferGraph(ByteBuffer buffer) {
+        this.buffer = buffer;
+        if (buffer.limit() < GraphSnapshot.HEADER || buffer.getInt(0) != GraphSnapshot.MAGIC) {
+            throw new IllegalArgumentException("Not a graph snapshot");
+        }
+        if (buffer.getInt(4) != GraphSnapshot.VERSION) {
+            throw new IllegalArgumentException("Unsupported snapshot version: " + buffer.getInt(4));
+        }
+        townCount = buffer.getInt(8);
+        routeCount = buffer.getInt(12);
+        int namesLength = buffer.getInt(16);
+        int indexLength = buffer.getInt(20);
+        // counts are checked whether the checksum is or not: sections are laid out from them.
+        if (townCount < 0 || routeCount < 0 || namesLength < 0 || Integer.bitCount(indexLength) != 1
+                || indexLength <= townCount) {
+            throw new IllegalArgumentException("Corrupted snapshot header");
+        }
+        indexMask = indexLength - 1;
+
+        long end = GraphSnapshot.HEADER + 4L * (townCount + 1L) + 8L * routeCount + 4L * (townCount + 1L)
+                + 4L * indexLength + namesLength;
+        if (end > buffer.limit()) {
+            throw new IllegalArgumentException("Truncated snapshot");
+        }
+        offsets = GraphSnapshot.HEADER;
+        targets = offsets + (townCount + 1) * 4;
+        weights = targets + routeCount * 4;
+        nameOffsets = weights + routeCount * 4;
+        index = nameOffsets + (townCount + 1) * 4;
+        names = index + indexLength * 4;
+        towns = new String[townCount];
+    }
+
+    @Override
+    public int getTownCount() {
+        return townCount;
+    }
+
+    @Override
+    public int getRouteCount() {
+        return routeCount;
+    }
+
+    /**
+     * The name is hashed and compared as UTF-8 encoded on the fly from its chars, nothing is allocated.
+     */
+    @Override
+    public int indexOf(String town) {
+        int slot = GraphSnapshot.slot(hash(town), indexMask);
+        int id;
+        while ((id = buffer.getInt(index + slot * 4) - 1) >= 0) {
+            if (equals(id, town)) {
+                return id;
+            }
+            slot = (slot + 1) & indexMask;
+        }
+        return NONE;
+    }
+
+    /**
+     * Hash of the UTF-8 bytes of a name, the same as {@link GraphSnapshot#hash(byte[])}.
+     */
+    private static int hash(String town) {
+        int hash = 0;
+        for (int i = 0; i < town.length(); i += Character.charCount(codePoint(town, i))) {
+            int c = codePoint(town, i);
+            int length = utf8Length(c);
+            for (int b = 0; b < length; b++) {
+                hash = 31 * hash + utf8Byte(c, length, b);
+            }
+        }
+        return hash;
+    }
+
+    private boolean equals(int id, String town) {
+        int pos = names + buffer.getInt(nameOffsets + id * 4);
+        int end = names + buffer.getInt(nameOffsets + id * 4 + 4);
+        for (int i = 0; i < town.length(); i += Character.charCount(codePoint(town, i))) {
+            int c = codePoint(town, i);
+            int length = utf8Length(c);
+            for (int b = 0; b < length; b++) {
+                if (pos == end || buffer.get(pos++) != utf8Byte(c, length, b)) {
+                    return false;
+                }
+            }
+        }
+        return pos == end;
+    }
+
+    /**
+     * Code point at a position, <code>?</code> for a lone surrogate as {@link String#getBytes(Charset)} does.
+     */
+    private static int codePoint(String town, int i) {
+        char c = town.charAt(i);
+        if (!Character.isSurrogate(c)) {
+            return c;
+        }
+        if (Character.isHighSurrogate(c) && i + 1 < town.length() && Character.isLowSurrogate(town.charAt(i + 1))) {
+            return Character.toCodePoint(c, town.charAt(i + 1));
+        }
+        return '?';
+    }
+
+    private static int utf8Length(int c) {
+        return c < 0x80 ? 1 : c < 0x800 ? 2 : c < 0x10000 ? 3 : 4;
+    }
+
+    /**
+     * Byte of the UTF-8 encoding of a code point.
+     * @param c code point.
+     * @param length number of bytes of its encoding.
+     * @param b index of the byte.
+     * @return the byte, signed.
+     */
+    private static byte utf8Byte(int c, int length, int b) {
+        if (length == 1) {
+            return (byte) c;
+        }
+        if (b == 0) {
+            return (byte) (((0xF00 >> length) & 0xFF) | (c >>> (6 * (length - 1))));
+        }
+        return (byte) (0x80 | ((c >>> (6 * (length - 1 - b))) & 0x3F));
+    }
+
+    @Override
+    public String getTown(int town) {
+        String name = towns[town];
+        if (name == null) {
+            int start = buffer.getInt(nameOffsets + town * 4);
+            byte[] bytes = new byte[buffer.getInt(nameOffsets + town * 4 + 4) - start];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = buffer.get(names + start + i);
+            }
+            name = new String(bytes, UTF8);
+            towns[town] = name;
+        }
+        return name;
+    }
+
+    @Override
+    public int getOffset(int town) {
+        return buffer.getInt(offsets + town * 4);
+    }
+
+    @Override
+    public int getTarget(int route) {
+        return buffer.getInt(targets + route * 4);
+    }
+
+    @Override
+    public int getWeight(int route) {
+        return buffer.getInt(weights + route * 4);
+    }
+
+    @Override
+    public int findRoute(int from, int to) {
+        int low = getOffset(from);
+        int high = getOffset(from + 1) - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int target = getTarget(middle);
+            if (target < to) {
+                low = middle + 1;
+            } else if (target > to) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return NONE;
+    }
+}
@@ -0,0 +1,73 @@
+package org.toughjobs.exams.trains.graph;
+
+/**
+ * Read only indexed view of a railroad network.
+ * Every city is interned to a dense id (0 to {@link #getTownCount()} - 1) and the routes leaving a city
+ * are stored contiguously (compressed sparse row), sorted by destination id:
+ * routes of city <code>t</code> are numbered from {@link #getOffset(int) getOffset(t)} (included)
+ * to {@link #getOffset(int) getOffset(t + 1)} (excluded).
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public interface Graph {
+
+    /**
+     * Returned by {@link #indexOf(String)} and {@link #findRoute(int, int)} when nothing is found.
+     */
+    public final static int NONE = -1;
+
+    /**
+     * Number of cities.
+     * @return number of cities.
+     */
+    public int getTownCount();
+
+    /**
+     * Number of routes.
+     * @return number of routes.
+     */
+    public int getRouteCount();
+
+    /**
+     * Id of a city.
+     * @param town Name of the city.
+     * @return id of the city or {@link #NONE} if the city is unknown.
+     */
+    public int indexOf(String town);
+
+    /**
+     * Name of a city.
+     * @param town id of the city.
+     * @return Name of the city.
+     */
+    public String getTown(int town);
+
+    /**
+     * Index of the first route leaving a city.
+     * @param town id of the city, {@link #getTownCount()} is accepted and returns {@link #getRouteCount()}.
+     * @return index of the first route.
+     */
+    public int getOffset(int town);
+
+    /**
+     * City a route goes to.
+     * @param route index of the route.
+     * @return id of the city.
+     */
+    public int getTarget(int route);
+
+    /**
+     * Distance of a route.
+     * @param route index of the route.
+     * @return distance between both cities.
+     */
+    public int getWeight(int route);
+
+    /**
+     * Find the route between two cities with no stop.
+     * @param from id of the city to leave from.
+     * @param to id of the city to go to.
+     * @return index of the route or {@link #NONE} if route doesn't exist.
+     */
+    public int findRoute(int from, int to);
+}
@@ -0,0 +1,238 @@
+package org.toughjobs.exams.trains.graph;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Collect cities and routes then build an immutable {@link Graph} in one pass.
+ * Cities get their id in the order they are first seen.
+ * When the same route is added more than once, the last distance is kept.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class GraphBuilder {
+
+    private String[] towns;
+    private Map<String, Integer> ids;
+    private int townCount;
+    /**
+     * Routes in the order they were added, out of the heap when routes are staged there.
+     */
+    private IntArray froms;
+    private IntArray tos;
+    private IntArray weights;
+    private int routeCount;
+
+    public GraphBuilder() {
+        this(16, 16);
+    }
+
+    /**
+     * New builder with an idea of the size of the graph to avoid growing arrays.
+     * @param towns expected number of cities.
+     * @param routes expected number of routes.
+     */
+    public GraphBuilder(int towns, int routes) {
+        this(towns, routes, Storage.HEAP);
+    }
+
+    /**
+     * New builder staging the routes out of the heap when the graph is too large for it: routes added take 12 bytes
+     * of the storage each, and building takes 8 more, cities only being kept on the heap.
+     * @param towns expected number of cities.
+     * @param routes expected number of routes.
+     * @param staging where routes are kept until the graph is built.
+     */
+    public GraphBuilder(int towns, int routes, Storage staging) {
+        this.towns = new String[Math.max(towns, 1)];
+        this.ids = new HashMap<String, Integer>(Math.max(towns, 1) * 2);
+        this.froms = IntArray.allocate(Math.max(routes, 1), staging);
+        this.tos = IntArray.allocate(froms.length(), staging);
+        this.weights = IntArray.allocate(froms.length(), staging);
+    }
+
+    /**
+     * Intern a city.
+     * @param town Name of the city.
+     * @return id of the city.
+     */
+    public int addTown(String town) {
+        Integer id = ids.get(town);
+        if (id != null) {
+            return id.intValue();
+        }
+        if (townCount == towns.length) {
+            towns = Arrays.copyOf(towns, townCount * 2);
+        }
+        towns[townCount] = town;
+        ids.put(town, Integer.valueOf(townCount));
+        return townCount++;
+    }
+
+    /**
+     * Add a route between two cities.
+     * @param from City to leave from.
+     * @param to City to go to.
+     * @param distance distance between cities.
+     * @return this builder.
+     */
+    public GraphBuilder addRoute(String from, String to, int distance) {
+        int f = addTown(from);
+        return addRoute(f, addTown(to), distance);
+    }
+
+    /**
+     * Add a route between two cities already interned with {@link #addTown(String)}.
+     * @param from id of the city to leave from.
+     * @param to id of the city to go to.
+     * @param distance distance between cities.
+     * @return this builder.
+     */
+    public GraphBuilder addRoute(int from, int to, int distance) {
+        if (from < 0 || from >= townCount || to < 0 || to >= townCount) {
+            throw new IllegalArgumentException("Unknown city id: " + from + " or " + to);
+        }
+        if (routeCount == froms.length()) {
+            int size = (int) Math.min(routeCount * 2L, Integer.MAX_VALUE - 8);
+            if (size == routeCount) {
+                throw new IllegalStateException("Too many routes: " + routeCount);
+            }
+            froms = froms.grow(size);
+            tos = tos.grow(size);
+            weights = weights.grow(size);
+        }
+        froms.set(routeCount, from);
+        tos.set(routeCount, to);
+        weights.set(routeCount, distance);
+        routeCount++;
+        return this;
+    }
+
+    /**
+     * Number of cities interned so far.
+     * @return number of cities.
+     */
+    public int getTownCount() {
+        return townCount;
+    }
+
+    /**
+     * Build the graph on the heap. The builder can still be used afterwards.
+     * @return an immutable graph.
+     */
+    public Graph build() {
+        return build(Storage.HEAP);
+    }
+
+    /**
+     * Build the graph. The builder can still be used afterwards.
+     * Routes are sorted straight into the arrays of the graph: besides them, building only takes heap for the
+     * cities, see {@link #GraphBuilder(int, int, Storage)} to keep the routes added out of the heap as well.
+     * @param storage where to store the routes of the graph.
+     * @return an immutable {@link GraphImpl} on the heap or {@link OffHeapGraph} out of it.
+     */
+    public Graph build(Storage storage) {
+        int[] offsets = new int[townCount + 1];
+
+        // counting sort on departure city, stable so that the last duplicate stays the last one.
+        for (int i = 0; i < routeCount; i++) {
+            offsets[froms.get(i) + 1]++;
+        }
+        for (int t = 0; t < townCount; t++) {
+            offsets[t + 1] += offsets[t];
+        }
+        int[] next = Arrays.copyOf(offsets, townCount);
+        IntArray targets = IntArray.allocate(routeCount, storage);
+        IntArray dists = IntArray.allocate(routeCount, storage);
+        for (int i = 0; i < routeCount; i++) {
+            int route = next[froms.get(i)]++;
+            targets.set(route, tos.get(i));
+            dists.set(route, weights.get(i));
+        }
+
+        // routes of a city are compacted in place, a route never moving past the ones still to read.
+        int count = 0;
+        for (int t = 0; t < townCount; t++) {
+            int start = offsets[t];
+            int end = offsets[t + 1];
+            sortByTarget(targets, dists, start, end);
+            offsets[t] = count;
+            for (int i = start; i < end; i++) {
+                if (i + 1 < end && targets.get(i + 1) == targets.get(i)) {
+                    continue; // a later route overrides this one.
+                }
+                targets.set(count, targets.get(i));
+                dists.set(count, dists.get(i));
+                count++;
+            }
+        }
+        offsets[townCount] = count;
+
+        String[] names = Arrays.copyOf(towns, townCount);
+        Map<String, Integer> index = new HashMap<String, Integer>(ids);
+        if (storage == Storage.HEAP) {
+            return new GraphImpl(names, index, offsets, Arrays.copyOf(((IntArray.Heap) targets).values(), count),
+                    Arrays.copyOf(((IntArray.Heap) dists).values(), count));
+        }
+        IntArray offs = IntArray.allocate(townCount + 1, storage);
+        for (int t = 0; t <= townCount; t++) {
+            offs.set(t, offsets[t]);
+        }
+        return new OffHeapGraph(names, index, offs, targets, dists);
+    }
+
+    /**
+     * Build the graph of the routes of a graph followed backward, to search from a destination.
+     * Cities keep their id: routes of a city in the transposed graph are the routes going to it,
+     * their destination is their departure city.
+     * @param graph graph to transpose.
+     * @return an immutable graph on the heap.
+     */
+    public static Graph transpose(Graph graph) {
+        GraphBuilder builder = new GraphBuilder(graph.getTownCount(), graph.getRouteCount());
+        for (int t = 0; t < graph.getTownCount(); t++) {
+            builder.addTown(graph.getTown(t));
+        }
+        for (int t = 0; t < graph.getTownCount(); t++) {
+            for (int r = graph.getOffset(t); r < graph.getOffset(t + 1); r++) {
+                builder.addRoute(graph.getTarget(r), t, graph.getWeight(r));
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Sort the routes of a city by destination, stable so that duplicates stay in insertion order.
+     * Rows are expected to be short, it is the common case for railroads.
+     */
+    private static void sortByTarget(IntArray targets, IntArray dists, int start, int end) {
+        if (end - start > 32) {
+            // pack destination and position so that a primitive sort keeps duplicates in order.
+            long[] keys = new long[end - start];
+            int[] row = new int[end - start];
+            for (int i = start; i < end; i++) {
+                keys[i - start] = ((long) targets.get(i) << 32) | (i - start);
+                row[i - start] = dists.get(i);
+            }
+            Arrays.sort(keys);
+            for (int i = start; i < end; i++) {
+                targets.set(i, (int) (keys[i - start] >>> 32));
+                dists.set(i, row[(int) keys[i - start]]);
+            }
+            return;
+        }
+        for (int i = start + 1; i < end; i++) {
+            int target = targets.get(i);
+            int dist = dists.get(i);
+            int j = i - 1;
+            while (j >= start && targets.get(j) > target) {
+                targets.set(j + 1, targets.get(j));
+                dists.set(j + 1, dists.get(j));
+                j--;
+            }
+            targets.set(j + 1, target);
+            dists.set(j + 1, dist);
+        }
+    }
+}
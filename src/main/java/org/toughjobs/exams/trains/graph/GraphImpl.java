@@ -0,0 +1,101 @@
+package org.toughjobs.exams.trains.graph;
+
+import java.util.Map;
+
+/**
+ * {@link Graph} stored in primitive arrays on the heap.
+ * Instances are immutable and are created by {@link GraphBuilder}.
+ *
+ * @see Graph
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class GraphImpl implements Graph {
+
+    /**
+     * Name of every city, indexed by id.
+     */
+    private final String[] towns;
+    /**
+     * Id of every city, indexed by name.
+     */
+    private final Map<String, Integer> ids;
+    /**
+     * Index of the first route of every city, plus the number of routes as last value.
+     */
+    private final int[] offsets;
+    /**
+     * Destination of every route.
+     */
+    private final int[] targets;
+    /**
+     * Distance of every route.
+     */
+    private final int[] weights;
+    /**
+     * Index of every route by packed departure and destination ids, see {@link LongIntHashMap#pack(int, int)}.
+     */
+    private final LongIntHashMap index;
+
+    /**
+     * Visibility is package only as arrays are not copied, see {@link GraphBuilder#build()}.
+     * @param towns
+     * @param ids
+     * @param offsets
+     * @param targets
+     * @param weights
+     */
+    GraphImpl(String[] towns, Map<String, Integer> ids, int[] offsets, int[] targets, int[] weights) {
+        this.towns = towns;
+        this.ids = ids;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.index = new LongIntHashMap(targets.length);
+        for (int town = 0; town < towns.length; town++) {
+            for (int r = offsets[town]; r < offsets[town + 1]; r++) {
+                index.put(LongIntHashMap.pack(town, targets[r]), r);
+            }
+        }
+    }
+
+    @Override
+    public int getTownCount() {
+        return towns.length;
+    }
+
+    @Override
+    public int getRouteCount() {
+        return targets.length;
+    }
+
+    @Override
+    public int indexOf(String town) {
+        Integer id = ids.get(town);
+        return id == null ? NONE : id.intValue();
+    }
+
+    @Override
+    public String getTown(int town) {
+        return towns[town];
+    }
+
+    @Override
+    public int getOffset(int town) {
+        return offsets[town];
+    }
+
+    @Override
+    public int getTarget(int route) {
+        return targets[route];
+    }
+
+    @Override
+    public int getWeight(int route) {
+        return weights[route];
+    }
+
+    @Override
+    public int findRoute(int from, int to) {
+        return index.get(LongIntHashMap.pack(from, to));
+    }
+}
@@ -0,0 +1,382 @@
+package org.toughjobs.exams.trains.graph;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Build a {@link Graph} from a list of routes, in one of the {@link Format}s.
+ * Files are memory mapped and parsed byte by byte, straight into the ids of a {@link GraphBuilder}:
+ * a String is only created the first time a city is seen, never for a route.
+ * City names are read as UTF-8.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public final class GraphLoader {
+
+    /**
+     * Formats of a list of routes.
+     */
+    public enum Format {
+        /**
+         * Notation of the exam: <code>AB5, BC4</code>, cities are a single ASCII character followed by the distance.
+         * Routes are separated by commas or white spaces.
+         */
+        ROUTES,
+        /**
+         * A route per line: departure, destination and distance separated by a comma, a semicolon or a tab.
+         * Spaces around values, empty lines and lines starting with <code>#</code> are ignored,
+         * the first other line is ignored as well if its distance isn't a number.
+         */
+        CSV
+    }
+
+    /**
+     * Bytes mapped at once, a route can't be longer.
+     */
+    private static final int WINDOW = 1 << 30;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private GraphLoader() {
+    }
+
+    /**
+     * Build a graph from the exam notation.
+     * @param routes routes such as <code>AB5, BC4</code>.
+     * @return the graph.
+     * @throws IllegalArgumentException a route is malformed.
+     */
+    public static Graph parse(String routes) {
+        byte[] bytes = routes.getBytes(UTF8);
+        Parser parser = new Parser(Format.ROUTES, 16, 16, Storage.HEAP);
+        parser.parse(ByteBuffer.wrap(bytes), 0, bytes.length, true);
+        return parser.builder.build();
+    }
+
+    /**
+     * Build a graph from a file.
+     * @param file file to read.
+     * @param format format of the file.
+     * @return the graph.
+     * @throws IOException the file can't be read.
+     * @throws IllegalArgumentException a route is malformed.
+     */
+    public static Graph load(File file, Format format) throws IOException {
+        return load(file, format, Storage.HEAP, WINDOW);
+    }
+
+    /**
+     * Build a graph from a file.
+     * Out of the heap, routes are kept out of it while the file is read as well, so that a graph too large for the
+     * heap can be loaded: only the cities take heap.
+     * @param file file to read.
+     * @param format format of the file.
+     * @param storage where to store the routes of the graph.
+     * @return the graph.
+     * @throws IOException the file can't be read.
+     * @throws IllegalArgumentException a route is malformed.
+     */
+    public static Graph load(File file, Format format, Storage storage) throws IOException {
+        return load(file, format, storage, WINDOW);
+    }
+
+    /**
+     * Build a graph from a file mapped a window at a time.
+     * @param file file to read.
+     * @param format format of the file.
+     * @param storage where to store the routes of the graph.
+     * @param window number of bytes mapped at once.
+     * @return the graph.
+     * @throws IOException the file can't be read.
+     */
+    /* package visibility */
+    static Graph load(File file, Format format, Storage storage, int window) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = in.getChannel();
+            long size = channel.size();
+            // a route takes at least 4 bytes with its separator.
+            int expected = (int) Math.min(size / 4 + 1, 1 << 24);
+            Parser parser = new Parser(format, Math.min(expected, 1 << 16), expected, storage);
+            long position = 0;
+            do {
+                int length = (int) Math.min(window, size - position);
+                boolean last = position + length == size;
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                int parsed = parser.parse(buffer, 0, length, last);
+                if (parsed == 0 && !last) {
+                    throw new IllegalArgumentException("Route longer than " + window + " bytes at " + position);
+                }
+                position += parsed;
+            } while (position < size);
+            return parser.builder.build(storage);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Parse routes into a builder, keeping track of the records seen across the mapped windows.
+     */
+    private static final class Parser {
+
+        private final Format format;
+        private final GraphBuilder builder;
+        private final TownTable towns;
+        private long records;
+        /**
+         * Whether a line other than a comment or a blank line has been parsed, the header can only be the first one.
+         */
+        private boolean data;
+        /**
+         * Start and end of the fields of the line being parsed.
+         */
+        private final int[] fields = new int[6];
+
+        Parser(Format format, int towns, int routes, Storage storage) {
+            this.format = format;
+            this.builder = new GraphBuilder(towns, routes, storage);
+            this.towns = new TownTable(towns);
+        }
+
+        /**
+         * Parse every complete route of a buffer.
+         * @param buf bytes to parse.
+         * @param start first byte.
+         * @param end end of the bytes.
+         * @param last true if the end of the bytes is the end of the input.
+         * @return number of bytes parsed, the beginning of an incomplete route is left for next buffer.
+         */
+        int parse(ByteBuffer buf, int start, int end, boolean last) {
+            return format == Format.ROUTES ? parseRoutes(buf, start, end, last) : parseLines(buf, start, end, last);
+        }
+
+        private int parseRoutes(ByteBuffer buf, int start, int end, boolean last) {
+            int pos = start;
+            while (true) {
+                while (pos < end && isRouteSeparator(buf.get(pos))) {
+                    pos++;
+                }
+                if (pos == end) {
+                    return pos - start;
+                }
+                int record = pos;
+                while (pos < end && !isRouteSeparator(buf.get(pos))) {
+                    pos++;
+                }
+                if (pos == end && !last) {
+                    return record - start;
+                }
+                records++;
+                if (pos - record < 3 || buf.get(record) < 0 || buf.get(record + 1) < 0) {
+                    throw malformed(buf, record, pos);
+                }
+                int from = towns.intern(buf, record, record + 1, builder);
+                int to = towns.intern(buf, record + 1, record + 2, builder);
+                builder.addRoute(from, to, parseDistance(buf, record + 2, pos, record));
+            }
+        }
+
+        private int parseLines(ByteBuffer buf, int start, int end, boolean last) {
+            int pos = start;
+            while (pos < end) {
+                int line = pos;
+                while (pos < end && buf.get(pos) != '\n') {
+                    pos++;
+                }
+                if (pos == end && !last) {
+                    return line - start;
+                }
+                int lineEnd = pos;
+                if (pos < end) {
+                    pos++; // new line
+                }
+                records++;
+                parseLine(buf, line, lineEnd);
+            }
+            return pos - start;
+        }
+
+        private void parseLine(ByteBuffer buf, int line, int end) {
+            end = trim(buf, line, end);
+            int pos = skipSpaces(buf, line, end);
+            if (pos == end || buf.get(pos) == '#') {
+                return;
+            }
+            for (int f = 0; f < 3; f++) {
+                pos = skipSpaces(buf, pos, end);
+                int field = pos;
+                while (pos < end && !isFieldSeparator(buf.get(pos))) {
+                    pos++;
+                }
+                fields[f * 2] = field;
+                fields[f * 2 + 1] = trim(buf, field, pos);
+                if (fields[f * 2] == fields[f * 2 + 1] || (f < 2) == (pos == end)) {
+                    throw malformed(buf, line, end);
+                }
+                pos++;
+            }
+            boolean first = !data;
+            data = true;
+            if (first && !isDigit(buf.get(fields[4]))) {
+                return; // header
+            }
+            int from = towns.intern(buf, fields[0], fields[1], builder);
+            int to = towns.intern(buf, fields[2], fields[3], builder);
+            builder.addRoute(from, to, parseDistance(buf, fields[4], fields[5], line));
+        }
+
+        private int parseDistance(ByteBuffer buf, int start, int end, int record) {
+            int distance = 0;
+            for (int pos = start; pos < end; pos++) {
+                byte b = buf.get(pos);
+                if (!isDigit(b) || distance > (Integer.MAX_VALUE - 9) / 10) {
+                    throw malformed(buf, record, end);
+                }
+                distance = distance * 10 + (b - '0');
+            }
+            return distance;
+        }
+
+        private IllegalArgumentException malformed(ByteBuffer buf, int start, int end) {
+            byte[] bytes = new byte[Math.min(end - start, 80)];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = buf.get(start + i);
+            }
+            return new IllegalArgumentException("Malformed route " + records + ": " + new String(bytes, UTF8));
+        }
+
+        private static boolean isRouteSeparator(byte b) {
+            return b == ',' || b == ' ' || b == '\t' || b == '\r' || b == '\n';
+        }
+
+        private static boolean isFieldSeparator(byte b) {
+            return b == ',' || b == ';' || b == '\t';
+        }
+
+        private static boolean isDigit(byte b) {
+            return b >= '0' && b <= '9';
+        }
+
+        private static int skipSpaces(ByteBuffer buf, int pos, int end) {
+            while (pos < end && buf.get(pos) == ' ') {
+                pos++;
+            }
+            return pos;
+        }
+
+        private static int trim(ByteBuffer buf, int start, int end) {
+            while (end > start && (buf.get(end - 1) == ' ' || buf.get(end - 1) == '\r')) {
+                end--;
+            }
+            return end;
+        }
+    }
+
+    /**
+     * Open addressing table from the bytes of a city name to its id in the builder.
+     * Names are copied once in an arena, so that buffers can be unmapped.
+     */
+    private static final class TownTable {
+
+        /**
+         * Hash of the name in the high half and id of the city plus one in the low half of every slot,
+         * 0 for a free slot: most lookups only read the slot and the name.
+         */
+        private long[] slots;
+        private int mask;
+        private byte[] names = new byte[1024];
+        private int namesSize;
+        private int[] starts;
+        private int count;
+
+        TownTable(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(expected, 4) * 2 - 1) << 1;
+            slots = new long[capacity];
+            mask = capacity - 1;
+            starts = new int[Math.max(expected, 4) + 1];
+        }
+
+        int intern(ByteBuffer buf, int start, int end, GraphBuilder builder) {
+            int hash = 0;
+            for (int pos = start; pos < end; pos++) {
+                hash = 31 * hash + buf.get(pos);
+            }
+            int slot = slot(hash);
+            long s;
+            while ((s = slots[slot]) != 0) {
+                int id = (int) s - 1;
+                if ((int) (s >>> 32) == hash && equals(id, buf, start, end)) {
+                    return id;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            int id = add(buf, start, end);
+            slots[slot] = ((long) hash << 32) | (id + 1);
+            if (count * 2 > slots.length) {
+                grow();
+            }
+            if (builder.addTown(new String(names, starts[id], end - start, UTF8)) != id) {
+                throw new IllegalStateException("Builder already has cities");
+            }
+            return id;
+        }
+
+        private int slot(int hash) {
+            // murmur3 finalizer: names differing by their last digits must not fill consecutive slots.
+            hash ^= hash >>> 16;
+            hash *= 0x85ebca6b;
+            hash ^= hash >>> 13;
+            hash *= 0xc2b2ae35;
+            hash ^= hash >>> 16;
+            return hash & mask;
+        }
+
+        private boolean equals(int id, ByteBuffer buf, int start, int end) {
+            int from = starts[id];
+            if (starts[id + 1] - from != end - start) {
+                return false;
+            }
+            for (int i = 0; i < end - start; i++) {
+                if (names[from + i] != buf.get(start + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int add(ByteBuffer buf, int start, int end) {
+            if (count + 2 > starts.length) {
+                starts = Arrays.copyOf(starts, starts.length * 2);
+            }
+            if (namesSize + end - start > names.length) {
+                names = Arrays.copyOf(names, Math.max(names.length * 2, namesSize + end - start));
+            }
+            for (int pos = start; pos < end; pos++) {
+                names[namesSize++] = buf.get(pos);
+            }
+            starts[count + 1] = namesSize;
+            return count++;
+        }
+
+        private void grow() {
+            long[] old = slots;
+            slots = new long[old.length * 2];
+            mask = slots.length - 1;
+            for (long s : old) {
+                if (s != 0) {
+                    int slot = slot((int) (s >>> 32));
+                    while (slots[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    slots[slot] = s;
+                }
+            }
+        }
+    }
+}
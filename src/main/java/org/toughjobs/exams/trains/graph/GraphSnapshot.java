@@ -0,0 +1,189 @@
+package org.toughjobs.exams.trains.graph;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.zip.CRC32;
+
+/**
+ * Binary file of a {@link Graph}, memory mapped and queried in place by a {@link BufferGraph}.
+ * Every value is a big endian int, the layout is:
+ * <ol>
+ * <li>header: {@link #MAGIC}, {@link #VERSION}, number of cities <code>n</code>, number of routes <code>m</code>,
+ * length of the names in bytes, length of the name index (a power of 2), two reserved values;</li>
+ * <li>index of the first route of every city: <code>n + 1</code> values;</li>
+ * <li>destination then distance of every route: twice <code>m</code> values;</li>
+ * <li>offset of every name in the names: <code>n + 1</code> values;</li>
+ * <li>name index: id of a city plus one in every slot, 0 for a free slot, with linear probing;</li>
+ * <li>names in UTF-8, padded to a multiple of 4 bytes;</li>
+ * <li>CRC32 of everything before.</li>
+ * </ol>
+ * A snapshot is limited to 2 GB, about 250 million routes.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public final class GraphSnapshot {
+
+    /**
+     * First bytes of a snapshot: <code>TRNS</code>.
+     */
+    public static final int MAGIC = 0x54524E53;
+    /**
+     * Version of the layout, incremented when it changes.
+     */
+    public static final int VERSION = 1;
+    /**
+     * Size of the header in bytes.
+     */
+    static final int HEADER = 32;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private GraphSnapshot() {
+    }
+
+    /**
+     * Write a graph.
+     * @param graph graph to write.
+     * @param file file to create or replace.
+     * @throws IOException the file can't be written.
+     * @throws IllegalArgumentException the graph is too large.
+     */
+    public static void write(Graph graph, File file) throws IOException {
+        int n = graph.getTownCount();
+        int m = graph.getRouteCount();
+        byte[][] bytes = new byte[n][];
+        long namesLength = 0;
+        for (int t = 0; t < n; t++) {
+            bytes[t] = graph.getTown(t).getBytes(UTF8);
+            namesLength += bytes[t].length;
+        }
+        int indexLength = Integer.highestOneBit(Math.max(n, 2) * 2 - 1) << 1;
+        long size = HEADER + 4L * (n + 1) + 8L * m + 4L * (n + 1) + 4L * indexLength + ((namesLength + 3) & ~3) + 4;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Graph too large for a snapshot: " + size + " bytes");
+        }
+
+        RandomAccessFile out = new RandomAccessFile(file, "rw");
+        try {
+            out.setLength(0); // the name index is filled in place, it must start with zeros.
+            out.setLength(size);
+            MappedByteBuffer buffer = out.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(m).putInt((int) namesLength).putInt(indexLength)
+                    .putInt(0).putInt(0);
+            for (int t = 0; t <= n; t++) {
+                buffer.putInt(graph.getOffset(t));
+            }
+            for (int r = 0; r < m; r++) {
+                buffer.putInt(graph.getTarget(r));
+            }
+            for (int r = 0; r < m; r++) {
+                buffer.putInt(graph.getWeight(r));
+            }
+            int offset = 0;
+            for (int t = 0; t < n; t++) {
+                buffer.putInt(offset);
+                offset += bytes[t].length;
+            }
+            buffer.putInt(offset);
+
+            int index = buffer.position();
+            for (int t = 0; t < n; t++) {
+                int slot = slot(hash(bytes[t]), indexLength - 1);
+                while (buffer.getInt(index + slot * 4) != 0) {
+                    slot = (slot + 1) & (indexLength - 1);
+                }
+                buffer.putInt(index + slot * 4, t + 1);
+            }
+            buffer.position(index + indexLength * 4);
+            for (int t = 0; t < n; t++) {
+                buffer.put(bytes[t]);
+            }
+            buffer.position((int) size - 4);
+            buffer.putInt((int) checksum(buffer, (int) size - 4));
+            buffer.force();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Map a snapshot after checking its checksum.
+     * @param file file to read.
+     * @return graph querying the mapped file.
+     * @throws IOException the file can't be read or is corrupted.
+     */
+    public static Graph load(File file) throws IOException {
+        return load(file, true);
+    }
+
+    /**
+     * Map a snapshot.
+     * @param file file to read.
+     * @param check true to check the checksum, which reads the whole file.
+     * @return graph querying the mapped file.
+     * @throws IOException the file can't be read or is corrupted.
+     */
+    public static Graph load(File file, boolean check) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            long size = in.length();
+            if (size < HEADER + 4 || size > Integer.MAX_VALUE) {
+                throw new IOException("Not a graph snapshot: " + file);
+            }
+            ByteBuffer buffer = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (check && (int) checksum(buffer, (int) size - 4) != buffer.getInt((int) size - 4)) {
+                throw new IOException("Corrupted graph snapshot: " + file);
+            }
+            try {
+                return new BufferGraph(buffer);
+            } catch (IllegalArgumentException ex) {
+                throw new IOException(ex.getMessage() + ": " + file, ex);
+            }
+        } finally {
+            in.close(); // the mapping stays valid.
+        }
+    }
+
+    private static long checksum(ByteBuffer buffer, int length) {
+        ByteBuffer content = buffer.duplicate();
+        content.position(0);
+        content.limit(length);
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        return crc.getValue();
+    }
+
+    /**
+     * Hash of a name.
+     * @param bytes name in UTF-8.
+     * @return hash.
+     */
+    static int hash(byte[] bytes) {
+        int hash = 0;
+        for (byte b : bytes) {
+            hash = 31 * hash + b;
+        }
+        return hash;
+    }
+
+    /**
+     * Slot of a hash in the name index.
+     * @param hash hash of the name.
+     * @param mask length of the index minus one.
+     * @return first slot to probe.
+     */
+    static int slot(int hash, int mask) {
+        // murmur3 finalizer, names often differ by their last characters only.
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash & mask;
+    }
+}
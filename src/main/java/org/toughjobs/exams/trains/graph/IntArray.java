@@ -0,0 +1,168 @@
+package org.toughjobs.exams.trains.graph;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Fixed length array of ints, on the heap or in direct buffers out of it.
+ * Direct buffers are allocated in chunks so that an array may hold more than a single buffer can.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+abstract class IntArray {
+
+    /**
+     * Number of ints of a direct chunk: 512 MB.
+     */
+    static final int CHUNK_BITS = 27;
+
+    /**
+     * Allocate an array filled with zeros.
+     * @param length number of ints.
+     * @param storage where to allocate it, out of the heap falls back to the heap when direct memory is exhausted.
+     * @return the array.
+     */
+    static IntArray allocate(int length, Storage storage) {
+        if (storage == Storage.OFF_HEAP) {
+            try {
+                return new Direct(length, CHUNK_BITS);
+            } catch (OutOfMemoryError err) {
+                // direct memory is limited by -XX:MaxDirectMemorySize, the heap may still have room.
+            }
+        }
+        return new Heap(new int[length]);
+    }
+
+    abstract int get(int index);
+
+    abstract void set(int index, int value);
+
+    abstract int length();
+
+    /**
+     * Copy of the array with more room, in the same storage.
+     * @param length number of ints, not less than the current one.
+     * @return the copy, new values being zeros: the array itself must not be used anymore.
+     */
+    abstract IntArray grow(int length);
+
+    /**
+     * Whether the array is out of the heap.
+     * @return true for direct buffers.
+     */
+    abstract boolean isDirect();
+
+    /**
+     * Array on the heap.
+     */
+    static final class Heap extends IntArray {
+
+        private final int[] values;
+
+        Heap(int[] values) {
+            this.values = values;
+        }
+
+        int[] values() {
+            return values;
+        }
+
+        @Override
+        int get(int index) {
+            return values[index];
+        }
+
+        @Override
+        void set(int index, int value) {
+            values[index] = value;
+        }
+
+        @Override
+        int length() {
+            return values.length;
+        }
+
+        @Override
+        IntArray grow(int length) {
+            return new Heap(Arrays.copyOf(values, length));
+        }
+
+        @Override
+        boolean isDirect() {
+            return false;
+        }
+    }
+
+    /**
+     * Array in direct buffers, in native order.
+     */
+    static final class Direct extends IntArray {
+
+        private final IntBuffer[] chunks;
+        private final int length;
+        private final int bits;
+        private final int mask;
+
+        /**
+         * New array.
+         * @param length number of ints.
+         * @param bits log2 of the number of ints of a chunk.
+         */
+        Direct(int length, int bits) {
+            this(new IntBuffer[0], length, bits);
+        }
+
+        /**
+         * Array keeping the chunks of another one, only the chunks missing or too short are allocated.
+         */
+        private Direct(IntBuffer[] kept, int length, int bits) {
+            this.length = length;
+            this.bits = bits;
+            this.mask = (1 << bits) - 1;
+            chunks = Arrays.copyOf(kept, (int) (((long) length + mask) >>> bits));
+            for (int c = 0; c < chunks.length; c++) {
+                int size = (int) Math.min(mask + 1L, length - ((long) c << bits));
+                if (chunks[c] == null || chunks[c].capacity() < size) {
+                    IntBuffer chunk = ByteBuffer.allocateDirect(size * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+                    if (chunks[c] != null) {
+                        IntBuffer old = chunks[c].duplicate();
+                        old.clear();
+                        chunk.put(old);
+                        chunk.clear();
+                    }
+                    chunks[c] = chunk;
+                }
+            }
+        }
+
+        @Override
+        int get(int index) {
+            return chunks[index >>> bits].get(index & mask);
+        }
+
+        @Override
+        void set(int index, int value) {
+            chunks[index >>> bits].put(index & mask, value);
+        }
+
+        @Override
+        int length() {
+            return length;
+        }
+
+        /**
+         * Full chunks are shared with the copy rather than copied.
+         */
+        @Override
+        IntArray grow(int length) {
+            return new Direct(chunks, length, bits);
+        }
+
+        @Override
+        boolean isDirect() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package org.toughjobs.exams.trains.graph;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from long keys to int values, with linear probing.
+ * Nothing is allocated by {@link #get(long)}, {@link #put(long, int)} only allocates when the table grows.
+ * Key {@link #EMPTY} can't be stored, {@link #pack(int, int)} never returns it for city ids.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public final class LongIntHashMap {
+
+    /**
+     * Marks a free slot.
+     */
+    public final static long EMPTY = -1L;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    /**
+     * New map.
+     * @param expected number of keys expected, the table is sized to stay at most half full.
+     */
+    public LongIntHashMap(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(expected, 4) * 2 - 1) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        mask = capacity - 1;
+    }
+
+    /**
+     * Key of a route between two cities.
+     * @param from id of the city to leave from.
+     * @param to id of the city to go to.
+     * @return both ids in a long.
+     */
+    public static long pack(int from, int to) {
+        return ((long) from << 32) | (to & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Get a value.
+     * @param key key of the value.
+     * @param missing value returned if the key isn't stored.
+     * @return the value.
+     */
+    public int get(long key, int missing) {
+        int slot = slot(key);
+        long k;
+        while ((k = keys[slot]) != EMPTY) {
+            if (k == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return missing;
+    }
+
+    /**
+     * Get a value.
+     * @param key key of the value.
+     * @return the value or {@link Graph#NONE} if the key isn't stored.
+     */
+    public int get(long key) {
+        return get(key, Graph.NONE);
+    }
+
+    /**
+     * Store a value, replacing the previous one.
+     * @param key key of the value, not {@link #EMPTY}.
+     * @param value value to store.
+     */
+    public void put(long key, int value) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("Key can't be " + EMPTY);
+        }
+        if ((size + 1) * 2 > keys.length) {
+            grow();
+        }
+        int slot = slot(key);
+        long k;
+        while ((k = keys[slot]) != EMPTY) {
+            if (k == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+    }
+
+    /**
+     * Number of keys stored.
+     * @return number of keys.
+     */
+    public int size() {
+        return size;
+    }
+
+    private int slot(long key) {
+        // murmur3 finalizer to spread packed ids over the table.
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key & mask;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[keys.length];
+        Arrays.fill(keys, EMPTY);
+        mask = keys.length - 1;
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package org.toughjobs.exams.trains.graph;
+
+import java.util.Map;
+
+/**
+ * {@link Graph} keeping its routes in direct buffers out of the Java heap, only city names stay on the heap.
+ * A route costs 8 bytes the garbage collector never scans or copies, and routes are not limited by the heap size.
+ * Routes are found by a binary search of the row of their departure city.
+ * Instances are immutable and are created by {@link GraphBuilder#build(Storage)}.
+ *
+ * @see Storage#OFF_HEAP
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class OffHeapGraph implements Graph {
+
+    private final String[] towns;
+    private final Map<String, Integer> ids;
+    private final IntArray offsets;
+    private final IntArray targets;
+    private final IntArray weights;
+
+    /**
+     * Visibility is package only as arrays are not copied, see {@link GraphBuilder#build(Storage)}.
+     * @param towns
+     * @param ids
+     * @param offsets
+     * @param targets
+     * @param weights
+     */
+    OffHeapGraph(String[] towns, Map<String, Integer> ids, IntArray offsets, IntArray targets, IntArray weights) {
+        this.towns = towns;
+        this.ids = ids;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+    }
+
+    /**
+     * Whether routes are actually out of the heap, they are on the heap when direct memory was exhausted.
+     * @return true if every route is in direct buffers.
+     */
+    public boolean isDirect() {
+        return offsets.isDirect() && targets.isDirect() && weights.isDirect();
+    }
+
+    @Override
+    public int getTownCount() {
+        return towns.length;
+    }
+
+    @Override
+    public int getRouteCount() {
+        return offsets.get(towns.length);
+    }
+
+    @Override
+    public int indexOf(String town) {
+        Integer id = ids.get(town);
+        return id == null ? NONE : id.intValue();
+    }
+
+    @Override
+    public String getTown(int town) {
+        return towns[town];
+    }
+
+    @Override
+    public int getOffset(int town) {
+        return offsets.get(town);
+    }
+
+    @Override
+    public int getTarget(int route) {
+        return targets.get(route);
+    }
+
+    @Override
+    public int getWeight(int route) {
+        return weights.get(route);
+    }
+
+    @Override
+    public int findRoute(int from, int to) {
+        int low = offsets.get(from);
+        int high = offsets.get(from + 1) - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int target = targets.get(middle);
+            if (target < to) {
+                low = middle + 1;
+            } else if (target > to) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return NONE;
+    }
+}
@@ -0,0 +1,202 @@
+package org.toughjobs.exams.trains.graph;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Mutable set of routes, from which graphs are built again after every change.
+ * Routes are kept in three int arrays in the order they were added, indexed by a {@link LongIntHashMap} of the ids of
+ * their cities: 12 bytes per route plus 24 to 48 bytes of index, on the heap, instead of the hundred or so of a map
+ * of {@link org.toughjobs.exams.trains.data.Route} beans. Changing the distance of a route keeps its place, a removed
+ * route leaves a hole until half of the routes are holes. Cities keep the order they were first seen in, or their id
+ * in the graph copied by {@link #of(Graph)}, so that they get the same id every time a graph is built, cities without
+ * any route left being skipped.
+ * It isn't thread safe.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class RouteTable {
+
+    /**
+     * Every city seen, removed routes don't remove their cities.
+     */
+    private String[] towns;
+    private final Map<String, Integer> ids;
+    private int townCount;
+    /**
+     * Routes in the order they were added, a departure of {@link Graph#NONE} for a removed one.
+     */
+    private int[] froms;
+    private int[] tos;
+    private int[] weights;
+    private int end;
+    private int size;
+    /**
+     * Position of every route by {@link LongIntHashMap#pack(int, int)} of its cities, {@link Graph#NONE} once removed.
+     */
+    private LongIntHashMap index;
+
+    public RouteTable() {
+        this(16, 16);
+    }
+
+    /**
+     * Empty table with an idea of its size to avoid growing arrays.
+     * @param towns expected number of cities.
+     * @param routes expected number of routes.
+     */
+    public RouteTable(int towns, int routes) {
+        this.towns = new String[Math.max(towns, 1)];
+        this.ids = new HashMap<String, Integer>(Math.max(towns, 1) * 2);
+        this.froms = new int[Math.max(routes, 1)];
+        this.tos = new int[froms.length];
+        this.weights = new int[froms.length];
+        this.index = new LongIntHashMap(routes);
+    }
+
+    /**
+     * Copy the routes of a graph.
+     * @param graph graph to copy, on the heap or out of it.
+     * @return a table of every route of the graph, cities keeping their id.
+     */
+    public static RouteTable of(Graph graph) {
+        RouteTable res = new RouteTable(graph.getTownCount(), graph.getRouteCount());
+        for (int town = 0; town < graph.getTownCount(); town++) {
+            res.town(graph.getTown(town));
+        }
+        for (int town = 0; town < graph.getTownCount(); town++) {
+            for (int r = graph.getOffset(town); r < graph.getOffset(town + 1); r++) {
+                res.put(town, graph.getTarget(r), graph.getWeight(r));
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Add a route or change its distance.
+     * @param from City to leave from.
+     * @param to City to go to.
+     * @param distance distance between cities.
+     */
+    public void put(String from, String to, int distance) {
+        int f = town(from);
+        put(f, town(to), distance);
+    }
+
+    /**
+     * Remove a route.
+     * @param from City to leave from.
+     * @param to City to go to.
+     * @return false if there was no such route.
+     */
+    public boolean remove(String from, String to) {
+        Integer f = ids.get(from);
+        Integer t = ids.get(to);
+        if (f == null || t == null) {
+            return false;
+        }
+        long key = LongIntHashMap.pack(f.intValue(), t.intValue());
+        int route = index.get(key);
+        if (route == Graph.NONE) {
+            return false;
+        }
+        index.put(key, Graph.NONE);
+        froms[route] = Graph.NONE;
+        size--;
+        if (size < end / 2) {
+            compact();
+        }
+        return true;
+    }
+
+    /**
+     * Number of routes.
+     * @return number of routes, removed ones excluded.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Build the graph of the routes. The table can still be changed afterwards.
+     * @param storage where to store the routes of the graph.
+     * @return an immutable graph, see {@link GraphBuilder#build(Storage)}.
+     */
+    public Graph build(Storage storage) {
+        boolean[] used = new boolean[townCount];
+        for (int i = 0; i < end; i++) {
+            if (froms[i] != Graph.NONE) {
+                used[froms[i]] = true;
+                used[tos[i]] = true;
+            }
+        }
+        // cities left without route don't get an id, the others keep their order.
+        GraphBuilder builder = new GraphBuilder(townCount, size, storage);
+        int[] ids = new int[townCount];
+        for (int town = 0; town < townCount; town++) {
+            if (used[town]) {
+                ids[town] = builder.addTown(towns[town]);
+            }
+        }
+        for (int i = 0; i < end; i++) {
+            if (froms[i] != Graph.NONE) {
+                builder.addRoute(ids[froms[i]], ids[tos[i]], weights[i]);
+            }
+        }
+        return builder.build(storage);
+    }
+
+    private int town(String town) {
+        Integer id = ids.get(town);
+        if (id != null) {
+            return id.intValue();
+        }
+        if (townCount == towns.length) {
+            towns = Arrays.copyOf(towns, townCount * 2);
+        }
+        towns[townCount] = town;
+        ids.put(town, Integer.valueOf(townCount));
+        return townCount++;
+    }
+
+    private void put(int from, int to, int distance) {
+        long key = LongIntHashMap.pack(from, to);
+        int route = index.get(key);
+        if (route != Graph.NONE) {
+            weights[route] = distance;
+            return;
+        }
+        if (end == froms.length) {
+            int length = end * 2;
+            froms = Arrays.copyOf(froms, length);
+            tos = Arrays.copyOf(tos, length);
+            weights = Arrays.copyOf(weights, length);
+        }
+        froms[end] = from;
+        tos[end] = to;
+        weights[end] = distance;
+        index.put(key, end);
+        end++;
+        size++;
+    }
+
+    /**
+     * Drop the holes of removed routes, and the keys left by them in the index.
+     */
+    private void compact() {
+        LongIntHashMap compacted = new LongIntHashMap(size);
+        int count = 0;
+        for (int i = 0; i < end; i++) {
+            if (froms[i] != Graph.NONE) {
+                froms[count] = froms[i];
+                tos[count] = tos[i];
+                weights[count] = weights[i];
+                compacted.put(LongIntHashMap.pack(froms[count], tos[count]), count);
+                count++;
+            }
+        }
+        end = count;
+        index = compacted;
+    }
+}
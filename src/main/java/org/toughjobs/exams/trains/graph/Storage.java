@@ -0,0 +1,19 @@
+package org.toughjobs.exams.trains.graph;
+
+/**
+ * Where {@link GraphBuilder#build(Storage)} stores the routes of a graph.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public enum Storage {
+
+    /**
+     * Arrays on the Java heap, see {@link GraphImpl}.
+     */
+    HEAP,
+    /**
+     * Direct buffers out of the heap, see {@link OffHeapGraph}: the garbage collector never sees the routes.
+     * Their size is limited by <code>-XX:MaxDirectMemorySize</code>, the heap is used when it is reached.
+     */
+    OFF_HEAP
+}
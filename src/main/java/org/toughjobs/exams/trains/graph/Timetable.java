@@ -0,0 +1,133 @@
+package org.toughjobs.exams.trains.graph;
+
+import java.util.Map;
+
+import org.toughjobs.exams.trains.data.Connection;
+
+/**
+ * Immutable timetable: every connection of a day in flat arrays, sorted by departure time then arrival time, so that
+ * a query scans them in order, one cache line after the other. Cities and trips are given dense ids.
+ * Built by {@link TimetableBuilder}.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public final class Timetable {
+
+    private final String[] towns;
+    private final Map<String, Integer> ids;
+    private final String[] trips;
+    /**
+     * Connections sorted by departure, one array per field.
+     */
+    private final int[] departures;
+    private final int[] arrivals;
+    private final int[] froms;
+    private final int[] tos;
+    private final int[] tripIds;
+
+    Timetable(String[] towns, Map<String, Integer> ids, String[] trips, int[] departures, int[] arrivals,
+            int[] froms, int[] tos, int[] tripIds) {
+        this.towns = towns;
+        this.ids = ids;
+        this.trips = trips;
+        this.departures = departures;
+        this.arrivals = arrivals;
+        this.froms = froms;
+        this.tos = tos;
+        this.tripIds = tripIds;
+    }
+
+    public int getTownCount() {
+        return towns.length;
+    }
+
+    public int getTripCount() {
+        return trips.length;
+    }
+
+    public int getConnectionCount() {
+        return departures.length;
+    }
+
+    /**
+     * Id of a city.
+     * @param town name of the city.
+     * @return the id or {@link Graph#NONE} if no connection serves the city.
+     */
+    public int indexOf(String town) {
+        Integer id = ids.get(town);
+        return id == null ? Graph.NONE : id.intValue();
+    }
+
+    /**
+     * Name of a city.
+     * @param id id of the city.
+     * @return the name.
+     */
+    public String getTown(int id) {
+        return towns[id];
+    }
+
+    /**
+     * Id of a trip as given to the connections.
+     * @param id dense id of the trip.
+     * @return the id of the trip.
+     */
+    public String getTrip(int id) {
+        return trips[id];
+    }
+
+    public int getDeparture(int connection) {
+        return departures[connection];
+    }
+
+    public int getArrival(int connection) {
+        return arrivals[connection];
+    }
+
+    public int getFrom(int connection) {
+        return froms[connection];
+    }
+
+    public int getTo(int connection) {
+        return tos[connection];
+    }
+
+    /**
+     * Dense id of the trip of a connection.
+     * @param connection index of the connection.
+     * @return id of the trip, from 0 to {@link #getTripCount()}.
+     */
+    public int getTripId(int connection) {
+        return tripIds[connection];
+    }
+
+    /**
+     * First connection leaving at or after a time, by binary search.
+     * @param time time to leave.
+     * @return index of the connection, {@link #getConnectionCount()} if every connection leaves before.
+     */
+    public int firstDeparture(int time) {
+        int low = 0;
+        int high = departures.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (departures[middle] < time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Rebuild a connection.
+     * @param connection index of the connection.
+     * @return a new connection.
+     */
+    public Connection getConnection(int connection) {
+        return new Connection(towns[froms[connection]], towns[tos[connection]], departures[connection],
+                arrivals[connection], trips[tripIds[connection]]);
+    }
+}
@@ -0,0 +1,141 @@
+package org.toughjobs.exams.trains.graph;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.toughjobs.exams.trains.data.Connection;
+
+/**
+ * Collect connections then build an immutable {@link Timetable}, sorting them once.
+ * Cities and trips get their id in the order they are first seen.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class TimetableBuilder {
+
+    private String[] towns = new String[16];
+    private final Map<String, Integer> townIds = new HashMap<String, Integer>();
+    private int townCount;
+    private String[] trips = new String[16];
+    private final Map<String, Integer> tripIds = new HashMap<String, Integer>();
+    private int tripCount;
+    /**
+     * Connections in the order they were added.
+     */
+    private int[] departures = new int[16];
+    private int[] arrivals = new int[16];
+    private int[] froms = new int[16];
+    private int[] tos = new int[16];
+    private int[] tripOf = new int[16];
+    private int connectionCount;
+
+    /**
+     * Add a connection.
+     * @param connection the connection.
+     * @return this builder.
+     */
+    public TimetableBuilder addConnection(Connection connection) {
+        return addConnection(connection.getFrom(), connection.getTo(), connection.getDeparture(),
+                connection.getArrival(), connection.getTrip());
+    }
+
+    /**
+     * Add a connection.
+     * @param from City to leave from.
+     * @param to City to go to.
+     * @param departure Time the train leaves, not negative.
+     * @param arrival Time the train arrives, not before it leaves.
+     * @param trip Id of the train.
+     * @return this builder.
+     * @throws IllegalArgumentException if times are negative or the train arrives before it leaves.
+     */
+    public TimetableBuilder addConnection(String from, String to, int departure, int arrival, String trip) {
+        if (departure < 0 || arrival < departure) {
+            throw new IllegalArgumentException("Invalid times " + departure + " to " + arrival + " of " + trip);
+        }
+        if (connectionCount == departures.length) {
+            int n = connectionCount * 2;
+            departures = Arrays.copyOf(departures, n);
+            arrivals = Arrays.copyOf(arrivals, n);
+            froms = Arrays.copyOf(froms, n);
+            tos = Arrays.copyOf(tos, n);
+            tripOf = Arrays.copyOf(tripOf, n);
+        }
+        departures[connectionCount] = departure;
+        arrivals[connectionCount] = arrival;
+        froms[connectionCount] = addTown(from);
+        tos[connectionCount] = addTown(to);
+        tripOf[connectionCount] = addTrip(trip);
+        connectionCount++;
+        return this;
+    }
+
+    private int addTown(String town) {
+        Integer id = townIds.get(town);
+        if (id != null) {
+            return id.intValue();
+        }
+        if (townCount == towns.length) {
+            towns = Arrays.copyOf(towns, townCount * 2);
+        }
+        towns[townCount] = town;
+        townIds.put(town, Integer.valueOf(townCount));
+        return townCount++;
+    }
+
+    private int addTrip(String trip) {
+        Integer id = tripIds.get(trip);
+        if (id != null) {
+            return id.intValue();
+        }
+        if (tripCount == trips.length) {
+            trips = Arrays.copyOf(trips, tripCount * 2);
+        }
+        trips[tripCount] = trip;
+        tripIds.put(trip, Integer.valueOf(tripCount));
+        return tripCount++;
+    }
+
+    /**
+     * Sort the connections by departure then arrival, then in the order they were added, so that connections of a
+     * trip taking no time stay in order.
+     * @return the timetable.
+     */
+    public Timetable build() {
+        // times are not negative: both fit in a long key, the index of the connection in another one.
+        final long[] keys = new long[connectionCount];
+        for (int c = 0; c < connectionCount; c++) {
+            keys[c] = ((long) departures[c] << 32) | arrivals[c];
+        }
+        Integer[] order = new Integer[connectionCount];
+        for (int c = 0; c < connectionCount; c++) {
+            order[c] = Integer.valueOf(c);
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                long ka = keys[a.intValue()];
+                long kb = keys[b.intValue()];
+                return ka < kb ? -1 : (ka == kb ? a.compareTo(b) : 1);
+            }
+        });
+
+        int[] d = new int[connectionCount];
+        int[] a = new int[connectionCount];
+        int[] f = new int[connectionCount];
+        int[] t = new int[connectionCount];
+        int[] p = new int[connectionCount];
+        for (int i = 0; i < connectionCount; i++) {
+            int c = order[i].intValue();
+            d[i] = departures[c];
+            a[i] = arrivals[c];
+            f[i] = froms[c];
+            t[i] = tos[c];
+            p[i] = tripOf[c];
+        }
+        return new Timetable(Arrays.copyOf(towns, townCount), new HashMap<String, Integer>(townIds),
+                Arrays.copyOf(trips, tripCount), d, a, f, t, p);
+    }
+}
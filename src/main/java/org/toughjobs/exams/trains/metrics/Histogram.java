@@ -0,0 +1,123 @@
+package org.toughjobs.exams.trains.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of positive values with a bounded relative error, as HdrHistogram does: values are counted in buckets
+ * whose width doubles every power of two, every power of two being split into {@link #SUB_BUCKETS} / 2 buckets.
+ * Values under {@link #SUB_BUCKETS} are exact, others are reported within 1 / 32 of their value.
+ * It takes 16 KB whatever the range of values. Recording is lock free and never allocates.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class Histogram {
+
+    private static final int SUB_BITS = 6;
+    /**
+     * Number of exact values, and twice the number of buckets of a power of two.
+     */
+    public static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int HALF = SUB_BUCKETS >>> 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(index(Long.MAX_VALUE) + 1);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Bucket of a value.
+     */
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BITS - 1);
+        return shift * HALF + (int) (value >>> shift);
+    }
+
+    /**
+     * Greatest value of a bucket.
+     */
+    static long highest(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / HALF - 1;
+        long sub = index - shift * HALF;
+        return ((sub + 1) << shift) - 1;
+    }
+
+    /**
+     * Count a value.
+     * @param value value, negative values are counted as 0.
+     */
+    public void record(long value) {
+        value = Math.max(value, 0);
+        counts.incrementAndGet(index(value));
+        count.incrementAndGet();
+        total.addAndGet(value);
+        long m = max.get();
+        while (value > m && !max.compareAndSet(m, value)) {
+            m = max.get();
+        }
+    }
+
+    /**
+     * Number of values recorded.
+     * @return number of values.
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Greatest value recorded, exact.
+     * @return the value, 0 if there's none.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Mean of the values recorded, exact.
+     * @return the mean, 0 if there's none.
+     */
+    public double getMean() {
+        long c = count.get();
+        return c == 0 ? 0 : (double) total.get() / c;
+    }
+
+    /**
+     * Value under which a percentage of the values are.
+     * @param percentile percentage, between 0 and 100.
+     * @return greatest value of the bucket of the percentile, never above the maximum, 0 if there's no value.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long c = count.get();
+        if (c == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * c));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highest(i), getMax());
+            }
+        }
+        return getMax(); // values recorded while reading.
+    }
+
+    /**
+     * Forget every value. Values recorded meanwhile may be partly forgotten.
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+}
@@ -0,0 +1,124 @@
+package org.toughjobs.exams.trains.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link Metrics} kept in memory: a latency {@link Histogram} and totals for every operation.
+ * Recording never allocates nor locks. Export them with {@link MetricsExporter}.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class InMemoryMetrics implements Metrics {
+
+    private final Histogram[] latencies = new Histogram[Operation.values().length];
+    private final LongAdder[] expanded = adders();
+    private final LongAdder[] trips = adders();
+    private final LongAdder[] results = adders();
+    private final LongAdder[] hits = adders();
+    private final LongAdder[] misses = adders();
+
+    public InMemoryMetrics() {
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new Histogram();
+        }
+    }
+
+    private static LongAdder[] adders() {
+        LongAdder[] res = new LongAdder[Operation.values().length];
+        for (int i = 0; i < res.length; i++) {
+            res[i] = new LongAdder();
+        }
+        return res;
+    }
+
+    @Override
+    public void recordQuery(Operation operation, long nanos, long expanded, long trips, long results) {
+        int i = operation.ordinal();
+        latencies[i].record(nanos);
+        this.expanded[i].add(expanded);
+        this.trips[i].add(trips);
+        this.results[i].add(results);
+    }
+
+    @Override
+    public void recordCache(Operation operation, boolean hit) {
+        (hit ? hits : misses)[operation.ordinal()].increment();
+    }
+
+    /**
+     * Latencies of an operation.
+     * @param operation method called.
+     * @return histogram of the durations in nanoseconds.
+     */
+    public Histogram getLatencies(Operation operation) {
+        return latencies[operation.ordinal()];
+    }
+
+    /**
+     * Number of queries of an operation.
+     * @param operation method called.
+     * @return number of queries.
+     */
+    public long getCount(Operation operation) {
+        return latencies[operation.ordinal()].getCount();
+    }
+
+    /**
+     * Cities settled or routes followed by the queries of an operation.
+     * @param operation method called.
+     * @return total of every query.
+     */
+    public long getExpanded(Operation operation) {
+        return expanded[operation.ordinal()].sum();
+    }
+
+    /**
+     * Trips built by the queries of an operation.
+     * @param operation method called.
+     * @return total of every query.
+     */
+    public long getTrips(Operation operation) {
+        return trips[operation.ordinal()].sum();
+    }
+
+    /**
+     * Results returned by the queries of an operation.
+     * @param operation method called.
+     * @return total of every query.
+     */
+    public long getResults(Operation operation) {
+        return results[operation.ordinal()].sum();
+    }
+
+    /**
+     * Queries of an operation answered by a cache.
+     * @param operation method called.
+     * @return number of hits.
+     */
+    public long getCacheHits(Operation operation) {
+        return hits[operation.ordinal()].sum();
+    }
+
+    /**
+     * Queries of an operation missed by a cache.
+     * @param operation method called.
+     * @return number of misses.
+     */
+    public long getCacheMisses(Operation operation) {
+        return misses[operation.ordinal()].sum();
+    }
+
+    /**
+     * Forget every measure.
+     */
+    public void reset() {
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i].reset();
+            expanded[i].reset();
+            trips[i].reset();
+            results[i].reset();
+            hits[i].reset();
+            misses[i].reset();
+        }
+    }
+}
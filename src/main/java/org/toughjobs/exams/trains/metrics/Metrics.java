@@ -0,0 +1,30 @@
+package org.toughjobs.exams.trains.metrics;
+
+/**
+ * Service provider receiving measures of the queries of a processor, see
+ * {@link org.toughjobs.exams.trains.processing.ProcessorImpl#setMetrics(Metrics)}.
+ * Processors without metrics never measure anything: they only test a field for null.
+ * Methods are called by the threads running the queries, implementations must be thread safe and fast.
+ *
+ * @see InMemoryMetrics
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public interface Metrics {
+
+    /**
+     * A query has returned.
+     * @param operation method called.
+     * @param nanos elapsed time in nanoseconds.
+     * @param expanded cities settled or routes followed by the search, 0 when the search doesn't count them.
+     * @param trips number of trips built, including the shared beginnings of the trips returned.
+     * @param results number of results: trips, or 1 for a distance or a count.
+     */
+    public void recordQuery(Operation operation, long nanos, long expanded, long trips, long results);
+
+    /**
+     * A query has been looked up in a cache.
+     * @param operation method called.
+     * @param hit true if the result was cached.
+     */
+    public void recordCache(Operation operation, boolean hit);
+}
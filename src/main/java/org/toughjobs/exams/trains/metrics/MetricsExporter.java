@@ -0,0 +1,139 @@
+package org.toughjobs.exams.trains.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Register {@link InMemoryMetrics} as JMX MXBeans, one per operation, named
+ * <code>&lt;domain&gt;:type=Metrics,operation=&lt;operation&gt;</code>.
+ * Attributes are read from the metrics when queried, nothing is copied.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class MetricsExporter {
+
+    /**
+     * Default domain of the MXBeans.
+     */
+    public static final String DOMAIN = "org.toughjobs.exams.trains";
+
+    private final MBeanServer server;
+    private final List<ObjectName> names = new ArrayList<ObjectName>();
+
+    /**
+     * Register the MXBeans.
+     * @param metrics metrics to export.
+     * @param server server to register them in, for instance
+     * {@link java.lang.management.ManagementFactory#getPlatformMBeanServer()}.
+     * @param domain domain of their names.
+     * @throws JMException if an MXBean can't be registered, none is registered then.
+     */
+    public MetricsExporter(InMemoryMetrics metrics, MBeanServer server, String domain) throws JMException {
+        this.server = server;
+        try {
+            for (Operation operation : Operation.values()) {
+                ObjectName name = new ObjectName(domain + ":type=Metrics,operation=" + operation.name());
+                server.registerMBean(new OperationMetrics(metrics, operation), name);
+                names.add(name);
+            }
+        } catch (JMException ex) {
+            unregister();
+            throw ex;
+        }
+    }
+
+    /**
+     * Names of the MXBeans.
+     * @return a copy of the names.
+     */
+    public List<ObjectName> getNames() {
+        return new ArrayList<ObjectName>(names);
+    }
+
+    /**
+     * Unregister every MXBean still registered.
+     */
+    public void unregister() {
+        for (ObjectName name : names) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException ex) {
+                // already unregistered.
+            }
+        }
+        names.clear();
+    }
+
+    /**
+     * Metrics of an operation.
+     */
+    private static final class OperationMetrics implements OperationMetricsMXBean {
+
+        private final InMemoryMetrics metrics;
+        private final Operation operation;
+
+        OperationMetrics(InMemoryMetrics metrics, Operation operation) {
+            this.metrics = metrics;
+            this.operation = operation;
+        }
+
+        @Override
+        public long getCount() {
+            return metrics.getCount(operation);
+        }
+
+        @Override
+        public double getMeanLatency() {
+            return metrics.getLatencies(operation).getMean();
+        }
+
+        @Override
+        public long getMedianLatency() {
+            return metrics.getLatencies(operation).getValueAtPercentile(50);
+        }
+
+        @Override
+        public long getP99Latency() {
+            return metrics.getLatencies(operation).getValueAtPercentile(99);
+        }
+
+        @Override
+        public long getP999Latency() {
+            return metrics.getLatencies(operation).getValueAtPercentile(99.9);
+        }
+
+        @Override
+        public long getMaxLatency() {
+            return metrics.getLatencies(operation).getMax();
+        }
+
+        @Override
+        public long getExpanded() {
+            return metrics.getExpanded(operation);
+        }
+
+        @Override
+        public long getTrips() {
+            return metrics.getTrips(operation);
+        }
+
+        @Override
+        public long getResults() {
+            return metrics.getResults(operation);
+        }
+
+        @Override
+        public long getCacheHits() {
+            return metrics.getCacheHits(operation);
+        }
+
+        @Override
+        public long getCacheMisses() {
+            return metrics.getCacheMisses(operation);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package org.toughjobs.exams.trains.metrics;
+
+/**
+ * Processor methods recorded by {@link Metrics}.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public enum Operation {
+    GET_DISTANCE,
+    GET_ROUTE,
+    FIND_TRIPS,
+    FIND_TRIPS_EQUALS_STEPS,
+    FIND_TRIPS_MAX_STEPS,
+    FIND_TRIPS_MAX_DISTANCE,
+    COUNT_TRIPS_EQUALS_STEPS,
+    COUNT_TRIPS_MAX_STEPS,
+    COUNT_TRIPS_MAX_DISTANCE,
+    SHORTEST_DISTANCE_TRIP,
+    K_SHORTEST_TRIPS,
+    EARLIEST_ARRIVAL,
+    PROFILE,
+    BATCH
+}
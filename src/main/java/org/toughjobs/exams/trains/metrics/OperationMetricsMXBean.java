@@ -0,0 +1,32 @@
+package org.toughjobs.exams.trains.metrics;
+
+/**
+ * JMX view of the {@link InMemoryMetrics} of an operation, registered by {@link MetricsExporter}.
+ * Latencies are in nanoseconds.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public interface OperationMetricsMXBean {
+
+    public long getCount();
+
+    public double getMeanLatency();
+
+    public long getMedianLatency();
+
+    public long getP99Latency();
+
+    public long getP999Latency();
+
+    public long getMaxLatency();
+
+    public long getExpanded();
+
+    public long getTrips();
+
+    public long getResults();
+
+    public long getCacheHits();
+
+    public long getCacheMisses();
+}
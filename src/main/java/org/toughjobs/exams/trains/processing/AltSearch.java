@@ -0,0 +1,152 @@
+package org.toughjobs.exams.trains.processing;
+
+import java.util.Arrays;
+
+import org.toughjobs.exams.trains.data.Trip;
+import org.toughjobs.exams.trains.graph.Graph;
+
+/**
+ * Point to point shortest path search by A* with {@link Landmarks} lower bounds (ALT).
+ * Cities are settled by distance from the starting city plus lower bound of the distance to the ending city,
+ * so that the search heads to the destination instead of growing in every direction. The bounds are consistent,
+ * a settled city is never reopened, and cities proven unable to reach the destination are never queued.
+ * As in {@link ShortestPaths}, the search is seeded with the routes leaving the starting city, so that the shortest
+ * round trip is found when both cities are the same.
+ * An instance can be reused for several searches, it is not thread safe.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class AltSearch {
+
+    private final Graph graph;
+    private final Landmarks landmarks;
+    private final BinaryHeap queue;
+    private final int[] distances;
+    private final int[] previous;
+    /**
+     * Lower bound of the distance to the ending city, computed once per search.
+     */
+    private final int[] bounds;
+    /**
+     * Search during which a city has been reached or settled, so that arrays are never cleared.
+     */
+    private final int[] reached;
+    private final int[] settled;
+    private int run;
+
+    private int from = Graph.NONE;
+    private int to = Graph.NONE;
+    private int settledCount;
+
+    /**
+     * New search.
+     * @param graph graph to search in.
+     * @param landmarks landmarks of the graph.
+     */
+    public AltSearch(Graph graph, Landmarks landmarks) {
+        this.graph = graph;
+        this.landmarks = landmarks;
+        int n = graph.getTownCount();
+        queue = new BinaryHeap(n);
+        distances = new int[n];
+        previous = new int[n];
+        bounds = new int[n];
+        reached = new int[n];
+        settled = new int[n];
+    }
+
+    /**
+     * Search the shortest trip between two cities.
+     * @param from id of the city to start from.
+     * @param to id of the city to go to.
+     * @return distance of the shortest trip or {@link Trip#NO_ROUTE} if there's none.
+     */
+    public int search(int from, int to) {
+        this.from = from;
+        this.to = to;
+        if (++run == Integer.MAX_VALUE) {
+            run = 1;
+            Arrays.fill(reached, 0);
+            Arrays.fill(settled, 0);
+        }
+        queue.clear();
+        settledCount = 0;
+
+        for (int r = graph.getOffset(from); r < graph.getOffset(from + 1); r++) {
+            relax(from, graph.getTarget(r), graph.getWeight(r));
+        }
+
+        while (!queue.isEmpty()) {
+            int town = queue.poll();
+            settled[town] = run;
+            settledCount++;
+            if (town == to) {
+                return distances[to];
+            }
+            int distance = distances[town];
+            for (int r = graph.getOffset(town); r < graph.getOffset(town + 1); r++) {
+                relax(town, graph.getTarget(r), distance + graph.getWeight(r));
+            }
+        }
+        return Trip.NO_ROUTE;
+    }
+
+    private void relax(int town, int target, int distance) {
+        if (settled[target] == run) {
+            return;
+        }
+        if (reached[target] != run) {
+            int bound = landmarks.lowerBound(target, to);
+            if (bound == Trip.NO_ROUTE) {
+                return; // dead end, it is checked again every time it is reached.
+            }
+            reached[target] = run;
+            bounds[target] = bound;
+        } else if (distance >= distances[target]) {
+            return;
+        }
+        distances[target] = distance;
+        previous[target] = town;
+        queue.push(target, distance + bounds[target]);
+    }
+
+    /**
+     * Number of cities settled by last search.
+     * @return number of cities.
+     */
+    public int getSettledCount() {
+        return settledCount;
+    }
+
+    /**
+     * Build the shortest trip found by last search.
+     * @return a complete trip with every step, or null if there's no trip.
+     */
+    public Trip getTrip() {
+        if (to == Graph.NONE || settled[to] != run) {
+            return null;
+        }
+        int length = 0;
+        int town = to;
+        do {
+            length++;
+            town = previous[town];
+        } while (town != from);
+
+        int[] steps = new int[length];
+        town = to;
+        for (int i = length - 1; i >= 0; i--) {
+            steps[i] = town;
+            town = previous[town];
+        }
+
+        Trip trip = new Trip(graph.getTown(from));
+        int prev = from;
+        for (int step : steps) {
+            trip.add(graph.getTown(step), graph.getWeight(graph.findRoute(prev, step)));
+            prev = step;
+        }
+        trip.setComplete();
+        return trip;
+    }
+}
@@ -0,0 +1,26 @@
+package org.toughjobs.exams.trains.processing;
+
+/**
+ * Receive the results of a batch as they are computed, see {@link BatchProcessor}.
+ * Methods are called by the threads of the pool running the batch, implementations must be thread safe.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public interface BatchListener {
+
+    /**
+     * A query has been answered.
+     * @param query the query.
+     * @param result distance or number of trips.
+     */
+    public void completed(BatchQuery query, long result);
+
+    /**
+     * A query has failed, as the processor method would have.
+     * @param query the query.
+     * @param error {@link org.toughjobs.exams.trains.exceptions.NoSuchRouteException} when a trip doesn't exist,
+     * {@link ArithmeticException} when a count doesn't fit in a long, {@link IllegalArgumentException} when trips are
+     * counted by distance on a graph with a route shorter than 1.
+     */
+    public void failed(BatchQuery query, Exception error);
+}
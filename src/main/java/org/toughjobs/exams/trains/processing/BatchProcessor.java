@@ -0,0 +1,237 @@
+package org.toughjobs.exams.trains.processing;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import org.toughjobs.exams.trains.data.Trip;
+import org.toughjobs.exams.trains.exceptions.NoSuchRouteException;
+import org.toughjobs.exams.trains.graph.Graph;
+
+/**
+ * Answer many queries over a {@link Graph} at once. Queries are grouped by starting city and every group shares
+ * its traversals: a single {@link ShortestPaths} search answers every shortest distance of the group, and a single
+ * {@link TripCounter} pass per kind of count answers every count up to the largest limit.
+ * Groups are spread over a {@link ForkJoinPool} and results are given to a {@link BatchListener} as soon as their
+ * group is done, in no particular order.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class BatchProcessor {
+
+    /**
+     * Number of groups answered by a single task.
+     */
+    private static final int BATCH = 16;
+
+    private final Graph graph;
+    private final ForkJoinPool pool;
+
+    /**
+     * New batch processor.
+     * @param graph graph to query.
+     * @param pool pool running the groups.
+     */
+    public BatchProcessor(Graph graph, ForkJoinPool pool) {
+        this.graph = graph;
+        this.pool = pool;
+    }
+
+    /**
+     * Answer queries and wait for every result.
+     * @param queries queries to answer.
+     * @param listener listener of the results.
+     */
+    public void run(Collection<BatchQuery> queries, BatchListener listener) {
+        pool.invoke(task(queries, listener));
+    }
+
+    /**
+     * Answer queries without waiting.
+     * @param queries queries to answer, copied before returning.
+     * @param listener listener of the results.
+     * @return the task, done once every result has been given to the listener.
+     */
+    public ForkJoinTask<Void> submit(Collection<BatchQuery> queries, BatchListener listener) {
+        return pool.submit(task(queries, listener));
+    }
+
+    private GroupTask task(Collection<BatchQuery> queries, BatchListener listener) {
+        Map<String, List<BatchQuery>> groups = new LinkedHashMap<String, List<BatchQuery>>();
+        for (BatchQuery query : queries) {
+            List<BatchQuery> group = groups.get(query.getFrom());
+            if (group == null) {
+                group = new ArrayList<BatchQuery>();
+                groups.put(query.getFrom(), group);
+            }
+            group.add(query);
+        }
+        return new GroupTask(new ArrayList<List<BatchQuery>>(groups.values()), listener, 0, groups.size());
+    }
+
+    /**
+     * Answer the queries of a starting city.
+     * @param group queries of the city.
+     * @param listener listener of the results.
+     * @param counter counter of the graph.
+     * @param search search of the graph, null to create one.
+     * @return the search, created if needed.
+     */
+    private ShortestPaths answer(List<BatchQuery> group, BatchListener listener, TripCounter counter,
+            ShortestPaths search) {
+        int from = graph.indexOf(group.get(0).getFrom());
+        List<BatchQuery> shortest = new ArrayList<BatchQuery>();
+        List<BatchQuery> equalsSteps = new ArrayList<BatchQuery>();
+        List<BatchQuery> maxSteps = new ArrayList<BatchQuery>();
+        List<BatchQuery> maxDistance = new ArrayList<BatchQuery>();
+        for (BatchQuery query : group) {
+            switch (query.getType()) {
+                case ROUTE:
+                    route(query, listener);
+                    break;
+                case SHORTEST_DISTANCE:
+                    shortest.add(query);
+                    break;
+                case COUNT_EQUALS_STEPS:
+                    equalsSteps.add(query);
+                    break;
+                case COUNT_MAX_STEPS:
+                    maxSteps.add(query);
+                    break;
+                default:
+                    maxDistance.add(query);
+            }
+        }
+        count(from, equalsSteps, listener, counter);
+        count(from, maxSteps, listener, counter);
+        count(from, maxDistance, listener, counter);
+        if (shortest.isEmpty()) {
+            return search;
+        }
+
+        if (search == null) {
+            search = new ShortestPaths(graph);
+        }
+        Set<String> targets = new HashSet<String>();
+        for (BatchQuery query : shortest) {
+            targets.add(query.getTo());
+        }
+        if (from != Graph.NONE) {
+            // a single destination stops the search once it is settled.
+            search.search(from, targets.size() == 1 ? graph.indexOf(shortest.get(0).getTo()) : Graph.NONE);
+        }
+        for (BatchQuery query : shortest) {
+            int to = graph.indexOf(query.getTo());
+            int distance = from == Graph.NONE || to == Graph.NONE ? Trip.NO_ROUTE : search.getDistance(to);
+            if (distance == Trip.NO_ROUTE) {
+                listener.failed(query, new NoSuchRouteException());
+            } else {
+                listener.completed(query, distance);
+            }
+        }
+        return search;
+    }
+
+    private void route(BatchQuery query, BatchListener listener) {
+        String[] cities = query.getCities();
+        long distance = 0;
+        int prev = graph.indexOf(cities[0]);
+        for (int i = 1; i < cities.length; i++) {
+            int town = graph.indexOf(cities[i]);
+            int route = prev == Graph.NONE || town == Graph.NONE ? Graph.NONE : graph.findRoute(prev, town);
+            if (route == Graph.NONE) {
+                listener.failed(query, new NoSuchRouteException());
+                return;
+            }
+            distance += graph.getWeight(route);
+            prev = town;
+        }
+        listener.completed(query, distance);
+    }
+
+    /**
+     * Answer counts of a single kind in one pass.
+     */
+    private void count(int from, List<BatchQuery> queries, BatchListener listener, TripCounter counter) {
+        if (queries.isEmpty()) {
+            return;
+        }
+        int[] tos = new int[queries.size()];
+        int[] limits = new int[queries.size()];
+        for (int i = 0; i < tos.length; i++) {
+            tos[i] = graph.indexOf(queries.get(i).getTo());
+            limits[i] = tos[i] == Graph.NONE ? 0 : queries.get(i).getLimit();
+            tos[i] = Math.max(tos[i], 0); // unknown cities have no trip, as for a limit of 0.
+        }
+        long[] counts;
+        if (from == Graph.NONE) {
+            counts = new long[tos.length];
+        } else {
+            try {
+                switch (queries.get(0).getType()) {
+                    case COUNT_EQUALS_STEPS:
+                        counts = counter.countsEqualsSteps(from, tos, limits);
+                        break;
+                    case COUNT_MAX_STEPS:
+                        counts = counter.countsMaxSteps(from, tos, limits);
+                        break;
+                    default:
+                        counts = counter.countsMaxDistance(from, tos, limits);
+                }
+            } catch (IllegalArgumentException ex) {
+                for (BatchQuery query : queries) {
+                    listener.failed(query, ex);
+                }
+                return;
+            }
+        }
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == Long.MAX_VALUE) {
+                listener.failed(queries.get(i), new ArithmeticException("Number of trips doesn't fit in a long"));
+            } else {
+                listener.completed(queries.get(i), counts[i]);
+            }
+        }
+    }
+
+    /**
+     * Answer some groups.
+     */
+    private class GroupTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<List<BatchQuery>> groups;
+        private final BatchListener listener;
+        private final int first;
+        private final int end;
+
+        GroupTask(List<List<BatchQuery>> groups, BatchListener listener, int first, int end) {
+            this.groups = groups;
+            this.listener = listener;
+            this.first = first;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - first > BATCH) {
+                int middle = (first + end) >>> 1;
+                invokeAll(new GroupTask(groups, listener, first, middle), new GroupTask(groups, listener, middle, end));
+                return;
+            }
+            TripCounter counter = new TripCounter(graph);
+            ShortestPaths search = null;
+            for (int g = first; g < end; g++) {
+                search = answer(groups.get(g), listener, counter, search);
+            }
+        }
+    }
+}
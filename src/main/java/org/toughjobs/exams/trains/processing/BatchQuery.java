@@ -0,0 +1,144 @@
+package org.toughjobs.exams.trains.processing;
+
+import java.util.Arrays;
+
+/**
+ * Query of a batch run by {@link BatchProcessor}: the {@link Processor} method to call and its arguments.
+ * Instances are immutable and are created by the static methods.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public final class BatchQuery {
+
+    /**
+     * Processor method of a query.
+     */
+    public enum Type {
+        /**
+         * {@link Processor#getRoute(String...)}.
+         */
+        ROUTE,
+        /**
+         * {@link Processor#countTripsEqualsSteps(String, String, int)}.
+         */
+        COUNT_EQUALS_STEPS,
+        /**
+         * {@link Processor#countTripsMaxSteps(String, String, int)}.
+         */
+        COUNT_MAX_STEPS,
+        /**
+         * {@link Processor#countTripsMaxDistance(String, String, int)}.
+         */
+        COUNT_MAX_DISTANCE,
+        /**
+         * Distance of {@link Processor#getShortestDistanceTrip(String, String)}.
+         */
+        SHORTEST_DISTANCE
+    }
+
+    private final Type type;
+    private final String[] cities;
+    private final int limit;
+
+    private BatchQuery(Type type, String[] cities, int limit) {
+        this.type = type;
+        this.cities = cities;
+        this.limit = limit;
+    }
+
+    /**
+     * Distance of a trip following routes.
+     * @param cities cities of the trip, at least one.
+     * @return the query.
+     */
+    public static BatchQuery route(String... cities) {
+        if (cities.length == 0) {
+            throw new IllegalArgumentException("A trip has at least one city");
+        }
+        return new BatchQuery(Type.ROUTE, cities.clone(), 0);
+    }
+
+    /**
+     * Number of trips with an exact number of steps.
+     * @param from City to start from.
+     * @param to City to go to.
+     * @param steps number of steps.
+     * @return the query.
+     */
+    public static BatchQuery countEqualsSteps(String from, String to, int steps) {
+        return new BatchQuery(Type.COUNT_EQUALS_STEPS, new String[] {from, to}, steps);
+    }
+
+    /**
+     * Number of trips with a maximum number of steps.
+     * @param from City to start from.
+     * @param to City to go to.
+     * @param steps maximum number of steps.
+     * @return the query.
+     */
+    public static BatchQuery countMaxSteps(String from, String to, int steps) {
+        return new BatchQuery(Type.COUNT_MAX_STEPS, new String[] {from, to}, steps);
+    }
+
+    /**
+     * Number of trips shorter than a distance.
+     * @param from City to start from.
+     * @param to City to go to.
+     * @param distance Maximum distance which can't be reached.
+     * @return the query.
+     */
+    public static BatchQuery countMaxDistance(String from, String to, int distance) {
+        return new BatchQuery(Type.COUNT_MAX_DISTANCE, new String[] {from, to}, distance);
+    }
+
+    /**
+     * Distance of the shortest trip.
+     * @param from City to start from.
+     * @param to City to go to.
+     * @return the query.
+     */
+    public static BatchQuery shortestDistance(String from, String to) {
+        return new BatchQuery(Type.SHORTEST_DISTANCE, new String[] {from, to}, 0);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * City to start from, queries are grouped by it.
+     * @return Name of the city.
+     */
+    public String getFrom() {
+        return cities[0];
+    }
+
+    /**
+     * City to go to.
+     * @return Name of the city.
+     */
+    public String getTo() {
+        return cities[cities.length - 1];
+    }
+
+    /**
+     * Cities of a {@link Type#ROUTE} query.
+     * @return a copy of the cities.
+     */
+    public String[] getCities() {
+        return cities.clone();
+    }
+
+    /**
+     * Number of steps or distance of a count.
+     * @return the limit, 0 if the query has none.
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    @Override
+    public String toString() {
+        return type + Arrays.toString(cities) + (limit == 0 ? "" : " " + limit);
+    }
+}
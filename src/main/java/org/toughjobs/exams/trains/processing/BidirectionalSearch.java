@@ -0,0 +1,217 @@
+package org.toughjobs.exams.trains.processing;
+
+import java.util.Arrays;
+
+import org.toughjobs.exams.trains.data.Trip;
+import org.toughjobs.exams.trains.graph.Graph;
+import org.toughjobs.exams.trains.graph.GraphBuilder;
+
+/**
+ * Point to point shortest path search running Dijkstra from both ends: forward from the starting city and backward
+ * from the ending city over the {@link GraphBuilder#transpose(Graph) transposed graph}, until the distances settled
+ * on both sides add up to at least the shortest trip met. Both searches settle about the cities closer than half the
+ * distance, rather than every city closer than the whole distance.
+ * As in {@link ShortestPaths}, the forward search is seeded with the routes leaving the starting city, so that the
+ * shortest round trip is found when both cities are the same.
+ * An instance can be reused for several searches, only the cities reached by a search are reset by the next one.
+ * It is not thread safe.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class BidirectionalSearch {
+
+    private final Graph graph;
+    private final Graph reverse;
+    private final BinaryHeap forwardQueue;
+    private final BinaryHeap backwardQueue;
+    /**
+     * Distance from the starting city, and city before on the trip.
+     */
+    private final int[] forward;
+    private final int[] previous;
+    /**
+     * Distance to the ending city, and city after on the trip.
+     */
+    private final int[] backward;
+    private final int[] next;
+    /**
+     * Search during which a city has been reached or settled, on each side, so that arrays are never cleared.
+     */
+    private final int[] forwardReached;
+    private final int[] forwardSettled;
+    private final int[] backwardReached;
+    private final int[] backwardSettled;
+    private int run;
+
+    private int from = Graph.NONE;
+    private int to = Graph.NONE;
+    private int distance = Trip.NO_ROUTE;
+    /**
+     * City where the forward and backward trips of the shortest trip meet.
+     */
+    private int meeting = Graph.NONE;
+    private int settledCount;
+
+    /**
+     * New search.
+     * @param graph graph to search in.
+     * @param reverse transposed graph, see {@link GraphBuilder#transpose(Graph)}.
+     */
+    public BidirectionalSearch(Graph graph, Graph reverse) {
+        this.graph = graph;
+        this.reverse = reverse;
+        int n = graph.getTownCount();
+        forwardQueue = new BinaryHeap(n);
+        backwardQueue = new BinaryHeap(n);
+        forward = new int[n];
+        previous = new int[n];
+        backward = new int[n];
+        next = new int[n];
+        forwardReached = new int[n];
+        forwardSettled = new int[n];
+        backwardReached = new int[n];
+        backwardSettled = new int[n];
+    }
+
+    /**
+     * Search the shortest trip between two cities.
+     * @param from id of the city to start from.
+     * @param to id of the city to go to.
+     * @return distance of the shortest trip or {@link Trip#NO_ROUTE} if there's none.
+     */
+    public int search(int from, int to) {
+        this.from = from;
+        this.to = to;
+        if (++run == Integer.MAX_VALUE) {
+            run = 1;
+            Arrays.fill(forwardReached, 0);
+            Arrays.fill(forwardSettled, 0);
+            Arrays.fill(backwardReached, 0);
+            Arrays.fill(backwardSettled, 0);
+        }
+        forwardQueue.clear();
+        backwardQueue.clear();
+        distance = Trip.NO_ROUTE;
+        meeting = Graph.NONE;
+        settledCount = 0;
+
+        for (int r = graph.getOffset(from); r < graph.getOffset(from + 1); r++) {
+            relaxForward(from, graph.getTarget(r), graph.getWeight(r));
+        }
+        relaxBackward(Graph.NONE, to, 0);
+
+        int forwardRadius = 0;
+        int backwardRadius = 0;
+        while (!forwardQueue.isEmpty() && !backwardQueue.isEmpty()) {
+            if (distance != Trip.NO_ROUTE && forwardRadius + backwardRadius >= distance) {
+                break; // any trip not met yet is longer.
+            }
+            if (forwardRadius <= backwardRadius) {
+                int town = forwardQueue.poll();
+                if (forwardSettled[town] == run) {
+                    continue;
+                }
+                forwardSettled[town] = run;
+                settledCount++;
+                forwardRadius = forward[town];
+                for (int r = graph.getOffset(town); r < graph.getOffset(town + 1); r++) {
+                    relaxForward(town, graph.getTarget(r), forwardRadius + graph.getWeight(r));
+                }
+            } else {
+                int town = backwardQueue.poll();
+                if (backwardSettled[town] == run) {
+                    continue;
+                }
+                backwardSettled[town] = run;
+                settledCount++;
+                backwardRadius = backward[town];
+                for (int r = reverse.getOffset(town); r < reverse.getOffset(town + 1); r++) {
+                    relaxBackward(town, reverse.getTarget(r), backwardRadius + reverse.getWeight(r));
+                }
+            }
+        }
+        return distance;
+    }
+
+    private void relaxForward(int town, int target, int d) {
+        if (forwardSettled[target] == run || (forwardReached[target] == run && d >= forward[target])) {
+            return;
+        }
+        forwardReached[target] = run;
+        forward[target] = d;
+        previous[target] = town;
+        forwardQueue.push(target, d);
+        if (backwardReached[target] == run) {
+            meet(target, d + backward[target]);
+        }
+    }
+
+    private void relaxBackward(int town, int target, int d) {
+        if (backwardSettled[target] == run || (backwardReached[target] == run && d >= backward[target])) {
+            return;
+        }
+        backwardReached[target] = run;
+        backward[target] = d;
+        next[target] = town;
+        backwardQueue.push(target, d);
+        if (forwardReached[target] == run) {
+            meet(target, forward[target] + d);
+        }
+    }
+
+    private void meet(int town, int d) {
+        if (distance == Trip.NO_ROUTE || d < distance) {
+            distance = d;
+            meeting = town;
+        }
+    }
+
+    /**
+     * Number of cities settled by last search, on both sides.
+     * @return number of cities.
+     */
+    public int getSettledCount() {
+        return settledCount;
+    }
+
+    /**
+     * Build the shortest trip found by last search.
+     * @return a complete trip with every step, or null if there's no trip.
+     */
+    public Trip getTrip() {
+        if (meeting == Graph.NONE) {
+            return null;
+        }
+        int forwardLength = 0;
+        int town = meeting;
+        do {
+            forwardLength++;
+            town = previous[town];
+        } while (town != from);
+        int length = forwardLength;
+        for (town = meeting; town != to; town = next[town]) {
+            length++;
+        }
+
+        int[] steps = new int[length];
+        town = meeting;
+        for (int i = forwardLength - 1; i >= 0; i--) {
+            steps[i] = town;
+            town = previous[town];
+        }
+        town = meeting;
+        for (int i = forwardLength; i < length; i++) {
+            town = next[town];
+            steps[i] = town;
+        }
+
+        Trip trip = new Trip(graph.getTown(from));
+        int prev = from;
+        for (int step : steps) {
+            trip.add(graph.getTown(step), graph.getWeight(graph.findRoute(prev, step)));
+            prev = step;
+        }
+        trip.setComplete();
+        return trip;
+    }
+}
@@ -0,0 +1,109 @@
+package org.toughjobs.exams.trains.processing;
+
+import java.util.Arrays;
+
+/**
+ * Binary min heap of city ids with decrease-key, stored in primitive arrays.
+ * Position of every city in the heap is indexed so that a city is never queued twice.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class BinaryHeap implements TownQueue {
+
+    /**
+     * Cities in heap order.
+     */
+    private final int[] heap;
+    /**
+     * Key of every city, indexed by id.
+     */
+    private final int[] keys;
+    /**
+     * Position of every city in {@link #heap}, -1 when not queued.
+     */
+    private final int[] positions;
+    private int size;
+
+    /**
+     * New heap for a graph.
+     * @param towns number of cities in the graph.
+     */
+    public BinaryHeap(int towns) {
+        heap = new int[towns];
+        keys = new int[towns];
+        positions = new int[towns];
+        Arrays.fill(positions, -1);
+    }
+
+    @Override
+    public void push(int town, int key) {
+        int pos = positions[town];
+        if (pos == -1) {
+            pos = size++;
+        } else if (key >= keys[town]) {
+            return;
+        }
+        keys[town] = key;
+        siftUp(pos, town);
+    }
+
+    @Override
+    public int poll() {
+        int town = heap[0];
+        positions[town] = -1;
+        size--;
+        if (size > 0) {
+            siftDown(0, heap[size]);
+        }
+        return town;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            positions[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int pos, int town) {
+        int key = keys[town];
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            int p = heap[parent];
+            if (keys[p] <= key) {
+                break;
+            }
+            heap[pos] = p;
+            positions[p] = pos;
+            pos = parent;
+        }
+        heap[pos] = town;
+        positions[town] = pos;
+    }
+
+    private void siftDown(int pos, int town) {
+        int key = keys[town];
+        int half = size >>> 1;
+        while (pos < half) {
+            int child = 2 * pos + 1;
+            int c = heap[child];
+            if (child + 1 < size && keys[heap[child + 1]] < keys[c]) {
+                c = heap[++child];
+            }
+            if (key <= keys[c]) {
+                break;
+            }
+            heap[pos] = c;
+            positions[c] = pos;
+            pos = child;
+        }
+        heap[pos] = town;
+        positions[town] = pos;
+    }
+}
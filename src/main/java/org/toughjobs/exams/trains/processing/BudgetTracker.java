@@ -0,0 +1,109 @@
+package org.toughjobs.exams.trains.processing;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Spending of a single query against its {@link QueryBudget}, shared by every task of a parallel enumeration.
+ * Iterators report the routes they follow and the trips they build in chunks of {@link QueryBudget#CHECK_INTERVAL}
+ * routes, so that the shared counters are rarely written.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+final class BudgetTracker {
+
+    /**
+     * Estimate of the bytes taken by a trip: the trip and its last step, others being shared.
+     */
+    static final long TRIP_BYTES = 72;
+    /**
+     * Estimate of the bytes taken by a trip in the result set.
+     */
+    static final long RESULT_BYTES = 40;
+
+    private final QueryBudget budget;
+    private final long start;
+    private final AtomicLong expanded = new AtomicLong();
+    private final AtomicLong trips = new AtomicLong();
+    private final AtomicLong results = new AtomicLong();
+    private volatile QueryBudget.Limit truncation;
+
+    /**
+     * Start spending, the timeout starts now.
+     * @param budget limits of the query.
+     */
+    BudgetTracker(QueryBudget budget) {
+        this.budget = budget;
+        this.start = System.nanoTime();
+    }
+
+    /**
+     * Start spending a budget.
+     * @param budget limits of the query, may be null.
+     * @return the tracker, null when the budget has no limit so that nothing is checked.
+     */
+    static BudgetTracker of(QueryBudget budget) {
+        return budget == null || budget == QueryBudget.UNLIMITED ? null : new BudgetTracker(budget);
+    }
+
+    /**
+     * Report routes followed and trips built.
+     * @param routes number of routes followed since last report.
+     * @param built number of trips built since last report.
+     * @return false if the query must stop.
+     */
+    boolean charge(long routes, long built) {
+        if (expanded.addAndGet(routes) > budget.getMaxExpanded()) {
+            stop(QueryBudget.Limit.EXPANDED);
+        } else if (memory(trips.addAndGet(built), results.get()) > budget.getMaxMemory()) {
+            stop(QueryBudget.Limit.MEMORY);
+        } else if (budget.getToken() != null && budget.getToken().isCancelled()) {
+            stop(QueryBudget.Limit.CANCELLED);
+        } else if (budget.getTimeoutNanos() != Long.MAX_VALUE && System.nanoTime() - start > budget.getTimeoutNanos()) {
+            stop(QueryBudget.Limit.DEADLINE);
+        }
+        return truncation == null;
+    }
+
+    /**
+     * Report a trip found.
+     * @return false if the trip must be dropped and the query stopped.
+     */
+    boolean addResult() {
+        long count = results.incrementAndGet();
+        if (count > budget.getMaxResults()) {
+            stop(QueryBudget.Limit.RESULTS);
+        } else if (memory(trips.get(), count) > budget.getMaxMemory()) {
+            stop(QueryBudget.Limit.MEMORY);
+        }
+        return truncation == null;
+    }
+
+    private static long memory(long trips, long results) {
+        return trips * TRIP_BYTES + results * RESULT_BYTES;
+    }
+
+    /**
+     * Stop the query, the first limit reached is kept.
+     */
+    private synchronized void stop(QueryBudget.Limit limit) {
+        if (truncation == null) {
+            truncation = limit;
+        }
+    }
+
+    /**
+     * Whether the query must stop.
+     * @return true once a limit has been reached.
+     */
+    boolean isStopped() {
+        return truncation != null;
+    }
+
+    /**
+     * Limit which stopped the query.
+     * @return the limit, null if the query hasn't been stopped.
+     */
+    QueryBudget.Limit getTruncation() {
+        return truncation;
+    }
+}
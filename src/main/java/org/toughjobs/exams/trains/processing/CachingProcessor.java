@@ -0,0 +1,475 @@
+package org.toughjobs.exams.trains.processing;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.toughjobs.exams.trains.data.Route;
+import org.toughjobs.exams.trains.data.Trip;
+import org.toughjobs.exams.trains.exceptions.NoSuchRouteException;
+import org.toughjobs.exams.trains.graph.Graph;
+import org.toughjobs.exams.trains.metrics.Metrics;
+import org.toughjobs.exams.trains.metrics.Operation;
+
+/**
+ * {@link Processor} keeping the results of the searches of another processor, least recently used ones are evicted
+ * first when there are too many entries or their weight, the number of trips they hold, is too large.
+ * Every entry is stamped with the version of the routes it has been computed with: {@link #addRoute(Route, int)},
+ * {@link #addRoutes(Map)} and {@link #removeRoute(Route)} only increment the version, older entries are then computed
+ * again when queried, or evicted. When the decorated processor is a {@link ProcessorImpl}, such as a
+ * {@link ConcurrentProcessor}, the version is incremented as well when its graph changes, so that routes written on it
+ * directly are seen; writes on any other processor must go through the decorator.
+ * Single route lookups, iterations and queries given a {@link QueryBudget} are not cached, a truncated result
+ * being only valid for its budget.
+ * Cached collections and trips are shared by every caller: collections are unmodifiable and trips must not be
+ * modified.
+ * It is thread safe if the processor it decorates is.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class CachingProcessor implements Processor {
+
+    /**
+     * Kinds of cached searches, hits and misses are counted for each.
+     */
+    public enum Query {
+        TRIPS(Operation.FIND_TRIPS),
+        EQUALS_STEPS(Operation.FIND_TRIPS_EQUALS_STEPS),
+        MAX_STEPS(Operation.FIND_TRIPS_MAX_STEPS),
+        MAX_DISTANCE(Operation.FIND_TRIPS_MAX_DISTANCE),
+        COUNT_EQUALS_STEPS(Operation.COUNT_TRIPS_EQUALS_STEPS),
+        COUNT_MAX_STEPS(Operation.COUNT_TRIPS_MAX_STEPS),
+        COUNT_MAX_DISTANCE(Operation.COUNT_TRIPS_MAX_DISTANCE),
+        SHORTEST_DISTANCE_TRIP(Operation.SHORTEST_DISTANCE_TRIP),
+        K_SHORTEST_TRIPS(Operation.K_SHORTEST_TRIPS);
+
+        private final Operation operation;
+
+        private Query(Operation operation) {
+            this.operation = operation;
+        }
+
+        /**
+         * Processor method of the query, as recorded by {@link Metrics}.
+         * @return the operation.
+         */
+        public Operation getOperation() {
+            return operation;
+        }
+    }
+
+    private final Processor processor;
+    private final int maxEntries;
+    private final long maxWeight;
+    /**
+     * Entries in access order, the least recently used first.
+     */
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+    private long weight;
+    private final long[] hits = new long[Query.values().length];
+    private final long[] misses = new long[Query.values().length];
+    private long evictions;
+    /**
+     * Incremented once a route has been added to {@link #processor}.
+     */
+    private volatile long version;
+    /**
+     * Graph of {@link #processor} when it is a {@link ProcessorImpl}, the version is incremented when it changes.
+     * Guarded by this instance.
+     */
+    private Graph graph;
+    /**
+     * Receiver of hits and misses, null to record nothing.
+     */
+    private volatile Metrics metrics;
+
+    /**
+     * New cache.
+     * @param processor processor doing the searches.
+     * @param maxEntries maximum number of results kept.
+     * @param maxWeight maximum number of trips kept, a count weights 1.
+     */
+    public CachingProcessor(Processor processor, int maxEntries, long maxWeight) {
+        if (maxEntries < 1 || maxWeight < 1) {
+            throw new IllegalArgumentException("Limits must be positive");
+        }
+        this.processor = processor;
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+    }
+
+    @Override
+    public void addRoute(Route route, int distance) {
+        processor.addRoute(route, distance);
+        // after the route is added: a search stamped with the new version can't miss it.
+        synchronized (this) {
+            version++;
+        }
+    }
+
+    @Override
+    public void removeRoute(Route route) throws NoSuchRouteException {
+        processor.removeRoute(route);
+        synchronized (this) {
+            version++;
+        }
+    }
+
+    /**
+     * Add many routes, published in a single snapshot when the decorated processor is a {@link ConcurrentProcessor},
+     * added one by one otherwise.
+     * @param distances distance of every route.
+     */
+    public void addRoutes(Map<Route, Integer> distances) {
+        if (processor instanceof ConcurrentProcessor) {
+            ((ConcurrentProcessor) processor).addRoutes(distances);
+        } else {
+            for (Map.Entry<Route, Integer> entry : distances.entrySet()) {
+                processor.addRoute(entry.getKey(), entry.getValue().intValue());
+            }
+        }
+        synchronized (this) {
+            version++;
+        }
+    }
+
+    /**
+     * Version of the routes a search starts with, read before the search so that it can only be older than the
+     * routes the search sees.
+     * @return the current version.
+     */
+    private long version() {
+        if (!(processor instanceof ProcessorImpl)) {
+            return version;
+        }
+        Graph g = ((ProcessorImpl) processor).getGraph();
+        synchronized (this) {
+            if (g != graph) {
+                graph = g;
+                version++;
+            }
+            return version;
+        }
+    }
+
+    @Override
+    public int getDistance(Route route) throws NoSuchRouteException {
+        return processor.getDistance(route);
+    }
+
+    @Override
+    public int getRoute(String... cities) throws NoSuchRouteException {
+        return processor.getRoute(cities);
+    }
+
+    @Override
+    public Set<Trip> findTripsEqualsSteps(String from, String to, int steps) {
+        Key key = new Key(Query.EQUALS_STEPS, from, to, steps);
+        long v = version();
+        @SuppressWarnings("unchecked")
+        Set<Trip> res = (Set<Trip>) get(key, v);
+        if (res == null) {
+            res = put(key, v, processor.findTripsEqualsSteps(from, to, steps));
+        }
+        return res;
+    }
+
+    @Override
+    public Set<Trip> findTripsMaxSteps(String from, String to, int steps) {
+        Key key = new Key(Query.MAX_STEPS, from, to, steps);
+        long v = version();
+        @SuppressWarnings("unchecked")
+        Set<Trip> res = (Set<Trip>) get(key, v);
+        if (res == null) {
+            res = put(key, v, processor.findTripsMaxSteps(from, to, steps));
+        }
+        return res;
+    }
+
+    @Override
+    public Set<Trip> findTrips(String from, String to) {
+        Key key = new Key(Query.TRIPS, from, to, 0);
+        long v = version();
+        @SuppressWarnings("unchecked")
+        Set<Trip> res = (Set<Trip>) get(key, v);
+        if (res == null) {
+            res = put(key, v, processor.findTrips(from, to));
+        }
+        return res;
+    }
+
+    @Override
+    public Set<Trip> findTripsMaxDistance(String from, String to, int distance) {
+        Key key = new Key(Query.MAX_DISTANCE, from, to, distance);
+        long v = version();
+        @SuppressWarnings("unchecked")
+        Set<Trip> res = (Set<Trip>) get(key, v);
+        if (res == null) {
+            res = put(key, v, processor.findTripsMaxDistance(from, to, distance));
+        }
+        return res;
+    }
+
+    @Override
+    public long countTripsEqualsSteps(String from, String to, int steps) {
+        Key key = new Key(Query.COUNT_EQUALS_STEPS, from, to, steps);
+        long v = version();
+        Long res = (Long) get(key, v);
+        if (res == null) {
+            res = Long.valueOf(processor.countTripsEqualsSteps(from, to, steps));
+            put(key, v, res, 1);
+        }
+        return res.longValue();
+    }
+
+    @Override
+    public long countTripsMaxSteps(String from, String to, int steps) {
+        Key key = new Key(Query.COUNT_MAX_STEPS, from, to, steps);
+        long v = version();
+        Long res = (Long) get(key, v);
+        if (res == null) {
+            res = Long.valueOf(processor.countTripsMaxSteps(from, to, steps));
+            put(key, v, res, 1);
+        }
+        return res.longValue();
+    }
+
+    @Override
+    public long countTripsMaxDistance(String from, String to, int distance) {
+        Key key = new Key(Query.COUNT_MAX_DISTANCE, from, to, distance);
+        long v = version();
+        Long res = (Long) get(key, v);
+        if (res == null) {
+            res = Long.valueOf(processor.countTripsMaxDistance(from, to, distance));
+            put(key, v, res, 1);
+        }
+        return res.longValue();
+    }
+
+    @Override
+    public Trip getShortestDistanceTrip(String from, String to) throws NoSuchRouteException {
+        Key key = new Key(Query.SHORTEST_DISTANCE_TRIP, from, to, 0);
+        long v = version();
+        Trip res = (Trip) get(key, v);
+        if (res == null) {
+            res = processor.getShortestDistanceTrip(from, to);
+            put(key, v, res, 1);
+        }
+        return res;
+    }
+
+    @Override
+    public List<Trip> getKShortestTrips(String from, String to, int k) {
+        Key key = new Key(Query.K_SHORTEST_TRIPS, from, to, k);
+        long v = version();
+        @SuppressWarnings("unchecked")
+        List<Trip> res = (List<Trip>) get(key, v);
+        if (res == null) {
+            List<Trip> trips = processor.getKShortestTrips(from, to, k);
+            res = Collections.unmodifiableList(trips);
+            put(key, v, res, Math.max(1, trips.size()));
+        }
+        return res;
+    }
+
+    @Override
+    public Iterator<Trip> iterateTrips(String from, String to, Constraint constraint, int limit, boolean sorted) {
+        return processor.iterateTrips(from, to, constraint, limit, sorted);
+    }
+
+    @Override
+    public TripIterator iterateTrips(String from, String to, Constraint constraint, int limit, boolean sorted,
+            QueryBudget budget) {
+        return processor.iterateTrips(from, to, constraint, limit, sorted, budget);
+    }
+
+    @Override
+    public TripResult findTrips(String from, String to, Constraint constraint, int limit, QueryBudget budget) {
+        return processor.findTrips(from, to, constraint, limit, budget);
+    }
+
+    /**
+     * Receiver of hits and misses.
+     * @return the metrics, null if nothing is recorded.
+     */
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Record every hit and miss, besides the counters of the cache.
+     * @param metrics receiver of hits and misses, null to record nothing (default).
+     */
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Number of searches answered from the cache.
+     * @param query kind of search.
+     * @return number of hits.
+     */
+    public synchronized long getHitCount(Query query) {
+        return hits[query.ordinal()];
+    }
+
+    /**
+     * Number of searches done by the decorated processor, because they weren't cached or were computed with
+     * older routes.
+     * @param query kind of search.
+     * @return number of misses.
+     */
+    public synchronized long getMissCount(Query query) {
+        return misses[query.ordinal()];
+    }
+
+    /**
+     * Number of entries evicted to respect the limits.
+     * @return number of evictions.
+     */
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    /**
+     * Number of results kept.
+     * @return number of entries.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Number of trips kept, a count weights 1.
+     * @return weight of every entry.
+     */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    /**
+     * Remove every entry.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    /**
+     * Get a result computed with the current routes.
+     * @param key search.
+     * @param v current version.
+     * @return the result or null if it must be computed.
+     */
+    private Object get(Key key, long v) {
+        Object res = lookup(key, v);
+        Metrics m = metrics;
+        if (m != null) {
+            m.recordCache(key.query.operation, res != null);
+        }
+        return res;
+    }
+
+    private synchronized Object lookup(Key key, long v) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.version == v) {
+            hits[key.query.ordinal()]++;
+            return entry.value;
+        }
+        misses[key.query.ordinal()]++;
+        return null;
+    }
+
+    private Set<Trip> put(Key key, long v, Set<Trip> trips) {
+        Set<Trip> res = Collections.unmodifiableSet(trips);
+        put(key, v, res, Math.max(1, trips.size()));
+        return res;
+    }
+
+    /**
+     * Keep a result unless a newer one is kept, then evict least recently used entries over the limits.
+     * @param key search.
+     * @param v version the result has been computed with.
+     * @param value result.
+     * @param w weight of the result.
+     */
+    private synchronized void put(Key key, long v, Object value, long w) {
+        if (w > maxWeight) { // would evict every other entry.
+            return;
+        }
+        Entry old = entries.get(key);
+        if (old != null) {
+            if (old.version > v) {
+                return;
+            }
+            weight -= old.weight;
+        }
+        entries.put(key, new Entry(v, value, w));
+        weight += w;
+
+        Iterator<Entry> it = entries.values().iterator();
+        while ((entries.size() > maxEntries || weight > maxWeight) && it.hasNext()) {
+            weight -= it.next().weight;
+            it.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Search and its arguments.
+     */
+    private static final class Key {
+
+        private final Query query;
+        private final String from;
+        private final String to;
+        private final int limit;
+
+        Key(Query query, String from, String to, int limit) {
+            this.query = query;
+            this.from = from;
+            this.to = to;
+            this.limit = limit;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return query == other.query && limit == other.limit && equals(from, other.from) && equals(to, other.to);
+        }
+
+        private static boolean equals(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = query.hashCode();
+            hash = 31 * hash + (from == null ? 0 : from.hashCode());
+            hash = 31 * hash + (to == null ? 0 : to.hashCode());
+            return 31 * hash + limit;
+        }
+    }
+
+    /**
+     * Result stamped with its version.
+     */
+    private static final class Entry {
+
+        private final long version;
+        private final Object value;
+        private final long weight;
+
+        Entry(long version, Object value, long weight) {
+            this.version = version;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package org.toughjobs.exams.trains.processing;
+
+/**
+ * Cooperative cancellation of the queries given a {@link QueryBudget} holding the token: they return the trips found
+ * so far, flagged as truncated, shortly after {@link #cancel()} is called from any thread.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class CancellationToken {
+
+    private volatile boolean cancelled;
+
+    /**
+     * Stop every query using the token, and every later one.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Whether {@link #cancel()} has been called.
+     * @return true if queries must stop.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
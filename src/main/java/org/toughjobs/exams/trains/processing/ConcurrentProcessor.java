@@ -0,0 +1,146 @@
+package org.toughjobs.exams.trains.processing;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.toughjobs.exams.trains.data.Connection;
+import org.toughjobs.exams.trains.data.Route;
+import org.toughjobs.exams.trains.data.Trip;
+import org.toughjobs.exams.trains.exceptions.NoSuchRouteException;
+import org.toughjobs.exams.trains.graph.Graph;
+import org.toughjobs.exams.trains.graph.RouteTable;
+import org.toughjobs.exams.trains.graph.Storage;
+import org.toughjobs.exams.trains.graph.Timetable;
+
+/**
+ * Thread safe processor: queries run on immutable snapshots of the graph, copied on write.
+ * Adding routes builds and publishes a new snapshot, writers are serialized but readers of the snapshots never wait:
+ * a query reads the current snapshot once and works on it until it returns, whatever is added meanwhile.
+ * Writes cost a rebuild of the graph, use {@link #addRoutes(Map)} to publish many routes at once. With
+ * {@link #setStorage(Storage) off heap storage}, every write allocates a whole new graph out of the heap, the
+ * previous one being freed once no query reads it anymore.
+ * Timed connections are published the same way in a new timetable.
+ * Precomputed searches, the {@link DistanceTable}, {@link Landmarks} and {@link ContractionHierarchy}, are built once
+ * per snapshot by the first query needing them, queries coming meanwhile waiting for that build.
+ * Shortest trips from the {@link #setHotOrigins(String...) hot origins} are updated in place by writers, once the
+ * snapshot is published, and read under their lock: a query from a hot origin waits for the update running, a batch
+ * of {@link #addRoutes(Map)} being applied as a whole.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class ConcurrentProcessor extends ProcessorImpl {
+
+    /**
+     * Every route added, guarded by this instance. Null until a route is added when created from a graph.
+     */
+    private RouteTable routes;
+    /**
+     * Current snapshot.
+     */
+    private volatile Graph graph;
+    /**
+     * Every connection added, guarded by this instance, and current timetable.
+     */
+    private final List<Connection> connections = new ArrayList<Connection>();
+    private volatile Timetable timetable = buildTimetable(connections);
+
+    public ConcurrentProcessor() {
+        routes = new RouteTable();
+        graph = routes.build(Storage.HEAP);
+    }
+
+    /**
+     * Processor querying a graph already built, routes are copied to a {@link RouteTable} on the heap when a route
+     * is added or removed.
+     * @param graph graph of all the routes.
+     */
+    public ConcurrentProcessor(Graph graph) {
+        this.graph = graph;
+    }
+
+    @Override
+    public synchronized void addRoute(Route route, int distance) {
+        checkDistance(distance);
+        if (routes == null) {
+            routes = RouteTable.of(graph);
+        }
+        routes.put(route.getFrom(), route.getTo(), distance);
+        graph = routes.build(getStorage());
+        updateHotOrigins(route.getFrom(), route.getTo(), distance);
+    }
+
+    @Override
+    public synchronized void removeRoute(Route route) throws NoSuchRouteException {
+        if (routes == null) {
+            routes = RouteTable.of(graph);
+        }
+        if (!routes.remove(route.getFrom(), route.getTo())) {
+            throw new NoSuchRouteException();
+        }
+        graph = routes.build(getStorage());
+        updateHotOrigins(route.getFrom(), route.getTo(), Trip.NO_ROUTE);
+    }
+
+    /**
+     * Add many routes and publish them in a single snapshot.
+     * @param distances distance of every route.
+     * @throws IllegalArgumentException a distance is negative, no route is added then.
+     */
+    public synchronized void addRoutes(Map<Route, Integer> distances) {
+        for (Integer distance : distances.values()) {
+            checkDistance(distance.intValue());
+        }
+        if (routes == null) {
+            routes = RouteTable.of(graph);
+        }
+        for (Map.Entry<Route, Integer> entry : distances.entrySet()) {
+            Route route = entry.getKey();
+            routes.put(route.getFrom(), route.getTo(), entry.getValue().intValue());
+        }
+        graph = routes.build(getStorage());
+        updateHotOrigins(distances);
+    }
+
+    /**
+     * Hot origins are built from the current snapshot, no write can come in between.
+     */
+    @Override
+    public synchronized void setHotOrigins(String... origins) {
+        super.setHotOrigins(origins);
+    }
+
+    @Override
+    public synchronized void addConnection(Connection connection) {
+        connections.add(connection);
+        timetable = buildTimetable(connections);
+    }
+
+    /**
+     * Add many connections and publish them in a single timetable.
+     * @param added the connections.
+     */
+    public synchronized void addConnections(Collection<Connection> added) {
+        connections.addAll(added);
+        timetable = buildTimetable(connections);
+    }
+
+    /**
+     * Current timetable, a query must read it only once.
+     * @return an immutable timetable.
+     */
+    @Override
+    public Timetable getTimetable() {
+        return timetable;
+    }
+
+    /**
+     * Current snapshot, a query must read it only once.
+     * @return an immutable graph.
+     */
+    @Override
+    public Graph getGraph() {
+        return graph;
+    }
+}
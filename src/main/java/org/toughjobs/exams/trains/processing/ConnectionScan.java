@@ -0,0 +1,276 @@
+package org.toughjobs.exams.trains.processing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.toughjobs.exams.trains.data.Connection;
+import org.toughjobs.exams.trains.data.Journey;
+import org.toughjobs.exams.trains.data.Trip;
+import org.toughjobs.exams.trains.graph.Graph;
+import org.toughjobs.exams.trains.graph.Timetable;
+
+/**
+ * Earliest arrival queries over a {@link Timetable} by the Connection Scan Algorithm: connections are scanned once,
+ * by departure time, and a connection is taken when its train is reached, either because its city has been reached in
+ * time or because an earlier connection of the same trip has been taken. There is no queue, only sequential reads of
+ * flat arrays.
+ * Profile queries scan connections backwards to get every journey worth taking over a period of the day.
+ * Transfers take no time. An instance can be reused for several queries, it is not thread safe.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class ConnectionScan {
+
+    private static final int NEVER = Integer.MAX_VALUE;
+
+    private final Timetable timetable;
+    /**
+     * Earliest arrival at every city, and connection arriving then.
+     */
+    private final int[] arrivals;
+    private final int[] incoming;
+    /**
+     * Query during which the train of every trip has been reached, by stamp.
+     */
+    private final int[] reached;
+    /**
+     * Earliest arrival at the destination when staying aboard every trip, for profile queries.
+     */
+    private final int[] tripArrivals;
+    /**
+     * Journeys worth taking from every city, by decreasing departure and arrival, for profile queries.
+     */
+    private final int[][] profileDepartures;
+    private final int[][] profileArrivals;
+    private final int[] profileSizes;
+    private final int[] stamps;
+    private int run;
+
+    private int from = Graph.NONE;
+    private int to = Graph.NONE;
+    private int departure;
+    private int scannedCount;
+
+    /**
+     * New search.
+     * @param timetable timetable to search in.
+     */
+    public ConnectionScan(Timetable timetable) {
+        this.timetable = timetable;
+        int n = timetable.getTownCount();
+        arrivals = new int[n];
+        incoming = new int[n];
+        reached = new int[timetable.getTripCount()];
+        tripArrivals = new int[timetable.getTripCount()];
+        profileDepartures = new int[n][];
+        profileArrivals = new int[n][];
+        profileSizes = new int[n];
+        stamps = new int[n];
+    }
+
+    private void nextRun() {
+        if (++run == Integer.MAX_VALUE) {
+            run = 1;
+            Arrays.fill(reached, 0);
+            Arrays.fill(stamps, 0);
+        }
+    }
+
+    /**
+     * Search the earliest arrival at a city.
+     * @param from id of the city to leave from.
+     * @param to id of the city to go to.
+     * @param departure time to leave, or later.
+     * @return arrival time or {@link Trip#NO_ROUTE} if the city can't be reached the same day.
+     */
+    public int search(int from, int to, int departure) {
+        this.from = from;
+        this.to = to;
+        this.departure = departure;
+        scannedCount = 0;
+        scan(from, to, departure, timetable.getConnectionCount());
+        return arrivals[to] == NEVER ? Trip.NO_ROUTE : arrivals[to];
+    }
+
+    /**
+     * Earliest arrival at every city reached by the connections up to an end.
+     * @param from id of the city to leave from.
+     * @param to id of the city to stop at once reached, {@link Graph#NONE} to scan every connection up to the end.
+     * @param departure time to leave.
+     * @param end index of the first connection not to scan.
+     */
+    private void scan(int from, int to, int departure, int end) {
+        nextRun();
+        Arrays.fill(arrivals, NEVER);
+        arrivals[from] = departure;
+        for (int c = timetable.firstDeparture(departure); c < end; c++) {
+            int leave = timetable.getDeparture(c);
+            if (to != Graph.NONE && leave >= arrivals[to]) {
+                break; // any later connection arrives later.
+            }
+            scannedCount++;
+            int trip = timetable.getTripId(c);
+            if (reached[trip] != run) {
+                if (arrivals[timetable.getFrom(c)] > leave) {
+                    continue;
+                }
+                reached[trip] = run;
+            }
+            int target = timetable.getTo(c);
+            int arrive = timetable.getArrival(c);
+            if (arrive < arrivals[target]) {
+                arrivals[target] = arrive;
+                incoming[target] = c;
+            }
+        }
+    }
+
+    /**
+     * Number of connections scanned by last query.
+     * @return number of connections.
+     */
+    public int getScannedCount() {
+        return scannedCount;
+    }
+
+    /**
+     * Build the journey found by last search.
+     * @return the connections from the starting city, or null if the city can't be reached or if last query was a
+     * profile.
+     */
+    public Journey getJourney() {
+        if (to == Graph.NONE || arrivals[to] == NEVER) {
+            return null;
+        }
+        List<Connection> connections = new ArrayList<Connection>();
+        for (int town = to; town != from; town = timetable.getFrom(incoming[town])) {
+            connections.add(timetable.getConnection(incoming[town]));
+        }
+        Collections.reverse(connections);
+        return new Journey(timetable.getTown(from), timetable.getTown(to), departure, connections);
+    }
+
+    /**
+     * Search every journey worth taking between two cities over a period: the ones no other journey leaving later
+     * beats, or ties, by arriving earlier.
+     * Connections are scanned backwards, every city keeping the journeys worth taking from it to the destination,
+     * so that a connection gets its earliest arrival from the journeys of the city it reaches, or from the rest of its
+     * trip. The scan starts at the arrival of the earliest journey leaving at the latest time, found by a
+     * {@link #search(int, int, int)} first, rather than at the end of the day, and skips the connections a forward
+     * scan from the starting city can't reach in time.
+     * @param from id of the city to leave from.
+     * @param to id of the city to go to.
+     * @param earliest time to leave, or later.
+     * @param latest latest time to leave.
+     * @return the journeys by increasing departure, none when both cities are the same.
+     */
+    public Profile profile(int from, int to, int earliest, int latest) {
+        if (from == to) {
+            return new Profile(new int[0], new int[0]);
+        }
+        // the journey leaving at the latest time or later beats every journey arriving later: connections leaving
+        // after it arrives are useless.
+        int bound = search(from, to, latest);
+        int last = bound == Trip.NO_ROUTE ? timetable.getConnectionCount() : timetable.firstDeparture(bound + 1);
+        // only connections reached in time from the starting city can be part of a journey.
+        scan(from, Graph.NONE, earliest, last);
+        this.to = Graph.NONE;
+        nextRun();
+        int first = timetable.firstDeparture(earliest);
+        for (int c = last - 1; c >= first; c--) {
+            if (arrivals[timetable.getFrom(c)] > timetable.getDeparture(c)) {
+                continue;
+            }
+            scannedCount++;
+            int trip = timetable.getTripId(c);
+            if (reached[trip] != run) {
+                reached[trip] = run;
+                tripArrivals[trip] = NEVER;
+            }
+            int target = timetable.getTo(c);
+            int arrive = target == to ? timetable.getArrival(c) : earliestArrival(target, timetable.getArrival(c));
+            arrive = Math.min(arrive, tripArrivals[trip]);
+            if (arrive == NEVER) {
+                continue;
+            }
+            tripArrivals[trip] = arrive;
+            int town = timetable.getFrom(c);
+            if (town != to) {
+                add(town, timetable.getDeparture(c), arrive);
+            }
+        }
+
+        // journeys from the starting city come by decreasing departure, the period ends at the latest one.
+        int size = stamps[from] == run ? profileSizes[from] : 0;
+        int end = size;
+        while (end > 0 && profileDepartures[from][end - 1] < earliest) {
+            end--;
+        }
+        int start = 0;
+        while (start < end && profileDepartures[from][start] > latest) {
+            start++;
+        }
+        int[] departures = new int[end - start];
+        int[] arrivalTimes = new int[end - start];
+        for (int i = 0; i < departures.length; i++) {
+            departures[i] = profileDepartures[from][end - 1 - i];
+            arrivalTimes[i] = profileArrivals[from][end - 1 - i];
+        }
+        return new Profile(departures, arrivalTimes);
+    }
+
+    /**
+     * Earliest arrival at the destination leaving a city at a time or later, from the journeys kept for it.
+     */
+    private int earliestArrival(int town, int time) {
+        if (stamps[town] != run) {
+            return NEVER;
+        }
+        // departures decrease: find the last one not before the time, it arrives the earliest.
+        int[] departures = profileDepartures[town];
+        int low = 0;
+        int high = profileSizes[town];
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (departures[middle] >= time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low == 0 ? NEVER : profileArrivals[town][low - 1];
+    }
+
+    /**
+     * Keep a journey leaving a city, unless a journey leaving later arrives as early.
+     */
+    private void add(int town, int leave, int arrive) {
+        if (stamps[town] != run) {
+            stamps[town] = run;
+            profileSizes[town] = 0;
+            if (profileDepartures[town] == null) {
+                profileDepartures[town] = new int[4];
+                profileArrivals[town] = new int[4];
+            }
+        }
+        int size = profileSizes[town];
+        if (size > 0) {
+            if (profileArrivals[town][size - 1] <= arrive) {
+                return;
+            }
+            if (profileDepartures[town][size - 1] == leave) {
+                profileArrivals[town][size - 1] = arrive;
+                return;
+            }
+        }
+        if (size == profileDepartures[town].length) {
+            profileDepartures[town] = Arrays.copyOf(profileDepartures[town], size * 2);
+            profileArrivals[town] = Arrays.copyOf(profileArrivals[town], size * 2);
+        }
+        profileDepartures[town][size] = leave;
+        profileArrivals[town][size] = arrive;
+        profileSizes[town] = size + 1;
+    }
+}
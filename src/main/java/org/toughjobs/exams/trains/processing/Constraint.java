@@ -0,0 +1,27 @@
+package org.toughjobs.exams.trains.processing;
+
+/**
+ * Rule a trip must follow to be returned by a search, matching the {@link Processor} find methods.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public enum Constraint {
+
+    /**
+     * Trips using a step name only once and ending as soon as the destination is reached,
+     * see {@link Processor#findTrips(String, String)}. Limit is ignored.
+     */
+    NONE,
+    /**
+     * Trips with the exact number of steps given as limit, see {@link Processor#findTripsEqualsSteps(String, String, int)}.
+     */
+    EQUALS_STEPS,
+    /**
+     * Trips of {@link #NONE} with a number of steps up to the limit, see {@link Processor#findTripsMaxSteps(String, String, int)}.
+     */
+    MAX_STEPS,
+    /**
+     * Trips with a global distance lower than the limit, see {@link Processor#findTripsMaxDistance(String, String, int)}.
+     */
+    MAX_DISTANCE
+}
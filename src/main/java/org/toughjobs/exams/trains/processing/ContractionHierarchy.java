@@ -0,0 +1,268 @@
+package org.toughjobs.exams.trains.processing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import org.toughjobs.exams.trains.graph.Graph;
+
+/**
+ * Contraction hierarchy of a {@link Graph}: cities are ranked, and every city keeps only its routes to and from
+ * cities ranked higher, plus shortcuts. A shortcut replaces two routes through a lower city, the middle city,
+ * removed while building, so that a shortest trip always goes up the ranks then down again: a search from both ends
+ * only follows routes going up, see {@link ContractionSearch}.
+ * Routes and shortcuts are stored in two flat arrays: upward routes by departure, downward routes by destination.
+ * Built by {@link ContractionHierarchyBuilder}, saved and loaded as a file so that building runs offline.
+ * Instances are immutable.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class ContractionHierarchy {
+
+    /**
+     * First bytes of a file: <code>TRCH</code>.
+     */
+    public static final int MAGIC = 0x54524348;
+    /**
+     * Version of the layout, incremented when it changes.
+     */
+    public static final int VERSION = 2;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final Graph graph;
+    private final int[] ranks;
+    /**
+     * Routes to higher cities, by departure: destination, distance and middle city, {@link Graph#NONE} for a route.
+     */
+    private final int[] upOffsets;
+    private final int[] upTargets;
+    private final int[] upWeights;
+    private final int[] upMiddles;
+    /**
+     * Routes from higher cities, by destination: departure, distance and middle city, {@link Graph#NONE} for a route.
+     */
+    private final int[] downOffsets;
+    private final int[] downSources;
+    private final int[] downWeights;
+    private final int[] downMiddles;
+
+    ContractionHierarchy(Graph graph, int[] ranks, int[] upOffsets, int[] upTargets, int[] upWeights,
+            int[] upMiddles, int[] downOffsets, int[] downSources, int[] downWeights, int[] downMiddles) {
+        this.graph = graph;
+        this.ranks = ranks;
+        this.upOffsets = upOffsets;
+        this.upTargets = upTargets;
+        this.upWeights = upWeights;
+        this.upMiddles = upMiddles;
+        this.downOffsets = downOffsets;
+        this.downSources = downSources;
+        this.downWeights = downWeights;
+        this.downMiddles = downMiddles;
+    }
+
+    /**
+     * Build the hierarchy of a graph, see {@link ContractionHierarchyBuilder}.
+     * @param graph graph to contract.
+     * @param pool pool running the witness searches.
+     * @return the hierarchy.
+     */
+    public static ContractionHierarchy build(Graph graph, ForkJoinPool pool) {
+        return new ContractionHierarchyBuilder(graph, pool).build();
+    }
+
+    /**
+     * Graph the hierarchy has been built for.
+     * @return the graph.
+     */
+    public Graph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Rank of a city, the order in which cities have been removed.
+     * @param town id of the city.
+     * @return the rank, from 0 to the number of cities.
+     */
+    public int getRank(int town) {
+        return ranks[town];
+    }
+
+    /**
+     * Number of shortcuts, both ways.
+     * @return the number of routes through a middle city.
+     */
+    public int getShortcutCount() {
+        int res = 0;
+        for (int middle : upMiddles) {
+            res += middle == Graph.NONE ? 0 : 1;
+        }
+        for (int middle : downMiddles) {
+            res += middle == Graph.NONE ? 0 : 1;
+        }
+        return res;
+    }
+
+    /* package visibility */
+    int getUpOffset(int town) {
+        return upOffsets[town];
+    }
+
+    /* package visibility */
+    int getUpTarget(int edge) {
+        return upTargets[edge];
+    }
+
+    /* package visibility */
+    int getUpWeight(int edge) {
+        return upWeights[edge];
+    }
+
+    /* package visibility */
+    int getUpMiddle(int edge) {
+        return upMiddles[edge];
+    }
+
+    /* package visibility */
+    int getDownOffset(int town) {
+        return downOffsets[town];
+    }
+
+    /* package visibility */
+    int getDownSource(int edge) {
+        return downSources[edge];
+    }
+
+    /* package visibility */
+    int getDownWeight(int edge) {
+        return downWeights[edge];
+    }
+
+    /* package visibility */
+    int getDownMiddle(int edge) {
+        return downMiddles[edge];
+    }
+
+    /**
+     * Write the hierarchy, the graph itself isn't written. Every value is a big endian int: {@link #MAGIC},
+     * {@link #VERSION}, number of cities and routes of the graph, fingerprint of the graph, see
+     * {@link #fingerprint(Graph)}, number of upward and downward routes, the ranks, the upward then downward arrays,
+     * and the CRC32 of everything before.
+     * @param file file to create or replace.
+     * @throws IOException the file can't be written.
+     */
+    public void write(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        DataOutputStream out = new DataOutputStream(
+                new CheckedOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16), crc));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(graph.getTownCount());
+            out.writeInt(graph.getRouteCount());
+            out.writeInt(fingerprint(graph));
+            out.writeInt(upTargets.length);
+            out.writeInt(downSources.length);
+            for (int[] values : new int[][] { ranks, upOffsets, upTargets, upWeights, upMiddles, downOffsets,
+                    downSources, downWeights, downMiddles }) {
+                for (int value : values) {
+                    out.writeInt(value);
+                }
+            }
+            out.writeInt((int) crc.getValue());
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Read a hierarchy written by {@link #write(File)}.
+     * @param file file to read.
+     * @param graph graph the hierarchy has been built for.
+     * @return the hierarchy.
+     * @throws IOException the file can't be read, is corrupted or has been built for another graph.
+     */
+    public static ContractionHierarchy load(File file, Graph graph) throws IOException {
+        CRC32 crc = new CRC32();
+        DataInputStream in = new DataInputStream(
+                new CheckedInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16), crc));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a contraction hierarchy: " + file);
+            }
+            int n = in.readInt();
+            if (n != graph.getTownCount() || in.readInt() != graph.getRouteCount()
+                    || in.readInt() != fingerprint(graph)) {
+                throw new IOException("Contraction hierarchy of another graph: " + file);
+            }
+            int up = in.readInt();
+            int down = in.readInt();
+            // check the sizes before allocating anything: ranks, offsets, the upward and downward arrays then the CRC.
+            long length = 4L * (7 + n + 2L * (n + 1) + 3L * up + 3L * down + 1);
+            if (up < 0 || down < 0 || length != file.length()) {
+                throw new IOException("Corrupted contraction hierarchy: " + file);
+            }
+            ContractionHierarchy res = new ContractionHierarchy(graph, read(in, n), read(in, n + 1), read(in, up),
+                    read(in, up), read(in, up), read(in, n + 1), read(in, down), read(in, down), read(in, down));
+            int expected = (int) crc.getValue();
+            if (in.readInt() != expected) {
+                throw new IOException("Corrupted contraction hierarchy: " + file);
+            }
+            return res;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Fingerprint of a graph, telling a graph from the same one with other names or distances.
+     * @param graph graph to read.
+     * @return the CRC32 of the names of the cities in UTF-8, then of the offsets, destinations and distances of the
+     * routes.
+     */
+    static int fingerprint(Graph graph) {
+        CRC32 crc = new CRC32();
+        for (int town = 0; town < graph.getTownCount(); town++) {
+            crc.update(graph.getTown(town).getBytes(UTF8));
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 13);
+        for (int town = 0; town <= graph.getTownCount(); town++) {
+            update(crc, buffer, graph.getOffset(town));
+        }
+        for (int route = 0; route < graph.getRouteCount(); route++) {
+            update(crc, buffer, graph.getTarget(route));
+            update(crc, buffer, graph.getWeight(route));
+        }
+        buffer.flip();
+        crc.update(buffer);
+        return (int) crc.getValue();
+    }
+
+    private static void update(CRC32 crc, ByteBuffer buffer, int value) {
+        if (!buffer.hasRemaining()) {
+            buffer.flip();
+            crc.update(buffer);
+            buffer.clear();
+        }
+        buffer.putInt(value);
+    }
+
+    private static int[] read(DataInputStream in, int length) throws IOException {
+        int[] res = new int[length];
+        for (int i = 0; i < length; i++) {
+            res[i] = in.readInt();
+        }
+        return res;
+    }
+}
@@ -0,0 +1,456 @@
+package org.toughjobs.exams.trains.processing;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.toughjobs.exams.trains.graph.Graph;
+
+/**
+ * Build the {@link ContractionHierarchy} of a graph by removing cities one at a time, cheapest first: removing a city
+ * adds a shortcut between two of its neighbours when the route through it is the only shortest trip between them,
+ * which a witness search, a Dijkstra bounded in distance and settled cities, tells.
+ * A city costs the shortcuts its removal adds minus the routes it removes, weighted by the routes of the graph they
+ * stand for, plus the neighbours already removed so that removals spread over the graph. Cities are removed by
+ * rounds of cities cheaper than all their neighbours, which are never neighbours of each other: the costs and the
+ * shortcuts of a round are computed in parallel on a {@link ForkJoinPool}, the round is then applied in the calling
+ * thread.
+ * Graphs without hierarchy, such as random graphs, get denser and denser as cities are removed: removals stop once
+ * the cities left have too many routes on average, they are the core of the hierarchy, ranked highest, where both
+ * sides of a {@link ContractionSearch} run a plain bidirectional Dijkstra.
+ * A builder is used once.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class ContractionHierarchyBuilder {
+
+    /**
+     * Number of cities searched by a task before it is split.
+     */
+    private static final int BATCH = 16;
+    /**
+     * Number of cities a witness search settles before giving up, adding the shortcut.
+     */
+    private static final int SETTLE_LIMIT = 500;
+    /**
+     * Default average number of routes leaving a city of the core.
+     */
+    public static final int DEFAULT_CORE_DEGREE = 16;
+
+    private final Graph graph;
+    private final ForkJoinPool pool;
+    private final int n;
+    /**
+     * Routes leaving and reaching every city still in the graph, shortcuts included. Once a city is removed they are
+     * its upward and downward routes.
+     */
+    private final Edges[] out;
+    private final Edges[] in;
+    private final boolean[] removed;
+    /**
+     * Cities removed by the current round, the witness searches of the round don't go through them.
+     */
+    private final boolean[] selected;
+    private final boolean[] dirty;
+    private final int[] priorities;
+    private final int[] removedNeighbours;
+    private final int[] ranks;
+    private int coreDegree = DEFAULT_CORE_DEGREE;
+    /**
+     * Witness search of every thread of the pool.
+     */
+    private final ThreadLocal<Witness> witnesses = new ThreadLocal<Witness>() {
+        @Override
+        protected Witness initialValue() {
+            return new Witness();
+        }
+    };
+
+    /**
+     * New builder.
+     * @param graph graph to contract.
+     * @param pool pool running the witness searches.
+     */
+    public ContractionHierarchyBuilder(Graph graph, ForkJoinPool pool) {
+        this.graph = graph;
+        this.pool = pool;
+        n = graph.getTownCount();
+        out = new Edges[n];
+        in = new Edges[n];
+        for (int town = 0; town < n; town++) {
+            out[town] = new Edges();
+            in[town] = new Edges();
+        }
+        for (int town = 0; town < n; town++) {
+            for (int r = graph.getOffset(town); r < graph.getOffset(town + 1); r++) {
+                int target = graph.getTarget(r);
+                if (target != town) { // a loop is never part of a shortest trip between two cities.
+                    out[town].put(target, graph.getWeight(r), Graph.NONE, 1);
+                    in[target].put(town, graph.getWeight(r), Graph.NONE, 1);
+                }
+            }
+        }
+        removed = new boolean[n];
+        selected = new boolean[n];
+        dirty = new boolean[n];
+        Arrays.fill(dirty, true);
+        priorities = new int[n];
+        removedNeighbours = new int[n];
+        ranks = new int[n];
+    }
+
+    /**
+     * Average number of routes leaving a city from which the cities left are kept as the core.
+     * @return the number of routes.
+     */
+    public int getCoreDegree() {
+        return coreDegree;
+    }
+
+    /**
+     * Stop removing cities when those left have more routes on average, a higher degree gives smaller cores and
+     * faster searches but takes longer to build, {@link Integer#MAX_VALUE} removes every city.
+     * @param coreDegree average number of routes leaving a city, {@link #DEFAULT_CORE_DEGREE} by default.
+     * @return this builder.
+     */
+    public ContractionHierarchyBuilder setCoreDegree(int coreDegree) {
+        this.coreDegree = coreDegree;
+        return this;
+    }
+
+    /**
+     * Remove every city but the core and gather the routes left to each.
+     * @return the hierarchy.
+     */
+    public ContractionHierarchy build() {
+        int[] remaining = new int[n];
+        for (int town = 0; town < n; town++) {
+            remaining[town] = town;
+        }
+        int remainingCount = n;
+        int rank = 0;
+        int[] round = new int[n];
+        while (remainingCount > 0) {
+            long routes = 0;
+            for (int i = 0; i < remainingCount; i++) {
+                routes += out[remaining[i]].size;
+            }
+            if (routes > (long) coreDegree * remainingCount) {
+                break;
+            }
+            int count = 0;
+            for (int i = 0; i < remainingCount; i++) {
+                if (dirty[remaining[i]]) {
+                    round[count++] = remaining[i];
+                }
+            }
+            pool.invoke(new RoundTask(round, 0, count, null));
+
+            count = 0;
+            for (int i = 0; i < remainingCount; i++) {
+                if (isLocalMinimum(remaining[i])) {
+                    round[count++] = remaining[i];
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                selected[round[i]] = true;
+            }
+            int[][] shortcuts = new int[count][];
+            pool.invoke(new RoundTask(round, 0, count, shortcuts));
+            for (int i = 0; i < count; i++) {
+                remove(round[i], shortcuts[i]);
+                ranks[round[i]] = rank++;
+            }
+
+            int left = 0;
+            for (int i = 0; i < remainingCount; i++) {
+                if (!removed[remaining[i]]) {
+                    remaining[left++] = remaining[i];
+                }
+            }
+            remainingCount = left;
+        }
+        for (int i = 0; i < remainingCount; i++) {
+            ranks[remaining[i]] = rank++;
+        }
+        return toHierarchy();
+    }
+
+    /**
+     * Whether a city is cheaper than all its neighbours, ties broken by id.
+     */
+    private boolean isLocalMinimum(int town) {
+        for (Edges edges : new Edges[] {out[town], in[town]}) {
+            for (int i = 0; i < edges.size; i++) {
+                int other = edges.towns[i];
+                if (priorities[other] < priorities[town]
+                        || (priorities[other] == priorities[town] && other < town)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Remove a city of the round: its routes are kept as is, the shortcuts replace them between its neighbours.
+     * @param town id of the city.
+     * @param shortcuts departure, destination, distance and number of routes of every shortcut through it.
+     */
+    private void remove(int town, int[] shortcuts) {
+        removed[town] = true;
+        selected[town] = false;
+        Edges edges = out[town];
+        for (int i = 0; i < edges.size; i++) {
+            int target = edges.towns[i];
+            in[target].remove(town);
+            removedNeighbours[target]++;
+            dirty[target] = true;
+        }
+        edges = in[town];
+        for (int i = 0; i < edges.size; i++) {
+            int source = edges.towns[i];
+            out[source].remove(town);
+            removedNeighbours[source]++;
+            dirty[source] = true;
+        }
+        for (int i = 0; i < shortcuts.length; i += 4) {
+            out[shortcuts[i]].put(shortcuts[i + 1], shortcuts[i + 2], town, shortcuts[i + 3]);
+            in[shortcuts[i + 1]].put(shortcuts[i], shortcuts[i + 2], town, shortcuts[i + 3]);
+        }
+    }
+
+    /**
+     * Cost of removing a city: twice the routes added minus the routes removed, plus the routes of the graph added
+     * minus removed, counting those a shortcut replaces, plus the neighbours already removed.
+     * @param town id of the city.
+     * @param shortcuts shortcuts its removal adds.
+     * @return the cost, cities are removed cheapest first.
+     */
+    private int priority(int town, int[] shortcuts) {
+        int hops = 0;
+        for (int i = 3; i < shortcuts.length; i += 4) {
+            hops += shortcuts[i];
+        }
+        for (Edges edges : new Edges[] {in[town], out[town]}) {
+            for (int i = 0; i < edges.size; i++) {
+                hops -= edges.hops[i];
+            }
+        }
+        return 2 * (shortcuts.length / 4 - in[town].size - out[town].size) + hops + removedNeighbours[town];
+    }
+
+    /**
+     * Shortcuts needed to remove a city: the routes through it between two neighbours with no witness as short.
+     * @param town id of the city.
+     * @param witness search of the calling thread.
+     * @return departure, destination, distance and number of routes of the graph of every shortcut.
+     */
+    private int[] shortcuts(int town, Witness witness) {
+        Edges sources = in[town];
+        Edges targets = out[town];
+        int[] res = new int[0];
+        int count = 0;
+        for (int i = 0; i < sources.size; i++) {
+            int source = sources.towns[i];
+            int max = -1;
+            for (int j = 0; j < targets.size; j++) {
+                if (targets.towns[j] != source) {
+                    max = Math.max(max, sources.weights[i] + targets.weights[j]);
+                }
+            }
+            if (max < 0) {
+                continue;
+            }
+            witness.search(source, town, max);
+            for (int j = 0; j < targets.size; j++) {
+                int target = targets.towns[j];
+                int distance = sources.weights[i] + targets.weights[j];
+                if (target != source && witness.getDistance(target) > distance) {
+                    if (count == res.length) {
+                        res = Arrays.copyOf(res, Math.max(16, count * 2));
+                    }
+                    res[count++] = source;
+                    res[count++] = target;
+                    res[count++] = distance;
+                    res[count++] = sources.hops[i] + targets.hops[j];
+                }
+            }
+        }
+        return Arrays.copyOf(res, count);
+    }
+
+    private ContractionHierarchy toHierarchy() {
+        int[] upOffsets = new int[n + 1];
+        int[] downOffsets = new int[n + 1];
+        for (int town = 0; town < n; town++) {
+            upOffsets[town + 1] = upOffsets[town] + out[town].size;
+            downOffsets[town + 1] = downOffsets[town] + in[town].size;
+        }
+        int[] upTargets = new int[upOffsets[n]];
+        int[] upWeights = new int[upOffsets[n]];
+        int[] upMiddles = new int[upOffsets[n]];
+        int[] downSources = new int[downOffsets[n]];
+        int[] downWeights = new int[downOffsets[n]];
+        int[] downMiddles = new int[downOffsets[n]];
+        for (int town = 0; town < n; town++) {
+            out[town].copy(upTargets, upWeights, upMiddles, upOffsets[town]);
+            in[town].copy(downSources, downWeights, downMiddles, downOffsets[town]);
+        }
+        return new ContractionHierarchy(graph, ranks, upOffsets, upTargets, upWeights, upMiddles, downOffsets,
+                downSources, downWeights, downMiddles);
+    }
+
+    /**
+     * Routes of a city to or from its neighbours, the shortest one to each, by insertion order, with the city a
+     * shortcut goes through and the number of routes of the graph it stands for.
+     */
+    private static final class Edges {
+
+        private int[] towns = new int[2];
+        private int[] weights = new int[2];
+        private int[] middles = new int[2];
+        private int[] hops = new int[2];
+        private int size;
+
+        /**
+         * Add a route, or shorten the route to the same city.
+         */
+        void put(int town, int weight, int middle, int count) {
+            for (int i = 0; i < size; i++) {
+                if (towns[i] == town) {
+                    if (weight < weights[i]) {
+                        weights[i] = weight;
+                        middles[i] = middle;
+                        hops[i] = count;
+                    }
+                    return;
+                }
+            }
+            if (size == towns.length) {
+                towns = Arrays.copyOf(towns, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+                middles = Arrays.copyOf(middles, size * 2);
+                hops = Arrays.copyOf(hops, size * 2);
+            }
+            towns[size] = town;
+            weights[size] = weight;
+            middles[size] = middle;
+            hops[size] = count;
+            size++;
+        }
+
+        void remove(int town) {
+            for (int i = 0; i < size; i++) {
+                if (towns[i] == town) {
+                    size--;
+                    towns[i] = towns[size];
+                    weights[i] = weights[size];
+                    middles[i] = middles[size];
+                    hops[i] = hops[size];
+                    return;
+                }
+            }
+        }
+
+        void copy(int[] targets, int[] distances, int[] through, int offset) {
+            System.arraycopy(towns, 0, targets, offset, size);
+            System.arraycopy(weights, 0, distances, offset, size);
+            System.arraycopy(middles, 0, through, offset, size);
+        }
+    }
+
+    /**
+     * Dijkstra over the cities left, not going through the city removed nor the other cities of its round.
+     */
+    private final class Witness {
+
+        private final BinaryHeap queue = new BinaryHeap(n);
+        private final int[] distances = new int[n];
+        private final int[] reached = new int[n];
+        private int run;
+
+        /**
+         * Settle the cities closer than a distance to a city, or the first {@link #SETTLE_LIMIT} ones.
+         */
+        void search(int from, int skipped, int max) {
+            if (++run == Integer.MAX_VALUE) {
+                run = 1;
+                Arrays.fill(reached, 0);
+            }
+            queue.clear();
+            reached[from] = run;
+            distances[from] = 0;
+            queue.push(from, 0);
+            int settled = 0;
+            while (!queue.isEmpty() && settled < SETTLE_LIMIT) {
+                int town = queue.poll();
+                int distance = distances[town];
+                if (distance > max) {
+                    break;
+                }
+                settled++;
+                Edges edges = out[town];
+                for (int i = 0; i < edges.size; i++) {
+                    int target = edges.towns[i];
+                    int d = distance + edges.weights[i];
+                    if (target == skipped || selected[target] || (reached[target] == run && d >= distances[target])) {
+                        continue;
+                    }
+                    reached[target] = run;
+                    distances[target] = d;
+                    queue.push(target, d);
+                }
+            }
+        }
+
+        /**
+         * Shortest distance met to a city, settled or not.
+         */
+        int getDistance(int town) {
+            return reached[town] == run ? distances[town] : Integer.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Compute the costs of some cities or the shortcuts of the cities of a round.
+     */
+    private class RoundTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int[] towns;
+        private final int first;
+        private final int end;
+        /**
+         * Shortcuts of the cities by position, null to compute their costs.
+         */
+        private final int[][] shortcuts;
+
+        RoundTask(int[] towns, int first, int end, int[][] shortcuts) {
+            this.towns = towns;
+            this.first = first;
+            this.end = end;
+            this.shortcuts = shortcuts;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - first > BATCH) {
+                int middle = (first + end) >>> 1;
+                invokeAll(new RoundTask(towns, first, middle, shortcuts), new RoundTask(towns, middle, end, shortcuts));
+                return;
+            }
+            Witness witness = witnesses.get();
+            for (int i = first; i < end; i++) {
+                int town = towns[i];
+                if (shortcuts != null) {
+                    shortcuts[i] = ContractionHierarchyBuilder.this.shortcuts(town, witness);
+                } else {
+                    priorities[town] = priority(town, ContractionHierarchyBuilder.this.shortcuts(town, witness));
+                    dirty[town] = false;
+                }
+            }
+        }
+    }
+}
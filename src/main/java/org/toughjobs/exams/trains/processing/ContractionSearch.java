@@ -0,0 +1,277 @@
+package org.toughjobs.exams.trains.processing;
+
+import java.util.Arrays;
+
+import org.toughjobs.exams.trains.data.Trip;
+import org.toughjobs.exams.trains.graph.Graph;
+
+/**
+ * Point to point shortest path search over a {@link ContractionHierarchy}: Dijkstra from both ends, each only going
+ * up the ranks, forward over the upward routes from the starting city and backward over the downward routes from the
+ * ending city. Each side stops once its closest city is farther than the shortest trip met, both settle a few
+ * hundred cities whatever the size of the graph.
+ * Shortcuts of the trip found are unpacked into the routes they replace, so that the trip has every step.
+ * Round trips aren't kept by the hierarchy: when both cities are the same, a {@link ShortestPaths} search is run.
+ * An instance can be reused for several searches, it is not thread safe.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class ContractionSearch {
+
+    private final ContractionHierarchy hierarchy;
+    private final Graph graph;
+    private final BinaryHeap forwardQueue;
+    private final BinaryHeap backwardQueue;
+    /**
+     * Distance from the starting city, city before and upward route taken from it.
+     */
+    private final int[] forward;
+    private final int[] previous;
+    private final int[] forwardEdges;
+    /**
+     * Distance to the ending city, city after and downward route taken to it.
+     */
+    private final int[] backward;
+    private final int[] next;
+    private final int[] backwardEdges;
+    /**
+     * Search during which a city has been reached or settled, on each side, so that arrays are never cleared.
+     */
+    private final int[] forwardReached;
+    private final int[] forwardSettled;
+    private final int[] backwardReached;
+    private final int[] backwardSettled;
+    private int run;
+    /**
+     * Search of round trips, built on first one.
+     */
+    private ShortestPaths roundTrips;
+    private Trip roundTrip;
+
+    private int from = Graph.NONE;
+    private int to = Graph.NONE;
+    private int distance = Trip.NO_ROUTE;
+    /**
+     * Highest city of the shortest trip, where both sides meet.
+     */
+    private int meeting = Graph.NONE;
+    private int settledCount;
+
+    /**
+     * New search.
+     * @param hierarchy hierarchy of the graph to search in.
+     */
+    public ContractionSearch(ContractionHierarchy hierarchy) {
+        this.hierarchy = hierarchy;
+        graph = hierarchy.getGraph();
+        int n = graph.getTownCount();
+        forwardQueue = new BinaryHeap(n);
+        backwardQueue = new BinaryHeap(n);
+        forward = new int[n];
+        previous = new int[n];
+        forwardEdges = new int[n];
+        backward = new int[n];
+        next = new int[n];
+        backwardEdges = new int[n];
+        forwardReached = new int[n];
+        forwardSettled = new int[n];
+        backwardReached = new int[n];
+        backwardSettled = new int[n];
+    }
+
+    /**
+     * Search the shortest trip between two cities.
+     * @param from id of the city to start from.
+     * @param to id of the city to go to.
+     * @return distance of the shortest trip or {@link Trip#NO_ROUTE} if there's none.
+     */
+    public int search(int from, int to) {
+        this.from = from;
+        this.to = to;
+        distance = Trip.NO_ROUTE;
+        meeting = Graph.NONE;
+        roundTrip = null;
+        if (from == to) {
+            if (roundTrips == null) {
+                roundTrips = new ShortestPaths(graph);
+            }
+            roundTrips.search(from, to);
+            settledCount = roundTrips.getSettledCount();
+            roundTrip = roundTrips.getTrip(to);
+            distance = roundTrip == null ? Trip.NO_ROUTE : roundTrip.getDistance();
+            return distance;
+        }
+        if (++run == Integer.MAX_VALUE) {
+            run = 1;
+            Arrays.fill(forwardReached, 0);
+            Arrays.fill(forwardSettled, 0);
+            Arrays.fill(backwardReached, 0);
+            Arrays.fill(backwardSettled, 0);
+        }
+        forwardQueue.clear();
+        backwardQueue.clear();
+        settledCount = 0;
+
+        relaxForward(Graph.NONE, Graph.NONE, from, 0);
+        relaxBackward(Graph.NONE, Graph.NONE, to, 0);
+        boolean forwardTurn = true;
+        while (!forwardQueue.isEmpty() || !backwardQueue.isEmpty()) {
+            if (forwardQueue.isEmpty() || (!backwardQueue.isEmpty() && !forwardTurn)) {
+                int town = backwardQueue.poll();
+                int d = backward[town];
+                if (distance != Trip.NO_ROUTE && d >= distance) {
+                    backwardQueue.clear(); // any trip going up from a farther city is longer.
+                } else {
+                    backwardSettled[town] = run;
+                    settledCount++;
+                    for (int e = hierarchy.getDownOffset(town); e < hierarchy.getDownOffset(town + 1); e++) {
+                        relaxBackward(town, e, hierarchy.getDownSource(e), d + hierarchy.getDownWeight(e));
+                    }
+                }
+            } else {
+                int town = forwardQueue.poll();
+                int d = forward[town];
+                if (distance != Trip.NO_ROUTE && d >= distance) {
+                    forwardQueue.clear();
+                } else {
+                    forwardSettled[town] = run;
+                    settledCount++;
+                    for (int e = hierarchy.getUpOffset(town); e < hierarchy.getUpOffset(town + 1); e++) {
+                        relaxForward(town, e, hierarchy.getUpTarget(e), d + hierarchy.getUpWeight(e));
+                    }
+                }
+            }
+            forwardTurn = !forwardTurn;
+        }
+        return distance;
+    }
+
+    private void relaxForward(int town, int edge, int target, int d) {
+        if (forwardSettled[target] == run || (forwardReached[target] == run && d >= forward[target])) {
+            return;
+        }
+        forwardReached[target] = run;
+        forward[target] = d;
+        previous[target] = town;
+        forwardEdges[target] = edge;
+        forwardQueue.push(target, d);
+        if (backwardReached[target] == run) {
+            meet(target, d + backward[target]);
+        }
+    }
+
+    private void relaxBackward(int town, int edge, int target, int d) {
+        if (backwardSettled[target] == run || (backwardReached[target] == run && d >= backward[target])) {
+            return;
+        }
+        backwardReached[target] = run;
+        backward[target] = d;
+        next[target] = town;
+        backwardEdges[target] = edge;
+        backwardQueue.push(target, d);
+        if (forwardReached[target] == run) {
+            meet(target, forward[target] + d);
+        }
+    }
+
+    private void meet(int town, int d) {
+        if (distance == Trip.NO_ROUTE || d < distance) {
+            distance = d;
+            meeting = town;
+        }
+    }
+
+    /**
+     * Number of cities settled by last search, on both sides.
+     * @return number of cities.
+     */
+    public int getSettledCount() {
+        return settledCount;
+    }
+
+    /**
+     * Build the shortest trip found by last search, shortcuts unpacked.
+     * @return a complete trip with every step, or null if there's no trip.
+     */
+    public Trip getTrip() {
+        if (from == to) {
+            return roundTrip;
+        }
+        if (meeting == Graph.NONE) {
+            return null;
+        }
+        // routes of the trip as departure, destination and middle city, stacked last one first.
+        int[] stack = new int[48];
+        int size = 0;
+        for (int town = meeting; town != to;) {
+            stack = push(stack, size, town, next[town], hierarchy.getDownMiddle(backwardEdges[town]));
+            size += 3;
+            town = next[town];
+        }
+        reverse(stack, size);
+        for (int town = meeting; town != from;) {
+            stack = push(stack, size, previous[town], town, hierarchy.getUpMiddle(forwardEdges[town]));
+            size += 3;
+            town = previous[town];
+        }
+
+        Trip trip = new Trip(graph.getTown(from));
+        while (size > 0) {
+            size -= 3;
+            int source = stack[size];
+            int target = stack[size + 1];
+            int middle = stack[size + 2];
+            if (middle == Graph.NONE) {
+                trip.add(graph.getTown(target), graph.getWeight(graph.findRoute(source, target)));
+            } else {
+                // the route to the middle city is downward from it, the route from it upward.
+                stack = push(stack, size, middle, target, hierarchy.getUpMiddle(findUp(middle, target)));
+                stack = push(stack, size + 3, source, middle, hierarchy.getDownMiddle(findDown(middle, source)));
+                size += 6;
+            }
+        }
+        trip.setComplete();
+        return trip;
+    }
+
+    private static int[] push(int[] stack, int size, int source, int target, int middle) {
+        if (size + 3 > stack.length) {
+            stack = Arrays.copyOf(stack, stack.length * 2);
+        }
+        stack[size] = source;
+        stack[size + 1] = target;
+        stack[size + 2] = middle;
+        return stack;
+    }
+
+    /**
+     * Reverse the order of the routes stacked.
+     */
+    private static void reverse(int[] stack, int size) {
+        for (int i = 0, j = size - 3; i < j; i += 3, j -= 3) {
+            for (int k = 0; k < 3; k++) {
+                int swap = stack[i + k];
+                stack[i + k] = stack[j + k];
+                stack[j + k] = swap;
+            }
+        }
+    }
+
+    private int findUp(int town, int target) {
+        for (int e = hierarchy.getUpOffset(town); e < hierarchy.getUpOffset(town + 1); e++) {
+            if (hierarchy.getUpTarget(e) == target) {
+                return e;
+            }
+        }
+        throw new IllegalStateException("No upward route from " + town + " to " + target);
+    }
+
+    private int findDown(int town, int source) {
+        for (int e = hierarchy.getDownOffset(town); e < hierarchy.getDownOffset(town + 1); e++) {
+            if (hierarchy.getDownSource(e) == source) {
+                return e;
+            }
+        }
+        throw new IllegalStateException("No downward route from " + source + " to " + town);
+    }
+}
@@ -0,0 +1,159 @@
+package org.toughjobs.exams.trains.processing;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.toughjobs.exams.trains.data.Trip;
+import org.toughjobs.exams.trains.graph.Graph;
+
+/**
+ * Shortest distance between every pair of cities of a {@link Graph}, precomputed by a {@link ShortestPaths} search
+ * from every city. Searches are run by {@link ForkJoinPool} tasks.
+ * Distances are stored in a flat array indexed by <code>from * n + to</code>, as well as the first step of every
+ * shortest trip, so that a trip is rebuilt in time proportional to its number of steps.
+ * The distance from a city to itself is the one of the shortest round trip.
+ * It takes two ints for every pair of cities, it is meant for graphs of a few thousand cities.
+ * Instances are immutable once built.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class DistanceTable {
+
+    /**
+     * Number of cities searched from by a single task.
+     */
+    private static final int BATCH = 16;
+
+    private final Graph graph;
+    private final int n;
+    /**
+     * Shortest distance of every pair, {@link Trip#NO_ROUTE} if there's no trip.
+     */
+    private final int[] distances;
+    /**
+     * City after the departure on the shortest trip of every pair, {@link Graph#NONE} if there's no trip.
+     */
+    private final int[] firstSteps;
+
+    /**
+     * Build the table.
+     * @param graph graph to search in.
+     * @param pool pool running the searches.
+     * @throws IllegalArgumentException the graph has too many cities.
+     */
+    public DistanceTable(Graph graph, ForkJoinPool pool) {
+        this.graph = graph;
+        this.n = graph.getTownCount();
+        if ((long) n * n > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many cities: " + n);
+        }
+        distances = new int[n * n];
+        firstSteps = new int[n * n];
+        pool.invoke(new SearchTask(0, n));
+    }
+
+    /**
+     * Graph the table has been built for.
+     * @return the graph.
+     */
+    public Graph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Shortest distance between two cities.
+     * @param from id of the city to leave from.
+     * @param to id of the city to go to.
+     * @return distance or {@link Trip#NO_ROUTE} if there's no trip.
+     */
+    public int getDistance(int from, int to) {
+        return distances[from * n + to];
+    }
+
+    /**
+     * City after the departure on the shortest trip between two cities.
+     * @param from id of the city to leave from.
+     * @param to id of the city to go to.
+     * @return id of the city or {@link Graph#NONE} if there's no trip.
+     */
+    public int getFirstStep(int from, int to) {
+        return firstSteps[from * n + to];
+    }
+
+    /**
+     * Build the shortest trip between two cities.
+     * @param from id of the city to leave from.
+     * @param to id of the city to go to.
+     * @return a complete trip with every step, or null if there's no trip.
+     */
+    public Trip getTrip(int from, int to) {
+        if (firstSteps[from * n + to] == Graph.NONE) {
+            return null;
+        }
+        Trip trip = new Trip(graph.getTown(from));
+        int town = from;
+        do {
+            int step = firstSteps[town * n + to];
+            trip.add(graph.getTown(step), graph.getWeight(graph.findRoute(town, step)));
+            town = step;
+        } while (town != to);
+        trip.setComplete();
+        return trip;
+    }
+
+    /**
+     * Store the searches from some cities.
+     */
+    private class SearchTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int first;
+        private final int end;
+
+        SearchTask(int first, int end) {
+            this.first = first;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - first > BATCH) {
+                int middle = (first + end) >>> 1;
+                invokeAll(new SearchTask(first, middle), new SearchTask(middle, end));
+                return;
+            }
+            ShortestPaths search = new ShortestPaths(graph);
+            for (int from = first; from < end; from++) {
+                search.search(from, Graph.NONE);
+                store(search, from);
+            }
+        }
+
+        private void store(ShortestPaths search, int from) {
+            int row = from * n;
+            Arrays.fill(firstSteps, row, row + n, Graph.NONE);
+            for (int to = 0; to < n; to++) {
+                distances[row + to] = search.getDistance(to);
+            }
+            for (int to = 0; to < n; to++) {
+                if (distances[row + to] == Trip.NO_ROUTE || firstSteps[row + to] != Graph.NONE) {
+                    continue;
+                }
+                // walk back to a city whose first step is known, then give it to every city walked through.
+                int town = to;
+                while (firstSteps[row + town] == Graph.NONE && search.getPrevious(town) != from) {
+                    town = search.getPrevious(town);
+                }
+                int step = firstSteps[row + town] == Graph.NONE ? town : firstSteps[row + town];
+                for (int t = to; firstSteps[row + t] == Graph.NONE; t = search.getPrevious(t)) {
+                    firstSteps[row + t] = step;
+                    if (t == town) {
+                        break;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,453 @@
+package org.toughjobs.exams.trains.processing;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.toughjobs.exams.trains.data.Trip;
+import org.toughjobs.exams.trains.graph.Graph;
+
+/**
+ * Shortest trips from a few source cities kept up to date while routes are added, reweighted or removed,
+ * in the way of Ramalingam and Reps: every source keeps its shortest path tree, and a change only revisits the cities
+ * whose distance changes.
+ * <ul>
+ * <li>A shorter route propagates its distance from its destination, as Dijkstra would, to the cities it improves.</li>
+ * <li>A longer or removed route of a tree detaches the sub tree below it: its cities are reset and settled again from
+ * their routes coming from the rest of the tree. Routes out of the tree change nothing.</li>
+ * </ul>
+ * Routes are kept in their own mutable adjacency lists, both ways, so that updates never rebuild a {@link Graph}.
+ * As in {@link ShortestPaths}, the trip from a source to itself is its shortest round trip.
+ * It is not thread safe.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class DynamicShortestPaths {
+
+    private String[] towns = new String[16];
+    private final Map<String, Integer> ids = new HashMap<String, Integer>();
+    private int townCount;
+    /**
+     * Routes leaving every city, and coming to it, with their distance.
+     */
+    private int[][] outTargets = new int[16][];
+    private int[][] outWeights = new int[16][];
+    private int[] outSizes = new int[16];
+    private int[][] inSources = new int[16][];
+    private int[][] inWeights = new int[16][];
+    private int[] inSizes = new int[16];
+
+    private final Map<String, Tree> trees = new LinkedHashMap<String, Tree>();
+    private BinaryHeap heap = new BinaryHeap(16);
+    /**
+     * Stamps of the cities detached by an update, so that the array is never cleared.
+     */
+    private int[] detached = new int[16];
+    private int run;
+    private int[] stack = new int[16];
+    private int updatedCount;
+
+    /**
+     * Empty network.
+     */
+    public DynamicShortestPaths() {
+    }
+
+    /**
+     * Network starting with the routes of a graph.
+     * @param graph graph to copy.
+     */
+    public DynamicShortestPaths(Graph graph) {
+        for (int town = 0; town < graph.getTownCount(); town++) {
+            addTown(graph.getTown(town));
+        }
+        for (int town = 0; town < graph.getTownCount(); town++) {
+            for (int r = graph.getOffset(town); r < graph.getOffset(town + 1); r++) {
+                link(town, graph.getTarget(r), graph.getWeight(r));
+            }
+        }
+    }
+
+    /**
+     * Keep the shortest trips from a city, computed once now.
+     * @param source name of the city, it may have no route yet.
+     */
+    public void addSource(String source) {
+        if (!trees.containsKey(source)) {
+            Tree tree = new Tree(addTown(source));
+            trees.put(source, tree);
+            tree.build();
+        }
+    }
+
+    /**
+     * Forget the shortest trips from a city.
+     * @param source name of the city.
+     */
+    public void removeSource(String source) {
+        trees.remove(source);
+    }
+
+    /**
+     * Cities whose shortest trips are kept.
+     * @return the names, in the order they were added.
+     */
+    public Set<String> getSources() {
+        return new LinkedHashSet<String>(trees.keySet());
+    }
+
+    /**
+     * Whether the shortest trips from a city are kept.
+     * @param source name of the city.
+     * @return true if it is a source.
+     */
+    public boolean isSource(String source) {
+        return trees.containsKey(source);
+    }
+
+    /**
+     * Add a route or change its distance, and update the shortest trips of every source.
+     * @param from City to leave from.
+     * @param to City to go to.
+     * @param distance distance between cities.
+     */
+    public void setRoute(String from, String to, int distance) {
+        int f = addTown(from);
+        int t = addTown(to);
+        int old = unlink(f, t);
+        link(f, t, distance);
+        updatedCount = 0;
+        for (Tree tree : trees.values()) {
+            if (old == Trip.NO_ROUTE || distance < old) {
+                tree.shorten(f, t, distance);
+            } else if (distance > old) {
+                tree.lengthen(f, t);
+            }
+        }
+    }
+
+    /**
+     * Remove a route, and update the shortest trips of every source.
+     * Cities are kept even when they have no route left.
+     * @param from City to leave from.
+     * @param to City to go to.
+     * @return false if there was no such route.
+     */
+    public boolean removeRoute(String from, String to) {
+        Integer f = ids.get(from);
+        Integer t = ids.get(to);
+        updatedCount = 0;
+        if (f == null || t == null || unlink(f.intValue(), t.intValue()) == Trip.NO_ROUTE) {
+            return false;
+        }
+        for (Tree tree : trees.values()) {
+            tree.lengthen(f.intValue(), t.intValue());
+        }
+        return true;
+    }
+
+    /**
+     * Number of cities revisited by last update over every source: detached from a tree or given a shorter distance.
+     * @return number of cities.
+     */
+    public int getUpdatedCount() {
+        return updatedCount;
+    }
+
+    /**
+     * Distance of the shortest trip from a source.
+     * @param from name of a source.
+     * @param to City to go to.
+     * @return the distance or {@link Trip#NO_ROUTE} if there's no trip.
+     * @throws IllegalArgumentException if <code>from</code> isn't a source.
+     */
+    public int getDistance(String from, String to) {
+        Tree tree = getTree(from);
+        Integer t = ids.get(to);
+        if (t == null) {
+            return Trip.NO_ROUTE;
+        }
+        if (t.intValue() != tree.source) {
+            return tree.distances[t.intValue()];
+        }
+        int last = tree.lastOfRoundTrip();
+        return last == Graph.NONE ? Trip.NO_ROUTE : tree.distances[last] + weight(last, tree.source);
+    }
+
+    /**
+     * Shortest trip from a source.
+     * @param from name of a source.
+     * @param to City to go to.
+     * @return a complete trip with every step, or null if there's no trip.
+     * @throws IllegalArgumentException if <code>from</code> isn't a source.
+     */
+    public Trip getTrip(String from, String to) {
+        Tree tree = getTree(from);
+        Integer id = ids.get(to);
+        if (id == null) {
+            return null;
+        }
+        int t = id.intValue();
+        int last = t;
+        if (t == tree.source) {
+            last = tree.lastOfRoundTrip();
+            if (last == Graph.NONE) {
+                return null;
+            }
+        } else if (tree.distances[t] == Trip.NO_ROUTE) {
+            return null;
+        }
+
+        int length = t == tree.source ? 1 : 0;
+        for (int town = last; town != tree.source; town = tree.parents[town]) {
+            length++;
+        }
+        int[] steps = new int[length];
+        int i = length - 1;
+        if (t == tree.source) {
+            steps[i--] = t;
+        }
+        for (int town = last; town != tree.source; town = tree.parents[town]) {
+            steps[i--] = town;
+        }
+
+        Trip trip = new Trip(from);
+        int prev = tree.source;
+        for (int step : steps) {
+            trip.add(towns[step], weight(prev, step));
+            prev = step;
+        }
+        trip.setComplete();
+        return trip;
+    }
+
+    private Tree getTree(String source) {
+        Tree tree = trees.get(source);
+        if (tree == null) {
+            throw new IllegalArgumentException(source + " is not a source");
+        }
+        return tree;
+    }
+
+    /**
+     * Intern a city, growing every array indexed by city.
+     */
+    private int addTown(String town) {
+        Integer id = ids.get(town);
+        if (id != null) {
+            return id.intValue();
+        }
+        if (townCount == towns.length) {
+            int n = townCount * 2;
+            towns = Arrays.copyOf(towns, n);
+            outTargets = Arrays.copyOf(outTargets, n);
+            outWeights = Arrays.copyOf(outWeights, n);
+            outSizes = Arrays.copyOf(outSizes, n);
+            inSources = Arrays.copyOf(inSources, n);
+            inWeights = Arrays.copyOf(inWeights, n);
+            inSizes = Arrays.copyOf(inSizes, n);
+            detached = Arrays.copyOf(detached, n);
+            heap = new BinaryHeap(n);
+            for (Tree tree : trees.values()) {
+                tree.grow(n);
+            }
+        }
+        towns[townCount] = town;
+        outTargets[townCount] = new int[2];
+        outWeights[townCount] = new int[2];
+        inSources[townCount] = new int[2];
+        inWeights[townCount] = new int[2];
+        for (Tree tree : trees.values()) {
+            tree.distances[townCount] = Trip.NO_ROUTE;
+        }
+        ids.put(town, Integer.valueOf(townCount));
+        return townCount++;
+    }
+
+    private void link(int from, int to, int distance) {
+        int size = outSizes[from]++;
+        if (size == outTargets[from].length) {
+            outTargets[from] = Arrays.copyOf(outTargets[from], size * 2);
+            outWeights[from] = Arrays.copyOf(outWeights[from], size * 2);
+        }
+        outTargets[from][size] = to;
+        outWeights[from][size] = distance;
+
+        size = inSizes[to]++;
+        if (size == inSources[to].length) {
+            inSources[to] = Arrays.copyOf(inSources[to], size * 2);
+            inWeights[to] = Arrays.copyOf(inWeights[to], size * 2);
+        }
+        inSources[to][size] = from;
+        inWeights[to][size] = distance;
+    }
+
+    /**
+     * Remove a route from both lists, the last route of a list taking its place.
+     * @return distance of the route or {@link Trip#NO_ROUTE} if there was none.
+     */
+    private int unlink(int from, int to) {
+        int i = indexOf(outTargets[from], outSizes[from], to);
+        if (i == -1) {
+            return Trip.NO_ROUTE;
+        }
+        int res = outWeights[from][i];
+        int last = --outSizes[from];
+        outTargets[from][i] = outTargets[from][last];
+        outWeights[from][i] = outWeights[from][last];
+
+        i = indexOf(inSources[to], inSizes[to], from);
+        last = --inSizes[to];
+        inSources[to][i] = inSources[to][last];
+        inWeights[to][i] = inWeights[to][last];
+        return res;
+    }
+
+    private static int indexOf(int[] values, int size, int value) {
+        for (int i = 0; i < size; i++) {
+            if (values[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int weight(int from, int to) {
+        return outWeights[from][indexOf(outTargets[from], outSizes[from], to)];
+    }
+
+    /**
+     * Shortest path tree of a source, the source being at distance 0.
+     */
+    private final class Tree {
+
+        private final int source;
+        /**
+         * Distance from the source, {@link Trip#NO_ROUTE} if unreachable, and city before on the shortest trip.
+         */
+        private int[] distances;
+        private int[] parents;
+
+        Tree(int source) {
+            this.source = source;
+            distances = new int[towns.length];
+            parents = new int[towns.length];
+        }
+
+        void grow(int n) {
+            distances = Arrays.copyOf(distances, n);
+            parents = Arrays.copyOf(parents, n);
+        }
+
+        /**
+         * Settle every city from scratch.
+         */
+        void build() {
+            Arrays.fill(distances, Trip.NO_ROUTE);
+            distances[source] = 0;
+            parents[source] = Graph.NONE;
+            heap.push(source, 0);
+            propagate();
+        }
+
+        /**
+         * A route has been added or shortened.
+         */
+        void shorten(int from, int to, int distance) {
+            if (distances[from] != Trip.NO_ROUTE) {
+                relax(from, to, distances[from] + distance);
+                propagate();
+            }
+        }
+
+        /**
+         * A route has been lengthened or removed, only its destination and the cities below matter when it is
+         * a route of the tree.
+         */
+        void lengthen(int from, int to) {
+            if (to == source || distances[to] == Trip.NO_ROUTE || parents[to] != from) {
+                return;
+            }
+            if (++run == Integer.MAX_VALUE) {
+                run = 1;
+                Arrays.fill(detached, 0);
+            }
+            // detach the sub tree, following routes of the tree from its root, detached cities are kept in order.
+            int size = 0;
+            stack[size++] = to;
+            detached[to] = run;
+            for (int head = 0; head < size; head++) {
+                int town = stack[head];
+                for (int i = 0; i < outSizes[town]; i++) {
+                    int target = outTargets[town][i];
+                    if (parents[target] == town && distances[target] != Trip.NO_ROUTE && detached[target] != run) {
+                        detached[target] = run;
+                        if (size == stack.length) {
+                            stack = Arrays.copyOf(stack, size * 2);
+                        }
+                        stack[size++] = target;
+                    }
+                }
+            }
+            for (int i = 0; i < size; i++) {
+                distances[stack[i]] = Trip.NO_ROUTE;
+            }
+            updatedCount += size;
+
+            // reattach every detached city by its best route from the rest of the tree, then settle them.
+            for (int d = 0; d < size; d++) {
+                int town = stack[d];
+                for (int i = 0; i < inSizes[town]; i++) {
+                    int prev = inSources[town][i];
+                    if (detached[prev] != run && distances[prev] != Trip.NO_ROUTE) {
+                        relax(prev, town, distances[prev] + inWeights[town][i]);
+                    }
+                }
+            }
+            propagate();
+        }
+
+        private void relax(int town, int target, int distance) {
+            if (distances[target] == Trip.NO_ROUTE || distance < distances[target]) {
+                distances[target] = distance;
+                parents[target] = town;
+                heap.push(target, distance);
+                updatedCount++;
+            }
+        }
+
+        /**
+         * Dijkstra from the queued cities, only cities getting shorter are queued again.
+         */
+        private void propagate() {
+            while (!heap.isEmpty()) {
+                int town = heap.poll();
+                int distance = distances[town];
+                for (int i = 0; i < outSizes[town]; i++) {
+                    relax(town, outTargets[town][i], distance + outWeights[town][i]);
+                }
+            }
+        }
+
+        /**
+         * Last city before the source on its shortest round trip.
+         * @return id of the city or {@link Graph#NONE} if the source can't be reached again.
+         */
+        int lastOfRoundTrip() {
+            int res = Graph.NONE;
+            int best = 0;
+            for (int i = 0; i < inSizes[source]; i++) {
+                int prev = inSources[source][i];
+                if (distances[prev] != Trip.NO_ROUTE
+                        && (res == Graph.NONE || distances[prev] + inWeights[source][i] < best)) {
+                    res = prev;
+                    best = distances[prev] + inWeights[source][i];
+                }
+            }
+            return res;
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package org.toughjobs.exams.trains.processing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.toughjobs.exams.trains.data.Trip;
+import org.toughjobs.exams.trains.graph.Graph;
+import org.toughjobs.exams.trains.graph.GraphBuilder;
+
+/**
+ * Ranked shortest loopless trips between two cities, by Yen's algorithm: every trip found is the root of candidates
+ * deviating from it at each of its steps, the shortest candidate is the next trip. A trip never goes twice through
+ * the same city, but a round trip comes back to the starting city once.
+ * The shortest path tree to the ending city is computed once over the {@link GraphBuilder#transpose(Graph)
+ * transposed graph} and reused by every deviation: its branch is taken as is when no blocked city or route lies on
+ * it, otherwise its exact distances guide an A* search which settles little more than the deviation itself.
+ * An instance can be reused for several searches, it is not thread safe.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class KShortestPaths {
+
+    private final Graph graph;
+    private final Graph reverse;
+    private final BinaryHeap queue;
+    /**
+     * Distance from every city to the ending city, and next city on the way, in the whole graph.
+     */
+    private final int[] tree;
+    private final int[] next;
+    /**
+     * Distance of the cities reached by a deviation search, and city before.
+     */
+    private final int[] distances;
+    private final int[] previous;
+    /**
+     * Stamps of the cities blocked for the deviations of a trip, so that they are blocked one at a time.
+     */
+    private final int[] blocked;
+    private int block;
+    /**
+     * Stamps of the cities reached and settled by a deviation search.
+     */
+    private final int[] reached;
+    private final int[] settled;
+    private int run;
+    private int from = Graph.NONE;
+    private int settledCount;
+
+    /**
+     * New search.
+     * @param graph graph to search in.
+     * @param reverse transposed graph.
+     */
+    public KShortestPaths(Graph graph, Graph reverse) {
+        this.graph = graph;
+        this.reverse = reverse;
+        int n = graph.getTownCount();
+        queue = new BinaryHeap(n);
+        tree = new int[n];
+        next = new int[n];
+        distances = new int[n];
+        previous = new int[n];
+        blocked = new int[n];
+        reached = new int[n];
+        settled = new int[n];
+    }
+
+    /**
+     * Find the shortest trips between two cities.
+     * @param from id of the city to start from.
+     * @param to id of the city to go to.
+     * @param k maximum number of trips.
+     * @return up to k complete trips by increasing distance, then number of steps.
+     */
+    public List<Trip> find(int from, int to, int k) {
+        List<Trip> res = new ArrayList<Trip>();
+        if (k <= 0) {
+            return res;
+        }
+        this.from = from;
+        settledCount = 0;
+        searchTree(to);
+        List<Path> found = new ArrayList<Path>();
+        PriorityQueue<Path> candidates = new PriorityQueue<Path>();
+        Set<Path> seen = new HashSet<Path>();
+
+        unblock(to);
+        Path first = deviate(new int[0], 0, 0, to, new int[0], 0);
+        if (first != null) {
+            candidates.add(first);
+            seen.add(first);
+        }
+        int[] removed = new int[16];
+        while (found.size() < k && !candidates.isEmpty()) {
+            Path path = candidates.poll();
+            found.add(path);
+            res.add(toTrip(path));
+
+            // deviate at every city but the ending one, the root growing one city at a time.
+            unblock(to);
+            List<Path> sharing = new ArrayList<Path>(found);
+            int distance = 0;
+            int prev = from;
+            for (int i = 0; i < path.towns.length; i++) {
+                if (i > 0) {
+                    int town = path.towns[i - 1];
+                    distance += graph.getWeight(graph.findRoute(prev, town));
+                    prev = town;
+                    if (i > 1) {
+                        blocked[path.towns[i - 2]] = block;
+                    }
+                    // trips found with the same root, they can't be taken again.
+                    for (Iterator<Path> it = sharing.iterator(); it.hasNext();) {
+                        Path other = it.next();
+                        if (other.towns.length <= i || other.towns[i - 1] != town) {
+                            it.remove();
+                        }
+                    }
+                }
+                if (removed.length < sharing.size()) {
+                    removed = new int[sharing.size() * 2];
+                }
+                int count = 0;
+                for (Path other : sharing) {
+                    removed[count++] = other.towns[i];
+                }
+                Path candidate = deviate(path.towns, i, distance, to, removed, count);
+                if (candidate != null && seen.add(candidate)) {
+                    candidates.add(candidate);
+                }
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Number of cities settled by last search, by the tree and every deviation.
+     * @return number of cities.
+     */
+    public int getSettledCount() {
+        return settledCount;
+    }
+
+    /**
+     * Block only the starting city, unless it is the ending city.
+     */
+    private void unblock(int to) {
+        if (++block == Integer.MAX_VALUE) {
+            block = 1;
+            Arrays.fill(blocked, 0);
+        }
+        if (from != to) {
+            blocked[from] = block;
+        }
+    }
+
+    /**
+     * Settle every city able to reach the ending city, from the ending city over the transposed graph.
+     */
+    private void searchTree(int to) {
+        Arrays.fill(tree, Trip.NO_ROUTE);
+        tree[to] = 0;
+        next[to] = Graph.NONE;
+        queue.clear();
+        queue.push(to, 0);
+        while (!queue.isEmpty()) {
+            int town = queue.poll();
+            settledCount++;
+            int distance = tree[town];
+            for (int r = reverse.getOffset(town); r < reverse.getOffset(town + 1); r++) {
+                int target = reverse.getTarget(r);
+                int d = distance + reverse.getWeight(r);
+                if (tree[target] == Trip.NO_ROUTE || d < tree[target]) {
+                    tree[target] = d;
+                    next[target] = town;
+                    queue.push(target, d);
+                }
+            }
+        }
+    }
+
+    /**
+     * Shortest trip starting with a root, not going through the cities blocked for it and not leaving its last city
+     * by a route taken by a trip found with the same root.
+     * @param towns cities of a trip after the starting one.
+     * @param length number of cities of the root, 0 to deviate from the starting city.
+     * @param rootDistance distance of the root.
+     * @param to id of the ending city.
+     * @param removed destinations of the routes which can't be taken from the last city of the root.
+     * @param count number of removed routes.
+     * @return the trip or null if there's none.
+     */
+    private Path deviate(int[] towns, int length, int rootDistance, int to, int[] removed, int count) {
+        if (++run == Integer.MAX_VALUE) {
+            run = 1;
+            Arrays.fill(reached, 0);
+            Arrays.fill(settled, 0);
+        }
+        int spur = length == 0 ? from : towns[length - 1];
+
+        // the branch of the tree, when it is free.
+        if (spur != to && tree[spur] != Trip.NO_ROUTE && !contains(removed, count, next[spur])) {
+            int steps = 0;
+            int town = spur;
+            do {
+                town = next[town];
+                steps++;
+            } while (town != to && blocked[town] != block);
+            if (town == to) {
+                int[] res = Arrays.copyOf(towns, length + steps);
+                for (int i = length, t = spur; i < res.length; i++) {
+                    t = next[t];
+                    res[i] = t;
+                }
+                return new Path(res, rootDistance + tree[spur]);
+            }
+        }
+
+        // A* guided by the tree, seeded with the routes leaving the deviation city.
+        queue.clear();
+        if (spur != to) {
+            settled[spur] = run; // not to come back to it.
+        }
+        for (int r = graph.getOffset(spur); r < graph.getOffset(spur + 1); r++) {
+            int target = graph.getTarget(r);
+            if (!contains(removed, count, target)) {
+                relax(spur, target, graph.getWeight(r));
+            }
+        }
+        while (!queue.isEmpty()) {
+            int town = queue.poll();
+            settled[town] = run;
+            settledCount++;
+            if (town == to) {
+                int steps = 0;
+                int t = to;
+                do {
+                    steps++;
+                    t = previous[t];
+                } while (t != spur);
+                int[] res = Arrays.copyOf(towns, length + steps);
+                t = to;
+                for (int i = res.length - 1; i >= length; i--) {
+                    res[i] = t;
+                    t = previous[t];
+                }
+                return new Path(res, rootDistance + distances[to]);
+            }
+            int distance = distances[town];
+            for (int r = graph.getOffset(town); r < graph.getOffset(town + 1); r++) {
+                relax(town, graph.getTarget(r), distance + graph.getWeight(r));
+            }
+        }
+        return null;
+    }
+
+    private void relax(int town, int target, int distance) {
+        if (blocked[target] == block || settled[target] == run || tree[target] == Trip.NO_ROUTE
+                || (reached[target] == run && distance >= distances[target])) {
+            return;
+        }
+        reached[target] = run;
+        distances[target] = distance;
+        previous[target] = town;
+        queue.push(target, distance + tree[target]);
+    }
+
+    private static boolean contains(int[] values, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Trip toTrip(Path path) {
+        int prev = from;
+        Trip trip = new Trip(graph.getTown(prev));
+        for (int town : path.towns) {
+            trip.add(graph.getTown(town), graph.getWeight(graph.findRoute(prev, town)));
+            prev = town;
+        }
+        trip.setComplete();
+        return trip;
+    }
+
+    /**
+     * Cities of a trip after the starting one, and its distance.
+     */
+    private static final class Path implements Comparable<Path> {
+
+        private final int[] towns;
+        private final int distance;
+
+        Path(int[] towns, int distance) {
+            this.towns = towns;
+            this.distance = distance;
+        }
+
+        @Override
+        public int compareTo(Path o) {
+            if (distance != o.distance) {
+                return distance < o.distance ? -1 : 1;
+            }
+            if (towns.length != o.towns.length) {
+                return towns.length < o.towns.length ? -1 : 1;
+            }
+            for (int i = 0; i < towns.length; i++) {
+                if (towns[i] != o.towns[i]) {
+                    return towns[i] < o.towns[i] ? -1 : 1;
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Path && Arrays.equals(towns, ((Path) obj).towns);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(towns);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package org.toughjobs.exams.trains.processing;
+
+import java.util.Arrays;
+
+import org.toughjobs.exams.trains.data.Trip;
+import org.toughjobs.exams.trains.graph.Graph;
+import org.toughjobs.exams.trains.graph.GraphBuilder;
+
+/**
+ * Distances from and to a few landmark cities, giving lower bounds of the distance between any two cities by the
+ * triangle inequality: d(v, t) &gt;= d(v, L) - d(t, L) and d(v, t) &gt;= d(L, t) - d(L, v).
+ * They also prove a city can't reach another one, when only one of them is connected to a landmark.
+ * Landmarks are picked one at a time as the city farthest from the ones already picked, so that they lie on the
+ * edges of the network where bounds are tight.
+ * Instances are immutable, they are used by {@link AltSearch}.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class Landmarks {
+
+    private final Graph graph;
+    private final Graph reverse;
+    private final int[] landmarks;
+    /**
+     * Distance from every landmark to every city, by city then landmark, {@link Trip#NO_ROUTE} if unreachable.
+     */
+    private final int[] from;
+    /**
+     * Distance from every city to every landmark, by city then landmark, {@link Trip#NO_ROUTE} if unreachable.
+     */
+    private final int[] to;
+
+    /**
+     * Pick landmarks and compute their distances.
+     * @param graph graph to search in.
+     * @param reverse transposed graph, see {@link GraphBuilder#transpose(Graph)}.
+     * @param count number of landmarks, capped to the number of cities.
+     */
+    public Landmarks(Graph graph, Graph reverse, int count) {
+        this.graph = graph;
+        this.reverse = reverse;
+        int n = graph.getTownCount();
+        count = Math.min(count, n);
+        landmarks = new int[count];
+        from = new int[n * count];
+        to = new int[n * count];
+        if (count == 0) {
+            return;
+        }
+
+        BinaryHeap heap = new BinaryHeap(n);
+        int[] forward = new int[n];
+        int[] backward = new int[n];
+        /* sum of the distances from and to the closest landmark, -1 when no landmark is connected */
+        int[] closest = new int[n];
+        distances(graph, 0, forward, heap);
+        int landmark = farthest(forward);
+        Arrays.fill(closest, -1);
+        for (int l = 0; l < count; l++) {
+            landmarks[l] = landmark;
+            distances(graph, landmark, forward, heap);
+            distances(reverse, landmark, backward, heap);
+            for (int v = 0; v < n; v++) {
+                from[v * count + l] = forward[v];
+                to[v * count + l] = backward[v];
+                int sum = forward[v] == Trip.NO_ROUTE || backward[v] == Trip.NO_ROUTE
+                        ? Math.max(forward[v], backward[v]) : forward[v] + backward[v];
+                if (sum != Trip.NO_ROUTE && (closest[v] == -1 || sum < closest[v])) {
+                    closest[v] = sum;
+                }
+            }
+            landmark = farthest(closest);
+        }
+    }
+
+    /**
+     * Distances from a city to every city, the city itself being at distance 0.
+     * @param g graph to search in.
+     * @param source city to start from.
+     * @param distances distance of every city, {@link Trip#NO_ROUTE} if unreachable.
+     * @param heap empty heap.
+     */
+    private static void distances(Graph g, int source, int[] distances, BinaryHeap heap) {
+        Arrays.fill(distances, Trip.NO_ROUTE);
+        distances[source] = 0;
+        heap.push(source, 0);
+        while (!heap.isEmpty()) {
+            int town = heap.poll();
+            int distance = distances[town];
+            for (int r = g.getOffset(town); r < g.getOffset(town + 1); r++) {
+                int target = g.getTarget(r);
+                int d = distance + g.getWeight(r);
+                if (distances[target] == Trip.NO_ROUTE || d < distances[target]) {
+                    distances[target] = d;
+                    heap.push(target, d);
+                }
+            }
+        }
+    }
+
+    private static int farthest(int[] distances) {
+        int res = 0;
+        for (int v = 1; v < distances.length; v++) {
+            if (distances[v] > distances[res]) {
+                res = v;
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Lower bound of the distance between two cities.
+     * @param v id of the city to start from.
+     * @param t id of the city to go to.
+     * @return a distance never above the shortest one, or {@link Trip#NO_ROUTE} if <code>t</code> can't be reached.
+     */
+    public int lowerBound(int v, int t) {
+        int count = landmarks.length;
+        int bound = 0;
+        for (int l = 0, iv = v * count, it = t * count; l < count; l++, iv++, it++) {
+            if (to[it] != Trip.NO_ROUTE) {
+                if (to[iv] == Trip.NO_ROUTE) {
+                    return Trip.NO_ROUTE; // t reaches the landmark, v doesn't.
+                }
+                bound = Math.max(bound, to[iv] - to[it]);
+            }
+            if (from[iv] != Trip.NO_ROUTE) {
+                if (from[it] == Trip.NO_ROUTE) {
+                    return Trip.NO_ROUTE; // the landmark reaches v, not t.
+                }
+                bound = Math.max(bound, from[it] - from[iv]);
+            }
+        }
+        return bound;
+    }
+
+    /**
+     * Ids of the landmarks.
+     * @return a copy of the ids, in order of selection.
+     */
+    public int[] getLandmarks() {
+        return landmarks.clone();
+    }
+
+    /**
+     * Graph the distances were computed for.
+     * @return the graph.
+     */
+    public Graph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Transposed graph the distances to landmarks were computed with.
+     * @return the transposed graph.
+     */
+    public Graph getReverse() {
+        return reverse;
+    }
+}
@@ -0,0 +1,202 @@
+package org.toughjobs.exams.trains.processing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.toughjobs.exams.trains.data.Trip;
+import org.toughjobs.exams.trains.graph.Graph;
+
+/**
+ * Enumeration of the trips following a {@link Constraint} by {@link ForkJoinPool} tasks.
+ * The search tree is split by the routes of its first cities: every task explores the sub tree of some routes with
+ * its own {@link TripIterator} and returns its own {@link TripSet}, sets are only merged when tasks are joined,
+ * so that threads share nothing but the graph.
+ * Trips are the ones of a sequential enumeration, in another order.
+ * Tasks given a {@link QueryBudget} share its spending, they stop together as soon as a limit is reached.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class ParallelTripFinder {
+
+    /**
+     * Depth of the search tree up to which sub trees are split, deeper ones are explored by a single task.
+     */
+    public static final int SPLIT_DEPTH = 3;
+
+    private final ForkJoinPool pool;
+    /**
+     * Routes followed and trips built by the tasks of last search.
+     */
+    private final AtomicLong expandedCount = new AtomicLong();
+    private final AtomicLong tripCount = new AtomicLong();
+    private volatile QueryBudget.Limit truncation;
+
+    /**
+     * New finder.
+     * @param pool pool running the tasks.
+     */
+    public ParallelTripFinder(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Find every trip following a constraint.
+     * @param graph graph to search in.
+     * @param from id of the city to start from.
+     * @param to id of the city to go to.
+     * @param constraint rule trips must follow.
+     * @param limit limit of the constraint: number of steps or distance.
+     * @return every trip, in no particular order.
+     */
+    public List<Trip> find(Graph graph, int from, int to, Constraint constraint, int limit) {
+        return find(graph, from, to, constraint, limit, null);
+    }
+
+    /**
+     * Find the trips following a constraint within a budget.
+     * @param graph graph to search in.
+     * @param from id of the city to start from.
+     * @param to id of the city to go to.
+     * @param constraint rule trips must follow.
+     * @param limit limit of the constraint: number of steps or distance.
+     * @param budget limits of the search, null for none.
+     * @return every trip found, in no particular order, see {@link #getTruncation()}.
+     */
+    public List<Trip> find(Graph graph, int from, int to, Constraint constraint, int limit, QueryBudget budget) {
+        return new ArrayList<Trip>(collect(graph, from, to, constraint, limit, budget));
+    }
+
+    /**
+     * Find the trips following a constraint within a budget, without building them.
+     * @param graph graph to search in.
+     * @param from id of the city to start from.
+     * @param to id of the city to go to.
+     * @param constraint rule trips must follow.
+     * @param limit limit of the constraint: number of steps or distance.
+     * @param budget limits of the search, null for none.
+     * @return every trip found, see {@link #getTruncation()}.
+     */
+    public TripSet collect(Graph graph, int from, int to, Constraint constraint, int limit, QueryBudget budget) {
+        expandedCount.set(0);
+        tripCount.set(0);
+        truncation = null;
+        if (TripIterator.isEmpty(from, to, constraint, limit)) {
+            return new TripSet(graph);
+        }
+        BudgetTracker tracker = BudgetTracker.of(budget);
+        TripSet res = pool.invoke(new TripTask(this, tracker, graph, to, constraint, limit, new int[] { from },
+                new int[] { 0 }, graph.getOffset(from), graph.getOffset(from + 1)));
+        truncation = tracker == null ? null : tracker.getTruncation();
+        return res;
+    }
+
+    /**
+     * Limit which stopped last search.
+     * @return the limit, null if every trip has been found.
+     */
+    public QueryBudget.Limit getTruncation() {
+        return truncation;
+    }
+
+    /**
+     * Number of routes followed by last search.
+     * @return number of routes.
+     */
+    public long getExpandedCount() {
+        return expandedCount.get();
+    }
+
+    /**
+     * Number of trips built by last search.
+     * @return number of trips.
+     */
+    public long getTripCount() {
+        return tripCount.get();
+    }
+
+    /**
+     * Task exploring the sub tree of some routes of the last city of a prefix.
+     */
+    private static class TripTask extends RecursiveTask<TripSet> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ParallelTripFinder finder;
+        private final BudgetTracker tracker;
+        private final Graph graph;
+        private final int to;
+        private final Constraint constraint;
+        private final int limit;
+        private final int[] path;
+        private final int[] pathDistances;
+        private final int first;
+        private final int end;
+
+        TripTask(ParallelTripFinder finder, BudgetTracker tracker, Graph graph, int to, Constraint constraint,
+                int limit, int[] path, int[] pathDistances, int first, int end) {
+            this.finder = finder;
+            this.tracker = tracker;
+            this.graph = graph;
+            this.to = to;
+            this.constraint = constraint;
+            this.limit = limit;
+            this.path = path;
+            this.pathDistances = pathDistances;
+            this.first = first;
+            this.end = end;
+        }
+
+        @Override
+        protected TripSet compute() {
+            TripSet res = new TripSet(graph);
+            if (tracker != null && tracker.isStopped()) {
+                return res;
+            }
+            boolean split = path.length <= SPLIT_DEPTH;
+            if (split && end - first > 1) { // one task for each half of the routes.
+                int middle = (first + end) >>> 1;
+                TripTask right = task(path, pathDistances, middle, end);
+                right.fork();
+                res.addAll(task(path, pathDistances, first, middle).compute());
+                res.addAll(right.join());
+                return res;
+            }
+
+            TripIterator it = new TripIterator(graph, to, constraint, limit, path, pathDistances, first, end);
+            it.setTracker(tracker);
+            if (split && end - first == 1) { // single route, split the routes of its destination.
+                boolean found = it.follow();
+                boolean charged = tracker == null || it.charge();
+                if (found && charged && (tracker == null || tracker.addResult())) {
+                    it.addFound(res);
+                }
+                count(it);
+                if (tracker != null && tracker.isStopped()) {
+                    return res;
+                }
+                int[] next = it.getPath();
+                if (next.length > path.length) {
+                    int town = next[next.length - 1];
+                    res.addAll(task(next, it.getPathDistances(), graph.getOffset(town), graph.getOffset(town + 1))
+                            .compute());
+                }
+                return res;
+            }
+            it.collect(res);
+            count(it);
+            return res;
+        }
+
+        private void count(TripIterator it) {
+            finder.expandedCount.addAndGet(it.getExpandedCount());
+            finder.tripCount.addAndGet(it.getTripCount());
+        }
+
+        private TripTask task(int[] path, int[] pathDistances, int first, int end) {
+            return new TripTask(finder, tracker, graph, to, constraint, limit, path, pathDistances, first, end);
+        }
+    }
+}
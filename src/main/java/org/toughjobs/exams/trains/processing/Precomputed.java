@@ -0,0 +1,129 @@
+package org.toughjobs.exams.trains.processing;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.toughjobs.exams.trains.graph.Graph;
+
+/**
+ * Value computed from a graph snapshot, such as a {@link ContractionHierarchy}, built once per snapshot: the first
+ * query needing it builds it in its thread, queries coming meanwhile wait for that build rather than starting theirs.
+ * A build failing is forgotten, the next query builds again.
+ * It is thread safe.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+final class Precomputed<T> {
+
+    /**
+     * Build of a value, run once, for a graph.
+     */
+    private static final class Build<T> extends FutureTask<T> {
+
+        private final Graph graph;
+
+        Build(Graph graph, Callable<T> builder) {
+            super(builder);
+            this.graph = graph;
+        }
+    }
+
+    /**
+     * Build of the latest snapshot, null before the first one.
+     */
+    private final AtomicReference<Build<T>> latest = new AtomicReference<Build<T>>();
+
+    /**
+     * Get the value of a graph if it has been built.
+     * @param graph graph of the query.
+     * @return the value, null if it is stale, not built yet or still building.
+     */
+    T peek(Graph graph) {
+        Build<T> build = latest.get();
+        if (build == null || build.graph != graph || !build.isDone()) {
+            return null;
+        }
+        return join(build);
+    }
+
+    /**
+     * Get the value of a graph, building it or waiting for the build running.
+     * @param graph graph of the query.
+     * @param current false if the graph isn't the current snapshot anymore: its value is then built for the query
+     * alone, unless it is the one kept, so that queries late on an old snapshot don't replace the value of the new one.
+     * @param builder builder of the value.
+     * @return the value.
+     */
+    T get(Graph graph, boolean current, Callable<T> builder) {
+        Build<T> build = latest.get();
+        while (build == null || build.graph != graph) {
+            Build<T> created = new Build<T>(graph, builder);
+            if (!current && build != null) {
+                created.run();
+                return join(created);
+            }
+            if (latest.compareAndSet(build, created)) {
+                created.run();
+                build = created;
+            } else {
+                build = latest.get();
+            }
+        }
+        return join(build);
+    }
+
+    /**
+     * Keep a value built beforehand.
+     * @param graph graph of the value.
+     * @param value value.
+     */
+    void set(Graph graph, final T value) {
+        Build<T> build = new Build<T>(graph, new Callable<T>() {
+            @Override
+            public T call() {
+                return value;
+            }
+        });
+        build.run();
+        latest.set(build);
+    }
+
+    /**
+     * Forget the value, for instance when the settings it is built with change.
+     */
+    void clear() {
+        latest.set(null);
+    }
+
+    /**
+     * Wait for a build, without being interrupted: the thread keeps its interrupted status.
+     */
+    private T join(Build<T> build) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return build.get();
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                } catch (ExecutionException ex) {
+                    latest.compareAndSet(build, null);
+                    Throwable cause = ex.getCause();
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    throw new IllegalStateException(cause);
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
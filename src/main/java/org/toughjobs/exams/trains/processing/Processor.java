@@ -1,6 +1,8 @@
 package org.toughjobs.exams.trains.processing;
 
 
+import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 
 import org.toughjobs.exams.trains.data.Route;
@@ -18,9 +20,17 @@ public interface Processor {
      * Add a route between two cities.
      * @param route Bean which represents starting and ending point.
      * @param distance distance between cities.
+     * @throws IllegalArgumentException the distance is negative.
      */
     public void addRoute(Route route, int distance);
 
+    /**
+     * Remove a route between two cities.
+     * @param route Bean which represents starting and ending point.
+     * @throws NoSuchRouteException Route doesn't exist.
+     */
+    public void removeRoute(Route route) throws NoSuchRouteException;
+
     /**
      * Retrieve a distance between two cities with a single step.
      * @param route Bean which represents starting and ending point.
@@ -57,6 +67,31 @@ public interface Processor {
      */
     public Set<Trip> findTripsMaxSteps(String from, String to, int steps);
 
+    /**
+     * Count every possible trip between a starting and a ending city
+     * with the exact number of steps, without building them.
+     * The count is the size of {@link #findTripsEqualsSteps(String, String, int)}.
+     * @param from City to start from.
+     * @param to City to go to.
+     * @param steps Number of steps required.
+     * @return Number of trips.
+     * @throws ArithmeticException if the number of trips doesn't fit in a long.
+     */
+    public long countTripsEqualsSteps(String from, String to, int steps);
+
+    /**
+     * Count every possible trip between a starting and a ending city,
+     * using a maximum number of steps, without building them.
+     * Unlike {@link #findTripsMaxSteps(String, String, int)}, a trip may go through a city more than once,
+     * including the ending city: this is the sum of {@link #countTripsEqualsSteps(String, String, int)} from 1 to steps.
+     * @param from City to start from.
+     * @param to City to go to.
+     * @param steps Number of maximum steps.
+     * @return Number of trips.
+     * @throws ArithmeticException if the number of trips doesn't fit in a long.
+     */
+    public long countTripsMaxSteps(String from, String to, int steps);
+
     /**
      * Retrieve every possible trip between a starting and a ending city,
      * using a step name only once.
@@ -66,6 +101,45 @@ public interface Processor {
      */
     public Set<Trip> findTrips(String from, String to);
 
+    /**
+     * Retrieve lazily the trips between a starting and a ending city following a constraint.
+     * Trips are the ones of the matching find method but they are worked out one at a time,
+     * so that only the trip being explored is kept in memory.
+     * @param from City to start from.
+     * @param to City to go to.
+     * @param constraint Rule trips must follow.
+     * @param limit Number of steps or distance for the constraint, ignored by {@link Constraint#NONE}.
+     * @param sorted true to get the trips in alphabetical order, false to get them as soon as possible.
+     * @return An iterator over every trip.
+     */
+    public Iterator<Trip> iterateTrips(String from, String to, Constraint constraint, int limit, boolean sorted);
+
+    /**
+     * Retrieve lazily the trips between a starting and a ending city following a constraint, within a budget.
+     * The iteration ends early when a limit is reached, {@link TripIterator#getTruncation()} then tells which one.
+     * @param from City to start from.
+     * @param to City to go to.
+     * @param constraint Rule trips must follow.
+     * @param limit Number of steps or distance for the constraint, ignored by {@link Constraint#NONE}.
+     * @param sorted true to get the trips in alphabetical order, false to get them as soon as possible.
+     * @param budget Limits of the enumeration, the timeout starts with the iteration.
+     * @return An iterator over the trips found within the budget.
+     */
+    public TripIterator iterateTrips(String from, String to, Constraint constraint, int limit, boolean sorted,
+            QueryBudget budget);
+
+    /**
+     * Retrieve the trips between a starting and a ending city following a constraint, within a budget.
+     * Trips are the ones of the matching find method, or some of them when a limit is reached.
+     * @param from City to start from.
+     * @param to City to go to.
+     * @param constraint Rule trips must follow.
+     * @param limit Number of steps or distance for the constraint, ignored by {@link Constraint#NONE}.
+     * @param budget Limits of the enumeration.
+     * @return The trips found in alphabetical order, and the limit reached if any.
+     */
+    public TripResult findTrips(String from, String to, Constraint constraint, int limit, QueryBudget budget);
+
     /**
      * Get the trip between two city with the shortest distance.
      * @param from City to start from
@@ -75,6 +149,17 @@ public interface Processor {
      */
     public Trip getShortestDistanceTrip(String from, String to) throws NoSuchRouteException;
 
+    /**
+     * Get the shortest trips between two cities, as alternatives to the shortest one.
+     * Trips are loopless: unlike {@link #findTrips(String, String)}, they don't go through the starting city again,
+     * unless it is the ending city.
+     * @param from City to start from.
+     * @param to City to go to.
+     * @param k Maximum number of trips.
+     * @return Up to k trips by increasing distance, empty if there's none.
+     */
+    public List<Trip> getKShortestTrips(String from, String to, int k);
+
     /**
      * Retrieve all the trips possible with the global distance lower than the given parameter.
      * @param from City to start from.
@@ -84,4 +169,17 @@ public interface Processor {
      */
     public Set<Trip> findTripsMaxDistance(String from, String to, int distance);
 
+    /**
+     * Count all the trips possible with the global distance lower than the given parameter, without building them.
+     * Every route must be at least 1 long, the count is then the size of
+     * {@link #findTripsMaxDistance(String, String, int)}.
+     * @param from City to start from.
+     * @param to City to go to.
+     * @param distance Maximum distance which can't be reached. (result to be inferior.)
+     * @return Number of trips.
+     * @throws ArithmeticException if the number of trips doesn't fit in a long.
+     * @throws IllegalArgumentException if a route has a distance lower than 1.
+     */
+    public long countTripsMaxDistance(String from, String to, int distance);
+
 }
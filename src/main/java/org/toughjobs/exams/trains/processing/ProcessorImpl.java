@@ -3,63 +3,569 @@ package org.toughjobs.exams.trains.processing;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Comparator;
-import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Logger;
 
+import org.toughjobs.exams.trains.data.Connection;
+import org.toughjobs.exams.trains.data.Journey;
 import org.toughjobs.exams.trains.data.Route;
 import org.toughjobs.exams.trains.data.Trip;
 import org.toughjobs.exams.trains.exceptions.NoSuchRouteException;
+import org.toughjobs.exams.trains.graph.Graph;
+import org.toughjobs.exams.trains.graph.GraphBuilder;
+import org.toughjobs.exams.trains.graph.RouteTable;
+import org.toughjobs.exams.trains.graph.Storage;
+import org.toughjobs.exams.trains.graph.Timetable;
+import org.toughjobs.exams.trains.graph.TimetableBuilder;
+import org.toughjobs.exams.trains.metrics.Metrics;
+import org.toughjobs.exams.trains.metrics.Operation;
 
 /**
+ * Processor working on a graph rebuilt lazily after routes are added.
+ * It isn't thread safe, see {@link ConcurrentProcessor} to share it between threads.
  *
- * @see Process
+ * @see Processor
  * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
  */
 public class ProcessorImpl implements Processor {
 
     private static final Logger logger = Logger.getLogger(ProcessorImpl.class.getName());
     /**
-     * Store a map for route / distance as there is only one distance possible
-     * between two cities with no stop.
+     * Distance of every route, as there is only one distance possible between two cities with no stop.
+     * Insertion order is kept so that cities get the same id every time the graph is rebuilt.
+     * Null until a route is added when created from a graph.
      */
-    private Map<Route, Integer> routes;
+    private RouteTable routes;
+    /**
+     * Indexed view of {@link #routes} used by every search, null when a route has been added since it was built.
+     */
+    private Graph graph;
+    /**
+     * Whether shortest path searches use a {@link RadixHeap} rather than a {@link BinaryHeap}.
+     */
+    private boolean radixHeap;
+    /**
+     * Pool enumerating trips in parallel, null to enumerate them in the calling thread.
+     */
+    private ForkJoinPool forkJoinPool;
+    /**
+     * Number of routes from which trips are enumerated in parallel.
+     */
+    private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+    /**
+     * Whether shortest trips are read from a {@link DistanceTable}.
+     */
+    private boolean precomputed;
+    /**
+     * Table of the shortest trips, stale when built for another graph than the current one.
+     */
+    private final Precomputed<DistanceTable> distanceTable = new Precomputed<DistanceTable>();
+    /**
+     * Where graphs are built.
+     */
+    private Storage storage = Storage.HEAP;
+    /**
+     * Algorithm of the shortest trip searches.
+     */
+    private Search search = Search.DIJKSTRA;
+    /**
+     * Number of landmarks of {@link Search#ALT} searches.
+     */
+    private int landmarkCount = DEFAULT_LANDMARK_COUNT;
+    /**
+     * Transposed graph of {@link Search#BIDIRECTIONAL} searches, stale when built for another graph.
+     */
+    private volatile Graph[] transposed;
+    /**
+     * Landmarks of {@link Search#ALT} searches, stale when built for another graph.
+     */
+    private final Precomputed<Landmarks> landmarks = new Precomputed<Landmarks>();
+    /**
+     * Hierarchy of {@link Search#CONTRACTION_HIERARCHY} searches, stale when built for another graph.
+     */
+    private final Precomputed<ContractionHierarchy> hierarchy = new Precomputed<ContractionHierarchy>();
+    /**
+     * Receiver of the measures of every query, null to measure nothing.
+     */
+    private Metrics metrics;
+    /**
+     * Limits of the find methods and iterations not given a budget, null for none.
+     */
+    private QueryBudget defaultBudget;
+    /**
+     * Shortest trips from the hot origins, updated with every route change, null when there's no hot origin.
+     * Guarded by itself.
+     */
+    private volatile DynamicShortestPaths hotOrigins;
+    /**
+     * Every timed connection added, and their timetable, null when a connection has been added since it was built.
+     */
+    private List<Connection> connections = new ArrayList<Connection>();
+    private Timetable timetable;
+
+    /**
+     * Default number of routes from which trips are enumerated in parallel.
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 1000;
+    /**
+     * Default number of landmarks of {@link Search#ALT} searches.
+     */
+    public static final int DEFAULT_LANDMARK_COUNT = 8;
 
     public ProcessorImpl() {
-        routes = new HashMap<Route, Integer>();
+        routes = new RouteTable();
+    }
+
+    /**
+     * Processor querying a graph already built, for instance by {@link org.toughjobs.exams.trains.graph.GraphLoader}.
+     * Routes are only copied when a route is added or removed: the first change copies every route to a
+     * {@link RouteTable} on the heap, whatever the storage of the graph.
+     * @param graph graph of all the routes.
+     */
+    public ProcessorImpl(Graph graph) {
+        this.graph = graph;
     }
 
     @Override
     public void addRoute(Route route, int distance) {
-        routes.put(route, new Integer(distance));
+        checkDistance(distance);
+        if (routes == null) {
+            routes = RouteTable.of(graph);
+        }
+        routes.put(route.getFrom(), route.getTo(), distance);
+        routesChanged();
+        updateHotOrigins(route.getFrom(), route.getTo(), distance);
     }
 
     @Override
-    public int getDistance(Route route) throws NoSuchRouteException {
-        Integer dist = routes.get(route);
-        if (dist == null) {
+    public void removeRoute(Route route) throws NoSuchRouteException {
+        if (routes == null) {
+            routes = RouteTable.of(graph);
+        }
+        if (!routes.remove(route.getFrom(), route.getTo())) {
             throw new NoSuchRouteException();
         }
+        routesChanged();
+        updateHotOrigins(route.getFrom(), route.getTo(), Trip.NO_ROUTE);
+    }
 
-        return dist.shortValue();
+    /**
+     * Reject a negative distance: searches need distances of 0 or more, and {@link Trip#NO_ROUTE} stands for a
+     * removed route when hot origins are updated.
+     * @param distance distance of a route added.
+     * @throws IllegalArgumentException the distance is negative.
+     */
+    /* package visibility */
+    static void checkDistance(int distance) {
+        if (distance < 0) {
+            throw new IllegalArgumentException("Negative distance: " + distance);
+        }
+    }
+
+    /**
+     * Drop the graph and everything computed from it.
+     */
+    private void routesChanged() {
+        graph = null;
+        distanceTable.clear();
+        transposed = null;
+        landmarks.clear();
+        hierarchy.clear();
+    }
+
+    /**
+     * Cities whose shortest trips are kept up to date.
+     * @return the names of the cities, empty if there's none.
+     */
+    public Set<String> getHotOrigins() {
+        DynamicShortestPaths paths = hotOrigins;
+        if (paths == null) {
+            return new LinkedHashSet<String>();
+        }
+        synchronized (paths) {
+            return paths.getSources();
+        }
+    }
+
+    /**
+     * Keep the shortest trips from a few cities with {@link DynamicShortestPaths}, so that
+     * {@link #getShortestDistanceTrip(String, String)} from them is a lookup which never waits for the graph to be
+     * rebuilt: every route added or removed only updates the distances it changes.
+     * They are computed once now, replacing the previous hot origins.
+     * @param origins names of the cities, none to stop keeping shortest trips (default).
+     */
+    public void setHotOrigins(String... origins) {
+        if (origins == null || origins.length == 0) {
+            hotOrigins = null;
+            return;
+        }
+        DynamicShortestPaths paths = new DynamicShortestPaths(getGraph());
+        for (String origin : origins) {
+            paths.addSource(origin);
+        }
+        hotOrigins = paths;
+    }
+
+    /**
+     * Apply a route change to the shortest trips of the hot origins.
+     * Subclasses managing their own routes must call it on every change.
+     * @param from City to leave from.
+     * @param to City to go to.
+     * @param distance new distance of the route, {@link Trip#NO_ROUTE} when it is removed.
+     */
+    protected void updateHotOrigins(String from, String to, int distance) {
+        DynamicShortestPaths paths = hotOrigins;
+        if (paths == null) {
+            return;
+        }
+        synchronized (paths) {
+            if (distance == Trip.NO_ROUTE) {
+                paths.removeRoute(from, to);
+            } else {
+                paths.setRoute(from, to, distance);
+            }
+        }
+    }
+
+    /**
+     * Apply many route changes to the shortest trips of the hot origins at once: readers see none or all of them.
+     * @param distances new distance of every route, {@link Trip#NO_ROUTE} when it is removed.
+     */
+    protected void updateHotOrigins(Map<Route, Integer> distances) {
+        DynamicShortestPaths paths = hotOrigins;
+        if (paths == null) {
+            return;
+        }
+        synchronized (paths) {
+            for (Map.Entry<Route, Integer> entry : distances.entrySet()) {
+                Route route = entry.getKey();
+                int distance = entry.getValue().intValue();
+                if (distance == Trip.NO_ROUTE) {
+                    paths.removeRoute(route.getFrom(), route.getTo());
+                } else {
+                    paths.setRoute(route.getFrom(), route.getTo(), distance);
+                }
+            }
+        }
+    }
+
+    /**
+     * Whether shortest path searches use a {@link RadixHeap} rather than a {@link BinaryHeap}.
+     * @return true if a radix heap is used.
+     */
+    public boolean isRadixHeap() {
+        return radixHeap;
+    }
+
+    /**
+     * Use a {@link RadixHeap} for shortest path searches, it is faster when distances are small integers.
+     * @param radixHeap true to use a radix heap, false for a binary heap (default).
+     */
+    public void setRadixHeap(boolean radixHeap) {
+        this.radixHeap = radixHeap;
+    }
+
+    /**
+     * Pool enumerating trips in parallel.
+     * @return the pool, null if trips are enumerated in the calling thread.
+     */
+    public ForkJoinPool getForkJoinPool() {
+        return forkJoinPool;
+    }
+
+    /**
+     * Enumerate trips of the find methods in parallel, with {@link ParallelTripFinder}.
+     * @param forkJoinPool pool running the enumerations, for instance {@link ForkJoinPool#commonPool()},
+     * null to enumerate trips in the calling thread (default).
+     */
+    public void setForkJoinPool(ForkJoinPool forkJoinPool) {
+        this.forkJoinPool = forkJoinPool;
+    }
+
+    /**
+     * Number of routes from which trips are enumerated in parallel.
+     * @return the threshold.
+     */
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * Enumerate trips in the calling thread when the graph is small, even with a pool.
+     * @param parallelThreshold number of routes from which trips are enumerated in parallel,
+     * default is {@link #DEFAULT_PARALLEL_THRESHOLD}.
+     */
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * Whether shortest trips are read from a {@link DistanceTable}.
+     * @return true if shortest trips are precomputed.
+     */
+    public boolean isPrecomputed() {
+        return precomputed;
+    }
+
+    /**
+     * Precompute the shortest trips between every pair of cities, so that {@link #getShortestDistanceTrip(String, String)}
+     * only rebuilds a trip. The table is built on first query after routes are added, by the pool of
+     * {@link #setForkJoinPool(ForkJoinPool)} or the common pool.
+     * @param precomputed true to use a {@link DistanceTable}, false to search every time (default).
+     */
+    public void setPrecomputed(boolean precomputed) {
+        this.precomputed = precomputed;
+        if (!precomputed) {
+            distanceTable.clear();
+        }
+    }
+
+    /**
+     * Get the table of the shortest trips of a graph, building it if it is stale, once for concurrent queries.
+     * @param g graph of the query.
+     * @return the table.
+     */
+    private DistanceTable getDistanceTable(final Graph g) {
+        DistanceTable res = distanceTable.peek(g);
+        if (res == null) {
+            res = distanceTable.get(g, g == getGraph(), new Callable<DistanceTable>() {
+                @Override
+                public DistanceTable call() {
+                    return new DistanceTable(g, forkJoinPool == null ? ForkJoinPool.commonPool() : forkJoinPool);
+                }
+            });
+        }
+        return res;
+    }
+
+    /**
+     * Where graphs are built.
+     * @return the storage of the graphs built after routes are added.
+     */
+    public Storage getStorage() {
+        return storage;
+    }
+
+    /**
+     * Build graphs out of the heap, so that the graph queries run on doesn't take heap.
+     * It applies to graphs built once routes are added, give a graph built out of the heap to
+     * {@link #ProcessorImpl(Graph)} to start with one. Routes added or removed are still kept on the heap in a
+     * {@link RouteTable}, 36 to 60 bytes per route, from which every change rebuilds the graph: a graph loaded
+     * out of the heap stays out of it only as long as no route is added or removed.
+     * @param storage where graphs are built, {@link Storage#HEAP} by default.
+     */
+    public void setStorage(Storage storage) {
+        this.storage = storage;
+    }
+
+    /**
+     * Algorithm of the shortest trip searches.
+     * @return the algorithm.
+     */
+    public Search getSearch() {
+        return search;
+    }
+
+    /**
+     * Choose the algorithm of {@link #getShortestDistanceTrip(String, String)}, point to point searches settle fewer
+     * cities on large graphs but keep a transposed copy of the graph, built on first query after routes are added.
+     * It is ignored when shortest trips are {@link #setPrecomputed(boolean) precomputed}.
+     * @param search the algorithm, {@link Search#DIJKSTRA} by default.
+     */
+    public void setSearch(Search search) {
+        this.search = search;
+    }
+
+    /**
+     * Number of landmarks of {@link Search#ALT} searches.
+     * @return the number of landmarks.
+     */
+    public int getLandmarkCount() {
+        return landmarkCount;
+    }
+
+    /**
+     * More landmarks give tighter bounds but cost a search each when built and memory for two distances per city.
+     * @param landmarkCount number of landmarks, {@link #DEFAULT_LANDMARK_COUNT} by default.
+     */
+    public void setLandmarkCount(int landmarkCount) {
+        this.landmarkCount = landmarkCount;
+        landmarks.clear();
+    }
+
+    /**
+     * Get the transposed graph of a graph, building it if it is stale.
+     * @param g graph of the query.
+     * @return the transposed graph.
+     */
+    private Graph getReverse(Graph g) {
+        Graph[] pair = transposed;
+        if (pair == null || pair[0] != g) {
+            pair = new Graph[] {g, GraphBuilder.transpose(g)};
+            transposed = pair;
+        }
+        return pair[1];
+    }
+
+    /**
+     * Get the landmarks of a graph, building them if they are stale, once for concurrent queries.
+     * @param g graph of the query.
+     * @return the landmarks.
+     */
+    private Landmarks getLandmarks(final Graph g) {
+        Landmarks res = landmarks.peek(g);
+        if (res == null) {
+            res = landmarks.get(g, g == getGraph(), new Callable<Landmarks>() {
+                @Override
+                public Landmarks call() {
+                    return new Landmarks(g, getReverse(g), landmarkCount);
+                }
+            });
+        }
+        return res;
+    }
+
+    /**
+     * Get the contraction hierarchy of the current graph, building it on the pool set by
+     * {@link #setForkJoinPool(ForkJoinPool)} or the common pool if it is stale. Building takes much longer than a
+     * search: the hierarchy can be written once with {@link ContractionHierarchy#write(java.io.File)} and loaded
+     * afterwards.
+     * @return the hierarchy.
+     */
+    public ContractionHierarchy getContractionHierarchy() {
+        return getContractionHierarchy(getGraph());
+    }
+
+    /**
+     * Get the contraction hierarchy of a graph, building it if it is stale: concurrent queries wait for the build
+     * started by the first one rather than building their own.
+     * @param g graph of the query.
+     * @return the hierarchy.
+     */
+    private ContractionHierarchy getContractionHierarchy(final Graph g) {
+        ContractionHierarchy res = hierarchy.peek(g);
+        if (res == null) {
+            res = hierarchy.get(g, g == getGraph(), new Callable<ContractionHierarchy>() {
+                @Override
+                public ContractionHierarchy call() {
+                    return ContractionHierarchy.build(g,
+                            forkJoinPool == null ? ForkJoinPool.commonPool() : forkJoinPool);
+                }
+            });
+        }
+        return res;
+    }
+
+    /**
+     * Use a hierarchy loaded with {@link ContractionHierarchy#load(java.io.File, Graph)} for
+     * {@link Search#CONTRACTION_HIERARCHY} searches, until routes change.
+     * @param hierarchy hierarchy built for the current graph, see {@link #getGraph()}.
+     */
+    public void setContractionHierarchy(ContractionHierarchy hierarchy) {
+        if (hierarchy.getGraph() != getGraph()) {
+            throw new IllegalArgumentException("Contraction hierarchy of another graph");
+        }
+        this.hierarchy.set(hierarchy.getGraph(), hierarchy);
+    }
+
+    /**
+     * Receiver of the measures of every query.
+     * @return the metrics, null if queries aren't measured.
+     */
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Measure every query: latency, cities or routes explored, trips built and results.
+     * Without metrics, a query only tests the field for null.
+     * @param metrics receiver of the measures, null to measure nothing (default).
+     */
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Limits of the find methods and iterations not given a budget.
+     * @return the budget, null if they are unlimited.
+     */
+    public QueryBudget getDefaultBudget() {
+        return defaultBudget;
+    }
+
+    /**
+     * Protect the find methods and iterations not given a budget from explosive enumerations: trips found within the
+     * budget are returned and a warning is logged when a limit is reached.
+     * @param defaultBudget limits of every enumeration, null for none (default).
+     */
+    public void setDefaultBudget(QueryBudget defaultBudget) {
+        this.defaultBudget = defaultBudget;
+    }
+
+    /**
+     * Get the indexed graph, rebuilding it if routes have been added since last call.
+     * Every query must call it only once so that it works on a single graph.
+     * @return the graph of all the routes.
+     */
+    public Graph getGraph() {
+        if (graph == null) {
+            graph = routes.build(storage);
+        }
+        return graph;
+    }
+
+    @Override
+    public int getDistance(Route route) throws NoSuchRouteException {
+        Metrics m = metrics;
+        long start = m == null ? 0 : System.nanoTime();
+        int distance = getDistance(getGraph(), route.getFrom(), route.getTo());
+        if (m != null) {
+            m.recordQuery(Operation.GET_DISTANCE, System.nanoTime() - start, 1, 0, 1);
+        }
+        return distance;
     }
 
     @Override
     public int getRoute(String... cities) throws NoSuchRouteException {
+        Metrics m = metrics;
+        long start = m == null ? 0 : System.nanoTime();
+        Graph g = getGraph();
         int distance = 0;
 
         for (int i = 1; i < cities.length; i++) {
-            distance += getDistance(new Route(cities[i - 1], cities[i]));
+            distance += getDistance(g, cities[i - 1], cities[i]);
         }
 
+        if (m != null) {
+            m.recordQuery(Operation.GET_ROUTE, System.nanoTime() - start, Math.max(cities.length - 1, 0), 0, 1);
+        }
         return distance;
     }
 
+    /**
+     * Retrieve a distance between two cities with a single step.
+     * @param g graph to look into.
+     * @param from City to leave from.
+     * @param to City to go to.
+     * @return distance.
+     * @throws NoSuchRouteException Route doesn't exist.
+     */
+    private int getDistance(Graph g, String from, String to) throws NoSuchRouteException {
+        int f = g.indexOf(from);
+        int t = g.indexOf(to);
+        int route = f == Graph.NONE || t == Graph.NONE ? Graph.NONE : g.findRoute(f, t);
+        if (route == Graph.NONE) {
+            throw new NoSuchRouteException();
+        }
+        return g.getWeight(route);
+    }
+
     /**
      * Find any route starting with point from and which are not already in the given collection
      * @param c Given collection.
@@ -69,11 +575,16 @@ public class ProcessorImpl implements Processor {
 
     /* package visibility */
     List<Route> getRoutes(Collection<String> c, String from) {
+        Graph g = getGraph();
         List<Route> res = new ArrayList<Route>();
-        for (Route route : routes.keySet()) {
-            if (route.getFrom().equals(from)
-                    && !c.contains(route.getTo()) /* avoid duplicate */) {
-                res.add(route);
+        int town = g.indexOf(from);
+        if (town == Graph.NONE) {
+            return res;
+        }
+        for (int r = g.getOffset(town); r < g.getOffset(town + 1); r++) {
+            String to = g.getTown(g.getTarget(r));
+            if (!c.contains(to) /* avoid duplicate */) {
+                res.add(new Route(from, to));
             }
         }
         return res;
@@ -92,155 +603,342 @@ public class ProcessorImpl implements Processor {
 
     @Override
     public Set<Trip> findTrips(String from, String to) {
+        return find(from, to, Constraint.NONE, 0, defaultBudget).getTrips();
+    }
 
-        // list of all the trips to be worked out.
-        List<Trip> trips = new ArrayList<Trip>();
-        trips.add(new Trip(from));
-
-        // iterate
-        for (int k = 0; k < trips.size(); k++) {
-            Trip trip = trips.get(k);
-            if (trip.hasRoute() && !trip.isComplete()) {
-                List<Route> routeOptions = getRoutes(trip.getSteps(), trip.peakLast());
-                if (routeOptions.size() > 0) { // condition for a valid route: need to have at least one option.
-                    for (int j = 0; j < routeOptions.size(); j++) {
-                        Route route = routeOptions.get(j);
-                        // another option would be to update current trip with first route option
-                        // but I've chosen to let the list growing with a duplicated trip to keep it simple.
-                        Trip newtrip = trip.cloneAndAdd(route.getTo(), routes.get(route));
-                        if (newtrip.peakLast().equals(to)) {
-                            newtrip.setComplete();
-                        }
-                        trips.add(newtrip); // duplicating route's root and adding change.
-                    }
-                } else { // no route option
-                    trip.setDistance(Trip.NO_ROUTE);
-                    trips.set(k, trip);
-                }
-            }
-        }
+    @Override
+    public Set<Trip> findTripsEqualsSteps(String from, String to, int steps) {
+        return find(from, to, Constraint.EQUALS_STEPS, steps, defaultBudget).getTrips();
+    }
 
-        Set<Trip> result = new TreeSet<Trip>();
-        for (Trip trip : trips) { // cleaning
-            if (trip.isComplete() /* We keep only trips flagged as completed */) {
-                result.add(trip);
-            }
+    @Override
+    public Set<Trip> findTripsMaxSteps(String from, String to, int steps) {
+        return find(from, to, Constraint.MAX_STEPS, steps, defaultBudget).getTrips();
+    }
+
+    @Override
+    public long countTripsEqualsSteps(String from, String to, int steps) {
+        Metrics m = metrics;
+        long start = m == null ? 0 : System.nanoTime();
+        Graph g = getGraph();
+        int f = g.indexOf(from);
+        int t = g.indexOf(to);
+        long count = f == Graph.NONE || t == Graph.NONE ? 0 : new TripCounter(g).countEqualsSteps(f, t, steps);
+        if (m != null) {
+            m.recordQuery(Operation.COUNT_TRIPS_EQUALS_STEPS, System.nanoTime() - start, 0, 0, 1);
         }
+        return count;
+    }
 
-        trips = null; // likely to free memory faster.
-        return result;
+    @Override
+    public long countTripsMaxSteps(String from, String to, int steps) {
+        Metrics m = metrics;
+        long start = m == null ? 0 : System.nanoTime();
+        Graph g = getGraph();
+        int f = g.indexOf(from);
+        int t = g.indexOf(to);
+        long count = f == Graph.NONE || t == Graph.NONE ? 0 : new TripCounter(g).countMaxSteps(f, t, steps);
+        if (m != null) {
+            m.recordQuery(Operation.COUNT_TRIPS_MAX_STEPS, System.nanoTime() - start, 0, 0, 1);
+        }
+        return count;
     }
 
     @Override
-    public Set<Trip> findTripsEqualsSteps(String from, String to, int steps) {
-        // list of all the trips to be worked out.
-        List<Trip> trips = new ArrayList<Trip>();
-        trips.add(new Trip(from));
-
-        // iterate
-        for (int k = 0; k < trips.size(); k++) {
-            Trip trip = trips.get(k);
-            if (trip.hasRoute() && !trip.isComplete()) {
-                List<Route> routeOptions = getRoutes(trip.peakLast());
-                if (routeOptions.size() > 0 && trip.getSteps().size() <= steps) { // condition for a valid route: need to have at least one option and steps number must number be inferior to param.
-                    for (int j = 0; j < routeOptions.size(); j++) {
-                        Route route = routeOptions.get(j);
-                        // another option would be to update current trip with first option
-                        // but I've choosen to let the list growing with a duplicated trip to keep it simple.
-                        Trip newtrip = trip.cloneAndAdd(route.getTo(), routes.get(route));
-                        if (newtrip.peakLast().equals(to) && steps == newtrip.getSteps().size()) {
-                            newtrip.setComplete();
-                        }
-                        trips.add(newtrip); // duplicating route's root and adding change.
-                    }
-                } else { // no route option
-                    trip.setDistance(Trip.NO_ROUTE);
-                    trips.set(k, trip);
+    public Trip getShortestDistanceTrip(String from, String to) throws NoSuchRouteException {
+        Metrics m = metrics;
+        long start = m == null ? 0 : System.nanoTime();
+        DynamicShortestPaths dynamic = hotOrigins;
+        if (dynamic != null) {
+            Trip trip = null;
+            boolean hot;
+            synchronized (dynamic) {
+                hot = dynamic.isSource(from);
+                if (hot) {
+                    trip = dynamic.getTrip(from, to);
                 }
             }
+            if (hot) {
+                return shortest(trip, 0, m, start);
+            }
         }
 
+        Graph g = getGraph();
+        int f = g.indexOf(from);
+        int t = g.indexOf(to);
+        if (f == Graph.NONE || t == Graph.NONE) {
+            throw new NoSuchRouteException();
+        }
 
-        Set<Trip> result = new TreeSet<Trip>();
-        for (Trip trip : trips) { // cleaning
-            if (trip.isComplete() /* We keep only trips flagged as completed */) {
-                result.add(trip);
-            }
+        Trip trip;
+        int settled = 0;
+        if (precomputed) {
+            trip = getDistanceTable(g).getTrip(f, t);
+        } else if (search == Search.BIDIRECTIONAL) {
+            BidirectionalSearch bidirectional = new BidirectionalSearch(g, getReverse(g));
+            bidirectional.search(f, t);
+            trip = bidirectional.getTrip();
+            settled = bidirectional.getSettledCount();
+        } else if (search == Search.ALT) {
+            AltSearch alt = new AltSearch(g, getLandmarks(g));
+            alt.search(f, t);
+            trip = alt.getTrip();
+            settled = alt.getSettledCount();
+        } else if (search == Search.CONTRACTION_HIERARCHY) {
+            ContractionSearch contraction = new ContractionSearch(getContractionHierarchy(g));
+            contraction.search(f, t);
+            trip = contraction.getTrip();
+            settled = contraction.getSettledCount();
+        } else {
+            ShortestPaths paths = new ShortestPaths(g, radixHeap ? new RadixHeap() : new BinaryHeap(g.getTownCount()));
+            paths.search(f, t);
+            trip = paths.getTrip(t);
+            settled = paths.getSettledCount();
         }
+        return shortest(trip, settled, m, start);
+    }
 
-        trips = null; // likely to free memory faster.
-        return result;
+    /**
+     * Measure a shortest trip query.
+     * @param trip trip found, null if there's none.
+     * @param settled number of cities settled.
+     * @param m receiver of the measure, may be null.
+     * @param start start of the query.
+     * @return the trip.
+     * @throws NoSuchRouteException if there's no trip.
+     */
+    private static Trip shortest(Trip trip, int settled, Metrics m, long start) throws NoSuchRouteException {
+        if (m != null) {
+            int results = trip == null ? 0 : 1;
+            m.recordQuery(Operation.SHORTEST_DISTANCE_TRIP, System.nanoTime() - start, settled, results, results);
+        }
+        if (trip == null) {
+            throw new NoSuchRouteException();
+        }
+        return trip;
     }
 
     @Override
-    public Set<Trip> findTripsMaxSteps(String from, String to, int steps) {
-        Set<Trip> result = new TreeSet<Trip>();
-        for (Trip trip : findTrips(from, to)) {
-            if (trip.getSteps().size() <= steps) {
-                result.add(trip);
-            }
+    public List<Trip> getKShortestTrips(String from, String to, int k) {
+        Metrics m = metrics;
+        long start = m == null ? 0 : System.nanoTime();
+        Graph g = getGraph();
+        int f = g.indexOf(from);
+        int t = g.indexOf(to);
+        if (f == Graph.NONE || t == Graph.NONE) {
+            return new ArrayList<Trip>();
         }
-        return result;
+        KShortestPaths paths = new KShortestPaths(g, getReverse(g));
+        List<Trip> trips = paths.find(f, t, k);
+        if (m != null) {
+            m.recordQuery(Operation.K_SHORTEST_TRIPS, System.nanoTime() - start, paths.getSettledCount(), trips.size(),
+                    trips.size());
+        }
+        return trips;
     }
 
-    @Override
-    public Trip getShortestDistanceTrip(String from, String to) throws NoSuchRouteException {
-        // create a new set with a comparator to sort the Set according distances (the first the shorter).
-        Set<Trip> trips = new TreeSet<Trip>(new Comparator<Trip>() {
-            @Override
-            public int compare(Trip t, Trip t1) {
-                return new Integer(t.getDistance()).compareTo(new Integer(t1.getDistance()));
-            }
-        });
-        trips.addAll(findTrips(from, to)); // add the trips to sort.
+    /**
+     * Answer many queries at once with a {@link BatchProcessor}, on the pool of
+     * {@link #setForkJoinPool(ForkJoinPool)} or the common pool. Queries are grouped by starting city so that a
+     * group shares its searches and counts, results are given to the listener as soon as their group is done.
+     * @param queries queries to answer.
+     * @param listener listener of the results, called by the threads of the pool.
+     */
+    public void processBatch(Collection<BatchQuery> queries, BatchListener listener) {
+        Metrics m = metrics;
+        long start = m == null ? 0 : System.nanoTime();
+        new BatchProcessor(getGraph(), forkJoinPool == null ? ForkJoinPool.commonPool() : forkJoinPool)
+                .run(queries, listener);
+        if (m != null) {
+            m.recordQuery(Operation.BATCH, System.nanoTime() - start, 0, 0, queries.size());
+        }
+    }
+
+    /**
+     * Add a timed connection to the timetable, routes and timetable are independent.
+     * @param connection the connection.
+     */
+    public void addConnection(Connection connection) {
+        connections.add(connection);
+        timetable = null;
+    }
 
-        Iterator<Trip> tripIterator = trips.iterator();
-        if (!tripIterator.hasNext()) {
+    /**
+     * Get the timetable, rebuilding it if connections have been added since last call.
+     * Every query must call it only once so that it works on a single timetable.
+     * @return the timetable of all the connections.
+     */
+    public Timetable getTimetable() {
+        if (timetable == null) {
+            timetable = buildTimetable(connections);
+        }
+        return timetable;
+    }
+
+    /**
+     * Sort connections.
+     * @param connections every connection.
+     * @return the timetable.
+     */
+    protected static Timetable buildTimetable(Collection<Connection> connections) {
+        TimetableBuilder builder = new TimetableBuilder();
+        for (Connection connection : connections) {
+            builder.addConnection(connection);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Get the journey arriving the earliest at a city, leaving at a time or later, by {@link ConnectionScan}.
+     * @param from City to leave from.
+     * @param to City to go to.
+     * @param departure Time to leave, in the unit of the connections.
+     * @return The journey, with no connection when both cities are the same.
+     * @throws NoSuchRouteException the city can't be reached the same day.
+     */
+    public Journey getEarliestArrival(String from, String to, int departure) throws NoSuchRouteException {
+        Metrics m = metrics;
+        long start = m == null ? 0 : System.nanoTime();
+        Timetable t = getTimetable();
+        int f = t.indexOf(from);
+        int dest = t.indexOf(to);
+        if (f == Graph.NONE || dest == Graph.NONE) {
             throw new NoSuchRouteException();
         }
+        ConnectionScan scan = new ConnectionScan(t);
+        scan.search(f, dest, departure);
+        Journey journey = scan.getJourney();
+        if (m != null) {
+            int results = journey == null ? 0 : 1;
+            m.recordQuery(Operation.EARLIEST_ARRIVAL, System.nanoTime() - start, scan.getScannedCount(), results,
+                    results);
+        }
+        if (journey == null) {
+            throw new NoSuchRouteException();
+        }
+        return journey;
+    }
 
-        // the first one is the shorter.
-        return tripIterator.next();
+    /**
+     * Get every journey worth taking between two cities over a period of the day, by {@link ConnectionScan}.
+     * @param from City to leave from.
+     * @param to City to go to.
+     * @param earliest Time to leave, or later.
+     * @param latest Latest time to leave.
+     * @return The departure and arrival time of the journeys, none if the city can't be reached.
+     */
+    public Profile getProfile(String from, String to, int earliest, int latest) {
+        Metrics m = metrics;
+        long start = m == null ? 0 : System.nanoTime();
+        Timetable t = getTimetable();
+        int f = t.indexOf(from);
+        int dest = t.indexOf(to);
+        if (f == Graph.NONE || dest == Graph.NONE) {
+            return new Profile(new int[0], new int[0]);
+        }
+        ConnectionScan scan = new ConnectionScan(t);
+        Profile profile = scan.profile(f, dest, earliest, latest);
+        if (m != null) {
+            m.recordQuery(Operation.PROFILE, System.nanoTime() - start, scan.getScannedCount(), 0, profile.size());
+        }
+        return profile;
     }
 
-    
     @Override
     public Set<Trip> findTripsMaxDistance(String from, String to, int distance) {
-        // list of all the trips to be worked out.
-        List<Trip> trips = new ArrayList<Trip>();
-        trips.add(new Trip(from));
-        
-        // iterate
-        for (int k = 0; k < trips.size(); k++) {
-            Trip trip = trips.get(k);
-            if (trip.hasRoute()) {
-                List<Route> routeOptions = getRoutes(trip.peakLast());
-                if (routeOptions.size() > 0 && trip.getDistance() < distance) { // condition for a valid route: need to have at least one option and steps number must number be inferior to param.
-                    for (int j = 0; j < routeOptions.size(); j++) {
-                        Route route = routeOptions.get(j);
-                        // another option would be to update current trip with first option
-                        // but I've choosen to let the list growing with a duplicated trip to keep it simple.
-                        Trip newtrip = trip.cloneAndAdd(route.getTo(), routes.get(route));
-                        if (newtrip.peakLast().equals(to)) {
-                            newtrip.setComplete();
-                        }
-                        trips.add(newtrip); // duplicating route's root and adding change.
-                    }
-                } else { // no route option
-                    trip.setDistance(Trip.NO_ROUTE);
-                    trips.set(k, trip);
-                }
-            }
+        return find(from, to, Constraint.MAX_DISTANCE, distance, defaultBudget).getTrips();
+    }
+
+    @Override
+    public Iterator<Trip> iterateTrips(String from, String to, Constraint constraint, int limit, boolean sorted) {
+        return iterateTrips(from, to, constraint, limit, sorted, defaultBudget);
+    }
+
+    @Override
+    public TripIterator iterateTrips(String from, String to, Constraint constraint, int limit, boolean sorted,
+            QueryBudget budget) {
+        Graph g = getGraph();
+        TripIterator it = new TripIterator(g, g.indexOf(from), g.indexOf(to), constraint, limit, sorted);
+        it.setTracker(BudgetTracker.of(budget));
+        return it;
+    }
+
+    @Override
+    public TripResult findTrips(String from, String to, Constraint constraint, int limit, QueryBudget budget) {
+        return find(from, to, constraint, limit, budget);
+    }
+
+    /**
+     * Find every trip following a constraint, in parallel when a pool is set and the graph is large enough.
+     * @param from City to leave from.
+     * @param to City to go to.
+     * @param constraint rule trips must follow.
+     * @param limit limit of the constraint: number of steps or distance.
+     * @param budget limits of the enumeration, null for none.
+     * @return A set of the trips found, in alphabetical order.
+     */
+    private TripResult find(String from, String to, Constraint constraint, int limit, QueryBudget budget) {
+        Metrics m = metrics;
+        long start = m == null ? 0 : System.nanoTime();
+        Graph g = getGraph();
+        int f = g.indexOf(from);
+        int t = g.indexOf(to);
+        TripSet result;
+        long expanded;
+        long trips;
+        QueryBudget.Limit truncation;
+        if (forkJoinPool != null && g.getRouteCount() >= parallelThreshold) {
+            ParallelTripFinder finder = new ParallelTripFinder(forkJoinPool);
+            result = finder.collect(g, f, t, constraint, limit, budget);
+            expanded = finder.getExpandedCount();
+            trips = finder.getTripCount();
+            truncation = finder.getTruncation();
+        } else {
+            result = new TripSet(g);
+            TripIterator it = new TripIterator(g, f, t, constraint, limit, false);
+            it.setTracker(BudgetTracker.of(budget));
+            it.collect(result);
+            expanded = it.getExpandedCount();
+            trips = it.getTripCount();
+            truncation = it.getTruncation();
         }
+        if (m != null) {
+            m.recordQuery(operation(constraint), System.nanoTime() - start, expanded, trips, result.size());
+        }
+        if (truncation != null && budget == defaultBudget) {
+            logger.warning(operation(constraint) + " from " + from + " to " + to + " truncated to " + result.size()
+                    + " trips: " + truncation + " limit reached");
+        }
+        return new TripResult(result, truncation);
+    }
 
-        Set<Trip> result = new TreeSet<Trip>();
-        for (Trip trip : trips) { // cleaning
-            if (trip.hasRoute() && trip.isComplete() /* We keep only trips flagged as completed and which have a route */) {
-                result.add(trip);
-            }
+    /**
+     * Find method of a constraint, for metrics and logs.
+     */
+    private static Operation operation(Constraint constraint) {
+        switch (constraint) {
+            case EQUALS_STEPS:
+                return Operation.FIND_TRIPS_EQUALS_STEPS;
+            case MAX_STEPS:
+                return Operation.FIND_TRIPS_MAX_STEPS;
+            case MAX_DISTANCE:
+                return Operation.FIND_TRIPS_MAX_DISTANCE;
+            default:
+                return Operation.FIND_TRIPS;
         }
+    }
 
-        trips = null; // likely to free memory faster.
-        return result;
+    @Override
+    public long countTripsMaxDistance(String from, String to, int distance) {
+        Metrics m = metrics;
+        long start = m == null ? 0 : System.nanoTime();
+        Graph g = getGraph();
+        int f = g.indexOf(from);
+        int t = g.indexOf(to);
+        long count = f == Graph.NONE || t == Graph.NONE ? 0 : new TripCounter(g).countMaxDistance(f, t, distance);
+        if (m != null) {
+            m.recordQuery(Operation.COUNT_TRIPS_MAX_DISTANCE, System.nanoTime() - start, 0, 0, 1);
+        }
+        return count;
     }
 }
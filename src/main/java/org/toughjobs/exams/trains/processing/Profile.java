@@ -0,0 +1,79 @@
+package org.toughjobs.exams.trains.processing;
+
+import org.toughjobs.exams.trains.data.Trip;
+
+/**
+ * Journeys worth taking between two cities over a period, found by {@link ConnectionScan#profile(int, int, int, int)}:
+ * by increasing departure, each one arriving strictly earlier than the ones leaving later, so that the best journey
+ * for any time to leave is the first one leaving at that time or later.
+ * Instances are immutable.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class Profile {
+
+    private final int[] departures;
+    private final int[] arrivals;
+
+    Profile(int[] departures, int[] arrivals) {
+        this.departures = departures;
+        this.arrivals = arrivals;
+    }
+
+    /**
+     * Number of journeys.
+     * @return the number of journeys.
+     */
+    public int size() {
+        return departures.length;
+    }
+
+    /**
+     * Time a journey leaves.
+     * @param i index of the journey, by increasing departure.
+     * @return the time.
+     */
+    public int getDeparture(int i) {
+        return departures[i];
+    }
+
+    /**
+     * Time a journey arrives.
+     * @param i index of the journey, by increasing departure.
+     * @return the time.
+     */
+    public int getArrival(int i) {
+        return arrivals[i];
+    }
+
+    /**
+     * Earliest arrival leaving at a time or later, without scanning the timetable again.
+     * @param time time to leave.
+     * @return the arrival time or {@link Trip#NO_ROUTE} if no journey leaves then.
+     */
+    public int getEarliestArrival(int time) {
+        int low = 0;
+        int high = departures.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (departures[middle] < time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low == departures.length ? Trip.NO_ROUTE : arrivals[low];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < departures.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(departures[i]).append('-').append(arrivals[i]);
+        }
+        return sb.append(']').toString();
+    }
+}
@@ -0,0 +1,142 @@
+package org.toughjobs.exams.trains.processing;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits of a trip enumeration, see {@link Processor#findTrips(String, String, Constraint, int, QueryBudget)}.
+ * When a limit is reached, the enumeration stops and returns the trips found so far, flagged with the limit.
+ * Instances are immutable: every <code>with</code> method returns a copy with one more limit, starting from
+ * {@link #UNLIMITED}. A budget holds a timeout rather than a deadline so that it can be reused by many queries.
+ * Routes followed and the memory estimate are checked every {@link #CHECK_INTERVAL} routes, as well as the timeout
+ * and the cancellation, so they may be exceeded by that many routes.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public final class QueryBudget {
+
+    /**
+     * Limit which stopped an enumeration.
+     */
+    public enum Limit {
+        /**
+         * Too many routes followed.
+         */
+        EXPANDED,
+        /**
+         * Too many trips found.
+         */
+        RESULTS,
+        /**
+         * Estimate of the memory taken by the trips too large.
+         */
+        MEMORY,
+        /**
+         * Timeout elapsed.
+         */
+        DEADLINE,
+        /**
+         * {@link CancellationToken#cancel()} called.
+         */
+        CANCELLED
+    }
+
+    /**
+     * Number of routes followed between checks.
+     */
+    public static final int CHECK_INTERVAL = 64;
+
+    /**
+     * Budget without limit.
+     */
+    public static final QueryBudget UNLIMITED = new QueryBudget(Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE,
+            Long.MAX_VALUE, null);
+
+    private final long maxExpanded;
+    private final long maxResults;
+    private final long maxMemory;
+    private final long timeoutNanos;
+    private final CancellationToken token;
+
+    private QueryBudget(long maxExpanded, long maxResults, long maxMemory, long timeoutNanos,
+            CancellationToken token) {
+        this.maxExpanded = maxExpanded;
+        this.maxResults = maxResults;
+        this.maxMemory = maxMemory;
+        this.timeoutNanos = timeoutNanos;
+        this.token = token;
+    }
+
+    /**
+     * Limit the number of routes followed.
+     * @param maxExpanded maximum number of routes.
+     * @return a copy of this budget with the limit.
+     */
+    public QueryBudget withMaxExpanded(long maxExpanded) {
+        return new QueryBudget(maxExpanded, maxResults, maxMemory, timeoutNanos, token);
+    }
+
+    /**
+     * Limit the number of trips found.
+     * @param maxResults maximum number of trips returned.
+     * @return a copy of this budget with the limit.
+     */
+    public QueryBudget withMaxResults(long maxResults) {
+        return new QueryBudget(maxExpanded, maxResults, maxMemory, timeoutNanos, token);
+    }
+
+    /**
+     * Limit the memory taken by the trips, estimated from the number of trips built and returned.
+     * @param maxMemory maximum number of bytes.
+     * @return a copy of this budget with the limit.
+     */
+    public QueryBudget withMaxMemory(long maxMemory) {
+        return new QueryBudget(maxExpanded, maxResults, maxMemory, timeoutNanos, token);
+    }
+
+    /**
+     * Limit the duration of a query.
+     * @param timeout maximum duration, counted from the start of every query.
+     * @param unit unit of the duration.
+     * @return a copy of this budget with the limit.
+     */
+    public QueryBudget withTimeout(long timeout, TimeUnit unit) {
+        return new QueryBudget(maxExpanded, maxResults, maxMemory, unit.toNanos(timeout), token);
+    }
+
+    /**
+     * Make queries cancellable.
+     * @param token token whose cancellation stops the queries.
+     * @return a copy of this budget with the token.
+     */
+    public QueryBudget withToken(CancellationToken token) {
+        return new QueryBudget(maxExpanded, maxResults, maxMemory, timeoutNanos, token);
+    }
+
+    public long getMaxExpanded() {
+        return maxExpanded;
+    }
+
+    public long getMaxResults() {
+        return maxResults;
+    }
+
+    public long getMaxMemory() {
+        return maxMemory;
+    }
+
+    /**
+     * Maximum duration of a query.
+     * @return the duration in nanoseconds, {@link Long#MAX_VALUE} if there's no timeout.
+     */
+    public long getTimeoutNanos() {
+        return timeoutNanos;
+    }
+
+    /**
+     * Token cancelling the queries.
+     * @return the token, null if queries can't be cancelled.
+     */
+    public CancellationToken getToken() {
+        return token;
+    }
+}
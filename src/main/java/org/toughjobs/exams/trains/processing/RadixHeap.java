@@ -0,0 +1,96 @@
+package org.toughjobs.exams.trains.processing;
+
+import java.util.Arrays;
+
+/**
+ * Monotone radix heap of city ids: a key pushed can't be lower than the last key polled, which is always
+ * true for Dijkstra with non negative distances.
+ * Bucket <code>i</code> holds the keys whose highest bit differing from the last polled key is bit <code>i - 1</code>,
+ * so every entry moves down at most 32 times and small integer distances stay in the first buckets.
+ * Decrease-key is done by pushing the city again, the old entry being skipped by the caller once the city is settled.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class RadixHeap implements TownQueue {
+
+    private static final int BUCKETS = 33;
+
+    private final int[][] towns = new int[BUCKETS][];
+    private final int[][] keys = new int[BUCKETS][];
+    private final int[] sizes = new int[BUCKETS];
+    /**
+     * Last key polled.
+     */
+    private int last;
+    private int size;
+
+    public RadixHeap() {
+        for (int i = 0; i < BUCKETS; i++) {
+            towns[i] = new int[4];
+            keys[i] = new int[4];
+        }
+    }
+
+    @Override
+    public void push(int town, int key) {
+        if (key < last) {
+            throw new IllegalArgumentException("Key " + key + " is lower than last polled key " + last);
+        }
+        add(bucket(key), town, key);
+        size++;
+    }
+
+    @Override
+    public int poll() {
+        if (sizes[0] == 0) {
+            int i = 1;
+            while (sizes[i] == 0) {
+                i++;
+            }
+            // the new minimum comes from the first non empty bucket, redistribute it below.
+            int[] bt = towns[i];
+            int[] bk = keys[i];
+            int count = sizes[i];
+            int min = bk[0];
+            for (int j = 1; j < count; j++) {
+                if (bk[j] < min) {
+                    min = bk[j];
+                }
+            }
+            last = min;
+            sizes[i] = 0;
+            for (int j = 0; j < count; j++) {
+                add(bucket(bk[j]), bt[j], bk[j]);
+            }
+        }
+        size--;
+        return towns[0][--sizes[0]];
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(sizes, 0);
+        size = 0;
+        last = 0;
+    }
+
+    private int bucket(int key) {
+        return key == last ? 0 : 32 - Integer.numberOfLeadingZeros(key ^ last);
+    }
+
+    private void add(int bucket, int town, int key) {
+        int n = sizes[bucket];
+        if (n == towns[bucket].length) {
+            towns[bucket] = Arrays.copyOf(towns[bucket], n * 2);
+            keys[bucket] = Arrays.copyOf(keys[bucket], n * 2);
+        }
+        towns[bucket][n] = town;
+        keys[bucket][n] = key;
+        sizes[bucket] = n + 1;
+    }
+}
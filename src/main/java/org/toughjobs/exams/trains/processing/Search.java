@@ -0,0 +1,30 @@
+package org.toughjobs.exams.trains.processing;
+
+/**
+ * Algorithm searching the shortest trip between two cities, see {@link ProcessorImpl#setSearch(Search)}.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public enum Search {
+
+    /**
+     * Dijkstra from the starting city, see {@link ShortestPaths}.
+     */
+    DIJKSTRA,
+    /**
+     * Dijkstra from both cities, see {@link BidirectionalSearch}.
+     * Needs a transposed copy of the graph.
+     */
+    BIDIRECTIONAL,
+    /**
+     * A* with landmark lower bounds, see {@link AltSearch}.
+     * Needs a transposed copy of the graph and the distances of every city from and to every landmark.
+     */
+    ALT,
+    /**
+     * Upward Dijkstra from both cities over a {@link ContractionHierarchy}, see {@link ContractionSearch}.
+     * Needs the hierarchy, built once on the fork join pool or loaded, see
+     * {@link ProcessorImpl#setContractionHierarchy(ContractionHierarchy)}.
+     */
+    CONTRACTION_HIERARCHY
+}
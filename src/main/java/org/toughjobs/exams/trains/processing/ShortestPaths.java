@@ -0,0 +1,156 @@
+package org.toughjobs.exams.trains.processing;
+
+import java.util.Arrays;
+
+import org.toughjobs.exams.trains.data.Trip;
+import org.toughjobs.exams.trains.graph.Graph;
+
+/**
+ * Single source shortest path search (Dijkstra) over a {@link Graph}.
+ * The search is seeded with the routes leaving the starting city rather than with the city itself:
+ * the starting city is then settled only when a trip comes back to it, which gives the shortest round trip
+ * when both cities are the same.
+ * An instance can be reused for several searches on the same graph, it is not thread safe.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class ShortestPaths {
+
+    private final Graph graph;
+    private final TownQueue queue;
+    /**
+     * Best distance known for every city, {@link Trip#NO_ROUTE} if not reached.
+     */
+    private final int[] distances;
+    /**
+     * City before every city on its shortest trip.
+     */
+    private final int[] previous;
+    private final boolean[] settled;
+    private int from = Graph.NONE;
+    private int settledCount;
+
+    /**
+     * New search using a {@link BinaryHeap}.
+     * @param graph graph to search in.
+     */
+    public ShortestPaths(Graph graph) {
+        this(graph, new BinaryHeap(graph.getTownCount()));
+    }
+
+    /**
+     * New search.
+     * @param graph graph to search in.
+     * @param queue empty queue able to hold every city of the graph.
+     */
+    public ShortestPaths(Graph graph, TownQueue queue) {
+        this.graph = graph;
+        this.queue = queue;
+        distances = new int[graph.getTownCount()];
+        previous = new int[graph.getTownCount()];
+        settled = new boolean[graph.getTownCount()];
+    }
+
+    /**
+     * Search the shortest trips from a city.
+     * @param from id of the city to start from.
+     * @param to id of the city to stop at once settled, {@link Graph#NONE} to settle every reachable city.
+     * @return distance to <code>to</code> or {@link Trip#NO_ROUTE} if it can't be reached.
+     */
+    public int search(int from, int to) {
+        this.from = from;
+        Arrays.fill(distances, Trip.NO_ROUTE);
+        Arrays.fill(settled, false);
+        queue.clear();
+        settledCount = 0;
+
+        for (int r = graph.getOffset(from); r < graph.getOffset(from + 1); r++) {
+            relax(from, graph.getTarget(r), graph.getWeight(r));
+        }
+
+        while (!queue.isEmpty()) {
+            int town = queue.poll();
+            if (settled[town]) {
+                continue; // outdated entry.
+            }
+            settled[town] = true;
+            settledCount++;
+            if (town == to) {
+                break;
+            }
+            int distance = distances[town];
+            for (int r = graph.getOffset(town); r < graph.getOffset(town + 1); r++) {
+                relax(town, graph.getTarget(r), distance + graph.getWeight(r));
+            }
+        }
+
+        return to == Graph.NONE ? Trip.NO_ROUTE : getDistance(to);
+    }
+
+    private void relax(int town, int target, int distance) {
+        if (!settled[target] && (distances[target] == Trip.NO_ROUTE || distance < distances[target])) {
+            distances[target] = distance;
+            previous[target] = town;
+            queue.push(target, distance);
+        }
+    }
+
+    /**
+     * Distance of the shortest trip found by last search.
+     * @param to id of the city.
+     * @return distance or {@link Trip#NO_ROUTE} if the city hasn't been settled.
+     */
+    public int getDistance(int to) {
+        return settled[to] ? distances[to] : Trip.NO_ROUTE;
+    }
+
+    /**
+     * City before a city on the shortest trip found by last search.
+     * @param to id of a settled city.
+     * @return id of the previous city.
+     */
+    public int getPrevious(int to) {
+        return previous[to];
+    }
+
+    /**
+     * Number of cities settled by last search.
+     * @return number of cities.
+     */
+    public int getSettledCount() {
+        return settledCount;
+    }
+
+    /**
+     * Build the shortest trip found by last search.
+     * @param to id of a city.
+     * @return a complete trip with every step, or null if the city hasn't been settled.
+     */
+    public Trip getTrip(int to) {
+        if (!settled[to]) {
+            return null;
+        }
+        int length = 0;
+        int town = to;
+        do {
+            length++;
+            town = previous[town];
+        } while (town != from);
+
+        int[] steps = new int[length];
+        town = to;
+        for (int i = length - 1; i >= 0; i--) {
+            steps[i] = town;
+            town = previous[town];
+        }
+
+        Trip trip = new Trip(graph.getTown(from));
+        int prev = from;
+        for (int step : steps) {
+            trip.add(graph.getTown(step), graph.getWeight(graph.findRoute(prev, step)));
+            prev = step;
+        }
+        trip.setComplete();
+        return trip;
+    }
+}
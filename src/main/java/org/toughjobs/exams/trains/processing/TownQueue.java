@@ -0,0 +1,36 @@
+package org.toughjobs.exams.trains.processing;
+
+/**
+ * Priority queue of city ids used by shortest path searches.
+ * Keys are distances, they are never negative.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public interface TownQueue {
+
+    /**
+     * Add a city or lower its key if it is already queued with a greater one.
+     * Implementations may keep the previous entry: {@link #poll()} can then return a city more than once
+     * and callers are expected to skip cities already settled.
+     * @param town id of the city.
+     * @param key distance of the city.
+     */
+    public void push(int town, int key);
+
+    /**
+     * Remove the city with the smallest key.
+     * @return id of the city.
+     */
+    public int poll();
+
+    /**
+     * To know whether any city is queued.
+     * @return true if the queue is empty.
+     */
+    public boolean isEmpty();
+
+    /**
+     * Remove every city so that the queue can be used for another search.
+     */
+    public void clear();
+}
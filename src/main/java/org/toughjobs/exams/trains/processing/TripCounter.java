@@ -0,0 +1,412 @@
+package org.toughjobs.exams.trains.processing;
+
+import java.util.Arrays;
+
+import org.toughjobs.exams.trains.graph.Graph;
+
+/**
+ * Count trips without building them.
+ * A trip here is any sequence of routes: it may go through a city, including both ends, more than once.
+ * Counts are worked out by dynamic programming over the number of steps, or by powers of the adjacency matrix
+ * when the graph is small and the number of steps large.
+ * Counts bounded by a distance are worked out by dynamic programming over the distance travelled.
+ * Arithmetic saturates at {@link Long#MAX_VALUE} so that a count which doesn't fit in a long is always detected
+ * and reported with an {@link ArithmeticException}, whatever happens to the counts of other cities.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class TripCounter {
+
+    /**
+     * Matrix powers are never used above this number of cities.
+     */
+    private static final int MAX_MATRIX_TOWNS = 256;
+
+    private final Graph graph;
+
+    /**
+     * New counter.
+     * @param graph graph to count trips in.
+     */
+    public TripCounter(Graph graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * Count trips with an exact number of steps.
+     * @param from id of the city to start from.
+     * @param to id of the city to go to.
+     * @param steps number of steps, nothing is counted under 1.
+     * @return number of trips.
+     * @throws ArithmeticException if the number of trips doesn't fit in a long.
+     */
+    public long countEqualsSteps(int from, int to, int steps) {
+        if (steps < 1) {
+            return 0;
+        }
+        long count;
+        if (useMatrix(graph.getTownCount(), steps)) {
+            count = power(adjacency(false), graph.getTownCount(), from, steps)[to];
+        } else {
+            count = countsEqualsSteps(from, steps)[to];
+        }
+        return checked(count);
+    }
+
+    /**
+     * Count trips with a number of steps between 1 and a maximum.
+     * @param from id of the city to start from.
+     * @param to id of the city to go to.
+     * @param steps maximum number of steps.
+     * @return number of trips.
+     * @throws ArithmeticException if the number of trips doesn't fit in a long.
+     */
+    public long countMaxSteps(int from, int to, int steps) {
+        if (steps < 1) {
+            return 0;
+        }
+        long count;
+        int n = graph.getTownCount();
+        if (useMatrix(n + 1, steps)) {
+            // an extra city is only reachable from the destination and loops on itself: trips of steps + 1 steps
+            // to the extra city are the trips of 0 to steps steps to the destination.
+            long[] matrix = adjacency(true);
+            matrix[to * (n + 1) + n] = 1;
+            matrix[n * (n + 1) + n] = 1;
+            count = power(matrix, n + 1, from, steps + 1)[n];
+            if (from == to && count != Long.MAX_VALUE) {
+                count--; // trip with no step.
+            }
+        } else {
+            count = countsMaxSteps(from, steps)[to];
+        }
+        return checked(count);
+    }
+
+    /**
+     * Number of trips with an exact number of steps from a city to every city.
+     * @param from id of the city to start from.
+     * @param steps number of steps.
+     * @return counts indexed by city id, saturated at {@link Long#MAX_VALUE}.
+     */
+    public long[] countsEqualsSteps(int from, int steps) {
+        long[] current = new long[graph.getTownCount()];
+        long[] next = new long[current.length];
+        current[from] = 1;
+        for (int s = 0; s < steps; s++) {
+            step(current, next);
+            long[] swap = current;
+            current = next;
+            next = swap;
+        }
+        return current;
+    }
+
+    /**
+     * Number of trips with 1 to a maximum number of steps from a city to every city.
+     * @param from id of the city to start from.
+     * @param steps maximum number of steps.
+     * @return counts indexed by city id, saturated at {@link Long#MAX_VALUE}.
+     */
+    public long[] countsMaxSteps(int from, int steps) {
+        long[] current = new long[graph.getTownCount()];
+        long[] next = new long[current.length];
+        long[] total = new long[current.length];
+        current[from] = 1;
+        for (int s = 0; s < steps; s++) {
+            step(current, next);
+            long[] swap = current;
+            current = next;
+            next = swap;
+            for (int t = 0; t < total.length; t++) {
+                total[t] = add(total[t], current[t]);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Count trips with a global distance lower than a maximum.
+     * @param from id of the city to start from.
+     * @param to id of the city to go to.
+     * @param distance Maximum distance which can't be reached.
+     * @return number of trips.
+     * @throws ArithmeticException if the number of trips doesn't fit in a long.
+     * @throws IllegalArgumentException if a route has a distance lower than 1.
+     */
+    public long countMaxDistance(int from, int to, int distance) {
+        return checked(countsMaxDistance(from, distance)[to]);
+    }
+
+    /**
+     * Number of trips with at least one step and a global distance lower than a maximum from a city to every city.
+     * Table holds the number of trips for every city and every exact distance travelled, only the rows still
+     * reachable by a route are kept: that is the greatest distance of a route plus one rows of the number of cities.
+     * @param from id of the city to start from.
+     * @param distance Maximum distance which can't be reached.
+     * @return counts indexed by city id, saturated at {@link Long#MAX_VALUE}.
+     * @throws IllegalArgumentException if a route has a distance lower than 1.
+     */
+    public long[] countsMaxDistance(int from, int distance) {
+        return countsMaxDistance(from, distance, null, null, null);
+    }
+
+    /**
+     * Count trips by distance, reading some counts on the way.
+     * @param from id of the city to start from.
+     * @param distance Maximum distance which can't be reached.
+     * @param order maximum distance and index of the counts to read, sorted, or null.
+     * @param tos ids of the cities of the counts to read.
+     * @param res counts read.
+     * @return counts indexed by city id.
+     */
+    private long[] countsMaxDistance(int from, int distance, long[] order, int[] tos, long[] res) {
+        int n = graph.getTownCount();
+        int longest = 0;
+        for (int r = 0; r < graph.getRouteCount(); r++) {
+            int weight = graph.getWeight(r);
+            if (weight < 1) {
+                throw new IllegalArgumentException("Distances must be positive to count trips by distance");
+            }
+            longest = Math.max(longest, weight);
+        }
+        long[] total = new long[n];
+        if (distance < 1) {
+            return total;
+        }
+
+        // rows are used as a ring: row of distance d is reused for distance d + window once read.
+        int window = Math.min(longest, distance) + 1;
+        long[] table = new long[window * n];
+        table[from] = 1;
+        int q = 0;
+        for (int d = 0; d < distance; d++) {
+            // total holds the trips shorter than d.
+            for (; order != null && q < order.length && (int) (order[q] >>> 32) == d; q++) {
+                res[(int) order[q]] = total[tos[(int) order[q]]];
+            }
+            int row = (d % window) * n;
+            for (int town = 0; town < n; town++) {
+                long count = table[row + town];
+                if (count == 0) {
+                    continue;
+                }
+                table[row + town] = 0;
+                if (d > 0) {
+                    total[town] = add(total[town], count);
+                }
+                for (int r = graph.getOffset(town); r < graph.getOffset(town + 1); r++) {
+                    int next = d + graph.getWeight(r);
+                    if (next < distance) {
+                        int cell = (next % window) * n + graph.getTarget(r);
+                        table[cell] = add(table[cell], count);
+                    }
+                }
+            }
+        }
+        for (; order != null && q < order.length; q++) {
+            res[(int) order[q]] = total[tos[(int) order[q]]];
+        }
+        return total;
+    }
+
+    /**
+     * Count trips with exact numbers of steps to several cities, in a single pass up to the largest number of steps.
+     * @param from id of the city to start from.
+     * @param tos ids of the cities to go to.
+     * @param steps number of steps of every count, nothing is counted under 1.
+     * @return counts in the order of the arguments, saturated at {@link Long#MAX_VALUE}.
+     */
+    public long[] countsEqualsSteps(int from, int[] tos, int[] steps) {
+        return countsBySteps(from, tos, steps, false);
+    }
+
+    /**
+     * Count trips with 1 to maximum numbers of steps to several cities, in a single pass up to the largest maximum.
+     * @param from id of the city to start from.
+     * @param tos ids of the cities to go to.
+     * @param steps maximum number of steps of every count.
+     * @return counts in the order of the arguments, saturated at {@link Long#MAX_VALUE}.
+     */
+    public long[] countsMaxSteps(int from, int[] tos, int[] steps) {
+        return countsBySteps(from, tos, steps, true);
+    }
+
+    private long[] countsBySteps(int from, int[] tos, int[] steps, boolean max) {
+        long[] res = new long[tos.length];
+        long[] order = order(steps);
+        long[] current = new long[graph.getTownCount()];
+        long[] next = new long[current.length];
+        long[] total = new long[current.length];
+        current[from] = 1;
+        int q = 0;
+        while (q < order.length && (int) (order[q] >>> 32) < 1) {
+            q++;
+        }
+        for (int s = 1; q < order.length; s++) {
+            step(current, next);
+            long[] swap = current;
+            current = next;
+            next = swap;
+            if (max) {
+                for (int t = 0; t < total.length; t++) {
+                    total[t] = add(total[t], current[t]);
+                }
+            }
+            for (; q < order.length && (int) (order[q] >>> 32) == s; q++) {
+                int i = (int) order[q];
+                res[i] = max ? total[tos[i]] : current[tos[i]];
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Count trips with global distances lower than maximums to several cities, in a single pass up to the largest
+     * maximum.
+     * @param from id of the city to start from.
+     * @param tos ids of the cities to go to.
+     * @param distances maximum distance which can't be reached of every count.
+     * @return counts in the order of the arguments, saturated at {@link Long#MAX_VALUE}.
+     * @throws IllegalArgumentException if a route has a distance lower than 1.
+     */
+    public long[] countsMaxDistance(int from, int[] tos, int[] distances) {
+        long[] res = new long[tos.length];
+        long[] order = order(distances);
+        int largest = order.length == 0 ? 0 : (int) (order[order.length - 1] >>> 32);
+        countsMaxDistance(from, largest, order, tos, res);
+        return res;
+    }
+
+    /**
+     * Sort the indexes of values by value.
+     * @return value and index of every value packed in longs, values below 0 as 0.
+     */
+    private static long[] order(int[] values) {
+        long[] res = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            res[i] = ((long) Math.max(values[i], 0) << 32) | i;
+        }
+        Arrays.sort(res);
+        return res;
+    }
+
+    /**
+     * Extend every trip by one step.
+     */
+    private void step(long[] current, long[] next) {
+        Arrays.fill(next, 0);
+        for (int town = 0; town < current.length; town++) {
+            long count = current[town];
+            if (count == 0) {
+                continue;
+            }
+            for (int r = graph.getOffset(town); r < graph.getOffset(town + 1); r++) {
+                int target = graph.getTarget(r);
+                next[target] = add(next[target], count);
+            }
+        }
+    }
+
+    /**
+     * Matrix powers cost about n^3 per bit of the number of steps where the dynamic programming costs
+     * one pass over the routes per step.
+     */
+    private boolean useMatrix(int n, int steps) {
+        if (n > MAX_MATRIX_TOWNS) {
+            return false;
+        }
+        long bits = 32 - Integer.numberOfLeadingZeros(steps);
+        return bits * n * n * n < (long) steps * Math.max(graph.getRouteCount(), 1);
+    }
+
+    /**
+     * Flat adjacency matrix.
+     * @param extra true to add an extra empty row and column.
+     */
+    private long[] adjacency(boolean extra) {
+        int n = graph.getTownCount();
+        int size = extra ? n + 1 : n;
+        long[] matrix = new long[size * size];
+        for (int town = 0; town < n; town++) {
+            for (int r = graph.getOffset(town); r < graph.getOffset(town + 1); r++) {
+                matrix[town * size + graph.getTarget(r)] = 1;
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * Row of a city in a power of a matrix, by squaring.
+     */
+    private static long[] power(long[] matrix, int n, int from, int exponent) {
+        long[] row = new long[n];
+        row[from] = 1;
+        long[] square = matrix;
+        while (exponent > 0) {
+            if ((exponent & 1) != 0) {
+                row = multiply(row, square, n);
+            }
+            exponent >>>= 1;
+            if (exponent > 0) {
+                square = multiply(square, n);
+            }
+        }
+        return row;
+    }
+
+    private static long[] multiply(long[] row, long[] matrix, int n) {
+        long[] res = new long[n];
+        for (int k = 0; k < n; k++) {
+            long v = row[k];
+            if (v == 0) {
+                continue;
+            }
+            for (int j = 0; j < n; j++) {
+                res[j] = add(res[j], multiply(v, matrix[k * n + j]));
+            }
+        }
+        return res;
+    }
+
+    private static long[] multiply(long[] matrix, int n) {
+        long[] res = new long[n * n];
+        for (int i = 0; i < n; i++) {
+            for (int k = 0; k < n; k++) {
+                long v = matrix[i * n + k];
+                if (v == 0) {
+                    continue;
+                }
+                for (int j = 0; j < n; j++) {
+                    res[i * n + j] = add(res[i * n + j], multiply(v, matrix[k * n + j]));
+                }
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Saturated addition of non negative values.
+     */
+    static long add(long a, long b) {
+        long r = a + b;
+        return r < 0 ? Long.MAX_VALUE : r;
+    }
+
+    /**
+     * Saturated multiplication of non negative values.
+     */
+    static long multiply(long a, long b) {
+        if (a == 0 || b == 0) {
+            return 0;
+        }
+        return a > Long.MAX_VALUE / b ? Long.MAX_VALUE : a * b;
+    }
+
+    private static long checked(long count) {
+        if (count == Long.MAX_VALUE) {
+            throw new ArithmeticException("Number of trips doesn't fit in a long");
+        }
+        return count;
+    }
+}
@@ -0,0 +1,439 @@
+package org.toughjobs.exams.trains.processing;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.toughjobs.exams.trains.data.Trip;
+import org.toughjobs.exams.trains.graph.Graph;
+
+/**
+ * Lazy depth first enumeration of the trips following a {@link Constraint}.
+ * Only the trip being explored is kept, on an explicit stack: a trip is built when {@link #next()} returns it,
+ * sharing its steps with the trips returned before, so a caller can stop or page through results at any time.
+ * Trips come in the order routes are stored in the graph, or in alphabetical order of the step names when sorted:
+ * a step then comes before any other step whose name is greater, which is the order of {@link Trip#compareTo(Trip)}
+ * as long as no city name is the beginning of another one.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class TripIterator implements Iterator<Trip> {
+
+    private final Graph graph;
+    private final int to;
+    private final Constraint constraint;
+    private final int limit;
+    /**
+     * Alphabetical rank of every city, null when not sorted.
+     */
+    private final int[] ranks;
+    /**
+     * Cities already used as a step by the trip being explored, only for {@link Constraint#NONE} and {@link Constraint#MAX_STEPS}.
+     */
+    private final boolean[] visited;
+
+    // stack of the trip being explored, depth 0 is the starting city.
+    private int depth;
+    private int[] towns = new int[16];
+    private int[] distances = new int[16];
+    /**
+     * Next route to follow at every depth, and end of the routes to follow.
+     */
+    private int[] cursors = new int[16];
+    private int[] ends = new int[16];
+    /**
+     * Trip of every depth, only built up to {@link #built} when a trip going through them is returned.
+     */
+    private Trip[] trips = new Trip[16];
+    private int built = -1;
+    /**
+     * When sorted, routes of every depth in alphabetical order of their destination, starting at {@link #cursors}.
+     */
+    private int[] order;
+    private int orderSize;
+    /**
+     * Depth of the last city of the prefix given when exploring a sub tree, enumeration ends when it is left.
+     */
+    private int base;
+
+    private Trip next;
+    /**
+     * Depth of the prefix, last city and distance of the trip found by {@link #follow()}.
+     */
+    private int foundDepth;
+    private int foundTown;
+    private int foundDistance;
+    /**
+     * Routes followed and trips built so far.
+     */
+    private long expandedCount;
+    private long tripCount;
+    /**
+     * Spending of the query, null when unlimited, and routes and trips already reported to it.
+     */
+    private BudgetTracker tracker;
+    private long chargedExpanded;
+    private long chargedTrips;
+
+    /**
+     * New enumeration.
+     * @param graph graph to search in.
+     * @param from id of the city to start from.
+     * @param to id of the city to go to.
+     * @param constraint rule trips must follow.
+     * @param limit limit of the constraint: number of steps or distance.
+     * @param sorted true to get trips in alphabetical order.
+     */
+    public TripIterator(Graph graph, int from, int to, Constraint constraint, int limit, boolean sorted) {
+        this(graph, to, constraint, limit, sorted);
+        if (!isEmpty(from, to, constraint, limit)) {
+            push(from, 0);
+        }
+    }
+
+    /**
+     * Enumeration of the trips starting with a prefix and following some routes of its last city only.
+     * Trips of the prefix itself aren't returned: it is the sub tree a sequential enumeration would explore
+     * after these routes, see {@link ParallelTripFinder}.
+     * @param graph graph to search in.
+     * @param to id of the city to go to.
+     * @param constraint rule trips must follow.
+     * @param limit limit of the constraint: number of steps or distance.
+     * @param path ids of the cities of the prefix, starting with the city to start from.
+     * @param pathDistances distance from the start to every city of the prefix.
+     * @param first first route of the last city to follow.
+     * @param end end of the routes of the last city to follow.
+     */
+    TripIterator(Graph graph, int to, Constraint constraint, int limit, int[] path, int[] pathDistances,
+            int first, int end) {
+        this(graph, to, constraint, limit, false);
+        for (int d = 0; d < path.length; d++) {
+            push(path[d], pathDistances[d]);
+        }
+        base = depth;
+        cursors[base] = first;
+        ends[base] = end;
+    }
+
+    private TripIterator(Graph graph, int to, Constraint constraint, int limit, boolean sorted) {
+        this.graph = graph;
+        this.to = to;
+        this.constraint = constraint;
+        this.limit = limit;
+        this.ranks = sorted ? ranks(graph) : null;
+        this.order = sorted ? new int[16] : null;
+        this.visited = constraint == Constraint.NONE || constraint == Constraint.MAX_STEPS
+                ? new boolean[graph.getTownCount()] : null;
+        depth = -1;
+    }
+
+    /**
+     * Whether no trip can follow the constraint.
+     * @param from id of the city to start from.
+     * @param to id of the city to go to.
+     * @param constraint rule trips must follow.
+     * @param limit limit of the constraint.
+     * @return true if there's no trip.
+     */
+    static boolean isEmpty(int from, int to, Constraint constraint, int limit) {
+        return from == Graph.NONE || to == Graph.NONE || (constraint != Constraint.NONE && limit < 1);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            next = advance();
+            if (next != null && tracker != null && !tracker.addResult()) {
+                next = null;
+                depth = -1;
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public Trip next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Trip res = next;
+        next = null;
+        return res;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Explore until next trip is found.
+     * @return the trip or null if there's no more trip.
+     */
+    private Trip advance() {
+        while (depth >= 0) {
+            if (tracker != null && expandedCount - chargedExpanded >= QueryBudget.CHECK_INTERVAL && !charge()) {
+                depth = -1;
+                return null;
+            }
+            if (cursors[depth] == ends[depth]) {
+                pop();
+                continue;
+            }
+            if (follow()) {
+                return build();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Explore to the end, adding every trip to a set rather than building it.
+     * @param res set of the trips.
+     */
+    /* package visibility */
+    void collect(TripSet res) {
+        while (depth >= 0) {
+            if (tracker != null && expandedCount - chargedExpanded >= QueryBudget.CHECK_INTERVAL && !charge()) {
+                depth = -1;
+                return;
+            }
+            if (cursors[depth] == ends[depth]) {
+                pop();
+            } else if (follow()) {
+                if (tracker != null && !tracker.addResult()) {
+                    depth = -1;
+                    return;
+                }
+                addFound(res);
+            }
+        }
+    }
+
+    /**
+     * Add the trip found by last {@link #follow()} to a set, without building it.
+     * @param res set of the trips.
+     */
+    /* package visibility */
+    void addFound(TripSet res) {
+        res.add(towns, foundDepth + 1, foundTown, foundDistance);
+        tripCount++;
+    }
+
+    /**
+     * Follow the next route of the last city of the stack, which is pushed if trips may go further.
+     * @return true if a trip ending with the route follows the constraint, see {@link #build()}.
+     */
+    /* package visibility */
+    boolean follow() {
+        int route = ranks == null ? cursors[depth] : order[cursors[depth]];
+        cursors[depth]++;
+        expandedCount++;
+        int target = graph.getTarget(route);
+        int distance = distances[depth] + graph.getWeight(route);
+
+        switch (constraint) {
+            case NONE:
+            case MAX_STEPS:
+                if (visited[target]) { // avoid duplicate
+                    return false;
+                }
+                if (target == to) { // trip is complete, no need to go further.
+                    return found(target, distance);
+                }
+                if (constraint == Constraint.NONE || depth + 1 < limit) {
+                    push(target, distance);
+                }
+                return false;
+            case EQUALS_STEPS:
+                if (depth + 1 == limit) {
+                    return target == to && found(target, distance);
+                }
+                push(target, distance);
+                return false;
+            case MAX_DISTANCE:
+                if (distance < limit) {
+                    boolean res = target == to && found(target, distance);
+                    push(target, distance);
+                    return res; // a complete trip may come back to the destination.
+                }
+                return false;
+            default:
+                throw new IllegalStateException(constraint.name());
+        }
+    }
+
+    /**
+     * Report routes followed and trips built since last report to the tracker.
+     * @return false if the enumeration must stop.
+     */
+    /* package visibility */
+    boolean charge() {
+        boolean res = tracker.charge(expandedCount - chargedExpanded, tripCount - chargedTrips);
+        chargedExpanded = expandedCount;
+        chargedTrips = tripCount;
+        return res;
+    }
+
+    /**
+     * Stop the enumeration when a limit of the query is reached.
+     * @param tracker spending of the query, possibly shared with other iterators.
+     */
+    /* package visibility */
+    void setTracker(BudgetTracker tracker) {
+        this.tracker = tracker;
+    }
+
+    /**
+     * Limit which stopped the enumeration, once {@link #hasNext()} has returned false.
+     * @return the limit, null if every trip has been returned or if there's no limit.
+     */
+    public QueryBudget.Limit getTruncation() {
+        return tracker == null ? null : tracker.getTruncation();
+    }
+
+    /**
+     * Number of routes followed so far.
+     * @return number of routes.
+     */
+    public long getExpandedCount() {
+        return expandedCount;
+    }
+
+    /**
+     * Number of trips built so far, including the beginnings shared by the trips returned, or added to a set.
+     * @return number of trips.
+     */
+    public long getTripCount() {
+        return tripCount;
+    }
+
+    /**
+     * Ids of the cities on the stack.
+     * @return a copy of the stack, starting with the city to start from.
+     */
+    /* package visibility */
+    int[] getPath() {
+        return Arrays.copyOf(towns, depth + 1);
+    }
+
+    /**
+     * Distance from the start to every city on the stack.
+     * @return a copy of the distances, starting with 0.
+     */
+    /* package visibility */
+    int[] getPathDistances() {
+        return Arrays.copyOf(distances, depth + 1);
+    }
+
+    private void push(int town, int distance) {
+        depth++;
+        if (depth == towns.length) {
+            towns = Arrays.copyOf(towns, depth * 2);
+            distances = Arrays.copyOf(distances, depth * 2);
+            cursors = Arrays.copyOf(cursors, depth * 2);
+            ends = Arrays.copyOf(ends, depth * 2);
+            trips = Arrays.copyOf(trips, depth * 2);
+        }
+        towns[depth] = town;
+        distances[depth] = distance;
+        if (visited != null && depth > 0) {
+            visited[town] = true;
+        }
+
+        int first = graph.getOffset(town);
+        int last = graph.getOffset(town + 1);
+        if (ranks == null) {
+            cursors[depth] = first;
+            ends[depth] = last;
+            return;
+        }
+        if (orderSize + last - first > order.length) {
+            order = Arrays.copyOf(order, Math.max(order.length * 2, orderSize + last - first));
+        }
+        cursors[depth] = orderSize;
+        for (int r = first; r < last; r++) {
+            // insertion sort by rank, rows are expected to be short.
+            int rank = ranks[graph.getTarget(r)];
+            int i = orderSize++;
+            while (i > cursors[depth] && ranks[graph.getTarget(order[i - 1])] > rank) {
+                order[i] = order[i - 1];
+                i--;
+            }
+            order[i] = r;
+        }
+        ends[depth] = orderSize;
+    }
+
+    private void pop() {
+        if (depth == base && base > 0) { // sub tree is explored.
+            depth = -1;
+            return;
+        }
+        if (visited != null && depth > 0) {
+            visited[towns[depth]] = false;
+        }
+        if (ranks != null) {
+            // routes of the city are the last ones of the order.
+            int town = towns[depth];
+            orderSize = ends[depth] - (graph.getOffset(town + 1) - graph.getOffset(town));
+        }
+        if (built == depth) {
+            trips[depth] = null;
+            built--;
+        }
+        depth--;
+    }
+
+    /**
+     * Keep the trip on the stack followed by a last city, the stack may grow before it is built.
+     * @param last id of the last city.
+     * @param distance global distance.
+     * @return true.
+     */
+    private boolean found(int last, int distance) {
+        foundDepth = depth;
+        foundTown = last;
+        foundDistance = distance;
+        return true;
+    }
+
+    /**
+     * Build the trip found by last {@link #follow()}, sharing its beginning with the trips built before.
+     * @return the complete trip.
+     */
+    /* package visibility */
+    Trip build() {
+        for (int d = built + 1; d <= foundDepth; d++) {
+            trips[d] = d == 0 ? new Trip(graph.getTown(towns[0]))
+                    : trips[d - 1].cloneAndAdd(graph.getTown(towns[d]), distances[d] - distances[d - 1]);
+        }
+        tripCount += foundDepth - built + 1;
+        built = foundDepth;
+        Trip trip = trips[foundDepth].cloneAndAdd(graph.getTown(foundTown), foundDistance - distances[foundDepth]);
+        trip.setComplete();
+        return trip;
+    }
+
+    /**
+     * Alphabetical rank of every city.
+     */
+    private static int[] ranks(final Graph graph) {
+        Integer[] ids = new Integer[graph.getTownCount()];
+        for (int t = 0; t < ids.length; t++) {
+            ids[t] = Integer.valueOf(t);
+        }
+        Arrays.sort(ids, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return graph.getTown(a.intValue()).compareTo(graph.getTown(b.intValue()));
+            }
+        });
+        int[] ranks = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            ranks[ids[i].intValue()] = i;
+        }
+        return ranks;
+    }
+}
@@ -0,0 +1,50 @@
+package org.toughjobs.exams.trains.processing;
+
+import java.util.Set;
+
+import org.toughjobs.exams.trains.data.Trip;
+
+/**
+ * Trips of an enumeration run with a {@link QueryBudget}, and the limit which stopped it if any.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class TripResult {
+
+    private final Set<Trip> trips;
+    private final QueryBudget.Limit truncation;
+
+    /**
+     * New result.
+     * @param trips trips found.
+     * @param truncation limit which stopped the enumeration, null if every trip has been found.
+     */
+    public TripResult(Set<Trip> trips, QueryBudget.Limit truncation) {
+        this.trips = trips;
+        this.truncation = truncation;
+    }
+
+    /**
+     * Trips found, every trip when not truncated.
+     * @return a set in alphabetical order.
+     */
+    public Set<Trip> getTrips() {
+        return trips;
+    }
+
+    /**
+     * Whether some trips may be missing.
+     * @return true if a limit stopped the enumeration.
+     */
+    public boolean isTruncated() {
+        return truncation != null;
+    }
+
+    /**
+     * Limit which stopped the enumeration.
+     * @return the limit, null if every trip has been found.
+     */
+    public QueryBudget.Limit getTruncation() {
+        return truncation;
+    }
+}
@@ -0,0 +1,326 @@
+package org.toughjobs.exams.trains.processing;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.toughjobs.exams.trains.data.Trip;
+import org.toughjobs.exams.trains.graph.Graph;
+
+/**
+ * Set of complete trips stored as sequences of city ids: every trip, starting city included, is a slice of one
+ * shared array, with its distance. Trips are added by the enumerations without building any {@link Trip}, a
+ * {@link Trip} is only built when the set is read through {@link #iterator()} or {@link #get(int)}.
+ * Trips are kept in alphabetical order of their step names, compared step by step, which is the order of
+ * {@link Trip#compareTo(Trip)} as long as no city name is the beginning of another one. Trips are sorted once, when
+ * the set is first read after trips have been added: a comparison reads ids and compares city names only where two
+ * trips differ, it allocates nothing.
+ * Trips can be added, not removed. It is not thread safe.
+ *
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class TripSet extends AbstractSet<Trip> {
+
+    private final Graph graph;
+    /**
+     * Cities of every trip, trip i is from offsets[i] to offsets[i + 1].
+     */
+    private int[] towns = new int[64];
+    private int[] offsets = new int[17];
+    private int[] distances = new int[16];
+    private int size;
+    /**
+     * Whether trips are in order, without duplicate.
+     */
+    private boolean sorted = true;
+
+    /**
+     * Empty set.
+     * @param graph graph of the trips, naming their cities.
+     */
+    public TripSet(Graph graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * Add a trip ending with a city after a prefix. The set isn't sorted again until it is read, duplicates are
+     * dropped then.
+     * @param path ids of the cities of the prefix, starting with the city to start from.
+     * @param length number of cities of the prefix.
+     * @param last id of the last city.
+     * @param distance distance of the trip.
+     */
+    /* package visibility */
+    void add(int[] path, int length, int last, int distance) {
+        append(path, 0, length, last, distance);
+        sorted = false;
+    }
+
+    /**
+     * Add every trip of another set of the same graph.
+     * @param other set to copy.
+     */
+    /* package visibility */
+    void addAll(TripSet other) {
+        for (int i = 0; i < other.size; i++) {
+            append(other.towns, other.offsets[i], other.offsets[i + 1] - other.offsets[i], Graph.NONE,
+                    other.distances[i]);
+        }
+        sorted &= other.size == 0;
+    }
+
+    @Override
+    public boolean add(Trip trip) {
+        int[] path = toPath(trip);
+        if (path == null) {
+            throw new IllegalArgumentException("Trip through an unknown city: " + trip);
+        }
+        sort();
+        int index = search(path);
+        if (index >= 0) {
+            return false;
+        }
+        // append it then move it in place, the set stays sorted.
+        append(path, 0, path.length, Graph.NONE, trip.getDistance());
+        int position = -index - 1;
+        int start = offsets[position];
+        System.arraycopy(towns, start, towns, start + path.length, offsets[size - 1] - start);
+        System.arraycopy(path, 0, towns, start, path.length);
+        for (int i = size - 1; i > position; i--) {
+            offsets[i] = offsets[i - 1] + path.length;
+            distances[i] = distances[i - 1];
+        }
+        distances[position] = trip.getDistance();
+        return true;
+    }
+
+    private void append(int[] path, int start, int length, int last, int distance) {
+        int count = last == Graph.NONE ? length : length + 1;
+        int end = offsets[size];
+        if (end + count > towns.length) {
+            towns = Arrays.copyOf(towns, Math.max(towns.length * 2, end + count));
+        }
+        System.arraycopy(path, start, towns, end, length);
+        if (last != Graph.NONE) {
+            towns[end + length] = last;
+        }
+        if (size + 1 == distances.length) {
+            distances = Arrays.copyOf(distances, distances.length * 2);
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        distances[size] = distance;
+        size++;
+        offsets[size] = end + count;
+    }
+
+    @Override
+    public int size() {
+        sort();
+        return size;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof Trip)) {
+            return false;
+        }
+        int[] path = toPath((Trip) o);
+        if (path == null) {
+            return false;
+        }
+        sort();
+        return search(path) >= 0;
+    }
+
+    @Override
+    public Iterator<Trip> iterator() {
+        sort();
+        return new Iterator<Trip>() {
+
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Trip next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return get(next++);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Build a trip of the set.
+     * @param index position of the trip, in alphabetical order.
+     * @return a complete trip, not shared with the set.
+     */
+    public Trip get(int index) {
+        sort();
+        checkIndex(index);
+        Trip trip = new Trip(graph.getTown(towns[offsets[index]]));
+        for (int i = offsets[index] + 1; i < offsets[index + 1]; i++) {
+            trip.add(graph.getTown(towns[i]), 0);
+        }
+        trip.setDistance(distances[index]);
+        trip.setComplete();
+        return trip;
+    }
+
+    /**
+     * Distance of a trip, without building it.
+     * @param index position of the trip, in alphabetical order.
+     * @return the distance.
+     */
+    public int getDistance(int index) {
+        sort();
+        checkIndex(index);
+        return distances[index];
+    }
+
+    /**
+     * Number of steps of a trip, without building it.
+     * @param index position of the trip, in alphabetical order.
+     * @return number of cities but the starting one.
+     */
+    public int getStepCount(int index) {
+        sort();
+        checkIndex(index);
+        return offsets[index + 1] - offsets[index] - 1;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+    }
+
+    /**
+     * Ids of the cities of a trip.
+     * @return the ids, starting with the city to start from, or null if a city isn't in the graph.
+     */
+    private int[] toPath(Trip trip) {
+        int[] res = new int[trip.getStepCount() + 1];
+        res[0] = graph.indexOf(trip.getFrom());
+        int i = 1;
+        for (String step : trip.getSteps()) {
+            res[i++] = graph.indexOf(step);
+        }
+        for (int town : res) {
+            if (town == Graph.NONE) {
+                return null;
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Binary search of a trip in the sorted set.
+     * @return the position of the trip, or (-(insertion point) - 1) if it isn't in the set.
+     */
+    private int search(int[] path) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int cmp = compare(towns, offsets[middle], offsets[middle + 1], path, 0, path.length);
+            if (cmp < 0) {
+                low = middle + 1;
+            } else if (cmp > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Compare two trips city by city, a trip coming before the trips it begins.
+     */
+    private int compare(int[] a, int aStart, int aEnd, int[] b, int bStart, int bEnd) {
+        int length = Math.min(aEnd - aStart, bEnd - bStart);
+        for (int i = 0; i < length; i++) {
+            int x = a[aStart + i];
+            int y = b[bStart + i];
+            if (x != y) {
+                return graph.getTown(x).compareTo(graph.getTown(y));
+            }
+        }
+        return (aEnd - aStart) - (bEnd - bStart);
+    }
+
+    /**
+     * Sort trips added since last read and drop duplicates, copying them to a new array in order.
+     */
+    private void sort() {
+        if (sorted) {
+            return;
+        }
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        mergeSort(order, new int[size], 0, size);
+
+        int[] sortedTowns = new int[offsets[size]];
+        int[] sortedOffsets = new int[offsets.length];
+        int[] sortedDistances = new int[distances.length];
+        int count = 0;
+        for (int i = 0; i < order.length; i++) {
+            int t = order[i];
+            if (count > 0 && compare(t, order[i - 1]) == 0) {
+                continue;
+            }
+            int length = offsets[t + 1] - offsets[t];
+            System.arraycopy(towns, offsets[t], sortedTowns, sortedOffsets[count], length);
+            sortedDistances[count] = distances[t];
+            count++;
+            sortedOffsets[count] = sortedOffsets[count - 1] + length;
+        }
+        towns = sortedTowns;
+        offsets = sortedOffsets;
+        distances = sortedDistances;
+        size = count;
+        sorted = true;
+    }
+
+    private int compare(int a, int b) {
+        return compare(towns, offsets[a], offsets[a + 1], towns, offsets[b], offsets[b + 1]);
+    }
+
+    /**
+     * Stable merge sort of trip indexes.
+     */
+    private void mergeSort(int[] order, int[] buffer, int first, int end) {
+        if (end - first < 2) {
+            return;
+        }
+        int middle = (first + end) >>> 1;
+        mergeSort(order, buffer, first, middle);
+        mergeSort(order, buffer, middle, end);
+        if (compare(order[middle - 1], order[middle]) <= 0) {
+            return; // already in order.
+        }
+        System.arraycopy(order, first, buffer, first, end - first);
+        int i = first;
+        int j = middle;
+        for (int k = first; k < end; k++) {
+            if (j >= end || (i < middle && compare(buffer[i], buffer[j]) <= 0)) {
+                order[k] = buffer[i++];
+            } else {
+                order[k] = buffer[j++];
+            }
+        }
+    }
+}
@@ -5,9 +5,9 @@ import java.util.Iterator;
 import java.util.Set;
 import java.util.logging.Logger;
 
-import org.toughjobs.exams.trains.data.Route;
 import org.toughjobs.exams.trains.data.Trip;
 import org.toughjobs.exams.trains.exceptions.NoSuchRouteException;
+import org.toughjobs.exams.trains.graph.GraphLoader;
 import org.toughjobs.exams.trains.processing.Processor;
 import org.toughjobs.exams.trains.processing.ProcessorImpl;
 
@@ -34,18 +34,7 @@ public class ExamResultTest extends TestCase {
      * @return the input graph.
      */
     public static Processor getGraph() {
-        Processor proc = new ProcessorImpl();
-        proc.addRoute(new Route("A", "B"), 5);
-        proc.addRoute(new Route("B", "C"), 4);
-        proc.addRoute(new Route("C", "D"), 8);
-        proc.addRoute(new Route("D", "C"), 8);
-        proc.addRoute(new Route("D", "E"), 6);
-        proc.addRoute(new Route("A", "D"), 5);
-        proc.addRoute(new Route("C", "E"), 2);
-        proc.addRoute(new Route("E", "B"), 3);
-        proc.addRoute(new Route("A", "E"), 7);
-
-        return proc;
+        return new ProcessorImpl(GraphLoader.parse("AB5, BC4, CD8, DC8, DE6, AD5, CE2, EB3, AE7"));
     }
 
     /**
@@ -1,5 +1,7 @@
 package org.toughjobs.exams.trains.data;
 
+import java.util.Arrays;
+
 import org.toughjobs.exams.trains.data.Trip;
 
 import junit.framework.TestCase;
@@ -31,4 +33,61 @@ public class TripTest extends TestCase {
 
     }
 
+    /**
+     * Test clones sharing their steps stay independent.
+     */
+    public void testSharedSteps() {
+        Trip root = new Trip("A");
+        root.add("B", 5);
+        Trip left = root.cloneAndAdd("C", 4);
+        Trip right = root.cloneAndAdd("D", 1);
+        left.add("E", 2);
+
+        assertEquals("AB", root.toString());
+        assertEquals("ABCE", left.toString());
+        assertEquals("ABD", right.toString());
+        assertEquals(11, left.getDistance());
+        assertEquals(6, right.getDistance());
+        assertEquals(3, left.getStepCount());
+        assertEquals(Arrays.asList("B", "C", "E"), left.getSteps());
+        assertEquals(Arrays.asList("B", "C", "E").hashCode(), left.hashCode());
+        assertTrue(left.hasStep("C"));
+        assertFalse(right.hasStep("C"));
+        assertFalse(right.hasStep("A"));
+        assertEquals("D", right.peakLast());
+        assertEquals("A", new Trip("A").peakLast());
+        assertFalse(left.equals(right));
+        assertTrue(right.compareTo(left) > 0);
+
+        try {
+            left.getSteps().add("F");
+            assertFalse(true);
+        } catch (UnsupportedOperationException ex) {
+            assertTrue(true);
+        }
+    }
+
+    /**
+     * Test null steps are compared without exception.
+     */
+    public void testNullStep() {
+        Trip trip = new Trip("A");
+        trip.add(null, 1);
+        trip.add("B", 2);
+        Trip other = new Trip("A");
+        other.add(null, 1);
+        other.add("B", 2);
+
+        assertTrue(trip.hasStep(null));
+        assertTrue(trip.hasStep("B"));
+        assertFalse(trip.hasStep("C"));
+        assertEquals(trip, other);
+        assertEquals(trip.hashCode(), other.hashCode());
+        Trip third = new Trip("A");
+        third.add("C", 1);
+        third.add("B", 2);
+        assertFalse(trip.equals(third));
+        assertFalse(third.equals(trip));
+        assertFalse(new Trip(null).equals(new Trip("A")));
+    }
 }
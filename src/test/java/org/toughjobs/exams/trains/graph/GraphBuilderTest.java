@@ -0,0 +1,117 @@
+package org.toughjobs.exams.trains.graph;
+
+import junit.framework.TestCase;
+
+/**
+ * Provide methods to test {@link GraphBuilder} and {@link GraphImpl}
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class GraphBuilderTest extends TestCase {
+
+    /**
+     * Test cities are interned in the order they are first seen.
+     */
+    public void testTowns() {
+        Graph g = new GraphBuilder().addRoute("A", "B", 5).addRoute("B", "C", 4).build();
+
+        assertEquals(3, g.getTownCount());
+        assertEquals(0, g.indexOf("A"));
+        assertEquals(2, g.indexOf("C"));
+        assertEquals("B", g.getTown(1));
+        assertEquals(Graph.NONE, g.indexOf("D"));
+    }
+
+    /**
+     * Test routes are grouped by departure city and sorted by destination.
+     */
+    public void testRoutes() {
+        Graph g = new GraphBuilder().addRoute("A", "E", 7).addRoute("A", "B", 5).addRoute("B", "C", 4)
+                .addRoute("A", "C", 9).build();
+
+        int a = g.indexOf("A");
+        assertEquals(4, g.getRouteCount());
+        assertEquals(3, g.getOffset(a + 1) - g.getOffset(a));
+        for (int r = g.getOffset(a) + 1; r < g.getOffset(a + 1); r++) {
+            assertTrue(g.getTarget(r - 1) < g.getTarget(r));
+        }
+
+        int route = g.findRoute(a, g.indexOf("C"));
+        assertEquals(9, g.getWeight(route));
+        assertEquals(Graph.NONE, g.findRoute(g.indexOf("C"), a));
+        assertEquals(g.getRouteCount(), g.getOffset(g.getTownCount()));
+    }
+
+    /**
+     * Test the last distance wins when a route is added twice.
+     */
+    public void testOverride() {
+        GraphBuilder builder = new GraphBuilder(1, 1);
+        builder.addRoute("A", "B", 5);
+        builder.addRoute("A", "C", 3);
+        builder.addRoute("A", "B", 7);
+        Graph g = builder.build();
+
+        assertEquals(2, g.getRouteCount());
+        assertEquals(7, g.getWeight(g.findRoute(0, g.indexOf("B"))));
+    }
+
+    /**
+     * Test a city with many routes.
+     */
+    public void testLargeRow() {
+        GraphBuilder builder = new GraphBuilder();
+        for (int i = 99; i >= 0; i--) {
+            builder.addRoute("hub", "T" + i, i);
+        }
+        builder.addRoute("hub", "T50", 500);
+        Graph g = builder.build();
+
+        assertEquals(100, g.getRouteCount());
+        assertEquals(500, g.getWeight(g.findRoute(g.indexOf("hub"), g.indexOf("T50"))));
+        assertEquals(99, g.getWeight(g.findRoute(g.indexOf("hub"), g.indexOf("T99"))));
+    }
+
+    /**
+     * Test the route index keeps every route when it grows.
+     */
+    public void testRouteIndex() {
+        LongIntHashMap map = new LongIntHashMap(1);
+        for (int i = 0; i < 1000; i++) {
+            map.put(LongIntHashMap.pack(i, 1000 - i), i);
+        }
+        map.put(LongIntHashMap.pack(0, 0), 5);
+        map.put(LongIntHashMap.pack(0, 0), 6);
+
+        assertEquals(1001, map.size());
+        assertEquals(6, map.get(LongIntHashMap.pack(0, 0)));
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, map.get(LongIntHashMap.pack(i, 1000 - i)));
+        }
+        assertEquals(Graph.NONE, map.get(LongIntHashMap.pack(1000, 0)));
+        assertFalse(LongIntHashMap.pack(0, 1) == LongIntHashMap.pack(1, 0));
+    }
+
+    /**
+     * Test a transposed graph has every route backward, with the same city ids.
+     */
+    public void testTranspose() {
+        Graph g = new GraphBuilder().addRoute("A", "B", 5).addRoute("B", "C", 4).addRoute("D", "B", 2)
+                .addRoute("A", "C", 9).build();
+        Graph r = GraphBuilder.transpose(g);
+
+        assertEquals(g.getTownCount(), r.getTownCount());
+        assertEquals(g.getRouteCount(), r.getRouteCount());
+        for (int t = 0; t < g.getTownCount(); t++) {
+            assertEquals(g.getTown(t), r.getTown(t));
+            for (int to = 0; to < g.getTownCount(); to++) {
+                int route = g.findRoute(t, to);
+                int back = r.findRoute(to, t);
+                assertEquals(route == Graph.NONE, back == Graph.NONE);
+                if (route != Graph.NONE) {
+                    assertEquals(g.getWeight(route), r.getWeight(back));
+                }
+            }
+        }
+        assertEquals(2, r.getOffset(g.indexOf("B") + 1) - r.getOffset(g.indexOf("B")));
+    }
+}
@@ -0,0 +1,153 @@
+package org.toughjobs.exams.trains.graph;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.toughjobs.exams.trains.graph.GraphLoader.Format;
+
+import junit.framework.TestCase;
+
+/**
+ * Provide methods to test {@link GraphLoader}
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class GraphLoaderTest extends TestCase {
+
+    /**
+     * Test the notation of the exam.
+     */
+    public void testParse() {
+        Graph g = GraphLoader.parse("AB5, BC4,CD8\nDC8  AE17,");
+
+        assertEquals(5, g.getTownCount());
+        assertEquals(5, g.getRouteCount());
+        assertEquals("A", g.getTown(0));
+        assertEquals(17, g.getWeight(g.findRoute(g.indexOf("A"), g.indexOf("E"))));
+        assertEquals(0, GraphLoader.parse(" ").getTownCount());
+
+        for (String routes : new String[] { "AB", "AB5, B", "ABC" }) {
+            try {
+                GraphLoader.parse(routes);
+                assertFalse(routes, true);
+            } catch (IllegalArgumentException ex) {
+                assertTrue(true);
+            }
+        }
+    }
+
+    /**
+     * Test a file with a route per line, long names and several separators.
+     */
+    public void testCsv() throws IOException {
+        File file = write("from,to,distance\r\n# comment\r\nParis, Lyon , 465\r\n\r\nLyon;Z\u00fcrich;410\nZ\u00fcrich\tParis\t 600");
+        try {
+            Graph g = GraphLoader.load(file, Format.CSV);
+            assertEquals(3, g.getTownCount());
+            assertEquals(3, g.getRouteCount());
+            assertEquals("Z\u00fcrich", g.getTown(2));
+            assertEquals(410, g.getWeight(g.findRoute(g.indexOf("Lyon"), g.indexOf("Z\u00fcrich"))));
+            assertEquals(600, g.getWeight(g.findRoute(g.indexOf("Z\u00fcrich"), g.indexOf("Paris"))));
+        } finally {
+            file.delete();
+        }
+
+        // the header is the first line which isn't a comment or blank, and only that one.
+        file = write("# exported\n\nfrom,to,distance\nA,B,5\n");
+        try {
+            Graph g = GraphLoader.load(file, Format.CSV);
+            assertEquals(2, g.getTownCount());
+            assertEquals(5, g.getWeight(g.findRoute(g.indexOf("A"), g.indexOf("B"))));
+        } finally {
+            file.delete();
+        }
+        file = write("A,B,5\nfrom,to,distance\n");
+        try {
+            GraphLoader.load(file, Format.CSV);
+            assertFalse(true);
+        } catch (IllegalArgumentException ex) {
+            assertTrue(ex.getMessage().startsWith("Malformed route 2"));
+        } finally {
+            file.delete();
+        }
+
+        file = write("A,B,5\nA,B\n");
+        try {
+            GraphLoader.load(file, Format.CSV);
+            assertFalse(true);
+        } catch (IllegalArgumentException ex) {
+            assertTrue(ex.getMessage().contains("2"));
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Test routes cut by the end of a mapped window are read from next window.
+     */
+    public void testWindows() throws IOException {
+        Random random = new Random(3);
+        StringBuilder csv = new StringBuilder();
+        StringBuilder routes = new StringBuilder();
+        GraphBuilder builder = new GraphBuilder();
+        for (int i = 0; i < 500; i++) {
+            int from = random.nextInt(50);
+            int to = random.nextInt(50);
+            int distance = random.nextInt(1000);
+            csv.append("town").append(from).append(',').append("town").append(to).append(',').append(distance)
+                    .append('\n');
+            routes.append((char) ('A' + from)).append((char) ('A' + to)).append(distance).append(", ");
+            builder.addRoute("town" + from, "town" + to, distance);
+        }
+        Graph expected = builder.build();
+
+        File file = write(csv.toString());
+        try {
+            assertEquals(expected, GraphLoader.load(file, Format.CSV, Storage.HEAP, 37));
+            assertEquals(expected, GraphLoader.load(file, Format.CSV));
+        } finally {
+            file.delete();
+        }
+
+        file = write(routes.toString());
+        try {
+            Graph g = GraphLoader.load(file, Format.ROUTES, Storage.HEAP, 16);
+            assertEquals(expected.getRouteCount(), g.getRouteCount());
+            assertEquals(GraphLoader.parse(routes.toString()).getRouteCount(), g.getRouteCount());
+            try {
+                GraphLoader.load(file, Format.CSV, Storage.HEAP, 16);
+                assertFalse(true);
+            } catch (IllegalArgumentException ex) {
+                assertTrue(true);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static void assertEquals(Graph expected, Graph actual) {
+        assertEquals(expected.getTownCount(), actual.getTownCount());
+        assertEquals(expected.getRouteCount(), actual.getRouteCount());
+        for (int t = 0; t < expected.getTownCount(); t++) {
+            assertEquals(expected.getTown(t), actual.getTown(t));
+            assertEquals(expected.getOffset(t + 1), actual.getOffset(t + 1));
+        }
+        for (int r = 0; r < expected.getRouteCount(); r++) {
+            assertEquals(expected.getTarget(r), actual.getTarget(r));
+            assertEquals(expected.getWeight(r), actual.getWeight(r));
+        }
+    }
+
+    private static File write(String content) throws IOException {
+        File file = File.createTempFile("routes", ".csv");
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+}
@@ -0,0 +1,160 @@
+package org.toughjobs.exams.trains.graph;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import org.toughjobs.exams.trains.ExamResultTest;
+import org.toughjobs.exams.trains.exceptions.NoSuchRouteException;
+import org.toughjobs.exams.trains.processing.Processor;
+import org.toughjobs.exams.trains.processing.ProcessorImpl;
+
+import junit.framework.TestCase;
+
+/**
+ * Provide methods to test {@link GraphSnapshot} and {@link BufferGraph}
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class GraphSnapshotTest extends TestCase {
+
+    private File file;
+
+    @Override
+    protected void setUp() throws IOException {
+        file = File.createTempFile("graph", ".snapshot");
+    }
+
+    @Override
+    protected void tearDown() {
+        file.delete();
+    }
+
+    /**
+     * Test a snapshot of the exam graph answers like the text it comes from.
+     */
+    public void testExamGraph() throws IOException, NoSuchRouteException {
+        GraphSnapshot.write(GraphLoader.parse("AB5, BC4, CD8, DC8, DE6, AD5, CE2, EB3, AE7"), file);
+        Processor proc = new ProcessorImpl(GraphSnapshot.load(file));
+        Processor expected = ExamResultTest.getGraph();
+
+        assertEquals(expected.getRoute("A", "E", "B", "C", "D"), proc.getRoute("A", "E", "B", "C", "D"));
+        assertEquals(expected.findTripsMaxDistance("C", "C", 30), proc.findTripsMaxDistance("C", "C", 30));
+        assertEquals(expected.getShortestDistanceTrip("B", "B"), proc.getShortestDistanceTrip("B", "B"));
+        try {
+            proc.getRoute("A", "E", "D");
+            assertFalse(true);
+        } catch (NoSuchRouteException ex) {
+            assertTrue(true);
+        }
+    }
+
+    /**
+     * Test a snapshot of a random graph loaded from text has every city and route.
+     */
+    public void testRoundTrip() throws IOException {
+        Random random = new Random(7);
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            csv.append("Station ").append(random.nextInt(300)).append('\t')
+                    .append("Gare \u00e9").append(random.nextInt(300)).append('\t')
+                    .append(random.nextInt(100)).append('\n');
+        }
+        File text = File.createTempFile("routes", ".tsv");
+        Graph expected;
+        try {
+            RandomAccessFile out = new RandomAccessFile(text, "rw");
+            out.write(csv.toString().getBytes("UTF-8"));
+            out.close();
+            expected = GraphLoader.load(text, GraphLoader.Format.CSV);
+        } finally {
+            text.delete();
+        }
+
+        GraphSnapshot.write(expected, file);
+        Graph g = GraphSnapshot.load(file);
+        assertEquals(expected.getTownCount(), g.getTownCount());
+        assertEquals(expected.getRouteCount(), g.getRouteCount());
+        for (int t = 0; t < expected.getTownCount(); t++) {
+            assertEquals(expected.getTown(t), g.getTown(t));
+            assertEquals(t, g.indexOf(expected.getTown(t)));
+            assertEquals(expected.getOffset(t + 1), g.getOffset(t + 1));
+            for (int r = expected.getOffset(t); r < expected.getOffset(t + 1); r++) {
+                assertEquals(expected.getTarget(r), g.getTarget(r));
+                assertEquals(expected.getWeight(r), g.getWeight(r));
+                assertEquals(r, g.findRoute(t, g.getTarget(r)));
+            }
+        }
+        assertEquals(Graph.NONE, g.indexOf("Station 300"));
+        assertEquals(expected.findRoute(0, 0), g.findRoute(0, 0));
+    }
+
+    /**
+     * Test names are found whatever the length of their UTF-8 encoding, lone surrogates being encoded as ?.
+     */
+    public void testUtf8Names() throws IOException {
+        String[] names = {"Z\u00fcrich", "\u6771\u4eac", "\ud83d\ude82 Express", "Lone \ud83d", "Lone ?", "A"};
+        GraphBuilder builder = new GraphBuilder();
+        for (int i = 0; i + 1 < names.length; i += 2) {
+            builder.addRoute(names[i], names[i + 1], i);
+        }
+        GraphSnapshot.write(builder.build(), file);
+        Graph g = GraphSnapshot.load(file);
+        for (int t = 0; t < 3; t++) {
+            assertEquals(t, g.indexOf(names[t]));
+        }
+        assertEquals(5, g.indexOf("A"));
+        // both written as "Lone ?" by String.getBytes.
+        assertEquals(g.indexOf("Lone ?"), g.indexOf("Lone \ud83d"));
+        assertTrue(g.indexOf("Lone ?") == 3 || g.indexOf("Lone ?") == 4);
+        assertEquals(Graph.NONE, g.indexOf("Zurich"));
+        assertEquals(Graph.NONE, g.indexOf("\u6771"));
+        assertEquals(Graph.NONE, g.indexOf("\u6771\u4eac\u6771"));
+    }
+
+    /**
+     * Test corrupted and foreign files are rejected.
+     */
+    public void testCorrupted() throws IOException {
+        GraphSnapshot.write(GraphLoader.parse("AB5, BC4"), file);
+        RandomAccessFile out = new RandomAccessFile(file, "rw");
+        out.seek(GraphSnapshot.HEADER + 8);
+        out.write(7);
+        out.close();
+        try {
+            GraphSnapshot.load(file);
+            assertFalse(true);
+        } catch (IOException ex) {
+            assertTrue(ex.getMessage().startsWith("Corrupted"));
+        }
+        assertEquals(3, GraphSnapshot.load(file, false).getTownCount());
+
+        out = new RandomAccessFile(file, "rw");
+        out.writeInt(0);
+        out.close();
+        try {
+            GraphSnapshot.load(file, false);
+            assertFalse(true);
+        } catch (IOException ex) {
+            assertTrue(ex.getMessage().startsWith("Not a graph snapshot"));
+        }
+
+        // counts of cities, routes, name bytes and index slots, checked even when the checksum isn't.
+        for (int position = 8; position < 24; position += 4) {
+            for (int value : new int[] {-1, Integer.MAX_VALUE}) {
+                GraphSnapshot.write(GraphLoader.parse("AB5, BC4"), file);
+                out = new RandomAccessFile(file, "rw");
+                out.seek(position);
+                out.writeInt(value);
+                out.close();
+                try {
+                    GraphSnapshot.load(file, false);
+                    assertFalse(true);
+                } catch (IOException ex) {
+                    assertTrue(ex.getMessage(), ex.getMessage().startsWith("Corrupted")
+                            || ex.getMessage().startsWith("Truncated"));
+                }
+            }
+        }
+    }
+}
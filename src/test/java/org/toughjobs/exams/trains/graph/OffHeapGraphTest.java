@@ -0,0 +1,101 @@
+package org.toughjobs.exams.trains.graph;
+
+import java.util.Random;
+
+import org.toughjobs.exams.trains.data.Route;
+import org.toughjobs.exams.trains.exceptions.NoSuchRouteException;
+import org.toughjobs.exams.trains.processing.ProcessorImpl;
+
+import junit.framework.TestCase;
+
+/**
+ * Provide methods to test {@link OffHeapGraph} and {@link IntArray}
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class OffHeapGraphTest extends TestCase {
+
+    /**
+     * Test a graph built out of the heap has the routes of the one built on the heap.
+     */
+    public void testBuild() {
+        Random random = new Random(9);
+        GraphBuilder builder = new GraphBuilder();
+        GraphBuilder staged = new GraphBuilder(1, 1, Storage.OFF_HEAP);
+        for (int i = 0; i < 3000; i++) {
+            String from = "T" + random.nextInt(200);
+            String to = "T" + random.nextInt(200);
+            int distance = random.nextInt(50);
+            builder.addRoute(from, to, distance);
+            staged.addRoute(from, to, distance);
+        }
+        Graph expected = builder.build();
+        Graph g = builder.build(Storage.OFF_HEAP);
+        assertTrue(g instanceof OffHeapGraph);
+        assertTrue(((OffHeapGraph) g).isDirect());
+        assertSameGraph(expected, g);
+
+        // routes staged out of the heap, in arrays grown many times.
+        Graph built = staged.build(Storage.OFF_HEAP);
+        assertTrue(((OffHeapGraph) built).isDirect());
+        assertSameGraph(expected, built);
+        assertSameGraph(expected, staged.build(Storage.HEAP));
+    }
+
+    private static void assertSameGraph(Graph expected, Graph g) {
+        assertEquals(expected.getTownCount(), g.getTownCount());
+        assertEquals(expected.getRouteCount(), g.getRouteCount());
+        for (int t = 0; t < expected.getTownCount(); t++) {
+            assertEquals(expected.getTown(t), g.getTown(t));
+            assertEquals(t, g.indexOf(g.getTown(t)));
+            assertEquals(expected.getOffset(t), g.getOffset(t));
+            for (int to = 0; to < expected.getTownCount(); to++) {
+                assertEquals(expected.findRoute(t, to), g.findRoute(t, to));
+            }
+        }
+        for (int r = 0; r < expected.getRouteCount(); r++) {
+            assertEquals(expected.getTarget(r), g.getTarget(r));
+            assertEquals(expected.getWeight(r), g.getWeight(r));
+        }
+    }
+
+    /**
+     * Test values are stored across direct chunks.
+     */
+    public void testChunks() {
+        IntArray array = new IntArray.Direct(1000, 4);
+        for (int i = 0; i < array.length(); i++) {
+            array.set(i, i * 3);
+        }
+        for (int i = 0; i < array.length(); i++) {
+            assertEquals(i * 3, array.get(i));
+        }
+        assertEquals(0, new IntArray.Direct(0, 4).length());
+
+        IntArray grown = array.grow(1500);
+        assertEquals(1500, grown.length());
+        for (int i = 0; i < grown.length(); i++) {
+            assertEquals(i < 1000 ? i * 3 : 0, grown.get(i));
+        }
+        grown.set(1499, 7);
+        assertEquals(7, grown.get(1499));
+        assertEquals(3, IntArray.allocate(2, Storage.HEAP).grow(3).length());
+        assertFalse(IntArray.allocate(10, Storage.HEAP).isDirect());
+    }
+
+    /**
+     * Test a processor rebuilding its graph out of the heap.
+     */
+    public void testProcessor() throws NoSuchRouteException {
+        ProcessorImpl proc = new ProcessorImpl(GraphLoader.parse("AB5, BC4, CD8, DC8, DE6, AD5, CE2, EB3, AE7"));
+        proc.setStorage(Storage.OFF_HEAP);
+        proc.addRoute(new Route("E", "A"), 1);
+        ProcessorImpl expected = new ProcessorImpl(GraphLoader.parse("AB5, BC4, CD8, DC8, DE6, AD5, CE2, EB3, AE7, EA1"));
+
+        assertTrue(proc.getGraph() instanceof OffHeapGraph);
+        assertEquals(22, proc.getRoute("A", "E", "B", "C", "D"));
+        assertEquals(expected.findTripsMaxDistance("C", "C", 30), proc.findTripsMaxDistance("C", "C", 30));
+        assertEquals(expected.findTrips("A", "D"), proc.findTrips("A", "D"));
+        assertEquals(9, proc.getShortestDistanceTrip("B", "B").getDistance());
+        assertEquals(8, proc.getShortestDistanceTrip("A", "A").getDistance());
+    }
+}
@@ -0,0 +1,100 @@
+package org.toughjobs.exams.trains.graph;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.toughjobs.exams.trains.data.Route;
+
+import junit.framework.TestCase;
+
+/**
+ * Provide methods to test {@link RouteTable}
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class RouteTableTest extends TestCase {
+
+    /**
+     * Compare with graphs built from a linked map of the routes while routes are added, changed and removed.
+     */
+    public void testRandomChanges() {
+        Random random = new Random(11);
+        RouteTable table = new RouteTable();
+        Map<Route, Integer> expected = new LinkedHashMap<Route, Integer>();
+        List<Route> routes = new ArrayList<Route>();
+        for (int i = 0; i < 2000; i++) {
+            if (random.nextInt(3) == 0 && !routes.isEmpty()) {
+                Route route = routes.remove(random.nextInt(routes.size()));
+                assertTrue(table.remove(route.getFrom(), route.getTo()));
+                assertFalse(table.remove(route.getFrom(), route.getTo()));
+                expected.remove(route);
+            } else {
+                Route route = new Route("T" + random.nextInt(40), "T" + random.nextInt(40));
+                int distance = random.nextInt(50);
+                if (!expected.containsKey(route)) {
+                    routes.add(route);
+                }
+                table.put(route.getFrom(), route.getTo(), distance);
+                expected.put(route, distance);
+            }
+            assertEquals(expected.size(), table.size());
+            if (i % 100 == 0) {
+                assertSameRoutes(build(expected), table.build(Storage.HEAP));
+            }
+        }
+        assertSameRoutes(build(expected), table.build(Storage.OFF_HEAP));
+        assertFalse(table.remove("T0", "unknown"));
+    }
+
+    /**
+     * Test a table copied from a graph gives the graph back, and keeps city ids when changed.
+     */
+    public void testOf() {
+        Graph g = GraphLoader.parse("AB5, BC4, CD8, DC8, DE6, AD5, CE2, EB3, AE7");
+        RouteTable table = RouteTable.of(g);
+        assertEquals(9, table.size());
+        Graph copy = table.build(Storage.HEAP);
+        assertSameRoutes(g, copy);
+        for (int town = 0; town < g.getTownCount(); town++) {
+            assertEquals(g.getTown(town), copy.getTown(town));
+        }
+
+        table.put("A", "B", 1);
+        table.put("E", "F", 2);
+        Graph changed = table.build(Storage.HEAP);
+        assertEquals(6, changed.getTownCount());
+        for (int town = 0; town < g.getTownCount(); town++) {
+            assertEquals(g.getTown(town), changed.getTown(town));
+        }
+        assertEquals(1, changed.getWeight(changed.findRoute(changed.indexOf("A"), changed.indexOf("B"))));
+        assertTrue(table.remove("E", "F"));
+        assertEquals(Graph.NONE, table.build(Storage.HEAP).indexOf("F"));
+    }
+
+    private static Graph build(Map<Route, Integer> routes) {
+        GraphBuilder builder = new GraphBuilder();
+        for (Map.Entry<Route, Integer> entry : routes.entrySet()) {
+            builder.addRoute(entry.getKey().getFrom(), entry.getKey().getTo(), entry.getValue().intValue());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Compare the routes of two graphs by city names, cities may have other ids.
+     */
+    private static void assertSameRoutes(Graph expected, Graph g) {
+        assertEquals(expected.getTownCount(), g.getTownCount());
+        assertEquals(expected.getRouteCount(), g.getRouteCount());
+        for (int t = 0; t < expected.getTownCount(); t++) {
+            int town = g.indexOf(expected.getTown(t));
+            assertTrue(town != Graph.NONE);
+            for (int r = expected.getOffset(t); r < expected.getOffset(t + 1); r++) {
+                int route = g.findRoute(town, g.indexOf(expected.getTown(expected.getTarget(r))));
+                assertTrue(route != Graph.NONE);
+                assertEquals(expected.getWeight(r), g.getWeight(route));
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package org.toughjobs.exams.trains.metrics;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Provide methods to test {@link Histogram}
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class HistogramTest extends TestCase {
+
+    /**
+     * Test buckets cover every value once, in order.
+     */
+    public void testBuckets() {
+        assertEquals(0, Histogram.index(0));
+        assertEquals(Histogram.SUB_BUCKETS - 1, Histogram.index(Histogram.SUB_BUCKETS - 1));
+        assertEquals(Histogram.SUB_BUCKETS, Histogram.index(Histogram.SUB_BUCKETS));
+        for (int i = 0; i < Histogram.index(Long.MAX_VALUE); i++) {
+            assertEquals(i, Histogram.index(Histogram.highest(i)));
+            assertEquals(i + 1, Histogram.index(Histogram.highest(i) + 1));
+        }
+        assertEquals(Long.MAX_VALUE, Histogram.highest(Histogram.index(Long.MAX_VALUE)));
+    }
+
+    /**
+     * Test percentiles are within the relative error of the exact ones.
+     */
+    public void testPercentiles() {
+        Random random = new Random(1);
+        Histogram histogram = new Histogram();
+        long[] values = new long[10000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) Math.exp(random.nextDouble() * 25);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        assertEquals(values.length, histogram.getCount());
+        assertEquals(values[values.length - 1], histogram.getMax());
+        for (double p : new double[] {1, 50, 90, 99, 99.9, 100}) {
+            long exact = values[(int) Math.ceil(p / 100 * values.length) - 1];
+            long value = histogram.getValueAtPercentile(p);
+            assertTrue(p + ": " + value + " " + exact, value >= exact && value <= exact + exact / 32);
+        }
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertEquals(0.0, histogram.getMean());
+    }
+}
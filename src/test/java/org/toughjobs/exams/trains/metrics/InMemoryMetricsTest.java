@@ -0,0 +1,89 @@
+package org.toughjobs.exams.trains.metrics;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.toughjobs.exams.trains.ExamResultTest;
+import org.toughjobs.exams.trains.data.Route;
+import org.toughjobs.exams.trains.exceptions.NoSuchRouteException;
+import org.toughjobs.exams.trains.processing.CachingProcessor;
+import org.toughjobs.exams.trains.processing.ProcessorImpl;
+
+import junit.framework.TestCase;
+
+/**
+ * Provide methods to test {@link InMemoryMetrics} and {@link MetricsExporter}
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class InMemoryMetricsTest extends TestCase {
+
+    /**
+     * Test queries of a processor and of its cache are recorded.
+     */
+    public void testProcessor() throws NoSuchRouteException {
+        InMemoryMetrics metrics = new InMemoryMetrics();
+        ProcessorImpl proc = (ProcessorImpl) ExamResultTest.getGraph();
+        proc.setMetrics(metrics);
+        CachingProcessor cache = new CachingProcessor(proc, 10, 100);
+        cache.setMetrics(metrics);
+
+        proc.getRoute("A", "B", "C");
+        proc.getDistance(new Route("A", "B"));
+        cache.findTripsMaxDistance("C", "C", 30);
+        cache.findTripsMaxDistance("C", "C", 30);
+        proc.getShortestDistanceTrip("A", "C");
+        try {
+            proc.getShortestDistanceTrip("C", "A");
+            assertFalse(true);
+        } catch (NoSuchRouteException ex) {
+            assertTrue(true);
+        }
+
+        assertEquals(1, metrics.getCount(Operation.GET_ROUTE));
+        assertEquals(2, metrics.getExpanded(Operation.GET_ROUTE));
+        assertEquals(1, metrics.getCount(Operation.GET_DISTANCE));
+        assertEquals(1, metrics.getCount(Operation.FIND_TRIPS_MAX_DISTANCE));
+        assertEquals(7, metrics.getResults(Operation.FIND_TRIPS_MAX_DISTANCE));
+        assertTrue(metrics.getTrips(Operation.FIND_TRIPS_MAX_DISTANCE) >= 7);
+        assertTrue(metrics.getExpanded(Operation.FIND_TRIPS_MAX_DISTANCE) > 7);
+        assertEquals(1, metrics.getCacheHits(Operation.FIND_TRIPS_MAX_DISTANCE));
+        assertEquals(1, metrics.getCacheMisses(Operation.FIND_TRIPS_MAX_DISTANCE));
+        assertEquals(2, metrics.getCount(Operation.SHORTEST_DISTANCE_TRIP));
+        assertEquals(1, metrics.getResults(Operation.SHORTEST_DISTANCE_TRIP));
+        assertTrue(metrics.getLatencies(Operation.SHORTEST_DISTANCE_TRIP).getMax() > 0);
+        assertEquals(0, metrics.getCount(Operation.K_SHORTEST_TRIPS));
+
+        metrics.reset();
+        assertEquals(0, metrics.getCount(Operation.GET_ROUTE));
+        assertEquals(0, metrics.getCacheHits(Operation.FIND_TRIPS_MAX_DISTANCE));
+    }
+
+    /**
+     * Test metrics are exported as MXBeans.
+     */
+    public void testExporter() throws JMException {
+        InMemoryMetrics metrics = new InMemoryMetrics();
+        metrics.recordQuery(Operation.FIND_TRIPS, 1000, 10, 4, 3);
+        metrics.recordQuery(Operation.FIND_TRIPS, 3000, 20, 6, 5);
+        metrics.recordCache(Operation.FIND_TRIPS, true);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        MetricsExporter exporter = new MetricsExporter(metrics, server, "test.trains");
+        try {
+            ObjectName name = new ObjectName("test.trains:type=Metrics,operation=FIND_TRIPS");
+            assertEquals(Operation.values().length, exporter.getNames().size());
+            assertEquals(Long.valueOf(2), server.getAttribute(name, "Count"));
+            assertEquals(Double.valueOf(2000), server.getAttribute(name, "MeanLatency"));
+            assertEquals(Long.valueOf(3000), server.getAttribute(name, "MaxLatency"));
+            assertEquals(Long.valueOf(30), server.getAttribute(name, "Expanded"));
+            assertEquals(Long.valueOf(10), server.getAttribute(name, "Trips"));
+            assertEquals(Long.valueOf(8), server.getAttribute(name, "Results"));
+            assertEquals(Long.valueOf(1), server.getAttribute(name, "CacheHits"));
+        } finally {
+            exporter.unregister();
+        }
+        assertTrue(server.queryNames(new ObjectName("test.trains:*"), null).isEmpty());
+    }
+}
@@ -0,0 +1,97 @@
+package org.toughjobs.exams.trains.processing;
+
+import java.util.Random;
+
+import org.toughjobs.exams.trains.ExamResultTest;
+import org.toughjobs.exams.trains.data.Route;
+import org.toughjobs.exams.trains.data.Trip;
+import org.toughjobs.exams.trains.exceptions.NoSuchRouteException;
+import org.toughjobs.exams.trains.graph.Graph;
+import org.toughjobs.exams.trains.graph.GraphBuilder;
+
+import junit.framework.TestCase;
+
+/**
+ * Provide methods to test {@link AltSearch} and {@link Landmarks}
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class AltSearchTest extends TestCase {
+
+    /**
+     * Test shortest trips of the exam graph, and landmarks are rebuilt after a route is added.
+     */
+    public void testExamGraph() throws NoSuchRouteException {
+        ProcessorImpl proc = (ProcessorImpl) ExamResultTest.getGraph();
+        proc.setSearch(Search.ALT);
+        proc.setLandmarkCount(2);
+
+        assertEquals("ABC", proc.getShortestDistanceTrip("A", "C").toString());
+        Trip bb = proc.getShortestDistanceTrip("B", "B");
+        assertEquals(9, bb.getDistance());
+        assertEquals("BCEB", bb.toString());
+        try {
+            proc.getShortestDistanceTrip("C", "A");
+            assertFalse(true);
+        } catch (NoSuchRouteException ex) {
+            assertTrue(true);
+        }
+
+        proc.addRoute(new Route("C", "A"), 1);
+        assertEquals(1, proc.getShortestDistanceTrip("C", "A").getDistance());
+    }
+
+    /**
+     * Test lower bounds never exceed the shortest distances, and prove unreachable cities.
+     */
+    public void testLowerBounds() {
+        Random random = new Random(3);
+        for (int n = 0; n < 10; n++) {
+            Graph g = BidirectionalSearchTest.randomGraph(random, 50, 100);
+            Landmarks landmarks = new Landmarks(g, GraphBuilder.transpose(g), 4);
+            ShortestPaths search = new ShortestPaths(g);
+
+            assertEquals(4, landmarks.getLandmarks().length);
+            for (int v = 0; v < g.getTownCount(); v++) {
+                search.search(v, Graph.NONE);
+                for (int t = 0; t < g.getTownCount(); t++) {
+                    int bound = landmarks.lowerBound(v, t);
+                    int distance = search.getDistance(t);
+                    if (distance == Trip.NO_ROUTE) {
+                        continue;
+                    }
+                    assertTrue(bound != Trip.NO_ROUTE);
+                    assertTrue(bound <= distance);
+                }
+            }
+        }
+        Graph single = new GraphBuilder().addRoute("A", "B", 1).build();
+        assertEquals(2, new Landmarks(single, GraphBuilder.transpose(single), 8).getLandmarks().length);
+    }
+
+    /**
+     * Compare with one directional searches on random graphs, reusing the search.
+     */
+    public void testRandomGraphs() {
+        Random random = new Random(13);
+        for (int n = 0; n < 10; n++) {
+            Graph g = BidirectionalSearchTest.randomGraph(random, 60, 150);
+            AltSearch search = new AltSearch(g, new Landmarks(g, GraphBuilder.transpose(g), 3));
+            ShortestPaths expected = new ShortestPaths(g);
+
+            for (int from = 0; from < g.getTownCount(); from++) {
+                expected.search(from, Graph.NONE);
+                for (int to = 0; to < g.getTownCount(); to++) {
+                    int distance = search.search(from, to);
+                    assertEquals(expected.getDistance(to), distance);
+                    Trip trip = search.getTrip();
+                    if (distance == Trip.NO_ROUTE) {
+                        assertNull(trip);
+                    } else {
+                        assertEquals(distance, trip.getDistance());
+                        assertEquals(g.getTown(to), trip.peakLast());
+                    }
+                }
+            }
+        }
+    }
+}
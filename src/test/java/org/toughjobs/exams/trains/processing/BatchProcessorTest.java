@@ -0,0 +1,146 @@
+package org.toughjobs.exams.trains.processing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import org.toughjobs.exams.trains.ExamResultTest;
+import org.toughjobs.exams.trains.exceptions.NoSuchRouteException;
+import org.toughjobs.exams.trains.graph.Graph;
+import org.toughjobs.exams.trains.graph.GraphBuilder;
+
+import junit.framework.TestCase;
+
+/**
+ * Provide methods to test {@link BatchProcessor}
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class BatchProcessorTest extends TestCase {
+
+    /**
+     * Listener keeping every result or error, by query.
+     */
+    private static final class Results implements BatchListener {
+
+        private final Map<BatchQuery, Object> results = new ConcurrentHashMap<BatchQuery, Object>();
+
+        @Override
+        public void completed(BatchQuery query, long result) {
+            assertNull(results.put(query, Long.valueOf(result)));
+        }
+
+        @Override
+        public void failed(BatchQuery query, Exception error) {
+            assertNull(results.put(query, error));
+        }
+    }
+
+    /**
+     * Test the queries of the exam.
+     */
+    public void testExamQueries() {
+        ProcessorImpl proc = (ProcessorImpl) ExamResultTest.getGraph();
+        List<BatchQuery> queries = new ArrayList<BatchQuery>();
+        BatchQuery abc = BatchQuery.route("A", "B", "C");
+        BatchQuery aed = BatchQuery.route("A", "E", "D");
+        BatchQuery cc3 = BatchQuery.countMaxSteps("C", "C", 3);
+        BatchQuery ac4 = BatchQuery.countEqualsSteps("A", "C", 4);
+        BatchQuery ac = BatchQuery.shortestDistance("A", "C");
+        BatchQuery bb = BatchQuery.shortestDistance("B", "B");
+        BatchQuery cc30 = BatchQuery.countMaxDistance("C", "C", 30);
+        BatchQuery ca = BatchQuery.shortestDistance("C", "A");
+        BatchQuery zz = BatchQuery.countMaxSteps("Z", "C", 3);
+        queries.add(abc);
+        queries.add(aed);
+        queries.add(cc3);
+        queries.add(ac4);
+        queries.add(ac);
+        queries.add(bb);
+        queries.add(cc30);
+        queries.add(ca);
+        queries.add(zz);
+        Results results = new Results();
+        proc.processBatch(queries, results);
+
+        assertEquals(queries.size(), results.results.size());
+        assertEquals(Long.valueOf(9), results.results.get(abc));
+        assertTrue(results.results.get(aed) instanceof NoSuchRouteException);
+        assertEquals(Long.valueOf(2), results.results.get(cc3));
+        assertEquals(Long.valueOf(3), results.results.get(ac4));
+        assertEquals(Long.valueOf(9), results.results.get(ac));
+        assertEquals(Long.valueOf(9), results.results.get(bb));
+        assertEquals(Long.valueOf(7), results.results.get(cc30));
+        assertTrue(results.results.get(ca) instanceof NoSuchRouteException);
+        assertEquals(Long.valueOf(0), results.results.get(zz));
+    }
+
+    /**
+     * Compare with single queries on random graphs, with many queries sharing a starting city.
+     */
+    public void testRandomQueries() throws NoSuchRouteException {
+        Random random = new Random(23);
+        GraphBuilder builder = new GraphBuilder();
+        for (int t = 0; t < 30; t++) {
+            builder.addTown("T" + t);
+        }
+        for (int i = 0; i < 90; i++) {
+            builder.addRoute(random.nextInt(30), random.nextInt(30), 1 + random.nextInt(9));
+        }
+        Graph g = builder.build();
+        ProcessorImpl proc = new ProcessorImpl(g);
+        List<BatchQuery> queries = new ArrayList<BatchQuery>();
+        for (int i = 0; i < 2000; i++) {
+            String from = g.getTown(random.nextInt(30));
+            String to = g.getTown(random.nextInt(30));
+            switch (random.nextInt(5)) {
+                case 0:
+                    queries.add(BatchQuery.route(from, to, g.getTown(random.nextInt(30))));
+                    break;
+                case 1:
+                    queries.add(BatchQuery.countEqualsSteps(from, to, random.nextInt(8)));
+                    break;
+                case 2:
+                    queries.add(BatchQuery.countMaxSteps(from, to, random.nextInt(8)));
+                    break;
+                case 3:
+                    queries.add(BatchQuery.countMaxDistance(from, to, random.nextInt(40)));
+                    break;
+                default:
+                    queries.add(BatchQuery.shortestDistance(from, to));
+            }
+        }
+        Results results = new Results();
+        new BatchProcessor(g, new ForkJoinPool(4)).run(queries, results);
+
+        assertEquals(queries.size(), results.results.size());
+        for (BatchQuery query : queries) {
+            Object result = results.results.get(query);
+            long expected;
+            try {
+                switch (query.getType()) {
+                    case ROUTE:
+                        expected = proc.getRoute(query.getCities());
+                        break;
+                    case COUNT_EQUALS_STEPS:
+                        expected = proc.countTripsEqualsSteps(query.getFrom(), query.getTo(), query.getLimit());
+                        break;
+                    case COUNT_MAX_STEPS:
+                        expected = proc.countTripsMaxSteps(query.getFrom(), query.getTo(), query.getLimit());
+                        break;
+                    case COUNT_MAX_DISTANCE:
+                        expected = proc.countTripsMaxDistance(query.getFrom(), query.getTo(), query.getLimit());
+                        break;
+                    default:
+                        expected = proc.getShortestDistanceTrip(query.getFrom(), query.getTo()).getDistance();
+                }
+            } catch (NoSuchRouteException ex) {
+                assertTrue(query.toString(), result instanceof NoSuchRouteException);
+                continue;
+            }
+            assertEquals(query.toString(), Long.valueOf(expected), result);
+        }
+    }
+}
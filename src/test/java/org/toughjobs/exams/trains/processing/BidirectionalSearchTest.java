@@ -0,0 +1,84 @@
+package org.toughjobs.exams.trains.processing;
+
+import java.util.Random;
+
+import org.toughjobs.exams.trains.ExamResultTest;
+import org.toughjobs.exams.trains.data.Trip;
+import org.toughjobs.exams.trains.exceptions.NoSuchRouteException;
+import org.toughjobs.exams.trains.graph.Graph;
+import org.toughjobs.exams.trains.graph.GraphBuilder;
+
+import junit.framework.TestCase;
+
+/**
+ * Provide methods to test {@link BidirectionalSearch}
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class BidirectionalSearchTest extends TestCase {
+
+    /**
+     * Test shortest trips of the exam graph.
+     */
+    public void testExamGraph() throws NoSuchRouteException {
+        ProcessorImpl proc = (ProcessorImpl) ExamResultTest.getGraph();
+        proc.setSearch(Search.BIDIRECTIONAL);
+
+        assertEquals("ABC", proc.getShortestDistanceTrip("A", "C").toString());
+        Trip bb = proc.getShortestDistanceTrip("B", "B");
+        assertEquals(9, bb.getDistance());
+        assertEquals("BCEB", bb.toString());
+        assertTrue(bb.isComplete());
+        try {
+            proc.getShortestDistanceTrip("C", "A");
+            assertFalse(true);
+        } catch (NoSuchRouteException ex) {
+            assertTrue(true);
+        }
+    }
+
+    /**
+     * Compare with one directional searches on random graphs, reusing the search.
+     */
+    public void testRandomGraphs() {
+        Random random = new Random(11);
+        for (int n = 0; n < 10; n++) {
+            Graph g = randomGraph(random, 60, 150);
+            BidirectionalSearch search = new BidirectionalSearch(g, GraphBuilder.transpose(g));
+            ShortestPaths expected = new ShortestPaths(g);
+
+            for (int from = 0; from < g.getTownCount(); from++) {
+                expected.search(from, Graph.NONE);
+                for (int to = 0; to < g.getTownCount(); to++) {
+                    int distance = search.search(from, to);
+                    assertEquals(expected.getDistance(to), distance);
+                    Trip trip = search.getTrip();
+                    if (distance == Trip.NO_ROUTE) {
+                        assertNull(trip);
+                    } else {
+                        assertEquals(distance, trip.getDistance());
+                        assertEquals(g.getTown(to), trip.peakLast());
+                        assertEquals(g.getTown(from), trip.getFrom());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Build a random graph, with some routes of length 0.
+     * @param random random generator.
+     * @param towns number of cities.
+     * @param routes number of routes.
+     * @return the graph.
+     */
+    static Graph randomGraph(Random random, int towns, int routes) {
+        GraphBuilder builder = new GraphBuilder();
+        for (int t = 0; t < towns; t++) {
+            builder.addTown("T" + t);
+        }
+        for (int i = 0; i < routes; i++) {
+            builder.addRoute(random.nextInt(towns), random.nextInt(towns), random.nextInt(20));
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,112 @@
+package org.toughjobs.exams.trains.processing;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.toughjobs.exams.trains.ExamResultTest;
+import org.toughjobs.exams.trains.data.Route;
+import org.toughjobs.exams.trains.data.Trip;
+import org.toughjobs.exams.trains.exceptions.NoSuchRouteException;
+import org.toughjobs.exams.trains.processing.CachingProcessor.Query;
+
+import junit.framework.TestCase;
+
+/**
+ * Provide methods to test {@link CachingProcessor}
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class CachingProcessorTest extends TestCase {
+
+    /**
+     * Test results are cached and counted.
+     */
+    public void testHits() throws NoSuchRouteException {
+        CachingProcessor proc = new CachingProcessor(ExamResultTest.getGraph(), 100, 1000);
+
+        Set<Trip> trips = proc.findTripsMaxDistance("C", "C", 30);
+        assertEquals(7, trips.size());
+        assertSame(trips, proc.findTripsMaxDistance("C", "C", 30));
+        assertEquals(3, proc.findTripsMaxDistance("C", "C", 20).size());
+        assertEquals(3, proc.countTripsEqualsSteps("A", "C", 4));
+        assertEquals(3, proc.countTripsEqualsSteps("A", "C", 4));
+        assertEquals(9, proc.getShortestDistanceTrip("B", "B").getDistance());
+
+        assertEquals(1, proc.getHitCount(Query.MAX_DISTANCE));
+        assertEquals(2, proc.getMissCount(Query.MAX_DISTANCE));
+        assertEquals(1, proc.getHitCount(Query.COUNT_EQUALS_STEPS));
+        assertEquals(1, proc.getMissCount(Query.SHORTEST_DISTANCE_TRIP));
+        assertEquals(4, proc.size());
+        assertEquals(7 + 3 + 1 + 1, proc.getWeight());
+
+        try {
+            trips.clear();
+            assertFalse(true);
+        } catch (UnsupportedOperationException ex) {
+            assertTrue(true);
+        }
+    }
+
+    /**
+     * Test routes written on the decorated processor, or many at once, are seen.
+     */
+    public void testDelegateWrites() {
+        ConcurrentProcessor delegate = new ConcurrentProcessor(((ProcessorImpl) ExamResultTest.getGraph()).getGraph());
+        CachingProcessor proc = new CachingProcessor(delegate, 100, 1000);
+        assertEquals(4, proc.findTrips("A", "B").size());
+        assertEquals(4, proc.findTrips("A", "B").size());
+        assertEquals(1, proc.getHitCount(Query.TRIPS));
+
+        Map<Route, Integer> batch = new LinkedHashMap<Route, Integer>();
+        batch.put(new Route("A", "F"), Integer.valueOf(1));
+        batch.put(new Route("F", "B"), Integer.valueOf(1));
+        delegate.addRoutes(batch);
+        assertEquals(5, proc.findTrips("A", "B").size());
+        assertEquals(2, proc.getMissCount(Query.TRIPS));
+
+        batch.clear();
+        batch.put(new Route("A", "G"), Integer.valueOf(1));
+        batch.put(new Route("G", "B"), Integer.valueOf(1));
+        proc.addRoutes(batch);
+        assertEquals(6, proc.findTrips("A", "B").size());
+        assertEquals(6, proc.findTrips("A", "B").size());
+        assertEquals(2, proc.getHitCount(Query.TRIPS));
+    }
+
+    /**
+     * Test entries computed before a route is added are computed again.
+     */
+    public void testVersion() {
+        CachingProcessor proc = new CachingProcessor(ExamResultTest.getGraph(), 100, 1000);
+        assertEquals(4, proc.findTrips("A", "B").size());
+        proc.addRoute(new Route("A", "F"), 1);
+        proc.addRoute(new Route("F", "B"), 1);
+
+        assertEquals(5, proc.findTrips("A", "B").size());
+        assertEquals(2, proc.getMissCount(Query.TRIPS));
+        assertEquals(1, proc.size());
+        proc.findTrips("A", "B");
+        assertEquals(1, proc.getHitCount(Query.TRIPS));
+    }
+
+    /**
+     * Test least recently used entries are evicted first.
+     */
+    public void testEviction() {
+        CachingProcessor proc = new CachingProcessor(ExamResultTest.getGraph(), 2, 8);
+        proc.findTripsMaxDistance("C", "C", 20); // 3 trips
+        proc.findTripsMaxDistance("C", "C", 25); // 4 trips
+        proc.findTripsMaxDistance("C", "C", 20);
+        proc.countTripsMaxSteps("C", "C", 3);
+        assertEquals(2, proc.size());
+        assertEquals(1, proc.getEvictionCount());
+
+        proc.findTripsMaxDistance("C", "C", 20);
+        assertEquals(2, proc.getHitCount(Query.MAX_DISTANCE));
+        proc.findTripsMaxDistance("C", "C", 30); // 7 trips, over the weight with any other entry
+        assertEquals(1, proc.size());
+        assertEquals(7, proc.getWeight());
+        proc.findTripsMaxDistance("C", "C", 40); // heavier than the limit
+        assertEquals(1, proc.size());
+    }
+}
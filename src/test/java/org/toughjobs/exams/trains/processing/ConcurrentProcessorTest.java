@@ -0,0 +1,177 @@
+package org.toughjobs.exams.trains.processing;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.toughjobs.exams.trains.data.Route;
+import org.toughjobs.exams.trains.data.Trip;
+import org.toughjobs.exams.trains.exceptions.NoSuchRouteException;
+
+import junit.framework.TestCase;
+
+/**
+ * Provide methods to test {@link ConcurrentProcessor}
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class ConcurrentProcessorTest extends TestCase {
+
+    private static final int ROUTES = 150;
+    private static final int READERS = 4;
+    private static final String[] TOWNS = { "A", "B", "C", "D", "E", "F", "G", "H" };
+
+    /**
+     * Test the route given is copied.
+     */
+    public void testRouteCopy() throws NoSuchRouteException {
+        ConcurrentProcessor proc = new ConcurrentProcessor();
+        Route route = new Route("A", "B");
+        proc.addRoute(route, 5);
+        route.setTo("C");
+
+        assertEquals(5, proc.getDistance(new Route("A", "B")));
+        assertEquals(0, proc.findTrips("A", "C").size());
+
+        Map<Route, Integer> batch = new LinkedHashMap<Route, Integer>();
+        batch.put(new Route("B", "C"), Integer.valueOf(4));
+        batch.put(new Route("A", "B"), Integer.valueOf(1));
+        proc.addRoutes(batch);
+        assertEquals(5, proc.getRoute("A", "B", "C"));
+    }
+
+    /**
+     * Readers query while a writer adds routes: every answer must be the one of a single threaded processor
+     * fed with some of the first routes, never a mix.
+     */
+    public void testStress() throws Exception {
+        Random random = new Random(13);
+        final List<Route> routes = new ArrayList<Route>();
+        final List<Integer> distances = new ArrayList<Integer>();
+        for (int i = 0; i < ROUTES; i++) {
+            String from = TOWNS[random.nextInt(TOWNS.length)];
+            String to = TOWNS[random.nextInt(TOWNS.length)];
+            if (!from.equals(to)) {
+                routes.add(new Route(from, to));
+                distances.add(Integer.valueOf(1 + random.nextInt(9)));
+            }
+        }
+
+        // oracle: answers after every number of routes added.
+        final Set<String> expected = new HashSet<String>();
+        ProcessorImpl oracle = new ProcessorImpl();
+        expected.add(answer(oracle));
+        for (int i = 0; i < routes.size(); i++) {
+            oracle.addRoute(routes.get(i), distances.get(i).intValue());
+            expected.add(answer(oracle));
+        }
+
+        final ConcurrentProcessor proc = new ConcurrentProcessor();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(READERS + 1);
+        try {
+            List<Future<Integer>> readers = new ArrayList<Future<Integer>>();
+            for (int r = 0; r < READERS; r++) {
+                readers.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        start.await();
+                        int queries = 0;
+                        while (done.getCount() > 0 || queries == 0) {
+                            String answer = answer(proc);
+                            assertTrue("Unexpected answer " + answer, expected.contains(answer));
+                            queries++;
+                        }
+                        return Integer.valueOf(queries);
+                    }
+                }));
+            }
+            Future<?> writer = executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    start.await();
+                    for (int i = 0; i < routes.size(); i++) {
+                        proc.addRoute(routes.get(i), distances.get(i).intValue());
+                    }
+                    done.countDown();
+                    return null;
+                }
+            });
+
+            start.countDown();
+            writer.get();
+            for (Future<Integer> reader : readers) {
+                assertTrue(reader.get().intValue() > 0);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(answer(oracle), answer(proc));
+    }
+
+    /**
+     * Test concurrent queries of a snapshot share a single contraction hierarchy, built again once routes change.
+     */
+    public void testSharedHierarchy() throws Exception {
+        final ConcurrentProcessor proc = new ConcurrentProcessor(
+                BidirectionalSearchTest.randomGraph(new Random(5), 300, 1500));
+        ContractionHierarchy first = buildConcurrently(proc);
+        assertSame(proc.getGraph(), first.getGraph());
+        assertSame(first, proc.getContractionHierarchy());
+
+        proc.addRoute(new Route("T0", "T1"), 1);
+        ContractionHierarchy second = buildConcurrently(proc);
+        assertNotSame(first, second);
+        assertSame(proc.getGraph(), second.getGraph());
+    }
+
+    /**
+     * Ask for the hierarchy from many threads at once.
+     * @return the hierarchy, the same for every thread.
+     */
+    private static ContractionHierarchy buildConcurrently(final ConcurrentProcessor proc) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(READERS);
+        try {
+            List<Future<ContractionHierarchy>> readers = new ArrayList<Future<ContractionHierarchy>>();
+            for (int r = 0; r < READERS; r++) {
+                readers.add(executor.submit(new Callable<ContractionHierarchy>() {
+                    @Override
+                    public ContractionHierarchy call() throws Exception {
+                        start.await();
+                        return proc.getContractionHierarchy();
+                    }
+                }));
+            }
+            start.countDown();
+            ContractionHierarchy res = readers.get(0).get();
+            for (Future<ContractionHierarchy> reader : readers) {
+                assertSame(res, reader.get());
+            }
+            return res;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Answer of a single query, so that it reads a single snapshot:
+     * a snapshot mixing two graphs would give an answer matching no state of the oracle.
+     */
+    private static String answer(Processor proc) {
+        StringBuilder sb = new StringBuilder();
+        for (Trip trip : proc.findTripsMaxDistance("A", "B", 15)) {
+            sb.append(trip).append(trip.getDistance()).append(' ');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,190 @@
+package org.toughjobs.exams.trains.processing;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.toughjobs.exams.trains.data.Connection;
+import org.toughjobs.exams.trains.data.Journey;
+import org.toughjobs.exams.trains.data.Trip;
+import org.toughjobs.exams.trains.exceptions.NoSuchRouteException;
+import org.toughjobs.exams.trains.graph.Timetable;
+import org.toughjobs.exams.trains.graph.TimetableBuilder;
+
+import junit.framework.TestCase;
+
+/**
+ * Provide methods to test {@link ConnectionScan}
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class ConnectionScanTest extends TestCase {
+
+    /**
+     * Small timetable, times in minutes after midnight: a slow direct train and a fast one with a change at D.
+     */
+    private static ProcessorImpl getTimetable() {
+        ProcessorImpl proc = new ProcessorImpl();
+        proc.addConnection(new Connection("C", "D", 490, 500, "1"));
+        proc.addConnection(new Connection("D", "E", 500, 520, "1"));
+        proc.addConnection(new Connection("E", "B", 520, 540, "1"));
+        proc.addConnection(new Connection("C", "B", 480, 600, "2"));
+        proc.addConnection(new Connection("D", "B", 505, 515, "3"));
+        proc.addConnection(new Connection("C", "D", 550, 560, "4"));
+        proc.addConnection(new Connection("D", "B", 560, 570, "4"));
+        return proc;
+    }
+
+    /**
+     * Test connections are sorted by departure.
+     */
+    public void testTimetable() {
+        Timetable timetable = getTimetable().getTimetable();
+        assertEquals(7, timetable.getConnectionCount());
+        assertEquals(4, timetable.getTownCount());
+        assertEquals(4, timetable.getTripCount());
+        for (int c = 1; c < timetable.getConnectionCount(); c++) {
+            assertTrue(timetable.getDeparture(c - 1) <= timetable.getDeparture(c));
+        }
+        assertEquals(new Connection("C", "B", 480, 600, "2"), timetable.getConnection(0));
+        assertEquals(2, timetable.firstDeparture(500));
+        assertEquals(7, timetable.firstDeparture(561));
+
+        try {
+            new TimetableBuilder().addConnection("A", "B", 10, 5, "1");
+            assertFalse(true);
+        } catch (IllegalArgumentException ex) {
+            assertTrue(true);
+        }
+    }
+
+    /**
+     * Test earliest arrival journeys.
+     */
+    public void testEarliestArrival() throws NoSuchRouteException {
+        ProcessorImpl proc = getTimetable();
+        Journey journey = proc.getEarliestArrival("C", "B", 470);
+        assertEquals("CDB", journey.toString());
+        assertEquals(490, journey.getDeparture());
+        assertEquals(515, journey.getArrival());
+        assertEquals(1, journey.getTransferCount());
+
+        journey = proc.getEarliestArrival("C", "E", 470);
+        assertEquals("CDE", journey.toString());
+        assertEquals(0, journey.getTransferCount());
+        assertEquals(520, journey.getArrival());
+
+        assertEquals(570, proc.getEarliestArrival("C", "B", 491).getArrival());
+        assertEquals("CDB", proc.getEarliestArrival("C", "B", 491).toString());
+
+        journey = proc.getEarliestArrival("C", "C", 600);
+        assertTrue(journey.getConnections().isEmpty());
+        assertEquals(600, journey.getArrival());
+        try {
+            proc.getEarliestArrival("C", "B", 551);
+            assertFalse(true);
+        } catch (NoSuchRouteException ex) {
+            assertTrue(true);
+        }
+        try {
+            proc.getEarliestArrival("B", "C", 0);
+            assertFalse(true);
+        } catch (NoSuchRouteException ex) {
+            assertTrue(true);
+        }
+
+        Profile profile = proc.getProfile("C", "B", 0, 1440);
+        assertEquals("[490-515, 550-570]", profile.toString());
+        assertEquals(515, profile.getEarliestArrival(0));
+        assertEquals(570, profile.getEarliestArrival(491));
+        assertEquals(Trip.NO_ROUTE, profile.getEarliestArrival(551));
+        assertEquals("[490-515]", proc.getProfile("C", "B", 0, 500).toString());
+        assertEquals(0, proc.getProfile("C", "Z", 0, 1440).size());
+    }
+
+    /**
+     * Compare with the arrivals of a fixed point over random timetables.
+     */
+    public void testRandomTimetables() {
+        Random random = new Random(11);
+        for (int round = 0; round < 20; round++) {
+            int towns = 30;
+            TimetableBuilder builder = new TimetableBuilder();
+            for (int trip = 0; trip < 60; trip++) {
+                int town = random.nextInt(towns);
+                int time = random.nextInt(1200);
+                for (int stop = random.nextInt(8); stop >= 0; stop--) {
+                    int next = random.nextInt(towns);
+                    int arrival = time + random.nextInt(30);
+                    builder.addConnection("T" + town, "T" + next, time, arrival, "R" + trip);
+                    town = next;
+                    time = arrival + random.nextInt(5);
+                }
+            }
+            Timetable timetable = builder.build();
+            ConnectionScan scan = new ConnectionScan(timetable);
+            for (int query = 0; query < 20; query++) {
+                int from = random.nextInt(timetable.getTownCount());
+                int to = random.nextInt(timetable.getTownCount());
+                if (from == to) {
+                    continue;
+                }
+                for (int time = 0; time < 1300; time += 37) {
+                    int expected = earliestArrival(timetable, from, to, time);
+                    assertEquals(expected, scan.search(from, to, time));
+                    Journey journey = scan.getJourney();
+                    if (expected == Trip.NO_ROUTE) {
+                        assertNull(journey);
+                        continue;
+                    }
+                    assertEquals(expected, journey.getArrival());
+                    int at = time;
+                    String town = timetable.getTown(from);
+                    for (Connection c : journey.getConnections()) {
+                        assertEquals(town, c.getFrom());
+                        assertTrue(c.getDeparture() >= at);
+                        at = c.getArrival();
+                        town = c.getTo();
+                    }
+                    assertEquals(timetable.getTown(to), town);
+                }
+                Profile profile = scan.profile(from, to, 0, 1440);
+                for (int i = 1; i < profile.size(); i++) {
+                    assertTrue(profile.getDeparture(i - 1) < profile.getDeparture(i));
+                    assertTrue(profile.getArrival(i - 1) < profile.getArrival(i));
+                }
+                for (int time = 0; time < 1300; time += 13) {
+                    assertEquals(earliestArrival(timetable, from, to, time), profile.getEarliestArrival(time));
+                }
+                // a period gets the journeys of the whole day leaving within it.
+                StringBuilder expected = new StringBuilder("[");
+                for (int i = 0; i < profile.size(); i++) {
+                    if (profile.getDeparture(i) >= 300 && profile.getDeparture(i) <= 600) {
+                        expected.append(expected.length() > 1 ? ", " : "").append(profile.getDeparture(i)).append('-')
+                                .append(profile.getArrival(i));
+                    }
+                }
+                assertEquals(expected.append(']').toString(), scan.profile(from, to, 300, 600).toString());
+            }
+        }
+    }
+
+    /**
+     * Earliest arrival at every city, relaxing every connection until nothing changes.
+     */
+    private static int earliestArrival(Timetable timetable, int from, int to, int time) {
+        int[] arrivals = new int[timetable.getTownCount()];
+        Arrays.fill(arrivals, Integer.MAX_VALUE);
+        arrivals[from] = time;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int c = 0; c < timetable.getConnectionCount(); c++) {
+                if (arrivals[timetable.getFrom(c)] <= timetable.getDeparture(c)
+                        && timetable.getArrival(c) < arrivals[timetable.getTo(c)]) {
+                    arrivals[timetable.getTo(c)] = timetable.getArrival(c);
+                    changed = true;
+                }
+            }
+        }
+        return arrivals[to] == Integer.MAX_VALUE ? Trip.NO_ROUTE : arrivals[to];
+    }
+}
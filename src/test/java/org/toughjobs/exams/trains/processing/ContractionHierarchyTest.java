@@ -0,0 +1,176 @@
+package org.toughjobs.exams.trains.processing;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.toughjobs.exams.trains.ExamResultTest;
+import org.toughjobs.exams.trains.data.Trip;
+import org.toughjobs.exams.trains.exceptions.NoSuchRouteException;
+import org.toughjobs.exams.trains.graph.Graph;
+import org.toughjobs.exams.trains.graph.GraphLoader;
+
+import junit.framework.TestCase;
+
+/**
+ * Provide methods to test {@link ContractionHierarchy} and {@link ContractionSearch}
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class ContractionHierarchyTest extends TestCase {
+
+    private File file;
+
+    @Override
+    protected void setUp() throws IOException {
+        file = File.createTempFile("graph", ".ch");
+    }
+
+    @Override
+    protected void tearDown() {
+        file.delete();
+    }
+
+    /**
+     * Test shortest trips of the exam graph.
+     */
+    public void testExamGraph() throws NoSuchRouteException {
+        ProcessorImpl proc = (ProcessorImpl) ExamResultTest.getGraph();
+        proc.setSearch(Search.CONTRACTION_HIERARCHY);
+
+        assertEquals("ABC", proc.getShortestDistanceTrip("A", "C").toString());
+        assertEquals(9, proc.getShortestDistanceTrip("A", "C").getDistance());
+        Trip bb = proc.getShortestDistanceTrip("B", "B");
+        assertEquals(9, bb.getDistance());
+        assertEquals("BCEB", bb.toString());
+        assertTrue(bb.isComplete());
+        try {
+            proc.getShortestDistanceTrip("C", "A");
+            assertFalse(true);
+        } catch (NoSuchRouteException ex) {
+            assertTrue(true);
+        }
+    }
+
+    /**
+     * Compare with Dijkstra on random graphs, checking every step of the unpacked trips.
+     */
+    public void testRandomGraphs() {
+        Random random = new Random(23);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            for (int n = 0; n < 10; n++) {
+                Graph g = BidirectionalSearchTest.randomGraph(random, 80, 80 + random.nextInt(200));
+                ContractionSearch search = new ContractionSearch(ContractionHierarchy.build(g, pool));
+                ShortestPaths expected = new ShortestPaths(g);
+
+                for (int from = 0; from < g.getTownCount(); from++) {
+                    expected.search(from, Graph.NONE);
+                    for (int to = 0; to < g.getTownCount(); to++) {
+                        int distance = search.search(from, to);
+                        assertEquals(expected.getDistance(to), distance);
+                        Trip trip = search.getTrip();
+                        if (distance == Trip.NO_ROUTE) {
+                            assertNull(trip);
+                        } else {
+                            assertTrue(trip.isComplete());
+                            assertEquals(distance, trip.getDistance());
+                            assertEquals(g.getTown(from), trip.getFrom());
+                            assertEquals(g.getTown(to), trip.peakLast());
+                            int prev = from;
+                            int sum = 0;
+                            for (String step : trip.getSteps()) {
+                                int route = g.findRoute(prev, g.indexOf(step));
+                                assertTrue(route != Graph.NONE);
+                                sum += g.getWeight(route);
+                                prev = g.indexOf(step);
+                            }
+                            assertEquals(distance, sum);
+                        }
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Test a hierarchy written then loaded answers the same, and files of other graphs are rejected.
+     */
+    public void testWriteAndLoad() throws IOException, NoSuchRouteException {
+        ProcessorImpl proc = (ProcessorImpl) ExamResultTest.getGraph();
+        ContractionHierarchy built = proc.getContractionHierarchy();
+        built.write(file);
+
+        ContractionHierarchy loaded = ContractionHierarchy.load(file, proc.getGraph());
+        assertEquals(built.getShortcutCount(), loaded.getShortcutCount());
+        Graph g = proc.getGraph();
+        for (int town = 0; town < g.getTownCount(); town++) {
+            assertEquals(built.getRank(town), loaded.getRank(town));
+        }
+        proc.setContractionHierarchy(loaded);
+        proc.setSearch(Search.CONTRACTION_HIERARCHY);
+        assertEquals("ABC", proc.getShortestDistanceTrip("A", "C").toString());
+        assertEquals(9, proc.getShortestDistanceTrip("A", "C").getDistance());
+
+        try {
+            ContractionHierarchy.load(file, GraphLoader.parse("AB5, BC4"));
+            assertFalse(true);
+        } catch (IOException ex) {
+            assertTrue(ex.getMessage().startsWith("Contraction hierarchy of another graph"));
+        }
+        RandomAccessFile out = new RandomAccessFile(file, "rw");
+        out.seek(40);
+        int value = out.read();
+        out.seek(40);
+        out.write(value ^ 1);
+        out.close();
+        try {
+            ContractionHierarchy.load(file, g);
+            assertFalse(true);
+        } catch (IOException ex) {
+            assertTrue(ex.getMessage().startsWith("Corrupted"));
+        }
+
+        // sizes of the upward then downward arrays, read before the CRC is checked.
+        for (int position : new int[] {20, 24}) {
+            for (int size : new int[] {-1, Integer.MAX_VALUE}) {
+                built.write(file);
+                out = new RandomAccessFile(file, "rw");
+                out.seek(position);
+                out.writeInt(size);
+                out.close();
+                try {
+                    ContractionHierarchy.load(file, g);
+                    assertFalse(true);
+                } catch (IOException ex) {
+                    assertTrue(ex.getMessage().startsWith("Corrupted"));
+                }
+            }
+        }
+    }
+
+    /**
+     * Test a hierarchy isn't loaded onto the same cities and routes with other distances, where its shortcuts would
+     * give wrong trips.
+     */
+    public void testLoadReweighted() throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(1);
+        try {
+            ContractionHierarchy.build(GraphLoader.parse("AB1, BC1, AC5"), pool).write(file);
+        } finally {
+            pool.shutdown();
+        }
+        assertNotNull(ContractionHierarchy.load(file, GraphLoader.parse("AB1, BC1, AC5")));
+        for (String routes : new String[] {"AB10, BC10, AC5", "AB1, BD1, AD5"}) {
+            try {
+                ContractionHierarchy.load(file, GraphLoader.parse(routes));
+                assertFalse(true);
+            } catch (IOException ex) {
+                assertTrue(ex.getMessage().startsWith("Contraction hierarchy of another graph"));
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package org.toughjobs.exams.trains.processing;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.toughjobs.exams.trains.ExamResultTest;
+import org.toughjobs.exams.trains.data.Route;
+import org.toughjobs.exams.trains.data.Trip;
+import org.toughjobs.exams.trains.exceptions.NoSuchRouteException;
+import org.toughjobs.exams.trains.graph.Graph;
+import org.toughjobs.exams.trains.graph.GraphBuilder;
+
+import junit.framework.TestCase;
+
+/**
+ * Provide methods to test {@link DistanceTable}
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class DistanceTableTest extends TestCase {
+
+    /**
+     * Test shortest trips of the exam graph are read from the table, and the table is rebuilt after a route is added.
+     */
+    public void testExamGraph() throws NoSuchRouteException {
+        ProcessorImpl proc = (ProcessorImpl) ExamResultTest.getGraph();
+        proc.setPrecomputed(true);
+
+        assertEquals("ABC", proc.getShortestDistanceTrip("A", "C").toString());
+        Trip bb = proc.getShortestDistanceTrip("B", "B");
+        assertEquals(9, bb.getDistance());
+        assertEquals("BCEB", bb.toString());
+        assertTrue(bb.isComplete());
+
+        proc.addRoute(new Route("A", "C"), 2);
+        assertEquals(2, proc.getShortestDistanceTrip("A", "C").getDistance());
+        try {
+            proc.getShortestDistanceTrip("C", "A");
+            assertFalse(true);
+        } catch (NoSuchRouteException ex) {
+            assertTrue(true);
+        }
+    }
+
+    /**
+     * Compare the table with searches on random graphs.
+     */
+    public void testRandomGraphs() {
+        Random random = new Random(5);
+        for (int n = 0; n < 10; n++) {
+            GraphBuilder builder = new GraphBuilder();
+            for (int t = 0; t < 40; t++) {
+                builder.addTown("T" + t);
+            }
+            for (int i = 0; i < 120; i++) {
+                builder.addRoute(random.nextInt(40), random.nextInt(40), 1 + random.nextInt(20));
+            }
+            Graph g = builder.build();
+            DistanceTable table = new DistanceTable(g, ForkJoinPool.commonPool());
+            ShortestPaths search = new ShortestPaths(g);
+
+            for (int from = 0; from < g.getTownCount(); from++) {
+                search.search(from, Graph.NONE);
+                for (int to = 0; to < g.getTownCount(); to++) {
+                    assertEquals(search.getDistance(to), table.getDistance(from, to));
+                    Trip trip = table.getTrip(from, to);
+                    if (search.getDistance(to) == Trip.NO_ROUTE) {
+                        assertNull(trip);
+                        assertEquals(Graph.NONE, table.getFirstStep(from, to));
+                    } else {
+                        assertEquals(search.getDistance(to), trip.getDistance());
+                        assertEquals(g.getTown(to), trip.peakLast());
+                    }
+                }
+            }
+        }
+    }
+}
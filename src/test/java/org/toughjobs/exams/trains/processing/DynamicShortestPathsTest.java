@@ -0,0 +1,175 @@
+package org.toughjobs.exams.trains.processing;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.toughjobs.exams.trains.ExamResultTest;
+import org.toughjobs.exams.trains.data.Route;
+import org.toughjobs.exams.trains.data.Trip;
+import org.toughjobs.exams.trains.exceptions.NoSuchRouteException;
+import org.toughjobs.exams.trains.graph.Graph;
+
+import junit.framework.TestCase;
+
+/**
+ * Provide methods to test {@link DynamicShortestPaths}
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class DynamicShortestPathsTest extends TestCase {
+
+    /**
+     * Test shortest trips of the exam graph follow route changes.
+     */
+    public void testExamGraph() throws NoSuchRouteException {
+        ProcessorImpl proc = (ProcessorImpl) ExamResultTest.getGraph();
+        proc.setHotOrigins("B", "A");
+        assertEquals("[B, A]", proc.getHotOrigins().toString());
+
+        Trip bb = proc.getShortestDistanceTrip("B", "B");
+        assertEquals("BCEB", bb.toString());
+        assertEquals(9, bb.getDistance());
+        assertTrue(bb.isComplete());
+        assertEquals(9, proc.getShortestDistanceTrip("A", "C").getDistance());
+
+        proc.addRoute(new Route("A", "C"), 3);
+        assertEquals("AC", proc.getShortestDistanceTrip("A", "C").toString());
+        proc.addRoute(new Route("A", "C"), 30);
+        assertEquals("ABC", proc.getShortestDistanceTrip("A", "C").toString());
+        proc.removeRoute(new Route("B", "C"));
+        assertEquals("ADC", proc.getShortestDistanceTrip("A", "C").toString());
+        try {
+            proc.getShortestDistanceTrip("B", "B");
+            assertFalse(true);
+        } catch (NoSuchRouteException ex) {
+            assertTrue(true);
+        }
+        try {
+            proc.removeRoute(new Route("B", "C"));
+            assertFalse(true);
+        } catch (NoSuchRouteException ex) {
+            assertTrue(true);
+        }
+        try {
+            proc.getDistance(new Route("B", "C"));
+            assertFalse(true);
+        } catch (NoSuchRouteException ex) {
+            assertTrue(true);
+        }
+
+        proc.setHotOrigins();
+        assertTrue(proc.getHotOrigins().isEmpty());
+        assertEquals("ADC", proc.getShortestDistanceTrip("A", "C").toString());
+    }
+
+    /**
+     * Test a batch of routes added to a concurrent processor is applied to the hot origins.
+     */
+    public void testAddRoutes() throws NoSuchRouteException {
+        ConcurrentProcessor proc = new ConcurrentProcessor(((ProcessorImpl) ExamResultTest.getGraph()).getGraph());
+        proc.setHotOrigins("A");
+        Map<Route, Integer> routes = new LinkedHashMap<Route, Integer>();
+        routes.put(new Route("A", "F"), 1);
+        routes.put(new Route("F", "C"), 2);
+        routes.put(new Route("A", "D"), 10);
+        proc.addRoutes(routes);
+        assertEquals("AFC", proc.getShortestDistanceTrip("A", "C").toString());
+        assertEquals(3, proc.getShortestDistanceTrip("A", "C").getDistance());
+        assertEquals(10, proc.getShortestDistanceTrip("A", "D").getDistance());
+
+        // a negative distance would be taken for a removal by the hot origins.
+        routes.clear();
+        routes.put(new Route("D", "E"), 1);
+        routes.put(new Route("A", "E"), Trip.NO_ROUTE);
+        try {
+            proc.addRoutes(routes);
+            assertFalse(true);
+        } catch (IllegalArgumentException ex) {
+            assertTrue(true);
+        }
+        assertEquals(6, proc.getDistance(new Route("D", "E")));
+        try {
+            proc.addRoute(new Route("A", "B"), -1);
+            assertFalse(true);
+        } catch (IllegalArgumentException ex) {
+            assertTrue(true);
+        }
+        assertEquals(5, proc.getDistance(new Route("A", "B")));
+        try {
+            ((ProcessorImpl) ExamResultTest.getGraph()).addRoute(new Route("A", "B"), -1);
+            assertFalse(true);
+        } catch (IllegalArgumentException ex) {
+            assertTrue(true);
+        }
+    }
+
+    /**
+     * Compare with searches from scratch while routes are added, reweighted and removed at random.
+     */
+    public void testRandomUpdates() throws NoSuchRouteException {
+        Random random = new Random(7);
+        Graph graph = BidirectionalSearchTest.randomGraph(random, 60, 200);
+        DynamicShortestPaths dynamic = new DynamicShortestPaths(graph);
+        String[] sources = { "T0", "T1", "T2" };
+        for (String source : sources) {
+            dynamic.addSource(source);
+        }
+        ProcessorImpl proc = new ProcessorImpl(graph);
+        List<Route> routes = new ArrayList<Route>();
+        for (int town = 0; town < graph.getTownCount(); town++) {
+            for (int r = graph.getOffset(town); r < graph.getOffset(town + 1); r++) {
+                routes.add(new Route(graph.getTown(town), graph.getTown(graph.getTarget(r))));
+            }
+        }
+
+        for (int i = 0; i < 300; i++) {
+            if (random.nextInt(3) == 0 && !routes.isEmpty()) {
+                Route route = routes.remove(random.nextInt(routes.size()));
+                assertTrue(dynamic.removeRoute(route.getFrom(), route.getTo()));
+                proc.removeRoute(route);
+            } else {
+                // a few new cities, and reweights of the routes already there.
+                Route route = random.nextBoolean() && !routes.isEmpty() ? routes.get(random.nextInt(routes.size()))
+                        : new Route("T" + random.nextInt(65), "T" + random.nextInt(65));
+                int distance = random.nextInt(20);
+                if (!routes.contains(route)) {
+                    routes.add(route);
+                }
+                dynamic.setRoute(route.getFrom(), route.getTo(), distance);
+                proc.addRoute(route, distance);
+            }
+
+            Graph g = proc.getGraph();
+            for (String source : sources) {
+                int from = g.indexOf(source);
+                ShortestPaths paths = new ShortestPaths(g);
+                if (from != Graph.NONE) {
+                    paths.search(from, Graph.NONE);
+                }
+                for (int to = 0; to < g.getTownCount(); to++) {
+                    String town = g.getTown(to);
+                    int expected = from == Graph.NONE ? Trip.NO_ROUTE : paths.getDistance(to);
+                    if (to == from) {
+                        // a search settles its source only when it is reached again.
+                        expected = new ShortestPaths(g).search(from, from);
+                    }
+                    assertEquals(source + town, expected, dynamic.getDistance(source, town));
+                    Trip trip = dynamic.getTrip(source, town);
+                    if (expected == Trip.NO_ROUTE) {
+                        assertNull(trip);
+                    } else {
+                        assertEquals(expected, trip.getDistance());
+                        assertEquals(source, trip.getFrom());
+                        assertEquals(town, trip.peakLast());
+                        List<String> cities = new ArrayList<String>(trip.getSteps());
+                        cities.add(0, source);
+                        assertEquals(expected, proc.getRoute(cities.toArray(new String[cities.size()])));
+                    }
+                }
+            }
+        }
+        assertFalse(dynamic.removeRoute("T0", "unknown"));
+    }
+}
@@ -0,0 +1,82 @@
+package org.toughjobs.exams.trains.processing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.toughjobs.exams.trains.ExamResultTest;
+import org.toughjobs.exams.trains.data.Trip;
+import org.toughjobs.exams.trains.graph.Graph;
+
+import junit.framework.TestCase;
+
+/**
+ * Provide methods to test {@link KShortestPaths}
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class KShortestPathsTest extends TestCase {
+
+    /**
+     * Test the shortest trips of the exam graph.
+     */
+    public void testExamGraph() {
+        Processor proc = ExamResultTest.getGraph();
+
+        List<Trip> trips = proc.getKShortestTrips("A", "C", 3);
+        assertEquals(3, trips.size());
+        assertEquals("ABC", trips.get(0).toString());
+        assertEquals("ADC", trips.get(1).toString());
+        assertEquals("AEBC", trips.get(2).toString());
+        assertEquals(14, trips.get(2).getDistance());
+
+        trips = proc.getKShortestTrips("B", "B", 10);
+        assertEquals(proc.findTrips("B", "B").size(), trips.size());
+        assertEquals("BCEB", trips.get(0).toString());
+        assertTrue(proc.getKShortestTrips("C", "A", 3).isEmpty());
+        assertTrue(proc.getKShortestTrips("A", "Z", 3).isEmpty());
+        assertTrue(proc.getKShortestTrips("A", "C", 0).isEmpty());
+    }
+
+    /**
+     * Compare with every trip found not going through the starting city again, then sorted by distance,
+     * on random graphs.
+     */
+    public void testRandomGraphs() {
+        Random random = new Random(17);
+        for (int n = 0; n < 30; n++) {
+            Graph g = BidirectionalSearchTest.randomGraph(random, 9, 25);
+            ProcessorImpl proc = new ProcessorImpl(g);
+            for (int from = 0; from < g.getTownCount(); from++) {
+                for (int to = 0; to < g.getTownCount(); to++) {
+                    String f = g.getTown(from);
+                    String t = g.getTown(to);
+                    List<Trip> expected = new ArrayList<Trip>();
+                    for (Trip trip : proc.findTrips(f, t)) {
+                        if (from == to || trip.toString().indexOf(f, 1) == -1) { // loopless.
+                            expected.add(trip);
+                        }
+                    }
+                    Collections.sort(expected, new Comparator<Trip>() {
+                        @Override
+                        public int compare(Trip a, Trip b) {
+                            return a.getDistance() - b.getDistance();
+                        }
+                    });
+                    int k = 1 + random.nextInt(expected.size() + 2);
+                    List<Trip> trips = proc.getKShortestTrips(f, t, k);
+
+                    assertEquals(Math.min(k, expected.size()), trips.size());
+                    for (int i = 0; i < trips.size(); i++) {
+                        assertEquals(expected.get(i).getDistance(), trips.get(i).getDistance());
+                        assertTrue(expected.contains(trips.get(i)));
+                        assertTrue(trips.get(i).isComplete());
+                    }
+                    assertEquals(trips.size(), new HashSet<Trip>(trips).size());
+                }
+            }
+        }
+    }
+}
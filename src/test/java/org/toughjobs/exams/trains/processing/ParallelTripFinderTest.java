@@ -0,0 +1,92 @@
+package org.toughjobs.exams.trains.processing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.toughjobs.exams.trains.ExamResultTest;
+import org.toughjobs.exams.trains.data.Route;
+import org.toughjobs.exams.trains.data.Trip;
+
+import junit.framework.TestCase;
+
+/**
+ * Provide methods to test {@link ParallelTripFinder}
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class ParallelTripFinderTest extends TestCase {
+
+    private ForkJoinPool pool;
+
+    @Override
+    protected void setUp() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @Override
+    protected void tearDown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Test the exam graph gives the same trips in parallel.
+     */
+    public void testExamGraph() {
+        ProcessorImpl proc = (ProcessorImpl) ExamResultTest.getGraph();
+        String trips = proc.findTripsMaxDistance("C", "C", 30).toString();
+        String all = proc.findTrips("A", "C").toString();
+
+        proc.setForkJoinPool(pool);
+        proc.setParallelThreshold(0);
+        assertEquals(trips, proc.findTripsMaxDistance("C", "C", 30).toString());
+        assertEquals(all, proc.findTrips("A", "C").toString());
+        assertEquals(0, proc.findTrips("A", "Z").size());
+        assertEquals(0, proc.findTripsMaxDistance("A", "C", 0).size());
+    }
+
+    /**
+     * Compare parallel and sequential enumerations on random graphs.
+     */
+    public void testRandomGraphs() {
+        Random random = new Random(17);
+        for (int n = 0; n < 10; n++) {
+            ProcessorImpl proc = new ProcessorImpl();
+            for (int i = 0; i < 30; i++) {
+                String from = String.valueOf((char) ('A' + random.nextInt(8)));
+                String to = String.valueOf((char) ('A' + random.nextInt(8)));
+                if (!from.equals(to)) {
+                    proc.addRoute(new Route(from, to), 1 + random.nextInt(9));
+                }
+            }
+            for (char f = 'A'; f < 'I'; f++) {
+                for (char t = 'A'; t < 'I'; t++) {
+                    String from = String.valueOf(f);
+                    String to = String.valueOf(t);
+                    List<String> expected = answers(proc, from, to);
+                    proc.setForkJoinPool(pool);
+                    proc.setParallelThreshold(0);
+                    assertEquals(expected, answers(proc, from, to));
+                    proc.setForkJoinPool(null);
+                }
+            }
+        }
+    }
+
+    private List<String> answers(Processor proc, String from, String to) {
+        List<String> res = new ArrayList<String>();
+        res.add(distances(proc.findTrips(from, to)));
+        res.add(distances(proc.findTripsMaxDistance(from, to, 25)));
+        res.add(distances(proc.findTripsMaxSteps(from, to, 4)));
+        res.add(distances(proc.findTripsEqualsSteps(from, to, 5)));
+        return res;
+    }
+
+    private String distances(Iterable<Trip> trips) {
+        StringBuilder sb = new StringBuilder();
+        for (Trip trip : trips) {
+            sb.append(trip).append(trip.getDistance()).append(' ');
+        }
+        return sb.toString();
+    }
+}
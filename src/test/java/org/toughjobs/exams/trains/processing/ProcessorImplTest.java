@@ -165,6 +165,26 @@ public class ProcessorImplTest extends TestCase {
     	
         
         assertEquals(1, processor.findTripsMaxDistance("A", "B", 5).size());
+        // C has no route to leave from, trip is complete anyway.
+        assertEquals(1, processor.findTripsMaxDistance("A", "C", 5).size());
+        assertEquals(0, processor.findTripsMaxDistance("A", "C", 3).size());
     }
     
+    /**
+     * Test routes between cities whose names put together are the same.
+     */
+    public void testAmbiguousNames() {
+        ProcessorImpl processor = new ProcessorImpl();
+        processor.addRoute(new Route("AB", "C"), 1);
+        processor.addRoute(new Route("A", "BC"), 2);
+
+        assertFalse(new Route("AB", "C").equals(new Route("A", "BC")));
+        try {
+            assertEquals(1, processor.getDistance(new Route("AB", "C")));
+            assertEquals(2, processor.getRoute("A", "BC"));
+        } catch (NoSuchRouteException ex) {
+            assertFalse(true);
+        }
+    }
+
 }
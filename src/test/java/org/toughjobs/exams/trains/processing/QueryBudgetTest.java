@@ -0,0 +1,127 @@
+package org.toughjobs.exams.trains.processing;
+
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.toughjobs.exams.trains.ExamResultTest;
+import org.toughjobs.exams.trains.data.Trip;
+
+import junit.framework.TestCase;
+
+/**
+ * Provide methods to test {@link QueryBudget}
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class QueryBudgetTest extends TestCase {
+
+    /**
+     * Test an unlimited budget finds every trip.
+     */
+    public void testUnlimited() {
+        Processor proc = ExamResultTest.getGraph();
+        TripResult res = proc.findTrips("C", "C", Constraint.MAX_DISTANCE, 30, QueryBudget.UNLIMITED);
+        assertFalse(res.isTruncated());
+        assertNull(res.getTruncation());
+        assertEquals(proc.findTripsMaxDistance("C", "C", 30), res.getTrips());
+
+        res = proc.findTrips("A", "C", Constraint.NONE, 0, QueryBudget.UNLIMITED.withMaxResults(1000));
+        assertFalse(res.isTruncated());
+        assertEquals(proc.findTrips("A", "C"), res.getTrips());
+    }
+
+    /**
+     * Test results are truncated only when there are more trips than allowed.
+     */
+    public void testMaxResults() {
+        Processor proc = ExamResultTest.getGraph();
+        Set<Trip> all = proc.findTripsMaxDistance("C", "C", 30);
+        assertEquals(7, all.size());
+
+        TripResult res = proc.findTrips("C", "C", Constraint.MAX_DISTANCE, 30, QueryBudget.UNLIMITED.withMaxResults(3));
+        assertTrue(res.isTruncated());
+        assertEquals(QueryBudget.Limit.RESULTS, res.getTruncation());
+        assertEquals(3, res.getTrips().size());
+        assertTrue(all.containsAll(res.getTrips()));
+
+        res = proc.findTrips("C", "C", Constraint.MAX_DISTANCE, 30, QueryBudget.UNLIMITED.withMaxResults(7));
+        assertFalse(res.isTruncated());
+        assertEquals(all, res.getTrips());
+    }
+
+    /**
+     * Test explosive enumerations stop on routes followed or memory.
+     */
+    public void testExpandedAndMemory() {
+        Processor proc = ExamResultTest.getGraph();
+        TripResult res = proc.findTrips("C", "C", Constraint.MAX_DISTANCE, 1000,
+                QueryBudget.UNLIMITED.withMaxExpanded(10000));
+        assertEquals(QueryBudget.Limit.EXPANDED, res.getTruncation());
+        assertFalse(res.getTrips().isEmpty());
+        for (Trip trip : res.getTrips()) {
+            assertTrue(trip.getDistance() < 1000);
+        }
+
+        res = proc.findTrips("C", "C", Constraint.MAX_DISTANCE, 1000, QueryBudget.UNLIMITED.withMaxMemory(100000));
+        assertEquals(QueryBudget.Limit.MEMORY, res.getTruncation());
+        assertTrue(res.getTrips().size() * BudgetTracker.RESULT_BYTES <= 100000);
+    }
+
+    /**
+     * Test cancellation and timeout.
+     */
+    public void testCancelledAndDeadline() {
+        Processor proc = ExamResultTest.getGraph();
+        CancellationToken token = new CancellationToken();
+        QueryBudget budget = QueryBudget.UNLIMITED.withToken(token);
+        assertFalse(proc.findTrips("C", "C", Constraint.MAX_DISTANCE, 30, budget).isTruncated());
+        token.cancel();
+        assertTrue(token.isCancelled());
+        assertEquals(QueryBudget.Limit.CANCELLED,
+                proc.findTrips("C", "C", Constraint.MAX_DISTANCE, 1000, budget).getTruncation());
+
+        budget = QueryBudget.UNLIMITED.withTimeout(0, TimeUnit.MILLISECONDS);
+        assertEquals(QueryBudget.Limit.DEADLINE,
+                proc.findTrips("C", "C", Constraint.MAX_DISTANCE, 1000, budget).getTruncation());
+    }
+
+    /**
+     * Test parallel tasks share the budget.
+     */
+    public void testParallel() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ProcessorImpl proc = (ProcessorImpl) ExamResultTest.getGraph();
+            proc.setForkJoinPool(pool);
+            proc.setParallelThreshold(0);
+            TripResult res = proc.findTrips("C", "C", Constraint.MAX_DISTANCE, 1000,
+                    QueryBudget.UNLIMITED.withMaxResults(50));
+            assertEquals(QueryBudget.Limit.RESULTS, res.getTruncation());
+            assertEquals(50, res.getTrips().size());
+
+            res = proc.findTrips("C", "C", Constraint.MAX_DISTANCE, 30, QueryBudget.UNLIMITED.withMaxResults(50));
+            assertFalse(res.isTruncated());
+            assertEquals(7, res.getTrips().size());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Test the default budget applies to the find methods and iterations.
+     */
+    public void testDefaultBudget() {
+        ProcessorImpl proc = (ProcessorImpl) ExamResultTest.getGraph();
+        proc.setDefaultBudget(QueryBudget.UNLIMITED.withMaxResults(3));
+        assertEquals(3, proc.findTripsMaxDistance("C", "C", 30).size());
+        assertEquals(2, proc.findTripsEqualsSteps("A", "C", 2).size());
+
+        Iterator<Trip> it = proc.iterateTrips("C", "C", Constraint.MAX_DISTANCE, 1000, false);
+        for (int i = 0; i < 3; i++) {
+            it.next();
+        }
+        assertFalse(it.hasNext());
+        assertEquals(QueryBudget.Limit.RESULTS, ((TripIterator) it).getTruncation());
+    }
+}
@@ -0,0 +1,128 @@
+package org.toughjobs.exams.trains.processing;
+
+import java.util.Random;
+
+import org.toughjobs.exams.trains.ExamResultTest;
+import org.toughjobs.exams.trains.data.Route;
+import org.toughjobs.exams.trains.data.Trip;
+import org.toughjobs.exams.trains.exceptions.NoSuchRouteException;
+import org.toughjobs.exams.trains.graph.Graph;
+import org.toughjobs.exams.trains.graph.GraphBuilder;
+
+import junit.framework.TestCase;
+
+/**
+ * Provide methods to test {@link ShortestPaths} and its queues.
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class ShortestPathsTest extends TestCase {
+
+    /**
+     * Test shortest trips of the exam graph, including the round trip from B to B.
+     */
+    public void testExamGraph() throws NoSuchRouteException {
+        ProcessorImpl proc = (ProcessorImpl) ExamResultTest.getGraph();
+        for (boolean radix : new boolean[] { false, true }) {
+            proc.setRadixHeap(radix);
+
+            Trip ac = proc.getShortestDistanceTrip("A", "C");
+            assertEquals(9, ac.getDistance());
+            assertEquals("ABC", ac.toString());
+            assertTrue(ac.isComplete());
+
+            Trip bb = proc.getShortestDistanceTrip("B", "B");
+            assertEquals(9, bb.getDistance());
+            assertEquals("BCEB", bb.toString());
+        }
+    }
+
+    /**
+     * Test unknown cities and unreachable cities.
+     */
+    public void testNoRoute() {
+        ProcessorImpl proc = new ProcessorImpl();
+        proc.addRoute(new Route("A", "B"), 1);
+
+        try {
+            proc.getShortestDistanceTrip("B", "A");
+            assertFalse(true);
+        } catch (NoSuchRouteException ex) {
+            assertTrue(true);
+        }
+
+        try {
+            proc.getShortestDistanceTrip("A", "Z");
+            assertFalse(true);
+        } catch (NoSuchRouteException ex) {
+            assertTrue(true);
+        }
+    }
+
+    /**
+     * Compare both queues with the distance of every trip found by {@link ProcessorImpl#findTrips(String, String)}.
+     */
+    public void testRandomGraphs() {
+        Random random = new Random(42);
+        for (int n = 0; n < 30; n++) {
+            ProcessorImpl proc = new ProcessorImpl();
+            GraphBuilder builder = new GraphBuilder();
+            for (int i = 0; i < 20; i++) {
+                String from = String.valueOf((char) ('A' + random.nextInt(7)));
+                String to = String.valueOf((char) ('A' + random.nextInt(7)));
+                if (!from.equals(to)) {
+                    int distance = 1 + random.nextInt(9);
+                    proc.addRoute(new Route(from, to), distance);
+                    builder.addRoute(from, to, distance);
+                }
+            }
+            Graph g = builder.build();
+            ShortestPaths binary = new ShortestPaths(g);
+            ShortestPaths radix = new ShortestPaths(g, new RadixHeap());
+
+            for (int f = 0; f < g.getTownCount(); f++) {
+                for (int t = 0; t < g.getTownCount(); t++) {
+                    int expected = Trip.NO_ROUTE;
+                    for (Trip trip : proc.findTrips(g.getTown(f), g.getTown(t))) {
+                        if (expected == Trip.NO_ROUTE || trip.getDistance() < expected) {
+                            expected = trip.getDistance();
+                        }
+                    }
+                    assertEquals(expected, binary.search(f, t));
+                    assertEquals(expected, radix.search(f, t));
+                    if (expected != Trip.NO_ROUTE) {
+                        assertEquals(expected, radix.getTrip(t).getDistance());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Test both queues poll keys in order.
+     */
+    public void testQueues() {
+        Random random = new Random(7);
+        BinaryHeap binary = new BinaryHeap(100);
+        RadixHeap radix = new RadixHeap();
+        int[] keys = new int[100];
+        for (int i = 0; i < 100; i++) {
+            keys[i] = random.nextInt(1000);
+            binary.push(i, keys[i]);
+            binary.push(i, keys[i] + 5); // ignored, key is greater.
+            radix.push(i, keys[i]);
+        }
+
+        int lastBinary = -1;
+        int lastRadix = -1;
+        for (int i = 0; i < 100; i++) {
+            int b = binary.poll();
+            int r = radix.poll();
+            assertTrue(keys[b] >= lastBinary);
+            assertTrue(keys[r] >= lastRadix);
+            lastBinary = keys[b];
+            lastRadix = keys[r];
+        }
+        assertTrue(binary.isEmpty());
+        assertTrue(radix.isEmpty());
+    }
+}
@@ -0,0 +1,110 @@
+package org.toughjobs.exams.trains.processing;
+
+import java.util.Random;
+
+import org.toughjobs.exams.trains.ExamResultTest;
+import org.toughjobs.exams.trains.data.Route;
+import org.toughjobs.exams.trains.graph.Graph;
+import org.toughjobs.exams.trains.graph.GraphBuilder;
+
+import junit.framework.TestCase;
+
+/**
+ * Provide methods to test {@link TripCounter}
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class TripCounterTest extends TestCase {
+
+    /**
+     * Test counts of the exam graph.
+     */
+    public void testExamGraph() {
+        Processor proc = ExamResultTest.getGraph();
+
+        assertEquals(3, proc.countTripsEqualsSteps("A", "C", 4));
+        assertEquals(2, proc.countTripsMaxSteps("C", "C", 3));
+        assertEquals(0, proc.countTripsEqualsSteps("A", "C", 0));
+        assertEquals(0, proc.countTripsMaxSteps("A", "Z", 3));
+        assertTrue(proc.countTripsEqualsSteps("C", "C", 40) > 0);
+        assertEquals(7, proc.countTripsMaxDistance("C", "C", 30));
+        assertEquals(0, proc.countTripsMaxDistance("C", "C", 0));
+    }
+
+    /**
+     * Compare counts with the size of {@link ProcessorImpl#findTripsEqualsSteps(String, String, int)}.
+     */
+    public void testRandomGraphs() {
+        Random random = new Random(3);
+        for (int n = 0; n < 20; n++) {
+            ProcessorImpl proc = new ProcessorImpl();
+            for (int i = 0; i < 12; i++) {
+                String from = String.valueOf((char) ('A' + random.nextInt(5)));
+                String to = String.valueOf((char) ('A' + random.nextInt(5)));
+                if (!from.equals(to)) {
+                    proc.addRoute(new Route(from, to), 1 + random.nextInt(9));
+                }
+            }
+            for (char f = 'A'; f < 'F'; f++) {
+                for (char t = 'A'; t < 'F'; t++) {
+                    String from = String.valueOf(f);
+                    String to = String.valueOf(t);
+                    long total = 0;
+                    for (int steps = 1; steps <= 5; steps++) {
+                        long count = proc.countTripsEqualsSteps(from, to, steps);
+                        assertEquals(proc.findTripsEqualsSteps(from, to, steps).size(), count);
+                        total += count;
+                        assertEquals(total, proc.countTripsMaxSteps(from, to, steps));
+                    }
+                    for (int distance = 0; distance < 25; distance += 4) {
+                        assertEquals(proc.findTripsMaxDistance(from, to, distance).size(),
+                                proc.countTripsMaxDistance(from, to, distance));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Compare matrix powers, used for many steps on small graphs, with dynamic programming.
+     */
+    public void testManySteps() {
+        Graph g = new GraphBuilder().addRoute("A", "B", 1).addRoute("B", "C", 1).addRoute("C", "A", 1)
+                .addRoute("C", "B", 1).addRoute("A", "C", 1).build();
+        TripCounter counter = new TripCounter(g);
+
+        for (int steps = 1; steps <= 60; steps++) {
+            for (int f = 0; f < 3; f++) {
+                long[] equals = counter.countsEqualsSteps(f, steps);
+                long[] max = counter.countsMaxSteps(f, steps);
+                for (int t = 0; t < 3; t++) {
+                    assertEquals(equals[t], counter.countEqualsSteps(f, t, steps));
+                    assertEquals(max[t], counter.countMaxSteps(f, t, steps));
+                }
+            }
+        }
+    }
+
+    /**
+     * Test a count too large for a long is reported.
+     */
+    public void testOverflow() {
+        Graph g = new GraphBuilder().addRoute("A", "B", 1).addRoute("B", "A", 1).addRoute("A", "C", 1)
+                .addRoute("C", "A", 1).addRoute("B", "C", 1).addRoute("C", "B", 1).build();
+        TripCounter counter = new TripCounter(g);
+
+        // round trips of n steps on a complete graph of 3 cities: (2^n + 2 * (-1)^n) / 3
+        assertEquals(((1L << 41) - 2) / 3, counter.countEqualsSteps(0, 0, 41));
+        try {
+            counter.countEqualsSteps(0, 1, 100);
+            assertFalse(true);
+        } catch (ArithmeticException ex) {
+            assertTrue(true);
+        }
+        try {
+            counter.countMaxSteps(0, 0, 1000000);
+            assertFalse(true);
+        } catch (ArithmeticException ex) {
+            assertTrue(true);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package org.toughjobs.exams.trains.processing;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+
+import org.toughjobs.exams.trains.ExamResultTest;
+import org.toughjobs.exams.trains.data.Route;
+import org.toughjobs.exams.trains.data.Trip;
+
+import junit.framework.TestCase;
+
+/**
+ * Provide methods to test {@link TripIterator}
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class TripIteratorTest extends TestCase {
+
+    /**
+     * Test sorted trips of the exam graph come in alphabetical order.
+     */
+    public void testExamGraph() {
+        Processor proc = ExamResultTest.getGraph();
+
+        List<String> trips = new ArrayList<String>();
+        Iterator<Trip> it = proc.iterateTrips("C", "C", Constraint.MAX_DISTANCE, 30, true);
+        while (it.hasNext()) {
+            trips.add(it.next().toString());
+        }
+        assertEquals("[CDC, CDCEBC, CDEBC, CEBC, CEBCDC, CEBCEBC, CEBCEBCEBC]", trips.toString());
+
+        it = proc.iterateTrips("A", "C", Constraint.EQUALS_STEPS, 4, true);
+        assertEquals("ABCDC", it.next().toString());
+        assertEquals("ADCDC", it.next().toString());
+        Trip last = it.next();
+        assertEquals("ADEBC", last.toString());
+        assertEquals(5 + 6 + 3 + 4, last.getDistance());
+        assertFalse(it.hasNext());
+        try {
+            it.next();
+            assertFalse(true);
+        } catch (NoSuchElementException ex) {
+            assertTrue(true);
+        }
+
+        assertFalse(proc.iterateTrips("A", "Z", Constraint.NONE, 0, true).hasNext());
+    }
+
+    /**
+     * Test an enumeration which would never end can be stopped.
+     */
+    public void testEarlyStop() {
+        Processor proc = ExamResultTest.getGraph();
+        Iterator<Trip> it = proc.iterateTrips("C", "C", Constraint.MAX_DISTANCE, 1000, false);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(it.next().getDistance() < 1000);
+        }
+    }
+
+    /**
+     * Compare sorted and unsorted enumerations with the sets of the find methods.
+     */
+    public void testRandomGraphs() {
+        Random random = new Random(11);
+        for (int n = 0; n < 20; n++) {
+            ProcessorImpl proc = new ProcessorImpl();
+            for (int i = 0; i < 14; i++) {
+                String from = String.valueOf((char) ('A' + random.nextInt(6)));
+                String to = String.valueOf((char) ('A' + random.nextInt(6)));
+                if (!from.equals(to)) {
+                    proc.addRoute(new Route(from, to), 1 + random.nextInt(9));
+                }
+            }
+            for (char f = 'A'; f < 'G'; f++) {
+                for (char t = 'A'; t < 'G'; t++) {
+                    String from = String.valueOf(f);
+                    String to = String.valueOf(t);
+                    check(proc.findTrips(from, to), proc, from, to, Constraint.NONE, 0);
+                    check(proc.findTripsMaxSteps(from, to, 3), proc, from, to, Constraint.MAX_STEPS, 3);
+                    check(proc.findTripsEqualsSteps(from, to, 4), proc, from, to, Constraint.EQUALS_STEPS, 4);
+                    check(proc.findTripsMaxDistance(from, to, 20), proc, from, to, Constraint.MAX_DISTANCE, 20);
+                    assertEquals(proc.countTripsEqualsSteps(from, to, 4), proc.findTripsEqualsSteps(from, to, 4).size());
+                    for (Trip trip : proc.findTripsMaxSteps(from, to, 3)) {
+                        assertTrue(trip.getSteps().size() <= 3);
+                        assertTrue(proc.findTrips(from, to).contains(trip));
+                    }
+                }
+            }
+        }
+    }
+
+    private void check(Set<Trip> expected, Processor proc, String from, String to, Constraint constraint, int limit) {
+        Iterator<Trip> sorted = proc.iterateTrips(from, to, constraint, limit, true);
+        for (Trip trip : expected) {
+            assertEquals(trip.toString(), sorted.next().toString());
+        }
+        assertFalse(sorted.hasNext());
+
+        int count = 0;
+        Iterator<Trip> unsorted = proc.iterateTrips(from, to, constraint, limit, false);
+        while (unsorted.hasNext()) {
+            assertTrue(expected.contains(unsorted.next()));
+            count++;
+        }
+        assertEquals(expected.size(), count);
+    }
+}
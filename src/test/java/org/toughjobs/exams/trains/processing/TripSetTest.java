@@ -0,0 +1,129 @@
+package org.toughjobs.exams.trains.processing;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.toughjobs.exams.trains.ExamResultTest;
+import org.toughjobs.exams.trains.data.Trip;
+import org.toughjobs.exams.trains.graph.Graph;
+
+import junit.framework.TestCase;
+
+/**
+ * Provide methods to test {@link TripSet}
+ * @author <a href="tgoirand@gmail.com">Thomas Goirand</a>
+ */
+public class TripSetTest extends TestCase {
+
+    /**
+     * Test trips of the exam graph come as a tree set of the same trips would give them.
+     */
+    public void testExamGraph() {
+        ProcessorImpl proc = (ProcessorImpl) ExamResultTest.getGraph();
+        Set<Trip> trips = proc.findTripsMaxDistance("C", "C", 30);
+        assertTrue(trips instanceof TripSet);
+        assertEquals("[CDC, CDCEBC, CDEBC, CEBC, CEBCDC, CEBCEBC, CEBCEBCEBC]", trips.toString());
+
+        Set<Trip> expected = new TreeSet<Trip>();
+        Iterator<Trip> it = proc.iterateTrips("C", "C", Constraint.MAX_DISTANCE, 30, false);
+        while (it.hasNext()) {
+            expected.add(it.next());
+        }
+        assertEquals(expected, trips);
+        assertEquals(trips, expected);
+        assertEquals(expected.hashCode(), trips.hashCode());
+        assertEquals(new ArrayList<Trip>(expected).toString(), new ArrayList<Trip>(trips).toString());
+
+        TripSet set = (TripSet) trips;
+        for (int i = 0; i < set.size(); i++) {
+            Trip trip = set.get(i);
+            assertTrue(trip.isComplete());
+            assertEquals(trip.getDistance(), set.getDistance(i));
+            assertEquals(trip.getStepCount(), set.getStepCount(i));
+            assertTrue(set.contains(trip));
+        }
+    }
+
+    /**
+     * Test trips added from ids are sorted on first read, without duplicates, and trips added as objects are
+     * inserted in place.
+     */
+    public void testAdd() {
+        Graph graph = ((ProcessorImpl) ExamResultTest.getGraph()).getGraph();
+        int a = graph.indexOf("A");
+        int b = graph.indexOf("B");
+        int c = graph.indexOf("C");
+        int d = graph.indexOf("D");
+        TripSet set = new TripSet(graph);
+        assertTrue(set.isEmpty());
+        set.add(new int[] {a, d}, 2, c, 13);
+        set.add(new int[] {a, b}, 2, c, 9);
+        set.add(new int[] {a}, 1, b, 5);
+        set.add(new int[] {a, b}, 2, c, 9);
+        assertEquals(3, set.size());
+        assertEquals("[AB, ABC, ADC]", set.toString());
+        assertEquals(9, set.getDistance(1));
+
+        Trip ad = new Trip("A");
+        ad.add("D", 5);
+        ad.setComplete();
+        assertFalse(set.contains(ad));
+        assertTrue(set.add(ad));
+        assertFalse(set.add(ad));
+        assertTrue(set.contains(ad));
+        assertEquals("[AB, ABC, AD, ADC]", set.toString());
+        assertEquals(5, set.getDistance(2));
+        assertEquals(13, set.getDistance(3));
+
+        TripSet other = new TripSet(graph);
+        other.add(new int[] {a}, 1, d, 5);
+        other.add(new int[] {a, graph.indexOf("E")}, 2, b, 10);
+        set.addAll(other);
+        assertEquals("[AB, ABC, AD, ADC, AEB]", set.toString());
+        assertFalse(set.contains("AB"));
+        try {
+            set.get(5);
+            assertFalse(true);
+        } catch (IndexOutOfBoundsException ex) {
+            assertTrue(true);
+        }
+    }
+
+    /**
+     * Compare with tree sets of the trips on random sets of paths.
+     */
+    public void testRandomPaths() {
+        Graph graph = BidirectionalSearchTest.randomGraph(new Random(3), 12, 60);
+        Random random = new Random(5);
+        for (int n = 0; n < 20; n++) {
+            TripSet set = new TripSet(graph);
+            Set<String> expected = new TreeSet<String>();
+            for (int i = 0; i < 50; i++) {
+                int[] path = new int[1 + random.nextInt(4)];
+                StringBuilder name = new StringBuilder();
+                for (int j = 0; j < path.length; j++) {
+                    path[j] = random.nextInt(graph.getTownCount());
+                    name.append(graph.getTown(path[j])).append(' ');
+                }
+                int last = random.nextInt(graph.getTownCount());
+                name.append(graph.getTown(last));
+                set.add(path, path.length, last, 0);
+                expected.add(name.toString());
+            }
+            List<String> names = new ArrayList<String>();
+            for (int i = 0; i < set.size(); i++) {
+                Trip trip = set.get(i);
+                StringBuilder name = new StringBuilder(trip.getFrom());
+                for (String step : trip.getSteps()) {
+                    name.append(' ').append(step);
+                }
+                names.add(name.toString());
+            }
+            assertEquals(new ArrayList<String>(expected), names);
+        }
+    }
+}